@@ -7,18 +7,61 @@ package com.nana.springdemo;
 //import com.nana.springdemo.redis.impl.RedisCacheImpl;
 //import com.nana.springdemo.redis.serialize.IBinarySerializable;
 //import com.nana.springdemo.redis.serialize.impl.KryoBinarySerializableImpl;
+import com.nana.springdemo.common.entity.UserEntity;
+import com.nana.springdemo.redis.IAsyncRedisCache;
+import com.nana.springdemo.redis.IReactiveRedisCache;
 import com.nana.springdemo.redis.IRedisCache;
 import com.nana.springdemo.redis.IRedisResourcePoolAdapter;
+import com.nana.springdemo.redis.RedisCacheEndpoint;
+import com.nana.springdemo.redis.RedisCacheMetrics;
+import com.nana.springdemo.redis.RedisCircuitBreaker;
+import com.nana.springdemo.redis.RedisKeyEncoder;
+import com.nana.springdemo.redis.impl.AutoPipeliner;
+import com.nana.springdemo.redis.impl.ClusterJedisResourcePoolAdapterImpl;
 import com.nana.springdemo.redis.impl.JedisResourcePoolAdapterImpl;
+import com.nana.springdemo.redis.impl.LettuceAsyncRedisCacheImpl;
+import com.nana.springdemo.redis.impl.LockFreeJedisPool;
+import com.nana.springdemo.redis.impl.LockFreeJedisResourcePoolAdapterImpl;
+import com.nana.springdemo.redis.impl.ManagedJedisResourcePoolAdapterImpl;
+import com.nana.springdemo.redis.impl.NearCacheInvalidationBus;
+import com.nana.springdemo.redis.impl.NearRedisCacheImpl;
+import com.nana.springdemo.redis.impl.ReactiveRedisCacheImpl;
 import com.nana.springdemo.redis.impl.RedisCacheImpl;
+import com.nana.springdemo.redis.impl.ReplicaJedisResourcePoolAdapterImpl;
 import com.nana.springdemo.redis.serialize.IBinarySerializable;
+import com.nana.springdemo.redis.serialize.KryoClassRegistry;
+import com.nana.springdemo.redis.serialize.impl.CompressBinarySerializableImpl;
 import com.nana.springdemo.redis.serialize.impl.KryoBinarySerializableImpl;
+import com.nana.springdemo.redis.serialize.impl.LongBinaryCodecImpl;
+import com.nana.springdemo.redis.serialize.impl.MeteredBinarySerializableImpl;
+import com.nana.springdemo.redis.serialize.impl.RoutingBinarySerializableImpl;
+import com.nana.springdemo.redis.serialize.impl.StringBinaryCodecImpl;
+import com.nana.springdemo.redis.serialize.impl.UserEntityBinaryCodecImpl;
+import io.lettuce.core.RedisURI;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import redis.clients.jedis.HostAndPort;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
 
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
 /**
  * 缓存相关配置
  *
@@ -45,13 +88,249 @@ public class CacheConfiguration {
     private int minWait;
     @Value("${redis.timeout}")
     private int timeout;
+    @Value("${redis.kryo.registrationRequired:false}")
+    private boolean kryoRegistrationRequired;
+    @Value("${redis.kryo.legacyReadable:true}")
+    private boolean kryoLegacyReadable;
+    @Value("${redis.serialize.routing:false}")
+    private boolean serializeRouting;
+    @Value("${redis.compress.enabled:false}")
+    private boolean compressEnabled;
+    @Value("${redis.compress.threshold:1024}")
+    private int compressThreshold;
+    @Value("${redis.keyCache.size:0}")
+    private int keyCacheSize;
+    @Value("${redis.key.namespace:}")
+    private String keyNamespace;
+    @Value("${redis.near.enabled:false}")
+    private boolean nearEnabled;
+    @Value("${redis.near.maxSize:10000}")
+    private long nearMaxSize;
+    @Value("${redis.near.maxTtlSeconds:60}")
+    private int nearMaxTtlSeconds;
+    @Value("${redis.near.invalidation.enabled:false}")
+    private boolean nearInvalidationEnabled;
+    @Value("${redis.near.invalidation.channel:near-cache-invalidation}")
+    private String nearInvalidationChannel;
+    @Value("${redis.near.invalidation.flushIntervalMillis:10}")
+    private int nearInvalidationFlushIntervalMillis;
+    @Value("${redis.near.invalidation.maxBatchSize:500}")
+    private int nearInvalidationMaxBatchSize;
+    @Value("${redis.near.invalidation.maxPendingKeys:10000}")
+    private int nearInvalidationMaxPendingKeys;
+
+    @Value("${redis.load.lockMillis:0}")
+    private int loadLockMillis;
+    @Value("${redis.load.earlyRefreshBeta:0}")
+    private double loadEarlyRefreshBeta;
+    @Value("${redis.load.negativeTtlSeconds:0}")
+    private int loadNegativeTtlSeconds;
+    @Value("${redis.autoPipeline.enabled:false}")
+    private boolean autoPipelineEnabled;
+    @Value("${redis.autoPipeline.connections:2}")
+    private int autoPipelineConnections;
+    @Value("${redis.autoPipeline.maxBatchSize:128}")
+    private int autoPipelineMaxBatchSize;
+    @Value("${redis.autoPipeline.windowMicros:0}")
+    private int autoPipelineWindowMicros;
+    @Value("${redis.autoPipeline.queueSize:10000}")
+    private int autoPipelineQueueSize;
+    @Value("${redis.async.timeoutMillis:1000}")
+    private long asyncTimeoutMillis;
+    @Value("${redis.cluster.nodes:}")
+    private String clusterNodes;
+    @Value("${redis.replicas:}")
+    private String replicaNodes;
+    @Value("${redis.replica.readYourWritesMillis:1000}")
+    private int replicaReadYourWritesMillis;
+    @Value("${redis.replica.downMillis:5000}")
+    private int replicaDownMillis;
+    @Value("${redis.pool.lockFree.enabled:false}")
+    private boolean poolLockFreeEnabled;
+    @Value("${redis.pool.adaptive.enabled:false}")
+    private boolean poolAdaptiveEnabled;
+    @Value("${redis.pool.adaptive.min:4}")
+    private int poolAdaptiveMin;
+    @Value("${redis.pool.adaptive.max:64}")
+    private int poolAdaptiveMax;
+    @Value("${redis.pool.adaptive.targetWaitMicros:1000}")
+    private long poolAdaptiveTargetWaitMicros;
+    @Value("${redis.pool.adaptive.redisLatencyLimitMicros:20000}")
+    private long poolAdaptiveRedisLatencyLimitMicros;
+    @Value("${redis.pool.adaptive.intervalMillis:1000}")
+    private int poolAdaptiveIntervalMillis;
+    @Value("${redis.pool.adaptive.shrinkAfterWindows:30}")
+    private int poolAdaptiveShrinkAfterWindows;
+    @Value("${redis.breaker.enabled:false}")
+    private boolean breakerEnabled;
+    @Value("${redis.breaker.windowSeconds:10}")
+    private int breakerWindowSeconds;
+    @Value("${redis.breaker.minCalls:20}")
+    private int breakerMinCalls;
+    @Value("${redis.breaker.failureRatePercent:50}")
+    private int breakerFailureRatePercent;
+    @Value("${redis.breaker.slowCallMillis:200}")
+    private long breakerSlowCallMillis;
+    @Value("${redis.breaker.slowCallRatePercent:50}")
+    private int breakerSlowCallRatePercent;
+    @Value("${redis.breaker.openMillis:5000}")
+    private long breakerOpenMillis;
+    @Value("${redis.breaker.probeCalls:5}")
+    private int breakerProbeCalls;
+    @Value("${redis.metrics.enabled:false}")
+    private boolean metricsEnabled;
+    @Value("${redis.metrics.hotKeys.capacity:20}")
+    private int metricsHotKeyCapacity;
+    @Value("${redis.metrics.hotKeys.sampleRate:16}")
+    private int metricsHotKeySampleRate;
 
+    @Resource
+    private MeterRegistry meterRegistry;
 
+    private NearCacheInvalidationBus nearCacheInvalidationBus;
+    private AutoPipeliner autoPipeliner;
+    private LettuceAsyncRedisCacheImpl asyncRedisCache;
+    private ManagedJedisResourcePoolAdapterImpl managedPool;
+    private LockFreeJedisResourcePoolAdapterImpl lockFreePool;
+    private ClusterJedisResourcePoolAdapterImpl clusterPool;
+    private ReplicaJedisResourcePoolAdapterImpl replicaPool;
+
+    /**
+     * 缓存中出现的类及其固定ID，已经使用过的ID不能修改或复用，新增类往后追加
+     * @return
+     */
+    private KryoClassRegistry getKryoClassRegistry() {
+        return new KryoClassRegistry()
+                .register(Date.class, 10)
+                .register(ArrayList.class, 11)
+                .register(HashMap.class, 12)
+                .register(LinkedHashMap.class, 13)
+                .register(HashSet.class, 14)
+                .register(LinkedHashSet.class, 15)
+                .register(UserEntity.class, 100);
+    }
+
+    /**
+     * 序列化实现，开启routing后按类型选择编解码器，值前面带1字节类型头
+     * 编解码器编号写入Redis后不能修改或复用
+     * 开启compress后超过阈值的值压缩写入
+     * @return
+     */
+    @Bean
+    public IBinarySerializable getBinarySerializable() {
+        KryoBinarySerializableImpl kryo = new KryoBinarySerializableImpl(getKryoClassRegistry(),
+                kryoRegistrationRequired, kryoLegacyReadable);
+        IBinarySerializable binarySerializable = kryo;
+        if (serializeRouting) {
+            binarySerializable = new RoutingBinarySerializableImpl(0, kryo)
+                    .register(1, new UserEntityBinaryCodecImpl(), UserEntity.class)
+                    .register(2, new StringBinaryCodecImpl(), String.class)
+                    .register(3, new LongBinaryCodecImpl(), Long.class, Integer.class);
+        }
+        if (compressEnabled) {
+            binarySerializable = new CompressBinarySerializableImpl(binarySerializable, compressThreshold);
+        }
+        return binarySerializable;
+    }
+
+    /**
+     * key编码，同步和异步缓存共用
+     * 开启routing或compress后写入的格式和无头的旧数据无法按内容区分，必须配置namespace，
+     * 新格式的数据放在单独的namespace中，旧数据不会被按新格式误读
+     * @return
+     */
+    @Bean
+    public RedisKeyEncoder getRedisKeyEncoder() {
+        if ((serializeRouting || compressEnabled) && (keyNamespace == null || keyNamespace.isEmpty())) {
+            throw new IllegalStateException("redis.key.namespace is required when redis.serialize.routing"
+                    + " or redis.compress.enabled is on");
+        }
+        return new RedisKeyEncoder(keyCacheSize, keyNamespace);
+    }
+
+    /**
+     * 缓存命令的监控数据，redis.metrics.enabled=false时不记录
+     * @return
+     */
+    @Bean
+    public RedisCacheMetrics getRedisCacheMetrics() {
+        return new RedisCacheMetrics(meterRegistry, metricsHotKeyCapacity, metricsHotKeySampleRate);
+    }
+
+    /**
+     * 连接池和压缩的统计注册到监控：自适应连接池的活跃/空闲/等待数、借连接等待分位数和超时次数，LZ4压缩的次数、字节数和耗时
+     * 在连接池和序列化实现创建之后才绑定，未开启的功能不注册
+     * @return
+     */
+    @Bean
+    public MeterBinder getRedisMeterBinder() {
+        return registry -> {
+            getRedisCache();
+            if (managedPool != null) {
+                bindPoolMetrics(registry, managedPool);
+            }
+            IBinarySerializable binarySerializable = getBinarySerializable();
+            if (binarySerializable instanceof CompressBinarySerializableImpl) {
+                bindCompressMetrics(registry, (CompressBinarySerializableImpl) binarySerializable);
+            }
+        };
+    }
+
+    private static void bindPoolMetrics(MeterRegistry registry, ManagedJedisResourcePoolAdapterImpl pool) {
+        Gauge.builder("redis.pool.connections", pool, ManagedJedisResourcePoolAdapterImpl::getNumActive)
+                .tag("state", "active").register(registry);
+        Gauge.builder("redis.pool.connections", pool, ManagedJedisResourcePoolAdapterImpl::getNumIdle)
+                .tag("state", "idle").register(registry);
+        Gauge.builder("redis.pool.connections", pool, ManagedJedisResourcePoolAdapterImpl::getMaxTotal)
+                .tag("state", "max").register(registry);
+        Gauge.builder("redis.pool.waiters", pool, ManagedJedisResourcePoolAdapterImpl::getNumWaiters)
+                .register(registry);
+        FunctionCounter.builder("redis.pool.borrow.timeouts", pool, ManagedJedisResourcePoolAdapterImpl::getBorrowTimeouts)
+                .register(registry);
+        FunctionCounter.builder("redis.pool.borrow.count", pool, p -> p.getBorrowWait().getCount())
+                .register(registry);
+        //启动以来的等待分布，分位数为所在2的幂分桶的上界
+        for (double percentile : new double[]{0.5, 0.99, 0.999}) {
+            Gauge.builder("redis.pool.borrow.wait", pool, p -> p.getBorrowWait().percentileMicros(percentile))
+                    .tag("percentile", String.valueOf(percentile)).baseUnit("microseconds").register(registry);
+        }
+        Gauge.builder("redis.pool.borrow.wait", pool, p -> p.getBorrowWait().getMaxNanos() / 1000)
+                .tag("percentile", "max").baseUnit("microseconds").register(registry);
+        Gauge.builder("redis.pool.ping.latency", pool, ManagedJedisResourcePoolAdapterImpl::getRedisLatencyMicros)
+                .baseUnit("microseconds").register(registry);
+    }
+
+    private static void bindCompressMetrics(MeterRegistry registry, CompressBinarySerializableImpl compress) {
+        FunctionCounter.builder("redis.serialize.compress.writes", compress, CompressBinarySerializableImpl::getCompressCount)
+                .tag("result", "compressed").register(registry);
+        FunctionCounter.builder("redis.serialize.compress.writes", compress, CompressBinarySerializableImpl::getSkipCount)
+                .tag("result", "skipped").register(registry);
+        FunctionCounter.builder("redis.serialize.compress.bytes", compress, CompressBinarySerializableImpl::getRawBytes)
+                .tag("stage", "raw").baseUnit("bytes").register(registry);
+        FunctionCounter.builder("redis.serialize.compress.bytes", compress, CompressBinarySerializableImpl::getCompressedBytes)
+                .tag("stage", "compressed").baseUnit("bytes").register(registry);
+        Gauge.builder("redis.serialize.compress.ratio", compress, CompressBinarySerializableImpl::getCompressRatio)
+                .register(registry);
+        FunctionCounter.builder("redis.serialize.compress.reads", compress, CompressBinarySerializableImpl::getDecompressCount)
+                .register(registry);
+        FunctionCounter.builder("redis.serialize.compress.time", compress, c -> c.getCompressNanos() / 1e9)
+                .tag("op", "compress").baseUnit("seconds").register(registry);
+        FunctionCounter.builder("redis.serialize.compress.time", compress, c -> c.getDecompressNanos() / 1e9)
+                .tag("op", "decompress").baseUnit("seconds").register(registry);
+    }
+
+    @Bean
+    public RedisCacheEndpoint getRedisCacheEndpoint() {
+        return new RedisCacheEndpoint(getRedisCacheMetrics());
+    }
 
     @Bean
     public IRedisCache getRedisCache() {
 
-        IBinarySerializable binarySerializable = new KryoBinarySerializableImpl();
+        IBinarySerializable binarySerializable = getBinarySerializable();
+        if (metricsEnabled) {
+            binarySerializable = new MeteredBinarySerializableImpl(binarySerializable, getRedisCacheMetrics());
+        }
 
         JedisPoolConfig jpc = new JedisPoolConfig();
         jpc.setMaxTotal(maxActive);
@@ -65,12 +344,136 @@ public class CacheConfiguration {
         jpc.setMinEvictableIdleTimeMillis(60000);
         jpc.setTimeBetweenEvictionRunsMillis(30000);
 
-//        JedisPool jp = new JedisPool(jpc, redisHost, redisPort, timeout, redisPassword);
-        JedisPool jp = new JedisPool(jpc, redisHost, redisPort, timeout);
+        IRedisResourcePoolAdapter rrp;
+        if (clusterNodes != null && clusterNodes.trim().length() > 0) {
+            clusterPool = new ClusterJedisResourcePoolAdapterImpl(parseNodes(clusterNodes), jpc, timeout);
+            rrp = clusterPool;
+        } else if (poolAdaptiveEnabled) {
+            managedPool = new ManagedJedisResourcePoolAdapterImpl(jpc, redisHost, redisPort, timeout,
+                    poolAdaptiveMin, poolAdaptiveMax, poolAdaptiveTargetWaitMicros,
+                    poolAdaptiveRedisLatencyLimitMicros, poolAdaptiveIntervalMillis, poolAdaptiveShrinkAfterWindows);
+            managedPool.start();
+            rrp = managedPool;
+        } else if (poolLockFreeEnabled) {
+            lockFreePool = new LockFreeJedisResourcePoolAdapterImpl(new LockFreeJedisPool(redisHost, redisPort, timeout,
+                    maxActive, minWait > 0 ? minWait : 1000));
+            rrp = lockFreePool;
+        } else {
+//            JedisPool jp = new JedisPool(jpc, redisHost, redisPort, timeout, redisPassword);
+            JedisPool jp = new JedisPool(jpc, redisHost, redisPort, timeout);
+            if (replicaNodes != null && replicaNodes.trim().length() > 0) {
+                replicaPool = new ReplicaJedisResourcePoolAdapterImpl(jp, new ArrayList<HostAndPort>(parseNodes(replicaNodes)),
+                        jpc, timeout, replicaDownMillis);
+                rrp = replicaPool;
+            } else {
+                rrp = new JedisResourcePoolAdapterImpl(jp);
+            }
+        }
+
+        RedisCacheImpl redisCacheImpl = new RedisCacheImpl(rrp, binarySerializable, getRedisKeyEncoder());
+        redisCacheImpl.setLoadLockMillis(loadLockMillis);
+        redisCacheImpl.setEarlyRefreshBeta(loadEarlyRefreshBeta);
+        redisCacheImpl.setNegativeTtlSeconds(loadNegativeTtlSeconds);
+        redisCacheImpl.setReadYourWritesMillis(replicaReadYourWritesMillis);
+        if (breakerEnabled) {
+            redisCacheImpl.setCircuitBreaker(new RedisCircuitBreaker(breakerWindowSeconds, breakerMinCalls,
+                    breakerFailureRatePercent, breakerSlowCallMillis, breakerSlowCallRatePercent,
+                    breakerOpenMillis, breakerProbeCalls));
+        }
+        if (metricsEnabled) {
+            redisCacheImpl.setMetrics(getRedisCacheMetrics());
+        }
+        if (autoPipelineEnabled) {
+            autoPipeliner = new AutoPipeliner(redisCacheImpl, autoPipelineConnections, autoPipelineMaxBatchSize,
+                    autoPipelineWindowMicros, autoPipelineQueueSize, timeout);
+            autoPipeliner.start();
+            redisCacheImpl.setAutoPipeliner(autoPipeliner);
+        }
+        IRedisCache redisCache = redisCacheImpl;
+        if (nearEnabled) {
+            NearRedisCacheImpl nearCache = new NearRedisCacheImpl(redisCache, nearMaxSize, nearMaxTtlSeconds);
+            if (nearInvalidationEnabled) {
+                nearCacheInvalidationBus = new NearCacheInvalidationBus(rrp, nearCache, redisHost, redisPort,
+                        nearInvalidationChannel, nearInvalidationFlushIntervalMillis,
+                        nearInvalidationMaxBatchSize, nearInvalidationMaxPendingKeys);
+                nearCache.setInvalidationBus(nearCacheInvalidationBus);
+                nearCacheInvalidationBus.start();
+            }
+            redisCache = nearCache;
+        }
+        return redisCache;
+    }
+
+    /**
+     * @param nodes host:port,host:port
+     * @return
+     */
+    private static Set<HostAndPort> parseNodes(String nodes) {
+        Set<HostAndPort> ret = new LinkedHashSet<HostAndPort>();
+        for (String node : nodes.split(",")) {
+            String[] hostAndPort = node.trim().split(":");
+            ret.add(new HostAndPort(hostAndPort[0], Integer.parseInt(hostAndPort[1])));
+        }
+        return ret;
+    }
+
+    /**
+     * 异步缓存，和getRedisCache使用同一个序列化实现，数据互通
+     * 第一次调用时才建立连接
+     * @return
+     */
+    @Bean
+    public IAsyncRedisCache getAsyncRedisCache() {
+        if (clusterNodes != null && clusterNodes.trim().length() > 0) {
+            //集群模式和同步缓存使用同一组种子节点，按slot路由
+            List<RedisURI> seeds = new ArrayList<RedisURI>();
+            for (HostAndPort node : parseNodes(clusterNodes)) {
+                seeds.add(RedisURI.Builder.redis(node.getHost(), node.getPort())
+                        .withTimeout(Duration.ofMillis(asyncTimeoutMillis))
+                        .build());
+            }
+            asyncRedisCache = new LettuceAsyncRedisCacheImpl(seeds, getBinarySerializable(), getRedisKeyEncoder());
+            return asyncRedisCache;
+        }
+        RedisURI redisURI = RedisURI.Builder.redis(redisHost, redisPort)
+                .withTimeout(Duration.ofMillis(asyncTimeoutMillis))
+                .build();
+        asyncRedisCache = new LettuceAsyncRedisCacheImpl(redisURI, getBinarySerializable(), getRedisKeyEncoder());
+        return asyncRedisCache;
+    }
 
-        IRedisResourcePoolAdapter rrp = new JedisResourcePoolAdapterImpl(jp);
+    /**
+     * 响应式缓存，包装异步缓存，共用同一个连接
+     * @return
+     */
+    @Bean
+    public IReactiveRedisCache getReactiveRedisCache() {
+        return new ReactiveRedisCacheImpl(getAsyncRedisCache());
+    }
 
-        return new RedisCacheImpl(rrp, binarySerializable);
+    @PreDestroy
+    public void destroy() {
+        if (nearCacheInvalidationBus != null) {
+            nearCacheInvalidationBus.close();
+        }
+        if (autoPipeliner != null) {
+            autoPipeliner.close();
+        }
+        if (asyncRedisCache != null) {
+            asyncRedisCache.close();
+        }
+        if (managedPool != null) {
+            managedPool.close();
+        }
+        if (lockFreePool != null) {
+            lockFreePool.close();
+        }
+        if (clusterPool != null) {
+            clusterPool.close();
+        }
+        if (replicaPool != null) {
+            replicaPool.close();
+        }
     }
 
 
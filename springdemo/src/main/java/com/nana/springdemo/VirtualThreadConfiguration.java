@@ -0,0 +1,111 @@
+package com.nana.springdemo;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import org.apache.catalina.connector.Connector;
+import org.apache.coyote.AbstractProtocol;
+import org.apache.coyote.ProtocolHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatConnectorCustomizer;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 虚拟线程模式，spring.threads.virtual.enabled=true时生效，需要JDK 21及以上
+ * <p>
+ * Tomcat的请求处理改为每个请求一个虚拟线程，UserController、RedisCacheImpl和UserMapper中的阻塞调用都在虚拟线程中执行，
+ * 并发数不再受线程数限制，改由JedisPool和Druid的连接数限制，连接池的借用等待必须有超时。
+ * <p>
+ * 防止载体线程被钉住：MySQL驱动在synchronized中做网络IO，虚拟线程在其中阻塞时会钉住载体线程。
+ * 这里把Druid的最大连接数限制在载体线程数以下，同时查库的虚拟线程最多钉住maxActive个载体线程，
+ * 至少留一个载体线程给其他虚拟线程。Druid和JedisPool借连接时用的是ReentrantLock，等待时不会钉住载体线程。
+ * 启动参数加-Djdk.tracePinnedThreads=short可以打印发生钉住的调用栈。
+ * <p>
+ * 项目按Java 11字节码编译(Spring 5.1的ASM不能读取更高版本的class文件)，虚拟线程通过反射创建。
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadConfiguration {
+
+    private static Logger log = LoggerFactory.getLogger(VirtualThreadConfiguration.class);
+
+    /**
+     * 每个任务一个虚拟线程的线程池
+     * @return
+     * @throws IllegalStateException 当前JDK不支持虚拟线程
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) java.util.concurrent.Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("virtual threads require JDK 21+, current:"
+                    + System.getProperty("java.version"), e);
+        }
+    }
+
+    /**
+     * 虚拟线程调度器的载体线程数
+     * @return
+     */
+    public static int carrierParallelism() {
+        return Integer.getInteger("jdk.virtualThreadScheduler.parallelism",
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService virtualThreadExecutor() {
+        return newVirtualThreadPerTaskExecutor();
+    }
+
+    @Bean
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> virtualThreadTomcatCustomizer(
+            final ExecutorService virtualThreadExecutor) {
+        return new WebServerFactoryCustomizer<TomcatServletWebServerFactory>() {
+            @Override
+            public void customize(TomcatServletWebServerFactory factory) {
+                factory.addConnectorCustomizers(new TomcatConnectorCustomizer() {
+                    @Override
+                    public void customize(Connector connector) {
+                        ProtocolHandler handler = connector.getProtocolHandler();
+                        if (handler instanceof AbstractProtocol) {
+                            ((AbstractProtocol<?>) handler).setExecutor(virtualThreadExecutor);
+                        }
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * 按虚拟线程模式调整Druid连接池：最大连接数不超过载体线程数-1，借连接等待有超时
+     */
+    @Bean
+    public static BeanPostProcessor virtualThreadDataSourceSizing(final Environment environment) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DruidDataSource)) {
+                    return bean;
+                }
+                DruidDataSource dataSource = (DruidDataSource) bean;
+                int maxActive = environment.getProperty("virtual.datasource.maxActive", Integer.class, 32);
+                int limit = Math.max(1, carrierParallelism() - 1);
+                if (maxActive > limit) {
+                    log.warn("virtual threads: druid maxActive {} exceeds carrier threads, limited to {}", maxActive, limit);
+                    maxActive = limit;
+                }
+                dataSource.setMaxActive(maxActive);
+                dataSource.setMaxWait(environment.getProperty("virtual.datasource.maxWaitMillis", Long.class, 2000L));
+                return bean;
+            }
+        };
+    }
+}
@@ -7,6 +7,8 @@ public enum BusinessCenterExceptionEnum {
 
     SERVER_ERROR(100001, "服务器错误"),
 
+    PARAM_ERROR(100002, "参数错误"),
+
 
     SUCCESS(100000, "成功")
     ;
@@ -11,11 +11,14 @@ import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.mvc.AbstractController;
+import reactor.core.publisher.Mono;
 
 import javax.annotation.Resource;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/user")
@@ -28,6 +31,33 @@ public class UserController {
         return userService.selectByPrimaryKey(id);
     }
 
+    /**
+     * 批量查询，ids逗号分隔或重复传参，返回顺序和ids一致，不存在的用户跳过
+     */
+    @RequestMapping(value="/batch",method = RequestMethod.GET )
+    public List<UserEntity> selectByPrimaryKeys(@RequestParam("ids") List<Integer> ids){
+
+        return userService.selectByPrimaryKeys(ids);
+    }
+
+    /**
+     * 异步处理，等待Redis期间不占用servlet线程
+     */
+    @RequestMapping(value="/getAsync",method = RequestMethod.GET )
+    public CompletableFuture<UserEntity> selectByPrimaryKeyAsync(Integer id){
+
+        return userService.selectByPrimaryKeyAsync(id);
+    }
+
+    /**
+     * 响应式处理，返回Mono，等待Redis期间不占用servlet线程
+     */
+    @RequestMapping(value="/getReactive",method = RequestMethod.GET )
+    public Mono<UserEntity> selectByPrimaryKeyReactive(Integer id){
+
+        return userService.selectByPrimaryKeyReactive(id);
+    }
+
 //    @PostMapping("/showUser")
 //    public ResultData<UserResp> getUser(UserReq userReq) {
 //        try {
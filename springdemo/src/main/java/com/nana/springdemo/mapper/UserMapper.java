@@ -2,10 +2,29 @@ package com.nana.springdemo.mapper;
 
 import com.nana.springdemo.common.entity.UserEntity;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
+import java.util.List;
 
 @Mapper
 public interface UserMapper {
 
     UserEntity selectByPrimaryKey(Integer id);
 
+    /**
+     * 按主键批量查询，一条where id in语句
+     * @param ids 不能为空
+     * @return 存在的用户，顺序不固定
+     */
+    List<UserEntity> selectByPrimaryKeys(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * 按主键顺序分页取ID
+     * @param lastId 上一页最后一个ID，不包含
+     * @param limit
+     * @return
+     */
+    List<Integer> selectIdsAfter(@Param("lastId") Integer lastId, @Param("limit") int limit);
+
 }
@@ -0,0 +1,69 @@
+package com.nana.springdemo.redis;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 进程内布隆过滤器，放在读穿加载前面，判断一定不存在的ID不再查库
+ * <p>
+ * 只支持long类型的元素，可以并发put和mightContain。
+ * 不存在误判为存在的概率约为fpp，已put的元素不会误判为不存在。
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitSize;
+    private final int hashCount;
+
+    /**
+     * @param expectedInsertions 预计元素个数
+     * @param fpp 期望的误判率
+     */
+    public BloomFilter(long expectedInsertions, double fpp) {
+        if (expectedInsertions <= 0 || fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("expectedInsertions:" + expectedInsertions + ",fpp:" + fpp);
+        }
+        long size = (long) (-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE, (Math.max(size, 64) + 63) / 64);
+        this.bits = new AtomicLongArray(words);
+        this.bitSize = (long) words * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitSize / expectedInsertions * Math.log(2)));
+    }
+
+    public void put(long value) {
+        long hash1 = mix(value);
+        long hash2 = mix(hash1);
+        for (int i = 0; i < hashCount; i++) {
+            long index = ((hash1 + i * hash2) & Long.MAX_VALUE) % bitSize;
+            int word = (int) (index >>> 6);
+            long mask = 1L << index;
+            long old = bits.get(word);
+            while ((old & mask) == 0 && !bits.compareAndSet(word, old, old | mask)) {
+                old = bits.get(word);
+            }
+        }
+    }
+
+    public boolean mightContain(long value) {
+        long hash1 = mix(value);
+        long hash2 = mix(hash1);
+        for (int i = 0; i < hashCount; i++) {
+            long index = ((hash1 + i * hash2) & Long.MAX_VALUE) % bitSize;
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * MurmurHash3的64位finalizer
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,44 @@
+package com.nana.springdemo.redis;
+
+/**
+ * 缓存值及其在Redis中的剩余过期时间，由一次往返同时取回
+ * <p>
+ * key不存在或者是空值标记时value为null、pttl为-2，空值标记可以用{@link #isNegative()}区分；没有设置过期时间时pttl为-1。
+ */
+public class ExpiringValue<E> {
+
+    private final E value;
+    private final long pttl;
+    private final boolean negative;
+
+    public ExpiringValue(E value, long pttl) {
+        this(value, pttl, false);
+    }
+
+    public ExpiringValue(E value, long pttl, boolean negative) {
+        this.value = value;
+        this.pttl = pttl;
+        this.negative = negative;
+    }
+
+    /**
+     * @return 缓存值，不存在时为null
+     */
+    public E getValue() {
+        return value;
+    }
+
+    /**
+     * @return 剩余过期时间(毫秒)，-1 没有过期时间，-2 不存在
+     */
+    public long getPttl() {
+        return pttl;
+    }
+
+    /**
+     * @return 是否为空值标记，即确认不存在的数据
+     */
+    public boolean isNegative() {
+        return negative;
+    }
+}
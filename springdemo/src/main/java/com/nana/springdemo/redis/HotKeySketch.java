@@ -0,0 +1,140 @@
+package com.nana.springdemo.redis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 热点key采样统计，无锁、记录时不分配内存
+ * <p>
+ * 按1/sampleRate的概率采样，采样到的key计入Count-Min Sketch(4行计数器)，估计次数超过候选表中最小的次数时替换进候选表。
+ * 采样总数达到计数器数量的10倍时所有计数减半(和Caffeine的TinyLFU相同)，使统计偏向最近的访问。
+ * 并发替换候选表时同一个key可能短暂占两个位置，输出时合并。
+ */
+public class HotKeySketch {
+
+    private static final int DEPTH = 4;
+    private static final long[] SEEDS = {0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L};
+
+    private final int sampleMask;
+    private final int widthMask;
+    private final AtomicLongArray counts;
+    private final AtomicLong samples = new AtomicLong();
+    private final long resetSamples;
+
+    private final AtomicReferenceArray<String> topKeys;
+    private final AtomicLongArray topCounts;
+
+    /**
+     * @param capacity 候选表大小，即最多输出多少个热点key
+     * @param sampleRate 采样间隔，取不小于它的2的幂
+     */
+    public HotKeySketch(int capacity, int sampleRate) {
+        this.sampleMask = ceilingPowerOfTwo(Math.max(1, sampleRate)) - 1;
+        int width = ceilingPowerOfTwo(Math.max(1024, capacity * 64));
+        this.widthMask = width - 1;
+        this.counts = new AtomicLongArray(DEPTH * width);
+        this.resetSamples = 10L * width;
+        this.topKeys = new AtomicReferenceArray<String>(capacity);
+        this.topCounts = new AtomicLongArray(capacity);
+    }
+
+    /**
+     * 记录一次访问
+     * @param key
+     */
+    public void offer(String key) {
+        if (key == null || (ThreadLocalRandom.current().nextInt() & sampleMask) != 0) {
+            return;
+        }
+        int h = key.hashCode();
+        long estimate = Long.MAX_VALUE;
+        for (int d = 0; d < DEPTH; d++) {
+            int index = d * (widthMask + 1) + index(h, d);
+            estimate = Math.min(estimate, counts.incrementAndGet(index));
+        }
+        if (samples.incrementAndGet() == resetSamples) {
+            reset();
+        }
+
+        int minSlot = -1;
+        long minCount = Long.MAX_VALUE;
+        String minKey = null;
+        for (int i = 0; i < topKeys.length(); i++) {
+            String k = topKeys.get(i);
+            if (k == null) {
+                if (minCount > 0) {
+                    minSlot = i;
+                    minCount = 0;
+                    minKey = null;
+                }
+                continue;
+            }
+            if (k == key || (k.hashCode() == h && k.equals(key))) {
+                topCounts.set(i, estimate);
+                return;
+            }
+            long c = topCounts.get(i);
+            if (c < minCount) {
+                minSlot = i;
+                minCount = c;
+                minKey = k;
+            }
+        }
+        if (minSlot >= 0 && estimate > minCount && topKeys.compareAndSet(minSlot, minKey, key)) {
+            topCounts.set(minSlot, estimate);
+        }
+    }
+
+    /**
+     * @return 热点key及估计的访问次数(已乘采样间隔)，按次数从大到小
+     */
+    public Map<String, Long> top() {
+        Map<String, Long> merged = new HashMap<String, Long>();
+        for (int i = 0; i < topKeys.length(); i++) {
+            String k = topKeys.get(i);
+            if (k != null) {
+                long c = topCounts.get(i) * (sampleMask + 1L);
+                Long old = merged.get(k);
+                merged.put(k, old == null ? c : Math.max(old, c));
+            }
+        }
+        List<Map.Entry<String, Long>> entries = new ArrayList<Map.Entry<String, Long>>(merged.entrySet());
+        Collections.sort(entries, (a, b) -> Long.compare(b.getValue(), a.getValue()));
+        Map<String, Long> ret = new LinkedHashMap<String, Long>();
+        for (Map.Entry<String, Long> entry : entries) {
+            ret.put(entry.getKey(), entry.getValue());
+        }
+        return ret;
+    }
+
+    /**
+     * 所有计数减半，并发的计数可能丢失个别样本
+     */
+    private void reset() {
+        samples.set(samples.get() >>> 1);
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, counts.get(i) >>> 1);
+        }
+        for (int i = 0; i < topCounts.length(); i++) {
+            topCounts.set(i, topCounts.get(i) >>> 1);
+        }
+    }
+
+    private int index(int h, int d) {
+        long x = (h + SEEDS[d]) * SEEDS[d];
+        x ^= x >>> 32;
+        return (int) x & widthMask;
+    }
+
+    private static int ceilingPowerOfTwo(int x) {
+        return 1 << (32 - Integer.numberOfLeadingZeros(x - 1));
+    }
+}
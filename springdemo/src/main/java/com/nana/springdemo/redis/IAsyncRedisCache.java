@@ -0,0 +1,81 @@
+package com.nana.springdemo.redis;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Redis 异步缓存操作接口
+ * <p>
+ * 常用操作的异步版本，调用不阻塞，结果通过CompletableFuture返回。
+ * 各方法的返回值含义和{@link IRedisCache}中同名方法一致，异常时future正常完成并返回异常值，不会异常完成。
+ * 回调可能在IO线程中执行，回调中不能有阻塞操作。
+ */
+public interface IAsyncRedisCache {
+
+    /**
+     * 删除key
+     * @param keys
+     * @return
+     * >=0  删除key的个数
+     * -1   异常
+     */
+    CompletableFuture<Integer> del(String... keys);
+    /**
+     * 获取对象
+     * @param key
+     * @param clazz
+     * @return
+     * 正常 redis中存的值（redis中不存在时，返回null）
+     * 异常 null
+     */
+    <E> CompletableFuture<E> get(String key, Class<E> clazz);
+    /**
+     * mget对象
+     * @param clazz
+     * @param keys
+     * @return
+     * 正常 map,key为keys中的元素,如果对应的key不存在时，其对应的值为null
+     * 异常 null
+     */
+    <E> CompletableFuture<Map<String, E>> mget(Class<E> clazz, String... keys);
+    /**
+     * 设置对象并设置过期时间
+     * @param key
+     * @param value
+     * @param seconds
+     * @return
+     * 0  正常
+     * -1 异常
+     */
+    <E> CompletableFuture<Integer> setEx(String key, E value, int seconds);
+    /**
+     * 获取hash中的对象
+     * @param key
+     * @param field
+     * @param clazz
+     * @return
+     * 正常 redis中存的值（不存在时，返回null）
+     * 异常 null
+     */
+    <E> CompletableFuture<E> hget(String key, String field, Class<E> clazz);
+    /**
+     * 获取hash中所有的对象
+     * @param key
+     * @param clazz
+     * @return
+     * 正常 map,key为field
+     * 异常 null
+     */
+    <E> CompletableFuture<Map<String, E>> hgetAll(String key, Class<E> clazz);
+    /**
+     * 按下标获取有序集合中的成员
+     * @param key
+     * @param start
+     * @param stop
+     * @return
+     * 正常 按分数从小到大排列的成员
+     * 异常 null
+     */
+    CompletableFuture<Set<String>> zrange(String key, int start, int stop);
+}
@@ -0,0 +1,72 @@
+package com.nana.springdemo.redis;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * Redis 响应式缓存操作接口
+ * <p>
+ * 常用操作的Reactor版本，订阅时才发送命令，等待回复期间不占用线程。
+ * redis中不存在或异常时返回空的Mono/Flux（{@link IRedisCache}中返回null的情况），
+ * 返回int的方法异常时返回-1，与{@link IRedisCache}一致。
+ */
+public interface IReactiveRedisCache {
+
+    /**
+     * 删除key
+     * @param keys
+     * @return
+     * >=0  删除key的个数
+     * -1   异常
+     */
+    Mono<Integer> del(String... keys);
+    /**
+     * 获取对象
+     * @param key
+     * @param clazz
+     * @return redis中存的值，不存在或异常时为空
+     */
+    <E> Mono<E> get(String key, Class<E> clazz);
+    /**
+     * mget对象
+     * @param clazz
+     * @param keys
+     * @return map,key为keys中的元素,如果对应的key不存在时，其对应的值为null；异常时为空
+     */
+    <E> Mono<Map<String, E>> mget(Class<E> clazz, String... keys);
+    /**
+     * 设置对象并设置过期时间
+     * @param key
+     * @param value
+     * @param seconds
+     * @return
+     * 0  正常
+     * -1 异常
+     */
+    <E> Mono<Integer> setEx(String key, E value, int seconds);
+    /**
+     * 获取hash中的对象
+     * @param key
+     * @param field
+     * @param clazz
+     * @return redis中存的值，不存在或异常时为空
+     */
+    <E> Mono<E> hget(String key, String field, Class<E> clazz);
+    /**
+     * 获取hash中所有的对象
+     * @param key
+     * @param clazz
+     * @return map,key为field；异常时为空
+     */
+    <E> Mono<Map<String, E>> hgetAll(String key, Class<E> clazz);
+    /**
+     * 按下标获取有序集合中的成员
+     * @param key
+     * @param start
+     * @param stop
+     * @return 按分数从小到大排列的成员，异常时为空
+     */
+    Flux<String> zrange(String key, int start, int stop);
+}
@@ -0,0 +1,54 @@
+package com.nana.springdemo.redis;
+
+import java.util.Map;
+
+/**
+ * 批量命令，在{@link IRedisCache#batch}的回调中调用
+ * <p>
+ * 所有命令在同一个连接上以pipeline方式发送，batch返回后统一取结果，N条命令只有一次往返。
+ * 回调中不能调用返回的{@link RedisFuture#get()}，也不能在回调外使用这个对象。
+ * 各方法的返回值含义和{@link IRedisCache}中同名方法一致。
+ */
+public interface IRedisBatch {
+
+    /************关键字(keys)**************/
+    RedisFuture<Integer> del(String... keys);
+    RedisFuture<Integer> exists(String key);
+    RedisFuture<Integer> expire(String key, int seconds);
+
+    /************字符串(String)**************/
+    RedisFuture<Long> incrBy(String key, long byValue);
+    /**
+     * @param key
+     * @return
+     * 正常 redis中的值（redis中不存在时，返回null）
+     * 异常 null
+     */
+    RedisFuture<String> getString(String key);
+    /**
+     * @param key
+     * @return
+     * 正常 redis中的值（redis中不存在时，返回null）
+     * 异常 null
+     */
+    RedisFuture<Long> getLong(String key);
+    <E> RedisFuture<E> get(String key, Class<E> clazz);
+    <E> RedisFuture<Map<String, E>> mget(Class<E> clazz, String... keys);
+    RedisFuture<Integer> set(String key, String value);
+    <E> RedisFuture<Integer> set(String key, E value);
+    RedisFuture<Integer> setEx(String key, String value, int seconds);
+    <E> RedisFuture<Integer> setEx(String key, E value, int seconds);
+    /**
+     * 写入空值标记，有效期为redis.load.negativeTtlSeconds，getOrLoad和get读到空值标记时返回null、不再加载
+     * @param key
+     * @return
+     * 正常 0，没有配置空值标记有效期时不写入
+     * 异常 -1
+     */
+    RedisFuture<Integer> setNegative(String key);
+
+    /************哈希(Hash)**************/
+    RedisFuture<Integer> hdel(String key, String... fields);
+    <E> RedisFuture<E> hget(String key, String field, Class<E> clazz);
+    <E> RedisFuture<Integer> hset(String key, String field, E value);
+}
@@ -4,6 +4,8 @@ package com.nana.springdemo.redis;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Redis 缓存操作接口
@@ -20,7 +22,7 @@ public interface IRedisCache {
      */
     int del(String... keys);
     /**
-     * 判断key是否存在
+     * 判断key是否存在，getOrLoad写入的空值标记按不存在处理
      * @param key
      * @return
      * 1  存在
@@ -227,6 +229,29 @@ public interface IRedisCache {
      * 异常 null
      */
     <E> E get(String key, Class<E> clazz, int second);
+    /**
+     * 读穿：获取对象，缓存中不存在时调用loader加载，并异步写回缓存
+     * 命中时只有一次GET
+     * @param key
+     * @param clazz
+     * @param seconds 写回缓存的过期时间
+     * @param loader 未命中或redis异常时调用，返回null时写入短期的空值标记(实现支持时)，有效期内直接返回null
+     * @return
+     * 命中 redis中存的值
+     * 未命中 loader的返回值
+     */
+    <E> E getOrLoad(String key, Class<E> clazz, int seconds, Supplier<E> loader);
+    /**
+     * 读穿，同getOrLoad，同一次往返取回剩余过期时间
+     * @param key
+     * @param clazz
+     * @param seconds 写回缓存的过期时间
+     * @param loader
+     * @return
+     * 命中 redis中存的值和剩余过期时间
+     * 未命中 loader的返回值，过期时间为seconds对应的毫秒数；loader返回null时值为null、过期时间为-2
+     */
+    <E> ExpiringValue<E> getOrLoadWithPttl(String key, Class<E> clazz, int seconds, Supplier<E> loader);
     /**
      * 设置并获取设置前字符串
      * @param key
@@ -311,6 +336,24 @@ public interface IRedisCache {
      * 异常 返回的map为null
      */
     <E> Map<String, E> mget(Class<E> clazz, String... keys);
+    /**
+     * get对象，同一次往返取回剩余过期时间
+     * @param key
+     * @param clazz
+     * @return
+     * 正常 值和剩余过期时间，不存在或者是空值标记时值为null、过期时间为-2，空值标记的isNegative为true
+     * 异常 null
+     */
+    <E> ExpiringValue<E> getWithPttl(String key, Class<E> clazz);
+    /**
+     * mget对象，同一次往返取回每个key的剩余过期时间
+     * @param clazz
+     * @param keys
+     * @return
+     * 正常 map,key为keys中的元素,不存在或者是空值标记时值为null、过期时间为-2，空值标记的isNegative为true
+     * 异常 返回的map为null
+     */
+    <E> Map<String, ExpiringValue<E>> mgetWithPttl(Class<E> clazz, String... keys);
 
     /**
      * mset字符串
@@ -1781,6 +1824,17 @@ public interface IRedisCache {
      */
     long zscoreOfLong(String key, String member);
 
+    /************批量(Pipeline)**************/
+    /**
+     * 在同一个连接上以pipeline方式执行回调中的命令，只有一次往返
+     * 命令的结果通过回调中返回的RedisFuture获取，batch返回后才能读取
+     * @param commands
+     * @return
+     * >=0 执行的命令条数
+     * -1  异常，所有RedisFuture返回各自的异常值
+     */
+    int batch(Consumer<IRedisBatch> commands);
+
 
 }
 
@@ -0,0 +1,19 @@
+package com.nana.springdemo.redis;
+
+import redis.clients.jedis.Jedis;
+
+/**
+ * 带从节点的连接池
+ * <p>
+ * {@link #getResource()}返回主节点的连接，用于写命令和要求强一致的读命令；
+ * {@link #getReadResource()}返回某个从节点的连接，用于只读命令。
+ * RedisCacheImpl发现连接池实现了这个接口时，只读命令按{@link ReadConsistency}的提示选择主节点或从节点。
+ */
+public interface IReplicaRedisResourcePoolAdapter extends IRedisResourcePoolAdapter {
+
+    /**
+     * 只读命令使用的连接，没有可用的从节点时返回主节点的连接
+     * @return
+     */
+    Jedis getReadResource();
+}
@@ -0,0 +1,49 @@
+package com.nana.springdemo.redis;
+
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+
+/**
+ * 按key分片的连接池
+ * <p>
+ * 每个key按CRC16属于16384个slot中的一个，每个slot由一个节点负责。
+ * RedisCacheImpl发现连接池实现了这个接口时，按命令的key选择节点、处理MOVED/ASK重定向，多key命令按节点拆分执行。
+ * 不带key的{@link #getResource()}返回任意一个节点的连接。
+ */
+public interface IShardedRedisResourcePoolAdapter extends IRedisResourcePoolAdapter {
+
+    /**
+     * key所在的slot，支持{hashtag}
+     * @param key
+     * @return
+     */
+    int getSlot(byte[] key);
+
+    /**
+     * 当前负责slot的节点
+     * @param slot
+     * @return 还不知道时返回null
+     */
+    HostAndPort getNode(int slot);
+
+    /**
+     * 负责slot的节点的连接
+     * @param slot
+     * @return
+     */
+    Jedis getResourceBySlot(int slot);
+
+    /**
+     * 指定节点的连接，用于ASK重定向
+     * @param node
+     * @return
+     */
+    Jedis getResource(HostAndPort node);
+
+    /**
+     * 收到MOVED时调用，更新slot所在的节点
+     * @param slot
+     * @param node
+     */
+    void renewSlot(int slot, HostAndPort node);
+}
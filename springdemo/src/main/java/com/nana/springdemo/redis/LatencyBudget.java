@@ -0,0 +1,87 @@
+package com.nana.springdemo.redis;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 单次操作的Redis延迟预算
+ * <p>
+ * 在{@link #within(int, Supplier)}中执行的Redis命令共享一个截止时间：每条命令的读超时取剩余时间和redis.timeout中较小的，
+ * 超过截止时间后的命令直接返回异常值，不再访问Redis。用于给接口设置整体的缓存耗时上限，Redis变慢时尽快降级到查库。
+ * <p>
+ * 预算只限制命令的读写，不包括从连接池借连接的等待(由redis.wait限制)。状态保存在当前线程，异步执行的回调不继承。
+ * 预算内的查库等非Redis操作、以及必须完成的写回和解锁用{@link #suspend(Supplier)}执行，不受预算限制也不消耗预算。
+ */
+public final class LatencyBudget {
+
+    private static final ThreadLocal<long[]> DEADLINE = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+
+    private LatencyBudget() {
+    }
+
+    /**
+     * 在millis毫秒的预算内执行ops中的Redis命令，嵌套时取外层剩余时间和millis中较小的
+     * @param millis
+     * @param ops
+     * @return ops的返回值
+     */
+    public static <T> T within(int millis, Supplier<T> ops) {
+        long[] deadline = DEADLINE.get();
+        long outer = deadline[0];
+        long inner = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        if (inner == 0) {
+            inner = 1;
+        }
+        if (outer == 0 || inner - outer < 0) {
+            deadline[0] = inner;
+        }
+        try {
+            return ops.get();
+        } finally {
+            deadline[0] = outer;
+        }
+    }
+
+    /**
+     * 暂停预算执行ops：ops中的Redis命令不受预算限制(仍受redis.timeout限制)，ops的耗时也不计入预算，
+     * 结束后截止时间顺延ops的耗时
+     * @param ops
+     * @return ops的返回值
+     */
+    public static <T> T suspend(Supplier<T> ops) {
+        long[] deadline = DEADLINE.get();
+        long outer = deadline[0];
+        if (outer == 0) {
+            return ops.get();
+        }
+        long start = System.nanoTime();
+        deadline[0] = 0;
+        try {
+            return ops.get();
+        } finally {
+            long resumed = outer + (System.nanoTime() - start);
+            deadline[0] = resumed == 0 ? 1 : resumed;
+        }
+    }
+
+    /**
+     * 当前线程的剩余预算，由缓存实现调用
+     * @return 没有设置预算时返回-1，已超时返回0，否则返回剩余毫秒数(向上取整)
+     */
+    public static int remainingMillis() {
+        long deadline = DEADLINE.get()[0];
+        if (deadline == 0) {
+            return -1;
+        }
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            return 0;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, (remaining + 999999) / 1000000);
+    }
+}
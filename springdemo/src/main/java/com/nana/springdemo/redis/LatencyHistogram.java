@@ -0,0 +1,96 @@
+package com.nana.springdemo.redis;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * 按2的幂分桶的耗时直方图，可以并发记录
+ * <p>
+ * 第0个桶为小于1微秒，第i个桶为[2^(i-1), 2^i)微秒。分位数取所在桶的上界，误差不超过一倍，
+ * 用于看趋势和做控制决策足够，不适合精确统计。
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 40;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+
+    public void record(long nanos) {
+        counts.incrementAndGet(bucketOf(nanos));
+        maxNanos.accumulate(nanos);
+    }
+
+    /**
+     * @param reset 是否清零，用于按时间窗口统计
+     * @return
+     */
+    public Snapshot snapshot(boolean reset) {
+        long[] ret = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            ret[i] = reset ? counts.getAndSet(i, 0) : counts.get(i);
+        }
+        long max = reset ? maxNanos.getThenReset() : maxNanos.get();
+        return new Snapshot(ret, max);
+    }
+
+    private static int bucketOf(long nanos) {
+        long micros = nanos / 1000;
+        if (micros <= 0) {
+            return 0;
+        }
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+    }
+
+    /**
+     * 直方图快照
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long maxNanos;
+        private final long count;
+
+        private Snapshot(long[] counts, long maxNanos) {
+            this.counts = counts;
+            this.maxNanos = maxNanos;
+            long sum = 0;
+            for (long c : counts) {
+                sum += c;
+            }
+            this.count = sum;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        /**
+         * @param p 0~1
+         * @return 分位数所在桶的上界(微秒)，没有数据时返回0
+         */
+        public long percentileMicros(double p) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(p * count);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return 1L << i;
+                }
+            }
+            return 1L << (counts.length - 1);
+        }
+
+        @Override
+        public String toString() {
+            return "{count=" + count + ",p50=" + percentileMicros(0.5) + "us,p99=" + percentileMicros(0.99)
+                    + "us,max=" + maxNanos / 1000 + "us}";
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.nana.springdemo.redis;
+
+import java.util.function.Supplier;
+
+/**
+ * 读一致性提示，配置了从节点时生效
+ * <p>
+ * 只读命令默认发到从节点，从节点的数据有复制延迟。需要读到最新值时：
+ * <ul>
+ * <li>显式：在{@link #fromMaster(Supplier)}中执行的读命令都发到主节点</li>
+ * <li>自动：当前线程执行写命令后的一段时间内(redis.replica.readYourWritesMillis)，读命令发到主节点，保证读到自己刚写的值</li>
+ * </ul>
+ * 状态保存在当前线程，异步执行的回调不继承。
+ */
+public final class ReadConsistency {
+
+    private static final ThreadLocal<State> STATE = new ThreadLocal<State>() {
+        @Override
+        protected State initialValue() {
+            return new State();
+        }
+    };
+
+    private ReadConsistency() {
+    }
+
+    /**
+     * 在主节点上执行reads中的读命令，可以嵌套
+     * @param reads
+     * @return reads的返回值
+     */
+    public static <T> T fromMaster(Supplier<T> reads) {
+        State state = STATE.get();
+        state.masterDepth++;
+        try {
+            return reads.get();
+        } finally {
+            state.masterDepth--;
+        }
+    }
+
+    /**
+     * 记录当前线程执行了写命令，由缓存实现调用
+     */
+    public static void markWrite() {
+        STATE.get().lastWriteNanos = System.nanoTime();
+    }
+
+    /**
+     * 当前线程的读命令是否必须发到主节点，由缓存实现调用
+     * @param readYourWritesNanos 写命令之后多长时间内读主节点
+     * @return
+     */
+    public static boolean mustReadMaster(long readYourWritesNanos) {
+        State state = STATE.get();
+        return state.masterDepth > 0
+                || (state.lastWriteNanos != 0 && System.nanoTime() - state.lastWriteNanos < readYourWritesNanos);
+    }
+
+    private static final class State {
+        private int masterDepth;
+        private long lastWriteNanos;
+    }
+}
@@ -0,0 +1,30 @@
+package com.nana.springdemo.redis;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * /actuator/rediscache：各缓存方法的耗时和失败次数汇总，以及热点key
+ * <p>
+ * 热点key不适合作为Micrometer的tag(基数不固定)，只在这里查看；其余数据同时在/actuator/metrics/redis.cache.*中
+ */
+@Endpoint(id = "rediscache")
+public class RedisCacheEndpoint {
+
+    private final RedisCacheMetrics metrics;
+
+    public RedisCacheEndpoint(RedisCacheMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @ReadOperation
+    public Map<String, Object> cache() {
+        Map<String, Object> ret = new LinkedHashMap<String, Object>();
+        ret.put("operations", metrics.summary());
+        ret.put("hotKeys", metrics.hotKeys());
+        return ret;
+    }
+}
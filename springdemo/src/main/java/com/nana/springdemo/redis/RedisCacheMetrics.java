@@ -0,0 +1,235 @@
+package com.nana.springdemo.redis;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存命令的监控数据，注册到Micrometer，通过Actuator的/actuator/metrics查看
+ * <ul>
+ * <li>redis.cache.command：每个缓存方法的耗时，发布p50/p99/p999(Micrometer内部是HdrHistogram)</li>
+ * <li>redis.cache.errors：每个缓存方法按异常类型的失败次数</li>
+ * <li>redis.cache.rejected：熔断或延迟预算用完时没有访问Redis的次数</li>
+ * <li>redis.cache.payload：每个缓存方法写入(write)和读取(read)的序列化后字节数</li>
+ * </ul>
+ * 缓存方法按命令对象的类区分，即RedisCacheImpl中定义命令的方法名，重载的方法合并统计。
+ * 每个类的统计项在第一次执行时创建，之后的记录不分配内存。热点key见{@link HotKeySketch}。
+ */
+public class RedisCacheMetrics {
+
+    public static final String REJECTED_CIRCUIT_OPEN = "circuitOpen";
+    public static final String REJECTED_BUDGET = "budgetExhausted";
+
+    private final MeterRegistry registry;
+    private final HotKeySketch hotKeys;
+
+    private final ConcurrentHashMap<String, Operation> operations = new ConcurrentHashMap<String, Operation>();
+    private final Operation other;
+
+    private final ClassValue<Operation> operationsByClass = new ClassValue<Operation>() {
+        @Override
+        protected Operation computeValue(Class<?> type) {
+            Method method = type.getEnclosingMethod();
+            return method == null ? other : operation(method.getName());
+        }
+    };
+
+    /**
+     * 当前线程正在执行的操作，序列化字节数记到这个操作上
+     */
+    private final ThreadLocal<Operation[]> current = new ThreadLocal<Operation[]>() {
+        @Override
+        protected Operation[] initialValue() {
+            return new Operation[1];
+        }
+    };
+
+    /**
+     * @param registry
+     * @param hotKeyCapacity 最多统计多少个热点key
+     * @param hotKeySampleRate 热点key采样间隔
+     */
+    public RedisCacheMetrics(MeterRegistry registry, int hotKeyCapacity, int hotKeySampleRate) {
+        this.registry = registry;
+        this.hotKeys = new HotKeySketch(hotKeyCapacity, hotKeySampleRate);
+        this.other = operation("other");
+    }
+
+    /**
+     * @param cmdClass 命令对象的类
+     * @return 命令所属的缓存方法的统计项
+     */
+    public Operation operation(Class<?> cmdClass) {
+        return operationsByClass.get(cmdClass);
+    }
+
+    /**
+     * 开始执行操作，之后的序列化字节数记到这个操作上
+     * @param operation
+     * @param keys 参与热点key采样
+     * @return 之前的操作，结束时传给{@link #exit}
+     */
+    public Operation enter(Operation operation, String[] keys) {
+        if (keys != null) {
+            for (String key : keys) {
+                hotKeys.offer(key);
+            }
+        }
+        Operation[] holder = current.get();
+        Operation prev = holder[0];
+        holder[0] = operation;
+        return prev;
+    }
+
+    public void exit(Operation prev) {
+        current.get()[0] = prev;
+    }
+
+    /**
+     * 记录序列化后写入的字节数，由序列化实现调用
+     * @param bytes
+     */
+    public void recordWrite(int bytes) {
+        currentOrOther().writeBytes.record(bytes);
+    }
+
+    /**
+     * 记录读取后反序列化的字节数，由序列化实现调用
+     * @param bytes
+     */
+    public void recordRead(int bytes) {
+        currentOrOther().readBytes.record(bytes);
+    }
+
+    /**
+     * @return 热点key及估计的访问次数
+     */
+    public Map<String, Long> hotKeys() {
+        return hotKeys.top();
+    }
+
+    /**
+     * @return 各缓存方法的调用次数、平均和最大耗时、百分位耗时(微秒)、失败次数
+     */
+    public Map<String, Map<String, Object>> summary() {
+        Map<String, Map<String, Object>> ret = new LinkedHashMap<String, Map<String, Object>>();
+        for (Operation operation : operations.values()) {
+            HistogramSnapshot snapshot = operation.timer.takeSnapshot();
+            if (snapshot.count() == 0 && operation.errors.isEmpty()) {
+                continue;
+            }
+            Map<String, Object> item = new LinkedHashMap<String, Object>();
+            item.put("count", snapshot.count());
+            item.put("meanMicros", (long) snapshot.mean(TimeUnit.MICROSECONDS));
+            item.put("maxMicros", (long) snapshot.max(TimeUnit.MICROSECONDS));
+            for (ValueAtPercentile value : snapshot.percentileValues()) {
+                item.put("p" + percentileName(value.percentile()) + "Micros", (long) value.value(TimeUnit.MICROSECONDS));
+            }
+            Map<String, Long> errors = new LinkedHashMap<String, Long>();
+            for (Map.Entry<Class<?>, Counter> entry : operation.errors.entrySet()) {
+                errors.put(entry.getKey().getSimpleName(), (long) entry.getValue().count());
+            }
+            item.put("errors", errors);
+            item.put("writeBytesMean", (long) operation.writeBytes.mean());
+            item.put("readBytesMean", (long) operation.readBytes.mean());
+            ret.put(operation.name, item);
+        }
+        return ret;
+    }
+
+    private Operation currentOrOther() {
+        Operation operation = current.get()[0];
+        return operation == null ? other : operation;
+    }
+
+    private Operation operation(String name) {
+        Operation operation = operations.get(name);
+        if (operation == null) {
+            operation = new Operation(name);
+            Operation old = operations.putIfAbsent(name, operation);
+            if (old != null) {
+                operation = old;
+            }
+        }
+        return operation;
+    }
+
+    private static String percentileName(double percentile) {
+        String s = String.valueOf(percentile * 100);
+        if (s.endsWith(".0")) {
+            s = s.substring(0, s.length() - 2);
+        }
+        return s.replace(".", "");
+    }
+
+    /**
+     * 一个缓存方法的统计项
+     */
+    public final class Operation {
+        private final String name;
+        private final Timer timer;
+        private final DistributionSummary writeBytes;
+        private final DistributionSummary readBytes;
+        private final ConcurrentHashMap<Class<?>, Counter> errors = new ConcurrentHashMap<Class<?>, Counter>();
+        private final ConcurrentHashMap<String, Counter> rejected = new ConcurrentHashMap<String, Counter>();
+
+        private Operation(String name) {
+            this.name = name;
+            this.timer = Timer.builder("redis.cache.command")
+                    .tag("method", name)
+                    .publishPercentiles(0.5, 0.99, 0.999)
+                    .register(registry);
+            this.writeBytes = DistributionSummary.builder("redis.cache.payload")
+                    .baseUnit("bytes")
+                    .tags("method", name, "direction", "write")
+                    .register(registry);
+            this.readBytes = DistributionSummary.builder("redis.cache.payload")
+                    .baseUnit("bytes")
+                    .tags("method", name, "direction", "read")
+                    .register(registry);
+        }
+
+        /**
+         * 记录一次执行
+         * @param nanos 耗时
+         * @param error 异常，成功时为null
+         */
+        public void record(long nanos, Throwable error) {
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+            if (error != null) {
+                Counter counter = errors.get(error.getClass());
+                if (counter == null) {
+                    counter = Counter.builder("redis.cache.errors")
+                            .tags("method", name, "exception", error.getClass().getSimpleName())
+                            .register(registry);
+                    errors.putIfAbsent(error.getClass(), counter);
+                }
+                counter.increment();
+            }
+        }
+
+        /**
+         * 记录一次没有访问Redis的调用
+         * @param reason {@link #REJECTED_CIRCUIT_OPEN}或{@link #REJECTED_BUDGET}
+         */
+        public void recordRejected(String reason) {
+            Counter counter = rejected.get(reason);
+            if (counter == null) {
+                counter = Counter.builder("redis.cache.rejected")
+                        .tags("method", name, "reason", reason)
+                        .register(registry);
+                rejected.putIfAbsent(reason, counter);
+            }
+            counter.increment();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.nana.springdemo.redis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Redis熔断器
+ * <p>
+ * 关闭状态下按时间窗口(windowSeconds个1秒的桶)统计调用次数、失败次数和慢调用次数，
+ * 窗口内调用数达到minCalls，且失败率或慢调用率超过阈值时打开。
+ * 慢调用率超过x%等价于第(100-x)百分位的延迟超过slowCallMillis，例如slowCallRatePercent=1表示p99超过阈值就打开。
+ * <p>
+ * 打开后openMillis内的调用直接返回异常值，不占用连接也不等待超时；之后进入半开状态，放行probeCalls个探测调用，
+ * 全部成功且不慢时关闭，任何一个失败或慢调用时重新打开。
+ * <p>
+ * 只有连接类的异常(连接失败、读写超时、借不到连接)算失败，Redis返回的错误和序列化异常不算。
+ */
+public class RedisCircuitBreaker {
+
+    private static Logger log = LoggerFactory.getLogger(RedisCircuitBreaker.class);
+
+    public static final int CLOSED = 0;
+    public static final int OPEN = 1;
+    public static final int HALF_OPEN = 2;
+
+    private static final long BUCKET_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final int buckets;
+    private final int minCalls;
+    private final int failureRatePercent;
+    private final long slowCallNanos;
+    private final int slowCallRatePercent;
+    private final long openNanos;
+    private final int probeCalls;
+    private final LongSupplier nanoClock;
+
+    private final AtomicLongArray epochs;
+    private final AtomicLongArray calls;
+    private final AtomicLongArray failures;
+    private final AtomicLongArray slowCalls;
+
+    private final AtomicInteger state = new AtomicInteger(CLOSED);
+    private volatile long openedAtNanos;
+    private final AtomicInteger probePermits = new AtomicInteger();
+    private final AtomicInteger probeSuccesses = new AtomicInteger();
+
+    /**
+     * @param windowSeconds 统计窗口
+     * @param minCalls 窗口内至少有这么多调用才判断
+     * @param failureRatePercent 失败率阈值
+     * @param slowCallMillis 超过这个耗时算慢调用
+     * @param slowCallRatePercent 慢调用率阈值
+     * @param openMillis 打开状态持续时间
+     * @param probeCalls 半开状态的探测调用数
+     */
+    public RedisCircuitBreaker(int windowSeconds, int minCalls, int failureRatePercent, long slowCallMillis,
+                               int slowCallRatePercent, long openMillis, int probeCalls) {
+        this(windowSeconds, minCalls, failureRatePercent, slowCallMillis, slowCallRatePercent, openMillis, probeCalls,
+                System::nanoTime);
+    }
+
+    /**
+     * @param nanoClock 时钟，测试时替换
+     */
+    RedisCircuitBreaker(int windowSeconds, int minCalls, int failureRatePercent, long slowCallMillis,
+                        int slowCallRatePercent, long openMillis, int probeCalls, LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        this.buckets = Math.max(1, windowSeconds);
+        this.minCalls = minCalls;
+        this.failureRatePercent = failureRatePercent;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMillis);
+        this.slowCallRatePercent = slowCallRatePercent;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+        this.probeCalls = Math.max(1, probeCalls);
+        this.epochs = new AtomicLongArray(buckets);
+        this.calls = new AtomicLongArray(buckets);
+        this.failures = new AtomicLongArray(buckets);
+        this.slowCalls = new AtomicLongArray(buckets);
+        for (int i = 0; i < buckets; i++) {
+            epochs.set(i, -1);
+        }
+    }
+
+    /**
+     * 是否允许这次调用，允许时调用结束后必须调用{@link #onResult}
+     * @return
+     */
+    public boolean tryAcquire() {
+        int s = state.get();
+        if (s == CLOSED) {
+            return true;
+        }
+        if (s == OPEN) {
+            if (nanoClock.getAsLong() - openedAtNanos < openNanos) {
+                return false;
+            }
+            if (state.compareAndSet(OPEN, HALF_OPEN)) {
+                probeSuccesses.set(0);
+                probePermits.set(probeCalls);
+                log.info("redis circuit breaker half-open, probing with {} calls", probeCalls);
+            }
+        }
+        return probePermits.getAndDecrement() > 0;
+    }
+
+    /**
+     * 记录调用结果
+     * @param nanos 耗时
+     * @param failure 是否为连接类的失败
+     */
+    public void onResult(long nanos, boolean failure) {
+        boolean slow = nanos > slowCallNanos;
+        int s = state.get();
+        if (s == HALF_OPEN) {
+            if (failure || slow) {
+                open(HALF_OPEN, "probe " + (failure ? "failed" : "slow"));
+            } else if (probeSuccesses.incrementAndGet() >= probeCalls && state.compareAndSet(HALF_OPEN, CLOSED)) {
+                resetWindow();
+                log.info("redis circuit breaker closed");
+            }
+            return;
+        }
+        if (s != CLOSED) {
+            return;
+        }
+        long now = nanoClock.getAsLong();
+        record(now, failure, slow);
+        if (!failure && !slow) {
+            return;
+        }
+        long epoch = now / BUCKET_NANOS;
+        long total = 0;
+        long failed = 0;
+        long slowed = 0;
+        for (int j = 0; j < buckets; j++) {
+            if (epoch - epochs.get(j) < buckets) {
+                total += calls.get(j);
+                failed += failures.get(j);
+                slowed += slowCalls.get(j);
+            }
+        }
+        if (total < minCalls) {
+            return;
+        }
+        if (failed * 100 >= total * failureRatePercent) {
+            open(CLOSED, "failure rate " + failed + "/" + total);
+        } else if (slowed * 100 >= total * slowCallRatePercent) {
+            open(CLOSED, "slow call rate " + slowed + "/" + total);
+        }
+    }
+
+    /**
+     * @return CLOSED、OPEN或HALF_OPEN
+     */
+    public int getState() {
+        return state.get();
+    }
+
+    private void open(int from, String reason) {
+        if (state.compareAndSet(from, OPEN)) {
+            openedAtNanos = nanoClock.getAsLong();
+            log.warn("redis circuit breaker opened: {}", reason);
+        }
+    }
+
+    /**
+     * 切换到新的桶时先清零，清零和并发的计数之间可能丢失个别样本，不影响判断
+     */
+    private void record(long now, boolean failure, boolean slow) {
+        long epoch = now / BUCKET_NANOS;
+        int i = (int) (epoch % buckets);
+        long e = epochs.get(i);
+        if (e != epoch && epochs.compareAndSet(i, e, epoch)) {
+            calls.set(i, 0);
+            failures.set(i, 0);
+            slowCalls.set(i, 0);
+        }
+        calls.incrementAndGet(i);
+        if (failure) {
+            failures.incrementAndGet(i);
+        }
+        if (slow) {
+            slowCalls.incrementAndGet(i);
+        }
+    }
+
+    private void resetWindow() {
+        for (int i = 0; i < buckets; i++) {
+            epochs.set(i, -1);
+            calls.set(i, 0);
+            failures.set(i, 0);
+            slowCalls.set(i, 0);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.nana.springdemo.redis;
+
+import java.util.function.Supplier;
+
+/**
+ * 批量命令中单条命令的结果
+ * <p>
+ * {@link IRedisCache#batch}返回后才能取结果，反序列化推迟到第一次调用{@link #get()}时进行，
+ * 没有被读取的结果不会反序列化。
+ */
+public class RedisFuture<T> {
+
+    private static final int PENDING = 0;
+    private static final int DONE = 1;
+    private static final int FAILED = 2;
+
+    private final Supplier<T> decoder;
+    private final T valueOfErr;
+
+    private volatile int state = PENDING;
+    private boolean decoded;
+    private boolean error;
+    private T value;
+
+    /**
+     * @param decoder 读取并解码命令结果
+     * @param valueOfErr 批量执行失败或者这条命令出错时返回
+     */
+    public RedisFuture(Supplier<T> decoder, T valueOfErr) {
+        this.decoder = decoder;
+        this.valueOfErr = valueOfErr;
+    }
+
+    /**
+     * 批量执行完成，由IRedisCache实现调用
+     */
+    public void complete() {
+        state = DONE;
+    }
+
+    /**
+     * 批量执行失败，由IRedisCache实现调用
+     */
+    public void fail() {
+        state = FAILED;
+    }
+
+    public boolean isDone() {
+        return state != PENDING;
+    }
+
+    /**
+     * 批量执行失败或者这条命令出错
+     * @return
+     */
+    public synchronized boolean isError() {
+        get();
+        return error;
+    }
+
+    /**
+     * @return
+     * 正常 命令结果
+     * 异常 valueOfErr
+     * @throws IllegalStateException 批量还没有执行
+     */
+    public synchronized T get() {
+        if (state == PENDING) {
+            throw new IllegalStateException("batch not executed");
+        }
+        if (!decoded) {
+            if (state == FAILED) {
+                error = true;
+                value = valueOfErr;
+            } else {
+                try {
+                    value = decoder.get();
+                } catch (Exception e) {
+                    error = true;
+                    value = valueOfErr;
+                }
+            }
+            decoded = true;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,96 @@
+package com.nana.springdemo.redis;
+
+import redis.clients.util.SafeEncoder;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * key编码，缓存热点key的UTF-8字节，避免每次命令都重新编码
+ * <p>
+ * 配置了namespace时所有key前面加上namespace，hash的field、集合的成员不加。
+ * 序列化格式不兼容的版本使用不同的namespace，新旧格式的数据互不可见，
+ * 不需要靠数据内容区分格式(无头的旧数据可能以任意字节开头，无法可靠识别)。
+ * <p>
+ * 缓存满了之后整体清空重新积累，返回的byte[]在线程间共享，调用方不能修改。
+ */
+public class RedisKeyEncoder {
+
+    private final int maxSize;
+    private final String namespace;
+    private final ConcurrentHashMap<String, byte[]> cache;
+
+    /**
+     * @param maxSize 最多缓存的key个数，<=0 时不缓存
+     */
+    public RedisKeyEncoder(int maxSize) {
+        this(maxSize, "");
+    }
+
+    /**
+     * @param maxSize 最多缓存的key个数，<=0 时不缓存
+     * @param namespace key前缀，为空时不加
+     */
+    public RedisKeyEncoder(int maxSize, String namespace) {
+        this.maxSize = maxSize;
+        this.namespace = namespace == null ? "" : namespace;
+        this.cache = new ConcurrentHashMap<String, byte[]>(maxSize > 0 ? maxSize : 16);
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    /**
+     * key在Redis中的名字(加上namespace)，用于字符串参数的命令
+     * @param key
+     * @return
+     */
+    public String name(String key) {
+        return namespace.isEmpty() || key == null ? key : namespace + key;
+    }
+
+    /**
+     * 批量取key在Redis中的名字
+     * @param keys
+     * @return
+     */
+    public String[] names(String... keys) {
+        if (namespace.isEmpty() || keys == null) {
+            return keys;
+        }
+        String[] ret = new String[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            ret[i] = name(keys[i]);
+        }
+        return ret;
+    }
+
+    /**
+     * key在Redis中的名字的UTF-8字节(加上namespace)
+     * @param key
+     * @return
+     */
+    public byte[] encode(String key) {
+        if (maxSize <= 0) {
+            return SafeEncoder.encode(name(key));
+        }
+        byte[] bytes = cache.get(key);
+        if (bytes == null) {
+            bytes = SafeEncoder.encode(name(key));
+            if (cache.size() >= maxSize) {
+                cache.clear();
+            }
+            cache.put(key, bytes);
+        }
+        return bytes;
+    }
+
+    /**
+     * hash的field、集合的成员等不是key的字符串，不加namespace
+     * @param field
+     * @return
+     */
+    public byte[] encodeField(String field) {
+        return SafeEncoder.encode(field);
+    }
+}
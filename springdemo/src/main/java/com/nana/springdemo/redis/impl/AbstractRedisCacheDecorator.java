@@ -0,0 +1,1015 @@
+package com.nana.springdemo.redis.impl;
+
+import com.nana.springdemo.redis.ExpiringValue;
+import com.nana.springdemo.redis.IRedisBatch;
+import com.nana.springdemo.redis.IRedisCache;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * IRedisCache装饰器基类，所有方法默认直接转发给被装饰的实现
+ * <p>
+ * 子类只覆盖需要增强的方法。注意被装饰实现内部的方法互相调用不会经过装饰器。
+ */
+public abstract class AbstractRedisCacheDecorator implements IRedisCache {
+
+    protected final IRedisCache redisCache;
+
+    protected AbstractRedisCacheDecorator(IRedisCache redisCache) {
+        this.redisCache = redisCache;
+    }
+
+    @Override
+    public int del(String... keys) {
+        return redisCache.del(keys);
+    }
+
+    @Override
+    public int exists(String key) {
+        return redisCache.exists(key);
+    }
+
+    @Override
+    public int expire(String key, int seconds) {
+        return redisCache.expire(key, seconds);
+    }
+
+    @Override
+    public int pexpire(String key, long miliSeconds) {
+        return redisCache.pexpire(key, miliSeconds);
+    }
+
+    @Override
+    public int expireAt(String key, long unixTime) {
+        return redisCache.expireAt(key, unixTime);
+    }
+
+    @Override
+    public int pexpireAt(String key, long miliUnixTime) {
+        return redisCache.pexpireAt(key, miliUnixTime);
+    }
+
+    @Override
+    public int persist(String key) {
+        return redisCache.persist(key);
+    }
+
+    @Override
+    public int ttl(String key) {
+        return redisCache.ttl(key);
+    }
+
+    @Override
+    public long pttl(String key) {
+        return redisCache.pttl(key);
+    }
+
+    @Override
+    public int append(String key, String value) {
+        return redisCache.append(key, value);
+    }
+
+    @Override
+    public long decr(String key, long valueOfErr) {
+        return redisCache.decr(key, valueOfErr);
+    }
+
+    @Override
+    public long decrBy(String key, long byValue, long valueOfErr) {
+        return redisCache.decrBy(key, byValue, valueOfErr);
+    }
+
+    @Override
+    public long incr(String key, long valueOfErr) {
+        return redisCache.incr(key, valueOfErr);
+    }
+
+    @Override
+    public long incrBy(String key, long byValue, long valueOfErr) {
+        return redisCache.incrBy(key, byValue, valueOfErr);
+    }
+
+    @Override
+    public String getString(String key, String valueOfErr) {
+        return redisCache.getString(key, valueOfErr);
+    }
+
+    @Override
+    public String getString(String key) {
+        return redisCache.getString(key);
+    }
+
+    @Override
+    public String getString(String key, int second) {
+        return redisCache.getString(key, second);
+    }
+
+    @Override
+    public long getLong(String key, long valueOfNotExist, long valueOfErr) {
+        return redisCache.getLong(key, valueOfNotExist, valueOfErr);
+    }
+
+    @Override
+    public long getLong(String key) {
+        return redisCache.getLong(key);
+    }
+
+    @Override
+    public long getLong(String key, int second) {
+        return redisCache.getLong(key, second);
+    }
+
+    @Override
+    public <E> E get(String key, Class<E> clazz, E valueOfErr) {
+        return redisCache.get(key, clazz, valueOfErr);
+    }
+
+    @Override
+    public <E> E get(String key, Class<E> clazz) {
+        return redisCache.get(key, clazz);
+    }
+
+    @Override
+    public <E> E get(String key, Class<E> clazz, int second) {
+        return redisCache.get(key, clazz, second);
+    }
+
+    @Override
+    public <E> E getOrLoad(String key, Class<E> clazz, int seconds, Supplier<E> loader) {
+        return redisCache.getOrLoad(key, clazz, seconds, loader);
+    }
+
+    @Override
+    public <E> ExpiringValue<E> getOrLoadWithPttl(String key, Class<E> clazz, int seconds, Supplier<E> loader) {
+        return redisCache.getOrLoadWithPttl(key, clazz, seconds, loader);
+    }
+
+    @Override
+    public String getSetString(String key, String value, String valueOfErr) {
+        return redisCache.getSetString(key, value, valueOfErr);
+    }
+
+    @Override
+    public String getSetString(String key, String value) {
+        return redisCache.getSetString(key, value);
+    }
+
+    @Override
+    public long getSetLong(String key, long value, long valueOfErr) {
+        return redisCache.getSetLong(key, value, valueOfErr);
+    }
+
+    @Override
+    public long getSetLong(String key, long value) {
+        return redisCache.getSetLong(key, value);
+    }
+
+    @Override
+    public <E> E getSet(String key, E value, E valueOfErr, Class<E> clazz) {
+        return redisCache.getSet(key, value, valueOfErr, clazz);
+    }
+
+    @Override
+    public <E> E getSet(String key, E value, Class<E> clazz) {
+        return redisCache.getSet(key, value, clazz);
+    }
+
+    @Override
+    public Map<String, String> mgetString(String... keys) {
+        return redisCache.mgetString(keys);
+    }
+
+    @Override
+    public Map<String, Long> mgetLong(String... keys) {
+        return redisCache.mgetLong(keys);
+    }
+
+    @Override
+    public <E> Map<String, E> mget(Class<E> clazz, String... keys) {
+        return redisCache.mget(clazz, keys);
+    }
+
+    @Override
+    public <E> ExpiringValue<E> getWithPttl(String key, Class<E> clazz) {
+        return redisCache.getWithPttl(key, clazz);
+    }
+
+    @Override
+    public <E> Map<String, ExpiringValue<E>> mgetWithPttl(Class<E> clazz, String... keys) {
+        return redisCache.mgetWithPttl(clazz, keys);
+    }
+
+    @Override
+    public int msetString(Map<String, String> keyValues) {
+        return redisCache.msetString(keyValues);
+    }
+
+    @Override
+    public int msetLong(Map<String, Long> keyValues) {
+        return redisCache.msetLong(keyValues);
+    }
+
+    @Override
+    public <E> int mset(Map<String, E> keyValues) {
+        return redisCache.mset(keyValues);
+    }
+
+    @Override
+    public int msetNxString(Map<String, String> keyValues) {
+        return redisCache.msetNxString(keyValues);
+    }
+
+    @Override
+    public int msetNxLong(Map<String, Long> keyValues) {
+        return redisCache.msetNxLong(keyValues);
+    }
+
+    @Override
+    public <E> int msetNx(Map<String, E> keyValues) {
+        return redisCache.msetNx(keyValues);
+    }
+
+    @Override
+    public int psetEx(String key, String value, int milliSeconds) {
+        return redisCache.psetEx(key, value, milliSeconds);
+    }
+
+    @Override
+    public int psetEx(String key, long value, int milliSeconds) {
+        return redisCache.psetEx(key, value, milliSeconds);
+    }
+
+    @Override
+    public <E> int psetEx(String key, E value, int milliSeconds) {
+        return redisCache.psetEx(key, value, milliSeconds);
+    }
+
+    @Override
+    public int set(String key, String value) {
+        return redisCache.set(key, value);
+    }
+
+    @Override
+    public int set(String key, long value) {
+        return redisCache.set(key, value);
+    }
+
+    @Override
+    public <E> int set(String key, E value) {
+        return redisCache.set(key, value);
+    }
+
+    @Override
+    public int setEx(String key, String value, int seconds) {
+        return redisCache.setEx(key, value, seconds);
+    }
+
+    @Override
+    public int setEx(String key, long value, int seconds) {
+        return redisCache.setEx(key, value, seconds);
+    }
+
+    @Override
+    public <E> int setEx(String key, E value, int seconds) {
+        return redisCache.setEx(key, value, seconds);
+    }
+
+    @Override
+    public int setNx(String key, String value) {
+        return redisCache.setNx(key, value);
+    }
+
+    @Override
+    public int setNx(String key, long value) {
+        return redisCache.setNx(key, value);
+    }
+
+    @Override
+    public <E> int setNx(String key, E value) {
+        return redisCache.setNx(key, value);
+    }
+
+    @Override
+    public int hdel(String key, String... fields) {
+        return redisCache.hdel(key, fields);
+    }
+
+    @Override
+    public int hexists(String key, String field) {
+        return redisCache.hexists(key, field);
+    }
+
+    @Override
+    public String hgetString(String key, String field, String valueOfErr) {
+        return redisCache.hgetString(key, field, valueOfErr);
+    }
+
+    @Override
+    public Object hget(String key, Integer field) {
+        return redisCache.hget(key, field);
+    }
+
+    @Override
+    public String hgetString(String key, String field) {
+        return redisCache.hgetString(key, field);
+    }
+
+    @Override
+    public long hgetLong(String key, String field, long valueOfErr) {
+        return redisCache.hgetLong(key, field, valueOfErr);
+    }
+
+    @Override
+    public long hgetLong(String key, String field) {
+        return redisCache.hgetLong(key, field);
+    }
+
+    @Override
+    public <E> E hget(String key, String field, Class<E> clazz) {
+        return redisCache.hget(key, field, clazz);
+    }
+
+    @Override
+    public Map<String, String> hgetAllOfString(String key) {
+        return redisCache.hgetAllOfString(key);
+    }
+
+    @Override
+    public Map<String, Long> hgetAllOfLong(String key) {
+        return redisCache.hgetAllOfLong(key);
+    }
+
+    @Override
+    public <E> Map<String, E> hgetAll(String key, Class<E> clazz) {
+        return redisCache.hgetAll(key, clazz);
+    }
+
+    @Override
+    public long hincr(String key, String field, long valueOfErr) {
+        return redisCache.hincr(key, field, valueOfErr);
+    }
+
+    @Override
+    public long hdecr(String key, String field, long valueOfErr) {
+        return redisCache.hdecr(key, field, valueOfErr);
+    }
+
+    @Override
+    public long hincrby(String key, String field, long increment, long valueOfErr) {
+        return redisCache.hincrby(key, field, increment, valueOfErr);
+    }
+
+    @Override
+    public Set<String> hkeys(String key) {
+        return redisCache.hkeys(key);
+    }
+
+    @Override
+    public int hlen(String key) {
+        return redisCache.hlen(key);
+    }
+
+    @Override
+    public Map<String, String> hmgetOfString(String key, String... fields) {
+        return redisCache.hmgetOfString(key, fields);
+    }
+
+    @Override
+    public Map<String, Long> hmgetOfLong(String key, String... fields) {
+        return redisCache.hmgetOfLong(key, fields);
+    }
+
+    @Override
+    public <E> Map<String, E> hmget(String key, Class<E> clazz, String... fields) {
+        return redisCache.hmget(key, clazz, fields);
+    }
+
+    @Override
+    public int hmsetString(String key, Map<String, String> fieldValues) {
+        return redisCache.hmsetString(key, fieldValues);
+    }
+
+    @Override
+    public int hmsetLong(String key, Map<String, Long> fieldValues) {
+        return redisCache.hmsetLong(key, fieldValues);
+    }
+
+    @Override
+    public <E> int hmset(String key, Map<String, E> fieldValues) {
+        return redisCache.hmset(key, fieldValues);
+    }
+
+    @Override
+    public int hset(String key, String field, String value) {
+        return redisCache.hset(key, field, value);
+    }
+
+    @Override
+    public int hset(String key, String field, long value) {
+        return redisCache.hset(key, field, value);
+    }
+
+    @Override
+    public <E> int hset(String key, String field, E value) {
+        return redisCache.hset(key, field, value);
+    }
+
+    @Override
+    public int hset(String key, Integer field, double value) {
+        return redisCache.hset(key, field, value);
+    }
+
+    @Override
+    public int hsetnx(String key, String field, String value) {
+        return redisCache.hsetnx(key, field, value);
+    }
+
+    @Override
+    public int hsetnx(String key, String field, long value) {
+        return redisCache.hsetnx(key, field, value);
+    }
+
+    @Override
+    public <E> int hsetnx(String key, String field, E value) {
+        return redisCache.hsetnx(key, field, value);
+    }
+
+    @Override
+    public List<String> hvalsOfString(String key) {
+        return redisCache.hvalsOfString(key);
+    }
+
+    @Override
+    public List<Long> hvalsOfLong(String key) {
+        return redisCache.hvalsOfLong(key);
+    }
+
+    @Override
+    public <E> List<E> hvals(String key, Class<E> clazz) {
+        return redisCache.hvals(key, clazz);
+    }
+
+    @Override
+    public String lindexOfString(String key, int index, String valueOfErr) {
+        return redisCache.lindexOfString(key, index, valueOfErr);
+    }
+
+    @Override
+    public String lindexOfString(String key, int index) {
+        return redisCache.lindexOfString(key, index);
+    }
+
+    @Override
+    public long lindexOfLong(String key, int index, long valueOfErr) {
+        return redisCache.lindexOfLong(key, index, valueOfErr);
+    }
+
+    @Override
+    public long lindexOfLong(String key, int index) {
+        return redisCache.lindexOfLong(key, index);
+    }
+
+    @Override
+    public <E> E lindex(String key, int index, Class<E> clazz) {
+        return redisCache.lindex(key, index, clazz);
+    }
+
+    @Override
+    public int llen(String key) {
+        return redisCache.llen(key);
+    }
+
+    @Override
+    public String lpopOfString(String key) {
+        return redisCache.lpopOfString(key);
+    }
+
+    @Override
+    public String lpopOfString(String key, String valueOfErr) {
+        return redisCache.lpopOfString(key, valueOfErr);
+    }
+
+    @Override
+    public long lpopOfLong(String key) {
+        return redisCache.lpopOfLong(key);
+    }
+
+    @Override
+    public long lpopOfLong(String key, long valueOfErr) {
+        return redisCache.lpopOfLong(key, valueOfErr);
+    }
+
+    @Override
+    public <E> E lpop(String key, Class<E> clazz) {
+        return redisCache.lpop(key, clazz);
+    }
+
+    @Override
+    public int lpush(String key, String value) {
+        return redisCache.lpush(key, value);
+    }
+
+    @Override
+    public int lpush(String key, String... values) {
+        return redisCache.lpush(key, values);
+    }
+
+    @Override
+    public int lpush(String key, long value) {
+        return redisCache.lpush(key, value);
+    }
+
+    @Override
+    public int lpush(String key, long... values) {
+        return redisCache.lpush(key, values);
+    }
+
+    @Override
+    public <E> int lpush(String key, E value) {
+        return redisCache.lpush(key, value);
+    }
+
+    @Override
+    public <E> int lpush(String key, List<E> values) {
+        return redisCache.lpush(key, values);
+    }
+
+    @Override
+    public int lpushx(String key, String value) {
+        return redisCache.lpushx(key, value);
+    }
+
+    @Override
+    public int lpushx(String key, long value) {
+        return redisCache.lpushx(key, value);
+    }
+
+    @Override
+    public <E> int lpushx(String key, E value) {
+        return redisCache.lpushx(key, value);
+    }
+
+    @Override
+    public List<String> lrangeOfString(String key, int start, int stop) {
+        return redisCache.lrangeOfString(key, start, stop);
+    }
+
+    @Override
+    public List<Long> lrangeOfLong(String key, int start, int stop) {
+        return redisCache.lrangeOfLong(key, start, stop);
+    }
+
+    @Override
+    public <E> List<E> lrange(String key, int start, int stop, Class<E> clazz) {
+        return redisCache.lrange(key, start, stop, clazz);
+    }
+
+    @Override
+    public int lrem(String key, int count, String value) {
+        return redisCache.lrem(key, count, value);
+    }
+
+    @Override
+    public int lrem(String key, int count, long value) {
+        return redisCache.lrem(key, count, value);
+    }
+
+    @Override
+    public <E> int lrem(String key, int count, E value) {
+        return redisCache.lrem(key, count, value);
+    }
+
+    @Override
+    public int lset(String key, int index, String value) {
+        return redisCache.lset(key, index, value);
+    }
+
+    @Override
+    public int lset(String key, int index, long value) {
+        return redisCache.lset(key, index, value);
+    }
+
+    @Override
+    public <E> int lset(String key, int index, E value) {
+        return redisCache.lset(key, index, value);
+    }
+
+    @Override
+    public int ltrim(String key, int start, int stop) {
+        return redisCache.ltrim(key, start, stop);
+    }
+
+    @Override
+    public String rpopOfString(String key) {
+        return redisCache.rpopOfString(key);
+    }
+
+    @Override
+    public String rpopOfString(String key, String valueOfErr) {
+        return redisCache.rpopOfString(key, valueOfErr);
+    }
+
+    @Override
+    public long rpopOfLong(String key) {
+        return redisCache.rpopOfLong(key);
+    }
+
+    @Override
+    public long rpopOfLong(String key, long valueOfErr) {
+        return redisCache.rpopOfLong(key, valueOfErr);
+    }
+
+    @Override
+    public <E> E rpop(String key, Class<E> clazz) {
+        return redisCache.rpop(key, clazz);
+    }
+
+    @Override
+    public int rpush(String key, String value) {
+        return redisCache.rpush(key, value);
+    }
+
+    @Override
+    public int rpush(String key, String... values) {
+        return redisCache.rpush(key, values);
+    }
+
+    @Override
+    public int rpush(String key, long value) {
+        return redisCache.rpush(key, value);
+    }
+
+    @Override
+    public int rpush(String key, long... values) {
+        return redisCache.rpush(key, values);
+    }
+
+    @Override
+    public <E> int rpush(String key, E value) {
+        return redisCache.rpush(key, value);
+    }
+
+    @Override
+    public <E> int rpush(String key, List<E> values) {
+        return redisCache.rpush(key, values);
+    }
+
+    @Override
+    public int rpushx(String key, String value) {
+        return redisCache.rpushx(key, value);
+    }
+
+    @Override
+    public int rpushx(String key, long value) {
+        return redisCache.rpushx(key, value);
+    }
+
+    @Override
+    public <E> int rpushx(String key, E value) {
+        return redisCache.rpushx(key, value);
+    }
+
+    @Override
+    public int sadd(String key, String value) {
+        return redisCache.sadd(key, value);
+    }
+
+    @Override
+    public int sadd(String key, String... values) {
+        return redisCache.sadd(key, values);
+    }
+
+    @Override
+    public int sadd(String key, long value) {
+        return redisCache.sadd(key, value);
+    }
+
+    @Override
+    public int sadd(String key, long... values) {
+        return redisCache.sadd(key, values);
+    }
+
+    @Override
+    public <E> int sadd(String key, E value) {
+        return redisCache.sadd(key, value);
+    }
+
+    @Override
+    public <E> int sadd(String key, List<E> values) {
+        return redisCache.sadd(key, values);
+    }
+
+    @Override
+    public int scard(String key) {
+        return redisCache.scard(key);
+    }
+
+    @Override
+    public int sismember(String key, String member) {
+        return redisCache.sismember(key, member);
+    }
+
+    @Override
+    public int sismember(String key, long member) {
+        return redisCache.sismember(key, member);
+    }
+
+    @Override
+    public Set<String> smembersOfString(String key) {
+        return redisCache.smembersOfString(key);
+    }
+
+    @Override
+    public Set<Long> smembersOfLong(String key) {
+        return redisCache.smembersOfLong(key);
+    }
+
+    @Override
+    public <E> Set<E> smembers(String key, Class<E> clazz) {
+        return redisCache.smembers(key, clazz);
+    }
+
+    @Override
+    public String spopOfString(String key) {
+        return redisCache.spopOfString(key);
+    }
+
+    @Override
+    public long spopOfLong(String key) {
+        return redisCache.spopOfLong(key);
+    }
+
+    @Override
+    public long spopOfLong(String key, long valueOfErr) {
+        return redisCache.spopOfLong(key, valueOfErr);
+    }
+
+    @Override
+    public <E> E spop(String key, Class<E> clazz) {
+        return redisCache.spop(key, clazz);
+    }
+
+    @Override
+    public String srandomMemberOfString(String key) {
+        return redisCache.srandomMemberOfString(key);
+    }
+
+    @Override
+    public List<String> srandomMemberOfString(String key, int count) {
+        return redisCache.srandomMemberOfString(key, count);
+    }
+
+    @Override
+    public long srandomMemberOfLong(String key) {
+        return redisCache.srandomMemberOfLong(key);
+    }
+
+    @Override
+    public List<Long> srandomMemberOfLong(String key, int count) {
+        return redisCache.srandomMemberOfLong(key, count);
+    }
+
+    @Override
+    public int srem(String key, String member) {
+        return redisCache.srem(key, member);
+    }
+
+    @Override
+    public int srem(String key, String... members) {
+        return redisCache.srem(key, members);
+    }
+
+    @Override
+    public int srem(String key, long member) {
+        return redisCache.srem(key, member);
+    }
+
+    @Override
+    public int srem(String key, long... members) {
+        return redisCache.srem(key, members);
+    }
+
+    @Override
+    public <E> int srem(String key, E member) {
+        return redisCache.srem(key, member);
+    }
+
+    @Override
+    public <E> int srem(String key, List<E> members) {
+        return redisCache.srem(key, members);
+    }
+
+    @Override
+    public int zadd(String key, String member, double score) {
+        return redisCache.zadd(key, member, score);
+    }
+
+    @Override
+    public int zadd(String key, Map<String, Double> memerScoreMap) {
+        return redisCache.zadd(key, memerScoreMap);
+    }
+
+    @Override
+    public int zadd(String key, long member, double score) {
+        return redisCache.zadd(key, member, score);
+    }
+
+    @Override
+    public <E> int zadd(String key, E member, double score) {
+        return redisCache.zadd(key, member, score);
+    }
+
+    @Override
+    public int zcard(String key) {
+        return redisCache.zcard(key);
+    }
+
+    @Override
+    public int zcount(String key, double min, double max) {
+        return redisCache.zcount(key, min, max);
+    }
+
+    @Override
+    public int zcount(String key, long min, long max) {
+        return redisCache.zcount(key, min, max);
+    }
+
+    @Override
+    public double zincrBy(String key, String member, double increment) {
+        return redisCache.zincrBy(key, member, increment);
+    }
+
+    @Override
+    public double zincrBy(String key, String member, long increment) {
+        return redisCache.zincrBy(key, member, increment);
+    }
+
+    @Override
+    public Set<String> zrange(String key, int start, int stop) {
+        return redisCache.zrange(key, start, stop);
+    }
+
+    @Override
+    public <E> Set<E> zrange(String key, int start, int stop, final Class<E> clazz) {
+        return redisCache.zrange(key, start, stop, clazz);
+    }
+
+    @Override
+    public Map<String, Double> zrangeWithDoubleScore(String key, int start, int stop) {
+        return redisCache.zrangeWithDoubleScore(key, start, stop);
+    }
+
+    @Override
+    public Map<String, Long> zrangeWithLongScore(String key, int start, int stop) {
+        return redisCache.zrangeWithLongScore(key, start, stop);
+    }
+
+    @Override
+    public <E> Set<E> zrevrange(String key, int start, int stop, final Class<E> clazz) {
+        return redisCache.zrevrange(key, start, stop, clazz);
+    }
+
+    @Override
+    public Set<String> zrevrange(String key, int start, int stop) {
+        return redisCache.zrevrange(key, start, stop);
+    }
+
+    @Override
+    public Map<String, Double> zrevrangeWithDoubleScore(String key, int start, int stop) {
+        return redisCache.zrevrangeWithDoubleScore(key, start, stop);
+    }
+
+    @Override
+    public Map<String, Long> zrevrangeWithLongScore(String key, int start, int stop) {
+        return redisCache.zrevrangeWithLongScore(key, start, stop);
+    }
+
+    @Override
+    public Set<String> zrangeByScore(String key, double min, double max, int offset, int count) {
+        return redisCache.zrangeByScore(key, min, max, offset, count);
+    }
+
+    @Override
+    public Set<String> zrangeByScore(String key, double min, double max) {
+        return redisCache.zrangeByScore(key, min, max);
+    }
+
+    @Override
+    public Set<String> zrangeByScore(String key, long min, long max, int offset, int count) {
+        return redisCache.zrangeByScore(key, min, max, offset, count);
+    }
+
+    @Override
+    public Set<String> zrangeByScore(String key, long min, long max) {
+        return redisCache.zrangeByScore(key, min, max);
+    }
+
+    @Override
+    public Map<String, Double> zrangeByScoreWithScore(String key, double min, double max, int offset, int count) {
+        return redisCache.zrangeByScoreWithScore(key, min, max, offset, count);
+    }
+
+    @Override
+    public Map<String, Double> zrangeByScoreWithScore(String key, double min, double max) {
+        return redisCache.zrangeByScoreWithScore(key, min, max);
+    }
+
+    @Override
+    public Map<String, Long> zrangeByScoreWithScore(String key, long min, long max, int offset, int count) {
+        return redisCache.zrangeByScoreWithScore(key, min, max, offset, count);
+    }
+
+    @Override
+    public Map<String, Long> zrangeByScoreWithScore(String key, long min, long max) {
+        return redisCache.zrangeByScoreWithScore(key, min, max);
+    }
+
+    @Override
+    public Set<String> zrevrangeByScore(String key, double max, double min, int offset, int count) {
+        return redisCache.zrevrangeByScore(key, max, min, offset, count);
+    }
+
+    @Override
+    public Set<String> zrevrangeByScore(String key, double max, double min) {
+        return redisCache.zrevrangeByScore(key, max, min);
+    }
+
+    @Override
+    public Set<String> zrevrangeByScore(String key, long max, long min, int offset, int count) {
+        return redisCache.zrevrangeByScore(key, max, min, offset, count);
+    }
+
+    @Override
+    public Set<String> zrevrangeByScore(String key, long max, long min) {
+        return redisCache.zrevrangeByScore(key, max, min);
+    }
+
+    @Override
+    public Map<String, Double> zrevrangeByScoreWithScore(String key, double max, double min, int offset, int count) {
+        return redisCache.zrevrangeByScoreWithScore(key, max, min, offset, count);
+    }
+
+    @Override
+    public Map<String, Double> zrevrangeByScoreWithScore(String key, double max, double min) {
+        return redisCache.zrevrangeByScoreWithScore(key, max, min);
+    }
+
+    @Override
+    public Map<String, Long> zrevrangeByScoreWithScore(String key, long max, long min, int offset, int count) {
+        return redisCache.zrevrangeByScoreWithScore(key, max, min, offset, count);
+    }
+
+    @Override
+    public Map<String, Long> zrevrangeByScoreWithScore(String key, long max, long min) {
+        return redisCache.zrevrangeByScoreWithScore(key, max, min);
+    }
+
+    @Override
+    public int zrank(String key, String member) {
+        return redisCache.zrank(key, member);
+    }
+
+    @Override
+    public int zrevrank(String key, String member) {
+        return redisCache.zrevrank(key, member);
+    }
+
+    @Override
+    public int zrem(String key, String... member) {
+        return redisCache.zrem(key, member);
+    }
+
+    @Override
+    public int zremrangeByRank(String key, int start, int stop) {
+        return redisCache.zremrangeByRank(key, start, stop);
+    }
+
+    @Override
+    public int zremrangeByScore(String key, double min, double max) {
+        return redisCache.zremrangeByScore(key, min, max);
+    }
+
+    @Override
+    public int zremrangeByScore(String key, long min, long max) {
+        return redisCache.zremrangeByScore(key, min, max);
+    }
+
+    @Override
+    public double zscoreOfDouble(String key, String member) {
+        return redisCache.zscoreOfDouble(key, member);
+    }
+
+    @Override
+    public long zscoreOfLong(String key, String member) {
+        return redisCache.zscoreOfLong(key, member);
+    }
+
+    @Override
+    public int batch(Consumer<IRedisBatch> commands) {
+        return redisCache.batch(commands);
+    }
+}
@@ -0,0 +1,235 @@
+package com.nana.springdemo.redis.impl;
+
+import com.nana.springdemo.redis.IRedisBatch;
+import com.nana.springdemo.redis.IRedisCache;
+import com.nana.springdemo.redis.LatencyBudget;
+import com.nana.springdemo.redis.RedisFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 自动pipeline：多个线程的独立命令先进入队列，由少量发送线程合并成pipeline发送
+ * <p>
+ * 每个发送线程一次取出队列中的命令，凑够maxBatchSize条或者等待windowMicros后通过{@link IRedisCache#batch}发送，
+ * 同一时刻最多占用connections个连接。window为0时不等待，只合并发送期间积压的命令。
+ * pipeline中的回复按发送顺序一一对应，调用方拿到的是自己那条命令的结果，反序列化在调用方线程进行。
+ * 队列满时调用方直接单独发送，不排队。
+ * <p>
+ * 调用方最多等待redis.timeout，有{@link LatencyBudget}时不超过剩余预算，超时返回异常值；
+ * 截止时间随命令一起排队，发送线程跳过已经超时的命令。batch在主节点执行，排队的读命令不会读到从节点的旧值。
+ */
+public class AutoPipeliner {
+
+    private static Logger log = LoggerFactory.getLogger(AutoPipeliner.class);
+
+    private final IRedisCache redisCache;
+    private final int connections;
+    private final int maxBatchSize;
+    private final long windowNanos;
+    private final long timeoutNanos;
+    private final BlockingQueue<PendingCmd<?>> queue;
+
+    private final List<Thread> flushers = new ArrayList<Thread>();
+    private volatile boolean running;
+
+    /**
+     * @param redisCache 实际执行batch的实现，不能是会再次进入自动pipeline的实现
+     * @param connections 发送线程数，即占用的连接数
+     * @param maxBatchSize 一个pipeline最多包含的命令条数
+     * @param windowMicros 凑批的最长等待时间(微秒)
+     * @param queueSize 排队命令的上限
+     * @param timeoutMillis 调用方等待结果的最长时间，一般和redis.timeout相同
+     */
+    public AutoPipeliner(IRedisCache redisCache, int connections, int maxBatchSize, int windowMicros, int queueSize,
+                         int timeoutMillis) {
+        this.redisCache = redisCache;
+        this.connections = connections;
+        this.maxBatchSize = maxBatchSize;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.queue = new ArrayBlockingQueue<PendingCmd<?>>(queueSize);
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < connections; i++) {
+            Thread t = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    flushLoop();
+                }
+            }, "redis-auto-pipeline-" + i);
+            t.setDaemon(true);
+            t.start();
+            flushers.add(t);
+        }
+    }
+
+    /**
+     * 停止发送线程，还在排队的命令返回异常值
+     */
+    public synchronized void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        for (Thread t : flushers) {
+            t.interrupt();
+        }
+        flushers.clear();
+        List<PendingCmd<?>> rest = new ArrayList<PendingCmd<?>>();
+        queue.drainTo(rest);
+        for (PendingCmd<?> cmd : rest) {
+            cmd.result.complete(null);
+        }
+    }
+
+    /**
+     * 排队执行一条命令并等待结果
+     * @param cmd 把命令追加到batch
+     * @param valueOfErr 异常时返回
+     * @return
+     */
+    public <T> T execute(Function<IRedisBatch, RedisFuture<T>> cmd, T valueOfErr) {
+        int budget = LatencyBudget.remainingMillis();
+        if (budget == 0) {
+            return valueOfErr;
+        }
+        long waitNanos = budget > 0 ? Math.min(timeoutNanos, TimeUnit.MILLISECONDS.toNanos(budget)) : timeoutNanos;
+        PendingCmd<T> pending = new PendingCmd<T>(cmd, System.nanoTime() + waitNanos);
+        if (!running || !queue.offer(pending)) {
+            return executeDirectly(pending, valueOfErr);
+        }
+        //close可能在offer之前已经清空了队列，命令还在队列中时自己取回发送
+        if (!running && queue.remove(pending)) {
+            return executeDirectly(pending, valueOfErr);
+        }
+        try {
+            return valueOf(pending.result.get(waitNanos, TimeUnit.NANOSECONDS), valueOfErr);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return valueOfErr;
+        } catch (ExecutionException e) {
+            return valueOfErr;
+        } catch (TimeoutException e) {
+            return valueOfErr;
+        }
+    }
+
+    private <T> T executeDirectly(final PendingCmd<T> pending, T valueOfErr) {
+        redisCache.batch(new Consumer<IRedisBatch>() {
+            @Override
+            public void accept(IRedisBatch batch) {
+                pending.enqueue(batch);
+            }
+        });
+        return valueOf(pending.future, valueOfErr);
+    }
+
+    private static <T> T valueOf(RedisFuture<T> future, T valueOfErr) {
+        if (future == null || future.isError()) {
+            return valueOfErr;
+        }
+        return future.get();
+    }
+
+    private void flushLoop() {
+        final List<PendingCmd<?>> batch = new ArrayList<PendingCmd<?>>(maxBatchSize);
+        while (running) {
+            try {
+                batch.add(queue.take());
+                collect(batch);
+                redisCache.batch(new Consumer<IRedisBatch>() {
+                    @Override
+                    public void accept(IRedisBatch b) {
+                        long now = System.nanoTime();
+                        for (PendingCmd<?> cmd : batch) {
+                            if (now - cmd.deadlineNanos >= 0) {
+                                //调用方已经超时返回，不再发送
+                                continue;
+                            }
+                            try {
+                                cmd.enqueue(b);
+                            } catch (Exception e) {
+                                //序列化失败等只影响这一条命令
+                                log.error("redis auto pipeline enqueue error", e);
+                            }
+                        }
+                    }
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("redis auto pipeline flush error", e);
+            } finally {
+                //batch异常时未追加的命令future为null，调用方返回异常值
+                for (PendingCmd<?> cmd : batch) {
+                    cmd.done();
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 继续从队列取命令，直到凑够maxBatchSize或者超过window
+     */
+    private void collect(List<PendingCmd<?>> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + windowNanos;
+        while (batch.size() < maxBatchSize) {
+            queue.drainTo(batch, maxBatchSize - batch.size());
+            if (batch.size() >= maxBatchSize) {
+                return;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            PendingCmd<?> cmd = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (cmd == null) {
+                return;
+            }
+            batch.add(cmd);
+        }
+    }
+
+    /**
+     * 排队中的命令
+     */
+    private static class PendingCmd<T> {
+        private final Function<IRedisBatch, RedisFuture<T>> cmd;
+        /**
+         * 调用方的截止时间(System.nanoTime)
+         */
+        private final long deadlineNanos;
+        private final CompletableFuture<RedisFuture<T>> result = new CompletableFuture<RedisFuture<T>>();
+        private RedisFuture<T> future;
+
+        private PendingCmd(Function<IRedisBatch, RedisFuture<T>> cmd, long deadlineNanos) {
+            this.cmd = cmd;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        private void enqueue(IRedisBatch batch) {
+            future = cmd.apply(batch);
+        }
+
+        private void done() {
+            result.complete(future);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.nana.springdemo.redis.impl;
+
+import com.nana.springdemo.redis.IShardedRedisResourcePoolAdapter;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisClusterException;
+import redis.clients.util.JedisClusterCRC16;
+import redis.clients.util.SafeEncoder;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Redis Cluster的连接池，每个主节点一个JedisPool
+ * <p>
+ * 启动时从种子节点执行CLUSTER SLOTS得到slot和主节点的对应关系，收到MOVED时更新该slot并重新拉取整张表
+ * (迁移和主从切换通常一次影响很多slot)，同一时间只有一个线程拉取，其他线程直接用当前的表。
+ * 只读写主节点。
+ */
+public class ClusterJedisResourcePoolAdapterImpl implements IShardedRedisResourcePoolAdapter {
+
+    private static Logger log = LoggerFactory.getLogger(ClusterJedisResourcePoolAdapterImpl.class);
+
+    private static final int SLOT_COUNT = 16384;
+
+    private final Set<HostAndPort> seeds;
+    private final GenericObjectPoolConfig poolConfig;
+    private final int timeout;
+
+    private final ConcurrentHashMap<HostAndPort, JedisPool> pools = new ConcurrentHashMap<HostAndPort, JedisPool>();
+    private final AtomicReferenceArray<HostAndPort> slots = new AtomicReferenceArray<HostAndPort>(SLOT_COUNT);
+    private final ReentrantLock renewLock = new ReentrantLock();
+
+    /**
+     * @param seeds 种子节点，任意几个能连上的节点即可
+     * @param poolConfig 每个节点的连接池配置
+     * @param timeout
+     */
+    public ClusterJedisResourcePoolAdapterImpl(Set<HostAndPort> seeds, GenericObjectPoolConfig poolConfig, int timeout) {
+        if (seeds == null || seeds.isEmpty()) {
+            throw new IllegalArgumentException("cluster seeds required");
+        }
+        this.seeds = new LinkedHashSet<HostAndPort>(seeds);
+        this.poolConfig = poolConfig;
+        this.timeout = timeout;
+        renewSlotCache();
+    }
+
+    @Override
+    public Jedis getResource() {
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            HostAndPort node = slots.get(i);
+            if (node != null) {
+                return getResource(node);
+            }
+        }
+        return getResource(seeds.iterator().next());
+    }
+
+    @Override
+    public int getSlot(byte[] key) {
+        return JedisClusterCRC16.getSlot(key);
+    }
+
+    @Override
+    public HostAndPort getNode(int slot) {
+        return slots.get(slot);
+    }
+
+    @Override
+    public Jedis getResourceBySlot(int slot) {
+        HostAndPort node = slots.get(slot);
+        if (node == null) {
+            renewSlotCache();
+            node = slots.get(slot);
+            if (node == null) {
+                throw new JedisClusterException("no node serves slot " + slot);
+            }
+        }
+        return getResource(node);
+    }
+
+    @Override
+    public Jedis getResource(HostAndPort node) {
+        JedisPool pool = pools.get(node);
+        if (pool == null) {
+            pool = pools.computeIfAbsent(node, n -> new JedisPool(poolConfig, n.getHost(), n.getPort(), timeout));
+        }
+        return pool.getResource();
+    }
+
+    @Override
+    public void renewSlot(int slot, HostAndPort node) {
+        slots.set(slot, node);
+        renewSlotCache();
+    }
+
+    /**
+     * 重新拉取slot表，已经有线程在拉取时直接返回
+     */
+    public void renewSlotCache() {
+        if (!renewLock.tryLock()) {
+            return;
+        }
+        try {
+            List<HostAndPort> candidates = new ArrayList<HostAndPort>(pools.keySet());
+            candidates.addAll(seeds);
+            for (HostAndPort candidate : candidates) {
+                Jedis jedis = null;
+                try {
+                    jedis = new Jedis(candidate.getHost(), candidate.getPort(), timeout);
+                    applySlots(candidate, jedis.clusterSlots());
+                    return;
+                } catch (Exception e) {
+                    log.warn("cluster slots from {} failed: {}", candidate, e.getMessage());
+                } finally {
+                    if (jedis != null) {
+                        jedis.close();
+                    }
+                }
+            }
+            log.error("cluster slots unavailable from all nodes:{}", candidates);
+        } finally {
+            renewLock.unlock();
+        }
+    }
+
+    /**
+     * CLUSTER SLOTS的每一项：[起始slot, 结束slot, [主节点ip, 端口, id], [从节点...]...]
+     * <p>
+     * 按本次返回的结果整表替换：没有出现的slot置空(下次访问时重新拉取)，
+     * 不再负责任何slot的节点(下线或者变成从节点)关闭并移除连接池。
+     */
+    @SuppressWarnings("unchecked")
+    void applySlots(HostAndPort from, List<Object> slotInfos) {
+        HostAndPort[] table = new HostAndPort[SLOT_COUNT];
+        Set<HostAndPort> masters = new HashSet<HostAndPort>();
+        for (Object o : slotInfos) {
+            List<Object> slotInfo = (List<Object>) o;
+            int start = ((Long) slotInfo.get(0)).intValue();
+            int end = ((Long) slotInfo.get(1)).intValue();
+            List<Object> master = (List<Object>) slotInfo.get(2);
+            String host = SafeEncoder.encode((byte[]) master.get(0));
+            //单节点集群可能返回空的ip，表示就是当前连接的节点
+            HostAndPort node = new HostAndPort(host.isEmpty() ? from.getHost() : host, ((Long) master.get(1)).intValue());
+            masters.add(node);
+            for (int slot = start; slot <= end; slot++) {
+                table[slot] = node;
+            }
+        }
+        for (int slot = 0; slot < SLOT_COUNT; slot++) {
+            slots.set(slot, table[slot]);
+        }
+        for (Map.Entry<HostAndPort, JedisPool> entry : pools.entrySet()) {
+            if (!masters.contains(entry.getKey()) && pools.remove(entry.getKey(), entry.getValue())) {
+                log.info("cluster node {} no longer serves any slot, pool closed", entry.getKey());
+                entry.getValue().close();
+            }
+        }
+    }
+
+    /**
+     * 当前持有连接池的节点
+     */
+    Set<HostAndPort> getPooledNodes() {
+        return new HashSet<HostAndPort>(pools.keySet());
+    }
+
+    /**
+     * 关闭所有节点的连接池
+     */
+    public void close() {
+        for (JedisPool pool : pools.values()) {
+            pool.close();
+        }
+        pools.clear();
+    }
+}
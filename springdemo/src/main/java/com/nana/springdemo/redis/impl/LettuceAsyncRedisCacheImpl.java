@@ -0,0 +1,209 @@
+package com.nana.springdemo.redis.impl;
+
+import com.nana.springdemo.redis.IAsyncRedisCache;
+import com.nana.springdemo.redis.RedisKeyEncoder;
+import com.nana.springdemo.redis.serialize.IBinarySerializable;
+import io.lettuce.core.AbstractRedisClient;
+import io.lettuce.core.KeyValue;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.cluster.ClusterClientOptions;
+import io.lettuce.core.cluster.ClusterTopologyRefreshOptions;
+import io.lettuce.core.cluster.RedisClusterClient;
+import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import io.lettuce.core.codec.ByteArrayCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 基于Lettuce的异步缓存实现
+ * <p>
+ * 所有调用共用一个连接，命令发出后不占用线程，由Netty的IO线程接收回复，少量线程就可以同时有大量命令在途。
+ * 连接在第一次调用时异步建立，断线后由Lettuce自动重连；建立失败时下一次调用重新建立。
+ * <p>
+ * 集群模式下使用RedisClusterClient，按key的slot路由到对应的主节点，跨slot的del/mget由Lettuce按节点拆分；
+ * 收到MOVED/ASK以及连接断开时自动刷新拓扑。
+ * <p>
+ * key和值的编码与{@link RedisCacheImpl}相同，两边读写的数据互通，也能识别getOrLoad写入的空值标记。
+ * 反序列化在IO线程中进行。不经过进程内L1，通过这里写入的key不会失效各节点的L1。
+ */
+public class LettuceAsyncRedisCacheImpl implements IAsyncRedisCache {
+
+    private static Logger log = LoggerFactory.getLogger(LettuceAsyncRedisCacheImpl.class);
+
+    private final AbstractRedisClient redisClient;
+    private final Supplier<CompletableFuture<RedisClusterAsyncCommands<byte[], byte[]>>> connector;
+    private final IBinarySerializable binarySerializable;
+    private final RedisKeyEncoder keyEncoder;
+
+    private volatile CompletableFuture<RedisClusterAsyncCommands<byte[], byte[]>> connecting;
+
+    /**
+     * 单节点
+     * @param redisURI 连接地址和命令超时时间
+     * @param binarySerializable 值的序列化，需要和同步实现使用同一个
+     * @param keyEncoder
+     */
+    public LettuceAsyncRedisCacheImpl(final RedisURI redisURI, IBinarySerializable binarySerializable, RedisKeyEncoder keyEncoder) {
+        final RedisClient client = RedisClient.create();
+        this.redisClient = client;
+        this.connector = () -> client.connectAsync(ByteArrayCodec.INSTANCE, redisURI).toCompletableFuture()
+                .thenApply(StatefulRedisConnection::async);
+        this.binarySerializable = binarySerializable;
+        this.keyEncoder = keyEncoder;
+    }
+
+    /**
+     * 集群
+     * @param seeds 种子节点的地址和命令超时时间，任意几个能连上的节点即可
+     * @param binarySerializable 值的序列化，需要和同步实现使用同一个
+     * @param keyEncoder
+     */
+    public LettuceAsyncRedisCacheImpl(List<RedisURI> seeds, IBinarySerializable binarySerializable, RedisKeyEncoder keyEncoder) {
+        if (seeds == null || seeds.isEmpty()) {
+            throw new IllegalArgumentException("cluster seeds required");
+        }
+        final RedisClusterClient client = RedisClusterClient.create(seeds);
+        client.setOptions(ClusterClientOptions.builder()
+                .topologyRefreshOptions(ClusterTopologyRefreshOptions.builder()
+                        .enableAllAdaptiveRefreshTriggers()
+                        .build())
+                .build());
+        this.redisClient = client;
+        //connectAsync要求拓扑已经加载，getPartitions第一次调用时同步拉取，放到调用线程之外
+        this.connector = () -> CompletableFuture.supplyAsync(client::getPartitions)
+                .thenCompose(partitions -> client.connectAsync(ByteArrayCodec.INSTANCE))
+                .thenApply(StatefulRedisClusterConnection::async);
+        this.binarySerializable = binarySerializable;
+        this.keyEncoder = keyEncoder;
+    }
+
+    /**
+     * 关闭连接和IO线程
+     */
+    public void close() {
+        redisClient.shutdown();
+    }
+
+    private CompletableFuture<RedisClusterAsyncCommands<byte[], byte[]>> connection() {
+        CompletableFuture<RedisClusterAsyncCommands<byte[], byte[]>> f = connecting;
+        if (f != null && !f.isCompletedExceptionally()) {
+            return f;
+        }
+        synchronized (this) {
+            f = connecting;
+            if (f == null || f.isCompletedExceptionally()) {
+                f = connector.get();
+                connecting = f;
+            }
+            return f;
+        }
+    }
+
+    /**
+     * 异步执行命令，连接失败、命令失败和解码失败都返回valueOfErr，异常时打印key，有利于问题排查
+     */
+    private <T> CompletableFuture<T> runCmd(final Function<RedisClusterAsyncCommands<byte[], byte[]>, CompletionStage<T>> cmd,
+                                            final T valueOfErr, final String... keys) {
+        return connection()
+                .thenCompose(cmd::apply)
+                .exceptionally(e -> {
+                    if (log.isDebugEnabled()) {
+                        log.debug("redis async exception,keys:" + Arrays.toString(keys),
+                                e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+                    }
+                    return valueOfErr;
+                });
+    }
+
+    @Override
+    public CompletableFuture<Integer> del(final String... keys) {
+        return runCmd(cmd -> cmd.del(encodeKeys(keys)).thenApply(Long::intValue), -1, keys);
+    }
+
+    @Override
+    public <E> CompletableFuture<E> get(final String key, final Class<E> clazz) {
+        return runCmd(cmd -> cmd.get(keyEncoder.encode(key)).thenApply(data -> toObject(data, clazz)), null, key);
+    }
+
+    @Override
+    public <E> CompletableFuture<Map<String, E>> mget(final Class<E> clazz, final String... keys) {
+        if (keys == null || keys.length == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return runCmd(cmd -> cmd.mget(encodeKeys(keys)).thenApply(values -> {
+            Map<String, E> retMap = new HashMap<String, E>();
+            int index = 0;
+            for (KeyValue<byte[], byte[]> kv : values) {
+                retMap.put(keys[index++], toObject(kv.getValueOrElse(null), clazz));
+            }
+            return retMap;
+        }), null, keys);
+    }
+
+    @Override
+    public <E> CompletableFuture<Integer> setEx(final String key, final E value, final int seconds) {
+        return runCmd(cmd -> cmd.setex(keyEncoder.encode(key), seconds, binarySerializable.toBinary(value))
+                .thenApply(ok -> 0), -1, key);
+    }
+
+    @Override
+    public <E> CompletableFuture<E> hget(final String key, final String field, final Class<E> clazz) {
+        return runCmd(cmd -> cmd.hget(keyEncoder.encode(key), keyEncoder.encodeField(field))
+                .thenApply(v -> v == null || v.length == 0 ? null : binarySerializable.toObject(v, clazz)), null, key);
+    }
+
+    @Override
+    public <E> CompletableFuture<Map<String, E>> hgetAll(final String key, final Class<E> clazz) {
+        return runCmd(cmd -> cmd.hgetall(keyEncoder.encode(key)).thenApply(bytesMap -> {
+            Map<String, E> retMap = new HashMap<String, E>();
+            for (Map.Entry<byte[], byte[]> entry : bytesMap.entrySet()) {
+                byte[] v = entry.getValue();
+                retMap.put(new String(entry.getKey(), StandardCharsets.UTF_8),
+                        v == null || v.length == 0 ? null : binarySerializable.toObject(v, clazz));
+            }
+            return retMap;
+        }), null, key);
+    }
+
+    @Override
+    public CompletableFuture<Set<String>> zrange(final String key, final int start, final int stop) {
+        return runCmd(cmd -> cmd.zrange(keyEncoder.encode(key), start, stop).thenApply(members -> {
+            Set<String> retSet = new LinkedHashSet<String>();
+            for (byte[] member : members) {
+                retSet.add(new String(member, StandardCharsets.UTF_8));
+            }
+            return retSet;
+        }), null, key);
+    }
+
+    private <E> E toObject(byte[] data, Class<E> clazz) {
+        if (data == null || RedisCacheImpl.isNegative(data)) {
+            return null;
+        }
+        return binarySerializable.toObject(data, clazz);
+    }
+
+    private byte[][] encodeKeys(String[] keys) {
+        byte[][] ret = new byte[keys.length][];
+        for (int i = 0; i < keys.length; i++) {
+            ret[i] = keyEncoder.encode(keys[i]);
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,294 @@
+package com.nana.springdemo.redis.impl;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.util.Pool;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 无锁的Jedis连接池
+ * <p>
+ * commons-pool2的空闲连接放在加锁的LinkedBlockingDeque中，核数很多时借还连接会在这把锁上竞争。
+ * 这里借还连接只用CAS：
+ * <ul>
+ * <li>每个线程记住上一次用过的连接，借的时候先尝试直接拿回这个连接，多数情况下不和其他线程竞争</li>
+ * <li>归还的连接同时放入共享的无锁栈(ConcurrentLinkedDeque)，本线程的连接被占用时从栈顶取最近归还的连接</li>
+ * <li>都没有时未达到maxTotal则新建，否则自旋+park重试，直到maxWaitMillis超时</li>
+ * </ul>
+ * 连接的状态(空闲/在用/归还中/已移除)用CAS切换，同一个连接可能同时被线程缓存和栈引用，只有CAS成功的一方拿到。
+ * 归还时先CAS到归还中再重置连接状态，重置期间连接不会被借走；已经空闲的连接重复归还时CAS失败，不会被重置或者重复入栈。
+ * 每个连接在栈中最多一个节点，栈不会无限增长。
+ * <p>
+ * 使用方式与JedisPool相同：getResource借出，Jedis.close()归还，连接断开时close()会销毁该连接。
+ * 新建的连接借出前建立TCP连接，建立失败时抛出JedisConnectionException并释放名额。
+ * 超时抛出的异常与JedisPool相同(cause为NoSuchElementException)。
+ * 虚拟线程每个请求一个线程，线程缓存基本不会命中，退化为只用共享栈。
+ */
+public class LockFreeJedisPool extends Pool<Jedis> {
+
+    private static final int IDLE = 0;
+    private static final int IN_USE = 1;
+    private static final int RETURNING = 2;
+    private static final int REMOVED = -1;
+
+    private final String host;
+    private final int port;
+    private final int timeout;
+    private final int maxTotal;
+    private final long maxWaitNanos;
+
+    private final CopyOnWriteArrayList<PooledJedis> all = new CopyOnWriteArrayList<PooledJedis>();
+    private final ConcurrentLinkedDeque<PooledJedis> idleStack = new ConcurrentLinkedDeque<PooledJedis>();
+    private final ThreadLocal<PooledJedis> lastUsed = new ThreadLocal<PooledJedis>();
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicInteger waiters = new AtomicInteger();
+    private volatile boolean closed;
+
+    /**
+     * @param host
+     * @param port
+     * @param timeout 连接和读写超时
+     * @param maxTotal 最大连接数
+     * @param maxWaitMillis 借连接最多等待的毫秒数，必须大于0
+     */
+    public LockFreeJedisPool(String host, int port, int timeout, int maxTotal, long maxWaitMillis) {
+        if (maxTotal <= 0 || maxWaitMillis <= 0) {
+            throw new IllegalArgumentException("maxTotal and maxWaitMillis must be positive");
+        }
+        this.host = host;
+        this.port = port;
+        this.timeout = timeout;
+        this.maxTotal = maxTotal;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    }
+
+    @Override
+    public Jedis getResource() {
+        PooledJedis jedis = tryAcquire();
+        if (jedis != null) {
+            return jedis;
+        }
+        long deadline = System.nanoTime() + maxWaitNanos;
+        long parkNanos = 1000;
+        waiters.incrementAndGet();
+        try {
+            while (!closed) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                LockSupport.parkNanos(Math.min(parkNanos, remaining));
+                parkNanos = Math.min(parkNanos << 1, TimeUnit.MILLISECONDS.toNanos(1));
+                jedis = tryAcquire();
+                if (jedis != null) {
+                    return jedis;
+                }
+            }
+        } finally {
+            waiters.decrementAndGet();
+        }
+        throw new JedisException("Could not get a resource from the pool",
+                new NoSuchElementException(closed ? "Pool closed" : "Timeout waiting for idle object"));
+    }
+
+    private PooledJedis tryAcquire() {
+        if (closed) {
+            throw new JedisException("Could not get a resource from the pool", new IllegalStateException("Pool closed"));
+        }
+        PooledJedis jedis = lastUsed.get();
+        if (jedis != null && jedis.state.compareAndSet(IDLE, IN_USE)) {
+            return jedis;
+        }
+        while ((jedis = idleStack.pollFirst()) != null) {
+            jedis.inStack.set(false);
+            if (jedis.state.compareAndSet(IDLE, IN_USE)) {
+                lastUsed.set(jedis);
+                return jedis;
+            }
+        }
+        jedis = create();
+        if (jedis != null) {
+            lastUsed.set(jedis);
+        }
+        return jedis;
+    }
+
+    /**
+     * 未达到maxTotal时新建一个在用状态的连接，已达到时返回null
+     */
+    private PooledJedis create() {
+        int n;
+        while ((n = total.get()) < maxTotal) {
+            if (total.compareAndSet(n, n + 1)) {
+                PooledJedis jedis = new PooledJedis(host, port, timeout);
+                jedis.setDataSource(this);
+                all.add(jedis);
+                try {
+                    //调用方可能先改读超时再执行命令，未建立连接时socket为null
+                    jedis.connect();
+                } catch (RuntimeException e) {
+                    remove(jedis);
+                    throw new JedisConnectionException("Could not get a resource from the pool", e);
+                }
+                return jedis;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void returnResource(Jedis resource) {
+        if (resource == null) {
+            return;
+        }
+        PooledJedis jedis = (PooledJedis) resource;
+        //重复归还或者已经移除时CAS失败，不能再重置连接，它可能正在被其他线程借走
+        if (!jedis.state.compareAndSet(IN_USE, RETURNING)) {
+            return;
+        }
+        try {
+            jedis.resetState();
+        } catch (Exception e) {
+            remove(jedis);
+            throw new JedisException("Could not return the resource to the pool", e);
+        }
+        jedis.state.set(IDLE);
+        if (closed) {
+            remove(jedis);
+            return;
+        }
+        if (jedis.inStack.compareAndSet(false, true)) {
+            idleStack.offerFirst(jedis);
+        }
+    }
+
+    @Override
+    public void returnBrokenResource(Jedis resource) {
+        if (resource != null) {
+            remove((PooledJedis) resource);
+        }
+    }
+
+    @Override
+    public void returnResourceObject(Jedis resource) {
+        returnResource(resource);
+    }
+
+    @Override
+    protected void returnBrokenResourceObject(Jedis resource) {
+        returnBrokenResource(resource);
+    }
+
+    private void remove(PooledJedis jedis) {
+        if (jedis.state.getAndSet(REMOVED) == REMOVED) {
+            return;
+        }
+        all.remove(jedis);
+        total.decrementAndGet();
+        try {
+            jedis.disconnect();
+        } catch (Exception e) {
+            //ignore
+        }
+    }
+
+    /**
+     * 关闭连接池，空闲连接立即断开，在用的连接归还时断开
+     */
+    @Override
+    public void close() {
+        destroy();
+    }
+
+    @Override
+    public void destroy() {
+        closed = true;
+        for (PooledJedis jedis : all) {
+            if (jedis.state.compareAndSet(IDLE, IN_USE)) {
+                remove(jedis);
+            }
+        }
+        idleStack.clear();
+    }
+
+    @Override
+    protected void closeInternalPool() {
+        destroy();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public int getNumActive() {
+        int n = 0;
+        for (PooledJedis jedis : all) {
+            if (jedis.state.get() == IN_USE) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public int getNumIdle() {
+        int n = 0;
+        for (PooledJedis jedis : all) {
+            if (jedis.state.get() == IDLE) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public int getNumWaiters() {
+        return waiters.get();
+    }
+
+    @Override
+    public long getMeanBorrowWaitTimeMillis() {
+        return -1;
+    }
+
+    @Override
+    public long getMaxBorrowWaitTimeMillis() {
+        return -1;
+    }
+
+    /**
+     * 预先建立count个空闲连接，总数达到maxTotal时不再建立
+     */
+    @Override
+    public void addObjects(int count) {
+        for (int i = 0; i < count; i++) {
+            PooledJedis jedis = create();
+            if (jedis == null) {
+                return;
+            }
+            returnResource(jedis);
+        }
+    }
+
+    /**
+     * 带状态的连接，Jedis.close()时通过dataSource归还到所属的连接池
+     */
+    private static final class PooledJedis extends Jedis {
+        private final AtomicInteger state = new AtomicInteger(IN_USE);
+        private final AtomicBoolean inStack = new AtomicBoolean(false);
+
+        private PooledJedis(String host, int port, int timeout) {
+            super(host, port, timeout);
+        }
+    }
+}
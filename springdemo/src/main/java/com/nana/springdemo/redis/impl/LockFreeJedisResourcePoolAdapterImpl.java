@@ -0,0 +1,24 @@
+package com.nana.springdemo.redis.impl;
+
+import com.nana.springdemo.redis.IRedisResourcePoolAdapter;
+import redis.clients.jedis.Jedis;
+
+/**
+ * 基于{@link LockFreeJedisPool}的实现，用于核数很多、commons-pool2借还连接竞争明显的场景
+ */
+public class LockFreeJedisResourcePoolAdapterImpl implements IRedisResourcePoolAdapter {
+    private final LockFreeJedisPool jedisPool;
+
+    public LockFreeJedisResourcePoolAdapterImpl(LockFreeJedisPool jedisPool) {
+        this.jedisPool = jedisPool;
+    }
+
+    @Override
+    public Jedis getResource() {
+        return jedisPool.getResource();
+    }
+
+    public void close() {
+        jedisPool.close();
+    }
+}
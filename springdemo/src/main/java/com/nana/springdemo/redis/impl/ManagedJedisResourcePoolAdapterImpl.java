@@ -0,0 +1,259 @@
+package com.nana.springdemo.redis.impl;
+
+import com.nana.springdemo.redis.IRedisResourcePoolAdapter;
+import com.nana.springdemo.redis.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 带监控和自适应大小的Jedis连接池
+ * <p>
+ * 监控：记录每次借连接的等待时间(直方图)、借连接超时次数，提供在用/空闲/等待中的连接数。
+ * <p>
+ * 借连接超时：等待必须有上限，配置为不限时(<=0)时改用默认值，超时后抛出异常，
+ * {@link RedisCacheImpl#runCmd}按命令失败处理，请求线程不会一直挂在连接池上。
+ * <p>
+ * 自适应：每隔intervalMillis用独立连接PING一次Redis，结合这段时间内的借连接等待调整最大连接数：
+ * <ul>
+ * <li>Redis延迟超过redisLatencyLimitMicros时缩小，Redis已经变慢，再加连接只会让请求在Redis端排队</li>
+ * <li>Redis正常，但借连接出现超时或p99等待超过targetWaitMicros时扩大</li>
+ * <li>连续shrinkAfterWindows个周期在用连接的峰值不到一半时缩小一个</li>
+ * </ul>
+ * 最大连接数始终在[minTotal, maxTotal]之间。PING失败时不做调整。
+ */
+public class ManagedJedisResourcePoolAdapterImpl implements IRedisResourcePoolAdapter {
+
+    private static Logger log = LoggerFactory.getLogger(ManagedJedisResourcePoolAdapterImpl.class);
+
+    private static final long DEFAULT_BORROW_TIMEOUT_MILLIS = 1000;
+
+    private final ResizableJedisPool jedisPool;
+    private final String host;
+    private final int port;
+    private final int timeout;
+    private final int minTotal;
+    private final int maxTotal;
+    private final long targetWaitMicros;
+    private final long redisLatencyLimitMicros;
+    private final int intervalMillis;
+    private final int shrinkAfterWindows;
+
+    private final LatencyHistogram borrowWait = new LatencyHistogram();
+    private final LatencyHistogram windowBorrowWait = new LatencyHistogram();
+    private final LongAdder borrowTimeouts = new LongAdder();
+    private final LongAdder windowBorrowTimeouts = new LongAdder();
+    private final AtomicInteger windowPeakActive = new AtomicInteger();
+
+    private final ScheduledExecutorService controller;
+    private volatile long redisLatencyMicros = -1;
+    private Jedis probe;
+    private int idleWindows;
+
+    /**
+     * @param poolConfig 初始的连接池配置，maxTotal为初始大小
+     * @param host
+     * @param port
+     * @param timeout
+     * @param minTotal 自适应调整的下限
+     * @param maxTotal 自适应调整的上限
+     * @param targetWaitMicros 借连接p99等待的目标值
+     * @param redisLatencyLimitMicros PING延迟超过该值时认为Redis已经过载
+     * @param intervalMillis 调整周期
+     * @param shrinkAfterWindows 连续多少个周期利用率低时缩小
+     */
+    public ManagedJedisResourcePoolAdapterImpl(JedisPoolConfig poolConfig, String host, int port, int timeout,
+                                               int minTotal, int maxTotal, long targetWaitMicros,
+                                               long redisLatencyLimitMicros, int intervalMillis, int shrinkAfterWindows) {
+        if (minTotal <= 0 || maxTotal < minTotal) {
+            throw new IllegalArgumentException("invalid pool bounds:[" + minTotal + "," + maxTotal + "]");
+        }
+        if (poolConfig.getMaxWaitMillis() <= 0) {
+            log.warn("redis pool borrow wait is unbounded, use {}ms instead", DEFAULT_BORROW_TIMEOUT_MILLIS);
+            poolConfig.setMaxWaitMillis(DEFAULT_BORROW_TIMEOUT_MILLIS);
+        }
+        poolConfig.setBlockWhenExhausted(true);
+        poolConfig.setMaxTotal(Math.max(minTotal, Math.min(maxTotal, poolConfig.getMaxTotal())));
+        poolConfig.setMaxIdle(poolConfig.getMaxTotal());
+        this.jedisPool = new ResizableJedisPool(poolConfig, host, port, timeout);
+        this.host = host;
+        this.port = port;
+        this.timeout = timeout;
+        this.minTotal = minTotal;
+        this.maxTotal = maxTotal;
+        this.targetWaitMicros = targetWaitMicros;
+        this.redisLatencyLimitMicros = redisLatencyLimitMicros;
+        this.intervalMillis = intervalMillis;
+        this.shrinkAfterWindows = shrinkAfterWindows;
+        this.controller = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "redis-pool-controller");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * 开始自适应调整
+     */
+    public void start() {
+        controller.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    adjust();
+                } catch (Exception e) {
+                    log.warn("redis pool adjust error", e);
+                }
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 停止调整并关闭连接池
+     */
+    public void close() {
+        controller.shutdownNow();
+        try {
+            controller.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeProbe();
+        jedisPool.close();
+    }
+
+    @Override
+    public Jedis getResource() {
+        long start = System.nanoTime();
+        try {
+            Jedis jedis = jedisPool.getResource();
+            long waited = System.nanoTime() - start;
+            borrowWait.record(waited);
+            windowBorrowWait.record(waited);
+            windowPeakActive.accumulateAndGet(jedisPool.getNumActive(), Math::max);
+            return jedis;
+        } catch (JedisException e) {
+            if (e.getCause() instanceof NoSuchElementException) {
+                borrowTimeouts.increment();
+                windowBorrowTimeouts.increment();
+            }
+            throw e;
+        }
+    }
+
+    public int getNumActive() {
+        return jedisPool.getNumActive();
+    }
+
+    public int getNumIdle() {
+        return jedisPool.getNumIdle();
+    }
+
+    public int getNumWaiters() {
+        return jedisPool.getNumWaiters();
+    }
+
+    public int getMaxTotal() {
+        return jedisPool.getMaxTotal();
+    }
+
+    /**
+     * @return 启动以来借连接超时的次数
+     */
+    public long getBorrowTimeouts() {
+        return borrowTimeouts.sum();
+    }
+
+    /**
+     * @return 启动以来借连接等待时间的分布
+     */
+    public LatencyHistogram.Snapshot getBorrowWait() {
+        return borrowWait.snapshot(false);
+    }
+
+    /**
+     * @return 最近一次PING的延迟(微秒)，-1表示失败或还没有探测
+     */
+    public long getRedisLatencyMicros() {
+        return redisLatencyMicros;
+    }
+
+    private void adjust() {
+        LatencyHistogram.Snapshot wait = windowBorrowWait.snapshot(true);
+        long timeouts = windowBorrowTimeouts.sumThenReset();
+        int peakActive = windowPeakActive.getAndSet(0);
+        long latency = ping();
+        redisLatencyMicros = latency;
+
+        int current = jedisPool.getMaxTotal();
+        int target = current;
+        if (latency < 0) {
+            idleWindows = 0;
+        } else if (latency > redisLatencyLimitMicros) {
+            idleWindows = 0;
+            target = current - Math.max(1, current / 4);
+        } else if (timeouts > 0 || wait.percentileMicros(0.99) > targetWaitMicros) {
+            idleWindows = 0;
+            target = current + Math.max(1, current / 4);
+        } else if (peakActive * 2 < current) {
+            if (++idleWindows >= shrinkAfterWindows) {
+                idleWindows = 0;
+                target = current - 1;
+            }
+        } else {
+            idleWindows = 0;
+        }
+        target = Math.max(minTotal, Math.min(maxTotal, target));
+        if (target != current) {
+            jedisPool.resize(target);
+            log.info("redis pool resized {} -> {}, borrowWait:{}, timeouts:{}, peakActive:{}, redisLatency:{}us",
+                    current, target, wait, timeouts, peakActive, latency);
+        } else if (log.isDebugEnabled()) {
+            log.debug("redis pool size {}, borrowWait:{}, timeouts:{}, peakActive:{}, idle:{}, redisLatency:{}us",
+                    current, wait, timeouts, peakActive, jedisPool.getNumIdle(), latency);
+        }
+    }
+
+    /**
+     * 用独立的连接PING，不受连接池是否耗尽的影响
+     * @return 延迟(微秒)，失败返回-1
+     */
+    private long ping() {
+        try {
+            if (probe == null) {
+                //socket超时为0时PING可能一直阻塞调整线程
+                probe = new Jedis(host, port, timeout > 0 ? timeout : (int) DEFAULT_BORROW_TIMEOUT_MILLIS);
+            }
+            long start = System.nanoTime();
+            probe.ping();
+            return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+        } catch (Exception e) {
+            closeProbe();
+            return -1;
+        }
+    }
+
+    private void closeProbe() {
+        if (probe != null) {
+            try {
+                probe.close();
+            } catch (Exception e) {
+                //ignore
+            }
+            probe = null;
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package com.nana.springdemo.redis.impl;
+
+import com.nana.springdemo.redis.IRedisResourcePoolAdapter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPubSub;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 基于Redis pub/sub的二级缓存失效通知
+ * <p>
+ * 本节点写操作涉及的key先放入待发送集合（重复的key自动合并），每隔flushIntervalMillis批量发布一条消息；
+ * 待发送的key超过maxPendingKeys时改为发布一条"全部失效"消息，避免写入高峰时每个key一条消息。
+ * <p>
+ * 订阅使用独立的连接，不占用连接池。每次订阅成功（包括断线重连）都先清空本地L1，
+ * 断线期间错过的通知不会导致一直读到旧值。收到本节点发出的消息时忽略。
+ * 订阅连接设置读超时，并定时发送PING：没有通知时也有PONG返回，连接半开(对端已断开而本地未感知)时
+ * 读超时触发重连，不会一直停在失效的连接上。
+ * <p>
+ * 消息格式：节点ID\n类型\n长度:key1长度:key2...，长度为key的字符个数，key中可以包含任意字符；
+ * 类型K表示按key失效，A表示全部失效。无法解析的消息按全部失效处理。
+ */
+public class NearCacheInvalidationBus {
+
+    private static Logger log = LoggerFactory.getLogger(NearCacheInvalidationBus.class);
+
+    private static final String TYPE_KEYS = "K";
+    private static final String TYPE_ALL = "A";
+    private static final String SEPARATOR = "\n";
+    private static final char LENGTH_SEPARATOR = ':';
+
+    private static final long RECONNECT_INTERVAL_MILLIS = 1000;
+    /**
+     * 订阅连接的PING间隔，读超时为其3倍，连续丢失两次PONG才判定断开
+     */
+    private static final long PING_INTERVAL_MILLIS = 5000;
+    private static final int SUBSCRIBE_SO_TIMEOUT_MILLIS = (int) PING_INTERVAL_MILLIS * 3;
+
+    private final IRedisResourcePoolAdapter redisResourcePoolAdapter;
+    private final NearRedisCacheImpl nearCache;
+    private final String host;
+    private final int port;
+    private final String channel;
+    private final int flushIntervalMillis;
+    private final int maxBatchSize;
+    private final int maxPendingKeys;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Set<String> pendingKeys = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean pendingAll = new AtomicBoolean(false);
+
+    private final ScheduledExecutorService flusher;
+    private final JedisPubSub pubSub = new InvalidationPubSub();
+    private volatile boolean running;
+    private Thread subscribeThread;
+
+    /**
+     * @param redisResourcePoolAdapter 发布消息使用的连接池
+     * @param nearCache 收到通知时失效的L1
+     * @param host 订阅连接的Redis地址
+     * @param port
+     * @param channel 频道名
+     * @param flushIntervalMillis 批量发布间隔
+     * @param maxBatchSize 单条消息最多包含的key个数
+     * @param maxPendingKeys 待发送的key超过该值时改为全部失效
+     */
+    public NearCacheInvalidationBus(IRedisResourcePoolAdapter redisResourcePoolAdapter, NearRedisCacheImpl nearCache,
+                                    String host, int port, String channel,
+                                    int flushIntervalMillis, int maxBatchSize, int maxPendingKeys) {
+        this.redisResourcePoolAdapter = redisResourcePoolAdapter;
+        this.nearCache = nearCache;
+        this.host = host;
+        this.port = port;
+        this.channel = channel;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.maxPendingKeys = maxPendingKeys;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "near-cache-invalidation-flusher");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * 开始订阅和定时发布
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        subscribeThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                subscribeLoop();
+            }
+        }, "near-cache-invalidation-subscriber");
+        subscribeThread.setDaemon(true);
+        subscribeThread.start();
+        flusher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        flusher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                ping();
+            }
+        }, PING_INTERVAL_MILLIS, PING_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 停止订阅，发出剩余的通知
+     */
+    public synchronized void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            if (pubSub.isSubscribed()) {
+                pubSub.unsubscribe();
+            }
+        } catch (Exception e) {
+            log.warn("near cache invalidation unsubscribe error", e);
+        }
+        flusher.shutdown();
+        flush();
+    }
+
+    /**
+     * 通知其他节点失效key，异步批量发送
+     * @param keys
+     */
+    public void publish(String... keys) {
+        if (pendingAll.get()) {
+            return;
+        }
+        for (String key : keys) {
+            pendingKeys.add(key);
+        }
+        if (pendingKeys.size() > maxPendingKeys) {
+            publishAll();
+        }
+    }
+
+    /**
+     * 通知其他节点清空L1，异步发送
+     */
+    public void publishAll() {
+        pendingAll.set(true);
+        pendingKeys.clear();
+    }
+
+    private void flush() {
+        try {
+            if (pendingAll.getAndSet(false)) {
+                pendingKeys.clear();
+                send(TYPE_ALL, new ArrayList<String>());
+                return;
+            }
+            List<String> batch = new ArrayList<String>();
+            Iterator<String> it = pendingKeys.iterator();
+            while (it.hasNext()) {
+                batch.add(it.next());
+                it.remove();
+                if (batch.size() >= maxBatchSize) {
+                    send(TYPE_KEYS, batch);
+                    batch = new ArrayList<String>();
+                }
+            }
+            if (!batch.isEmpty()) {
+                send(TYPE_KEYS, batch);
+            }
+        } catch (Exception e) {
+            log.error("near cache invalidation publish error", e);
+        }
+    }
+
+    private void ping() {
+        try {
+            if (pubSub.isSubscribed()) {
+                pubSub.ping();
+            }
+        } catch (Exception e) {
+            //连接已断开，由订阅线程的读超时或异常触发重连
+            log.warn("near cache invalidation ping error", e);
+        }
+    }
+
+    private void send(String type, List<String> keys) {
+        StringBuilder sb = new StringBuilder(nodeId).append(SEPARATOR).append(type).append(SEPARATOR);
+        for (String key : keys) {
+            sb.append(key.length()).append(LENGTH_SEPARATOR).append(key);
+        }
+        Jedis jedis = null;
+        try {
+            jedis = redisResourcePoolAdapter.getResource();
+            jedis.publish(channel, sb.toString());
+        } finally {
+            if (jedis != null) {
+                jedis.close();
+            }
+        }
+    }
+
+    private void subscribeLoop() {
+        while (running) {
+            Jedis jedis = null;
+            try {
+                jedis = new Jedis(host, port, SUBSCRIBE_SO_TIMEOUT_MILLIS);
+                jedis.connect();
+                //Jedis.subscribe会把读超时改为无限，这里直接在连接上订阅，保留读超时
+                pubSub.proceed(jedis.getClient(), channel);
+            } catch (Exception e) {
+                if (running) {
+                    log.error("near cache invalidation subscribe error, reconnecting", e);
+                }
+            } finally {
+                if (jedis != null) {
+                    try {
+                        jedis.close();
+                    } catch (Exception e) {
+                        log.warn("near cache invalidation close error", e);
+                    }
+                }
+            }
+            if (running) {
+                try {
+                    Thread.sleep(RECONNECT_INTERVAL_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void onInvalidation(String message) {
+        String[] header = message.split(SEPARATOR, 3);
+        if (header.length == 3 && nodeId.equals(header[0])) {
+            return;
+        }
+        if (header.length == 3 && TYPE_ALL.equals(header[1])) {
+            nearCache.invalidateAllLocal();
+            return;
+        }
+        List<String> keys = header.length == 3 && TYPE_KEYS.equals(header[1]) ? parseKeys(header[2]) : null;
+        if (keys == null) {
+            log.warn("near cache invalidation unknown message, invalidate all: {}", message);
+            nearCache.invalidateAllLocal();
+            return;
+        }
+        nearCache.invalidateLocal(keys.toArray(new String[keys.size()]));
+    }
+
+    /**
+     * 解析长度:key长度:key...，格式错误时返回null
+     */
+    private static List<String> parseKeys(String body) {
+        List<String> keys = new ArrayList<String>();
+        int pos = 0;
+        while (pos < body.length()) {
+            int colon = body.indexOf(LENGTH_SEPARATOR, pos);
+            if (colon <= pos) {
+                return null;
+            }
+            int length;
+            try {
+                length = Integer.parseInt(body.substring(pos, colon));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            int end = colon + 1 + length;
+            if (length < 0 || end > body.length()) {
+                return null;
+            }
+            keys.add(body.substring(colon + 1, end));
+            pos = end;
+        }
+        return keys;
+    }
+
+    private class InvalidationPubSub extends JedisPubSub {
+        @Override
+        public void onSubscribe(String channel, int subscribedChannels) {
+            //重连期间可能错过通知，清空L1重新积累
+            nearCache.invalidateAllLocal();
+        }
+
+        @Override
+        public void onMessage(String channel, String message) {
+            onInvalidation(message);
+        }
+    }
+}
@@ -0,0 +1,696 @@
+package com.nana.springdemo.redis.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.nana.springdemo.redis.ExpiringValue;
+import com.nana.springdemo.redis.IRedisBatch;
+import com.nana.springdemo.redis.IRedisCache;
+import com.nana.springdemo.redis.RedisFuture;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 二级缓存：进程内L1(Caffeine，W-TinyLFU淘汰) + Redis L2
+ * <p>
+ * 只缓存对象类型的get/mget，L1中保存反序列化后的对象，命中时不访问Redis也不反序列化。
+ * 返回的对象在线程间共享，调用方不能修改。
+ * <p>
+ * L1的过期时间不超过maxTtlSeconds，也不超过Redis中的剩余过期时间：读Redis时同一次往返取PTTL，
+ * 通过setEx/psetEx写入时取写入的过期时间，两者都和maxTtlSeconds取较小的值。
+ * 本节点对key的写操作会先写Redis再失效L1；读写Redis期间如果该key被失效过，结果不回填L1，避免旧值覆盖新值。
+ * 回填按key登记令牌，失效只影响被失效的key，其他key的回填不受影响。
+ * 其他节点的写操作通过{@link NearCacheInvalidationBus}通知失效，未配置时最多在maxTtlSeconds内读到旧值。
+ * <p>
+ * batch中的读直接访问Redis，写在batch执行完后统一失效L1。
+ */
+public class NearRedisCacheImpl extends AbstractRedisCacheDecorator {
+
+    private final Cache<String, NearEntry> nearCache;
+    private final long maxTtlNanos;
+
+    /**
+     * 正在读写Redis、准备回填L1的key及其令牌。失效时移除令牌，同一个key有新的读写时替换令牌，
+     * 回填时令牌不在(被失效或者被替换)则不回填
+     */
+    private final ConcurrentHashMap<String, Object> fills = new ConcurrentHashMap<String, Object>();
+
+    private volatile NearCacheInvalidationBus invalidationBus;
+
+    /**
+     * @param redisCache 被装饰的Redis缓存
+     * @param maxSize L1最多缓存的key个数
+     * @param maxTtlSeconds L1最长过期时间
+     */
+    public NearRedisCacheImpl(IRedisCache redisCache, long maxSize, int maxTtlSeconds) {
+        super(redisCache);
+        this.maxTtlNanos = TimeUnit.SECONDS.toNanos(maxTtlSeconds);
+        this.nearCache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, NearEntry>() {
+                    @Override
+                    public long expireAfterCreate(String key, NearEntry value, long currentTime) {
+                        return value.ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, NearEntry value, long currentTime, long currentDuration) {
+                        return value.ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, NearEntry value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 设置失效通知，本节点的写操作会通知其他节点失效L1
+     * @param invalidationBus
+     */
+    public void setInvalidationBus(NearCacheInvalidationBus invalidationBus) {
+        this.invalidationBus = invalidationBus;
+    }
+
+    /**
+     * L1统计信息
+     * @return
+     */
+    public CacheStats getStats() {
+        return nearCache.stats();
+    }
+
+    /**
+     * L1当前缓存的key个数(近似值)
+     * @return
+     */
+    public long getSize() {
+        return nearCache.estimatedSize();
+    }
+
+    /**
+     * 失效本地L1中的key，不访问Redis
+     * @param keys
+     */
+    public void invalidateLocal(String... keys) {
+        if (keys == null) {
+            return;
+        }
+        for (String key : keys) {
+            fills.remove(key);
+            nearCache.invalidate(key);
+        }
+    }
+
+    /**
+     * 清空本地L1
+     */
+    public void invalidateAllLocal() {
+        fills.clear();
+        nearCache.invalidateAll();
+    }
+
+    private <E> E getNear(String key, Class<E> clazz) {
+        NearEntry entry = nearCache.getIfPresent(key);
+        if (entry != null && clazz.isInstance(entry.value)) {
+            return clazz.cast(entry.value);
+        }
+        return null;
+    }
+
+    /**
+     * 读写Redis之前登记回填令牌
+     */
+    private Object beginFill(String key) {
+        Object token = new Object();
+        fills.put(key, token);
+        return token;
+    }
+
+    /**
+     * 令牌仍然有效时回填L1，无论是否回填都结束登记
+     */
+    private void putNear(String key, Object value, long ttlNanos, Object token) {
+        if (value == null || ttlNanos <= 0 || fills.get(key) != token) {
+            fills.remove(key, token);
+            return;
+        }
+        nearCache.put(key, new NearEntry(value, Math.min(ttlNanos, maxTtlNanos)));
+        if (!fills.remove(key, token)) {
+            //put期间被失效，撤销这次回填
+            nearCache.invalidate(key);
+        }
+    }
+
+    /**
+     * 本节点写操作后失效L1，并通知其他节点
+     */
+    private void invalidate(String... keys) {
+        invalidateLocal(keys);
+        NearCacheInvalidationBus bus = invalidationBus;
+        if (bus != null && keys != null) {
+            bus.publish(keys);
+        }
+    }
+
+    /**
+     * 写Redis成功后用新值替换L1，失败时只失效
+     * @param token 写Redis之前登记的令牌，写Redis期间该key有其他读写或失效时不回填
+     */
+    private void replaceNear(String key, Object value, long ttlNanos, int ret, Object token) {
+        //移除令牌同时阻止写之前开始的读回填旧值
+        boolean clean = fills.remove(key) == token;
+        invalidate(key);
+        if (ret >= 0 && clean && fills.putIfAbsent(key, token) == null) {
+            putNear(key, value, ttlNanos, token);
+        }
+    }
+
+    /**
+     * 按Redis中的剩余过期时间计算L1过期时间，不存在时返回0(不回填)
+     * @param pttl 毫秒，-1 没有过期时间，-2 不存在
+     */
+    private long nearTtlNanos(long pttl) {
+        if (pttl == -1) {
+            return maxTtlNanos;
+        }
+        return pttl > 0 ? TimeUnit.MILLISECONDS.toNanos(pttl) : 0;
+    }
+
+    /**
+     * L1中的剩余过期时间(毫秒)
+     */
+    private long nearPttl(String key) {
+        Optional<Policy.VarExpiration<String, NearEntry>> expiry = nearCache.policy().expireVariably();
+        return expiry.isPresent() ? expiry.get().getExpiresAfter(key, TimeUnit.MILLISECONDS).orElse(0L) : 0L;
+    }
+
+    /************读**************/
+
+    @Override
+    public int exists(String key) {
+        if (nearCache.getIfPresent(key) != null) {
+            return 1;
+        }
+        return redisCache.exists(key);
+    }
+
+    @Override
+    public <E> E get(String key, Class<E> clazz, E valueOfErr) {
+        E value = getNear(key, clazz);
+        if (value != null) {
+            return value;
+        }
+        Object token = beginFill(key);
+        ExpiringValue<E> cached = redisCache.getWithPttl(key, clazz);
+        if (cached == null) {
+            fills.remove(key, token);
+            return valueOfErr;
+        }
+        putNear(key, cached.getValue(), nearTtlNanos(cached.getPttl()), token);
+        return cached.getValue();
+    }
+
+    @Override
+    public <E> E get(String key, Class<E> clazz) {
+        return this.get(key, clazz, null);
+    }
+
+    @Override
+    public <E> E get(String key, Class<E> clazz, int second) {
+        this.expire(key, second);
+        return this.get(key, clazz);
+    }
+
+    @Override
+    public <E> E getOrLoad(String key, Class<E> clazz, int seconds, Supplier<E> loader) {
+        E value = getNear(key, clazz);
+        if (value != null) {
+            return value;
+        }
+        Object token = beginFill(key);
+        ExpiringValue<E> loaded;
+        try {
+            loaded = redisCache.getOrLoadWithPttl(key, clazz, seconds, loader);
+        } catch (RuntimeException | Error e) {
+            fills.remove(key, token);
+            throw e;
+        }
+        //命中时按Redis中的剩余过期时间，刚加载时按写回的过期时间
+        putNear(key, loaded.getValue(), nearTtlNanos(loaded.getPttl()), token);
+        return loaded.getValue();
+    }
+
+    @Override
+    public <E> Map<String, E> mget(Class<E> clazz, String... keys) {
+        Map<String, ExpiringValue<E>> values = this.mgetWithPttl(clazz, keys);
+        if (values == null) {
+            return null;
+        }
+        Map<String, E> ret = new HashMap<String, E>();
+        for (Map.Entry<String, ExpiringValue<E>> entry : values.entrySet()) {
+            ret.put(entry.getKey(), entry.getValue().getValue());
+        }
+        return ret;
+    }
+
+    /**
+     * L1命中的key返回L1中的剩余过期时间(不超过Redis中的剩余过期时间)，其余的一次mget从Redis取回并回填L1
+     */
+    @Override
+    public <E> Map<String, ExpiringValue<E>> mgetWithPttl(Class<E> clazz, String... keys) {
+        if (keys == null || keys.length == 0) {
+            return null;
+        }
+        Map<String, ExpiringValue<E>> ret = new HashMap<String, ExpiringValue<E>>();
+        List<String> missKeys = new ArrayList<String>();
+        for (String key : keys) {
+            E value = getNear(key, clazz);
+            if (value != null) {
+                ret.put(key, new ExpiringValue<E>(value, nearPttl(key)));
+            } else {
+                missKeys.add(key);
+            }
+        }
+        if (missKeys.isEmpty()) {
+            return ret;
+        }
+        Map<String, Object> tokens = new HashMap<String, Object>();
+        for (String key : missKeys) {
+            tokens.put(key, beginFill(key));
+        }
+        Map<String, ExpiringValue<E>> missValues = redisCache.mgetWithPttl(clazz, missKeys.toArray(new String[missKeys.size()]));
+        if (missValues == null) {
+            for (Map.Entry<String, Object> entry : tokens.entrySet()) {
+                fills.remove(entry.getKey(), entry.getValue());
+            }
+            return null;
+        }
+        for (Map.Entry<String, Object> entry : tokens.entrySet()) {
+            ExpiringValue<E> cached = missValues.get(entry.getKey());
+            if (cached == null) {
+                fills.remove(entry.getKey(), entry.getValue());
+                continue;
+            }
+            putNear(entry.getKey(), cached.getValue(), nearTtlNanos(cached.getPttl()), entry.getValue());
+            ret.put(entry.getKey(), cached);
+        }
+        return ret;
+    }
+
+    /************写，先写Redis再失效L1**************/
+
+    @Override
+    public int del(String... keys) {
+        int ret = redisCache.del(keys);
+        invalidate(keys);
+        return ret;
+    }
+
+    @Override
+    public int expire(String key, int seconds) {
+        int ret = redisCache.expire(key, seconds);
+        invalidate(key);
+        return ret;
+    }
+
+    @Override
+    public int pexpire(String key, long miliSeconds) {
+        int ret = redisCache.pexpire(key, miliSeconds);
+        invalidate(key);
+        return ret;
+    }
+
+    @Override
+    public int expireAt(String key, long unixTime) {
+        int ret = redisCache.expireAt(key, unixTime);
+        invalidate(key);
+        return ret;
+    }
+
+    @Override
+    public int pexpireAt(String key, long miliUnixTime) {
+        int ret = redisCache.pexpireAt(key, miliUnixTime);
+        invalidate(key);
+        return ret;
+    }
+
+    @Override
+    public int append(String key, String value) {
+        int ret = redisCache.append(key, value);
+        invalidate(key);
+        return ret;
+    }
+
+    @Override
+    public long decr(String key, long valueOfErr) {
+        long ret = redisCache.decr(key, valueOfErr);
+        invalidate(key);
+        return ret;
+    }
+
+    @Override
+    public long decrBy(String key, long byValue, long valueOfErr) {
+        long ret = redisCache.decrBy(key, byValue, valueOfErr);
+        invalidate(key);
+        return ret;
+    }
+
+    @Override
+    public long incr(String key, long valueOfErr) {
+        long ret = redisCache.incr(key, valueOfErr);
+        invalidate(key);
+        return ret;
+    }
+
+    @Override
+    public long incrBy(String key, long byValue, long valueOfErr) {
+        long ret = redisCache.incrBy(key, byValue, valueOfErr);
+        invalidate(key);
+        return ret;
+    }
+
+    @Override
+    public String getSetString(String key, String value, String valueOfErr) {
+        String ret = redisCache.getSetString(key, value, valueOfErr);
+        invalidate(key);
+        return ret;
+    }
+
+    @Override
+    public String getSetString(String key, String value) {
+        String ret = redisCache.getSetString(key, value);
+        invalidate(key);
+        return ret;
+    }
+
+    @Override
+    public long getSetLong(String key, long value, long valueOfErr) {
+        long ret = redisCache.getSetLong(key, value, valueOfErr);
+        invalidate(key);
+        return ret;
+    }
+
+    @Override
+    public long getSetLong(String key, long value) {
+        long ret = redisCache.getSetLong(key, value);
+        invalidate(key);
+        return ret;
+    }
+
+    @Override
+    public <E> E getSet(String key, E value, E valueOfErr, Class<E> clazz) {
+        E ret = redisCache.getSet(key, value, valueOfErr, clazz);
+        invalidate(key);
+        return ret;
+    }
+
+    @Override
+    public <E> E getSet(String key, E value, Class<E> clazz) {
+        E ret = redisCache.getSet(key, value, clazz);
+        invalidate(key);
+        return ret;
+    }
+
+    @Override
+    public int msetString(Map<String, String> keyValues) {
+        int ret = redisCache.msetString(keyValues);
+        invalidate(keysOf(keyValues));
+        return ret;
+    }
+
+    @Override
+    public int msetLong(Map<String, Long> keyValues) {
+        int ret = redisCache.msetLong(keyValues);
+        invalidate(keysOf(keyValues));
+        return ret;
+    }
+
+    @Override
+    public <E> int mset(Map<String, E> keyValues) {
+        int ret = redisCache.mset(keyValues);
+        invalidate(keysOf(keyValues));
+        return ret;
+    }
+
+    @Override
+    public int msetNxString(Map<String, String> keyValues) {
+        int ret = redisCache.msetNxString(keyValues);
+        invalidate(keysOf(keyValues));
+        return ret;
+    }
+
+    @Override
+    public int msetNxLong(Map<String, Long> keyValues) {
+        int ret = redisCache.msetNxLong(keyValues);
+        invalidate(keysOf(keyValues));
+        return ret;
+    }
+
+    @Override
+    public <E> int msetNx(Map<String, E> keyValues) {
+        int ret = redisCache.msetNx(keyValues);
+        invalidate(keysOf(keyValues));
+        return ret;
+    }
+
+    @Override
+    public int psetEx(String key, String value, int milliSeconds) {
+        int ret = redisCache.psetEx(key, value, milliSeconds);
+        invalidate(key);
+        return ret;
+    }
+
+    @Override
+    public int psetEx(String key, long value, int milliSeconds) {
+        int ret = redisCache.psetEx(key, value, milliSeconds);
+        invalidate(key);
+        return ret;
+    }
+
+    @Override
+    public <E> int psetEx(String key, E value, int milliSeconds) {
+        Object token = beginFill(key);
+        int ret = redisCache.psetEx(key, value, milliSeconds);
+        replaceNear(key, value, TimeUnit.MILLISECONDS.toNanos(milliSeconds), ret, token);
+        return ret;
+    }
+
+    @Override
+    public int set(String key, String value) {
+        int ret = redisCache.set(key, value);
+        invalidate(key);
+        return ret;
+    }
+
+    @Override
+    public int set(String key, long value) {
+        int ret = redisCache.set(key, value);
+        invalidate(key);
+        return ret;
+    }
+
+    @Override
+    public <E> int set(String key, E value) {
+        Object token = beginFill(key);
+        int ret = redisCache.set(key, value);
+        replaceNear(key, value, maxTtlNanos, ret, token);
+        return ret;
+    }
+
+    @Override
+    public int setEx(String key, String value, int seconds) {
+        int ret = redisCache.setEx(key, value, seconds);
+        invalidate(key);
+        return ret;
+    }
+
+    @Override
+    public int setEx(String key, long value, int seconds) {
+        int ret = redisCache.setEx(key, value, seconds);
+        invalidate(key);
+        return ret;
+    }
+
+    @Override
+    public <E> int setEx(String key, E value, int seconds) {
+        Object token = beginFill(key);
+        int ret = redisCache.setEx(key, value, seconds);
+        replaceNear(key, value, TimeUnit.SECONDS.toNanos(seconds), ret, token);
+        return ret;
+    }
+
+    @Override
+    public int setNx(String key, String value) {
+        int ret = redisCache.setNx(key, value);
+        invalidate(key);
+        return ret;
+    }
+
+    @Override
+    public int setNx(String key, long value) {
+        int ret = redisCache.setNx(key, value);
+        invalidate(key);
+        return ret;
+    }
+
+    @Override
+    public <E> int setNx(String key, E value) {
+        int ret = redisCache.setNx(key, value);
+        invalidate(key);
+        return ret;
+    }
+
+    /************批量**************/
+
+    @Override
+    public int batch(final Consumer<IRedisBatch> commands) {
+        final List<String> writtenKeys = new ArrayList<String>();
+        int ret = redisCache.batch(new Consumer<IRedisBatch>() {
+            @Override
+            public void accept(IRedisBatch batch) {
+                commands.accept(new InvalidatingBatch(batch, writtenKeys));
+            }
+        });
+        if (!writtenKeys.isEmpty()) {
+            invalidate(writtenKeys.toArray(new String[writtenKeys.size()]));
+        }
+        return ret;
+    }
+
+    private static String[] keysOf(Map<String, ?> keyValues) {
+        if (keyValues == null) {
+            return new String[0];
+        }
+        return keyValues.keySet().toArray(new String[keyValues.size()]);
+    }
+
+    /**
+     * 记录batch中写过的key，hash不进L1，hash写操作不需要记录
+     */
+    private static class InvalidatingBatch implements IRedisBatch {
+        private final IRedisBatch batch;
+        private final List<String> writtenKeys;
+
+        private InvalidatingBatch(IRedisBatch batch, List<String> writtenKeys) {
+            this.batch = batch;
+            this.writtenKeys = writtenKeys;
+        }
+
+        @Override
+        public RedisFuture<Integer> del(String... keys) {
+            for (String key : keys) {
+                writtenKeys.add(key);
+            }
+            return batch.del(keys);
+        }
+
+        @Override
+        public RedisFuture<Integer> exists(String key) {
+            return batch.exists(key);
+        }
+
+        @Override
+        public RedisFuture<Integer> expire(String key, int seconds) {
+            writtenKeys.add(key);
+            return batch.expire(key, seconds);
+        }
+
+        @Override
+        public RedisFuture<Long> incrBy(String key, long byValue) {
+            writtenKeys.add(key);
+            return batch.incrBy(key, byValue);
+        }
+
+        @Override
+        public RedisFuture<String> getString(String key) {
+            return batch.getString(key);
+        }
+
+        @Override
+        public RedisFuture<Long> getLong(String key) {
+            return batch.getLong(key);
+        }
+
+        @Override
+        public <E> RedisFuture<E> get(String key, Class<E> clazz) {
+            return batch.get(key, clazz);
+        }
+
+        @Override
+        public <E> RedisFuture<Map<String, E>> mget(Class<E> clazz, String... keys) {
+            return batch.mget(clazz, keys);
+        }
+
+        @Override
+        public RedisFuture<Integer> set(String key, String value) {
+            writtenKeys.add(key);
+            return batch.set(key, value);
+        }
+
+        @Override
+        public <E> RedisFuture<Integer> set(String key, E value) {
+            writtenKeys.add(key);
+            return batch.set(key, value);
+        }
+
+        @Override
+        public RedisFuture<Integer> setEx(String key, String value, int seconds) {
+            writtenKeys.add(key);
+            return batch.setEx(key, value, seconds);
+        }
+
+        @Override
+        public <E> RedisFuture<Integer> setEx(String key, E value, int seconds) {
+            writtenKeys.add(key);
+            return batch.setEx(key, value, seconds);
+        }
+
+        @Override
+        public RedisFuture<Integer> setNegative(String key) {
+            writtenKeys.add(key);
+            return batch.setNegative(key);
+        }
+
+        @Override
+        public RedisFuture<Integer> hdel(String key, String... fields) {
+            return batch.hdel(key, fields);
+        }
+
+        @Override
+        public <E> RedisFuture<E> hget(String key, String field, Class<E> clazz) {
+            return batch.hget(key, field, clazz);
+        }
+
+        @Override
+        public <E> RedisFuture<Integer> hset(String key, String field, E value) {
+            return batch.hset(key, field, value);
+        }
+    }
+
+    /**
+     * L1中的值及其过期时间
+     */
+    private static class NearEntry {
+        private final Object value;
+        private final long ttlNanos;
+
+        private NearEntry(Object value, long ttlNanos) {
+            this.value = value;
+            this.ttlNanos = ttlNanos;
+        }
+    }
+}
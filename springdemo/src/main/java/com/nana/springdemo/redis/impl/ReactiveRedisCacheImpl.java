@@ -0,0 +1,59 @@
+package com.nana.springdemo.redis.impl;
+
+import com.nana.springdemo.redis.IAsyncRedisCache;
+import com.nana.springdemo.redis.IReactiveRedisCache;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * 在异步实现上包装的响应式实现
+ * <p>
+ * 每个方法都用defer包装，订阅时才发送命令，重复订阅会重新发送。
+ * 共用异步实现的连接，不额外占用连接和线程。
+ */
+public class ReactiveRedisCacheImpl implements IReactiveRedisCache {
+
+    private final IAsyncRedisCache asyncRedisCache;
+
+    public ReactiveRedisCacheImpl(IAsyncRedisCache asyncRedisCache) {
+        this.asyncRedisCache = asyncRedisCache;
+    }
+
+    @Override
+    public Mono<Integer> del(final String... keys) {
+        return Mono.defer(() -> Mono.fromFuture(asyncRedisCache.del(keys)));
+    }
+
+    @Override
+    public <E> Mono<E> get(final String key, final Class<E> clazz) {
+        return Mono.defer(() -> Mono.fromFuture(asyncRedisCache.get(key, clazz)));
+    }
+
+    @Override
+    public <E> Mono<Map<String, E>> mget(final Class<E> clazz, final String... keys) {
+        return Mono.defer(() -> Mono.fromFuture(asyncRedisCache.mget(clazz, keys)));
+    }
+
+    @Override
+    public <E> Mono<Integer> setEx(final String key, final E value, final int seconds) {
+        return Mono.defer(() -> Mono.fromFuture(asyncRedisCache.setEx(key, value, seconds)));
+    }
+
+    @Override
+    public <E> Mono<E> hget(final String key, final String field, final Class<E> clazz) {
+        return Mono.defer(() -> Mono.fromFuture(asyncRedisCache.hget(key, field, clazz)));
+    }
+
+    @Override
+    public <E> Mono<Map<String, E>> hgetAll(final String key, final Class<E> clazz) {
+        return Mono.defer(() -> Mono.fromFuture(asyncRedisCache.hgetAll(key, clazz)));
+    }
+
+    @Override
+    public Flux<String> zrange(final String key, final int start, final int stop) {
+        return Mono.defer(() -> Mono.fromFuture(asyncRedisCache.zrange(key, start, stop)))
+                .flatMapIterable(members -> members);
+    }
+}
@@ -1,17 +1,52 @@
 package com.nana.springdemo.redis.impl;
 
 
+import com.nana.springdemo.redis.ExpiringValue;
+import com.nana.springdemo.redis.IRedisBatch;
 import com.nana.springdemo.redis.IRedisCache;
 import com.nana.springdemo.redis.IRedisResourcePoolAdapter;
+import com.nana.springdemo.redis.IReplicaRedisResourcePoolAdapter;
+import com.nana.springdemo.redis.IShardedRedisResourcePoolAdapter;
+import com.nana.springdemo.redis.LatencyBudget;
+import com.nana.springdemo.redis.ReadConsistency;
+import com.nana.springdemo.redis.RedisCacheMetrics;
+import com.nana.springdemo.redis.RedisCircuitBreaker;
+import com.nana.springdemo.redis.RedisFuture;
+import com.nana.springdemo.redis.RedisKeyEncoder;
 import com.nana.springdemo.redis.serialize.IBinarySerializable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Client;
+import redis.clients.jedis.HostAndPort;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
 import redis.clients.jedis.Tuple;
+import redis.clients.jedis.exceptions.JedisAskDataException;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.exceptions.JedisMovedDataException;
+import redis.clients.jedis.exceptions.JedisRedirectionException;
+import redis.clients.util.SafeEncoder;
 
 import java.io.UnsupportedEncodingException;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 
 /**
@@ -23,29 +58,215 @@ public class RedisCacheImpl implements IRedisCache {
 
 
     private IRedisResourcePoolAdapter redisResourcePoolAdapter;
+    /**
+     * 分片连接池，非分片时为null
+     */
+    private IShardedRedisResourcePoolAdapter shardedAdapter;
+    private Executor shardExecutor;
+    /**
+     * 主从连接池，没有从节点时为null
+     */
+    private IReplicaRedisResourcePoolAdapter replicaAdapter;
+    private long readYourWritesNanos = TimeUnit.SECONDS.toNanos(1);
+    /**
+     * 熔断器，为null时不熔断
+     */
+    private volatile RedisCircuitBreaker circuitBreaker;
+    private volatile RedisCacheMetrics metrics;
     private IBinarySerializable binarySerializable;
+    private RedisKeyEncoder keyEncoder;
+    private Executor writeBackExecutor = newWriteBackExecutor();
+    private volatile AutoPipeliner autoPipeliner;
+
+    private static final int MAX_REDIRECTS = 5;
+
+    private static final String LOAD_LOCK_SUFFIX = ":load-lock";
+    private static final long LOAD_LOCK_POLL_MILLIS = 20;
+    /**
+     * 未开启加载锁时，进程内等待其他线程加载的最长时间
+     */
+    private static final long LOAD_WAIT_MILLIS = 3000;
+    private static final String UNLOCK_SCRIPT =
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end";
+    /**
+     * 空值标记：getOrLoad加载结果为null时写入，有效期内直接返回null不再加载。
+     * 路由序列化的值都以0xA_开头，压缩的值以0xB1开头，Kryo不会写出这种非规范的变长整数，不会和正常的值混淆
+     */
+    private static final byte[] NEGATIVE_MARKER = new byte[]{(byte) 0xC0, 0x00};
+    /**
+     * exists：值为空值标记的key按不存在处理。key可能是任意类型，只有字符串且长度相同时才比较内容
+     */
+    private static final byte[] EXISTS_SCRIPT = SafeEncoder.encode(
+            "if redis.call('exists', KEYS[1]) == 0 then return 0 end "
+            + "if redis.call('type', KEYS[1])['ok'] == 'string' and redis.call('strlen', KEYS[1]) == string.len(ARGV[1]) "
+            + "and redis.call('get', KEYS[1]) == ARGV[1] then return 0 end "
+            + "return 1");
+
+    /**
+     * 正在加载的key，用于合并同一个key的并发加载
+     */
+    private final ConcurrentHashMap<String, LoadingFuture> loadingFutures =
+            new ConcurrentHashMap<String, LoadingFuture>();
+    /**
+     * 加载耗时的指数移动平均，用于提前刷新
+     */
+    private volatile long loadNanosEwma;
+    private int loadLockMillis;
+    private double earlyRefreshBeta;
+    private int negativeTtlSeconds;
 
     public RedisCacheImpl(IRedisResourcePoolAdapter redisResourcePoolAdapter, IBinarySerializable binarySerializable) {
-        this.redisResourcePoolAdapter = redisResourcePoolAdapter;
+        this(redisResourcePoolAdapter, binarySerializable, new RedisKeyEncoder(0));
+    }
+
+    public RedisCacheImpl(IRedisResourcePoolAdapter redisResourcePoolAdapter, IBinarySerializable binarySerializable,
+                          RedisKeyEncoder keyEncoder) {
+        this.setRedisResourcePoolAdapter(redisResourcePoolAdapter);
         this.binarySerializable = binarySerializable;
+        this.keyEncoder = keyEncoder;
     }
 
     public void setRedisResourcePoolAdapter(
             IRedisResourcePoolAdapter redisResourcePoolAdapter) {
         this.redisResourcePoolAdapter = redisResourcePoolAdapter;
+        if (redisResourcePoolAdapter instanceof IShardedRedisResourcePoolAdapter) {
+            this.shardedAdapter = (IShardedRedisResourcePoolAdapter) redisResourcePoolAdapter;
+            if (shardExecutor == null) {
+                shardExecutor = newShardExecutor();
+            }
+        } else {
+            this.shardedAdapter = null;
+        }
+        if (redisResourcePoolAdapter instanceof IReplicaRedisResourcePoolAdapter) {
+            this.replicaAdapter = (IReplicaRedisResourcePoolAdapter) redisResourcePoolAdapter;
+        } else {
+            this.replicaAdapter = null;
+        }
+    }
+
+    /**
+     * 配置了从节点时，当前线程写命令之后多长时间内的读命令发到主节点
+     * @param readYourWritesMillis
+     */
+    public void setReadYourWritesMillis(int readYourWritesMillis) {
+        this.readYourWritesNanos = TimeUnit.MILLISECONDS.toNanos(readYourWritesMillis);
+    }
+
+    /**
+     * 设置熔断器，null时关闭熔断
+     * @param circuitBreaker
+     */
+    public void setCircuitBreaker(RedisCircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * 设置监控，null时关闭
+     * @param metrics
+     */
+    public void setMetrics(RedisCacheMetrics metrics) {
+        this.metrics = metrics;
     }
 
     public void setBinarySerializable(IBinarySerializable binarySerializable) {
         this.binarySerializable = binarySerializable;
     }
 
+    public void setKeyEncoder(RedisKeyEncoder keyEncoder) {
+        this.keyEncoder = keyEncoder;
+    }
+
+    /**
+     * 开启自动pipeline，常用的单条命令(见{@link IRedisBatch})排队合并发送，null时关闭
+     * @param autoPipeliner 用本对象的batch发送
+     */
+    public void setAutoPipeliner(AutoPipeliner autoPipeliner) {
+        this.autoPipeliner = autoPipeliner;
+    }
+
+    /**
+     * 设置读穿未命中时异步写回缓存的线程池
+     * @param writeBackExecutor
+     */
+    public void setWriteBackExecutor(Executor writeBackExecutor) {
+        this.writeBackExecutor = writeBackExecutor;
+    }
+
+    /**
+     * 设置跨节点加载锁的有效期，未命中时只有拿到锁的节点查库，<=0 时不加锁
+     * @param loadLockMillis
+     */
+    public void setLoadLockMillis(int loadLockMillis) {
+        this.loadLockMillis = loadLockMillis;
+    }
+
+    /**
+     * 设置提前刷新系数，越大越早刷新，<=0 时不提前刷新
+     * @param earlyRefreshBeta
+     */
+    public void setEarlyRefreshBeta(double earlyRefreshBeta) {
+        this.earlyRefreshBeta = earlyRefreshBeta;
+    }
+
+    /**
+     * 设置空值标记的有效期，加载结果为null时缓存空值标记，<=0 时不缓存空值
+     * @param negativeTtlSeconds
+     */
+    public void setNegativeTtlSeconds(int negativeTtlSeconds) {
+        this.negativeTtlSeconds = negativeTtlSeconds;
+    }
+
+    /**
+     * 默认写回线程池，队列满时丢弃最早的写回任务，写回失败只影响下一次命中
+     */
+    private static Executor newWriteBackExecutor() {
+        return new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(10000), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "redis-cache-write-back");
+                t.setDaemon(true);
+                return t;
+            }
+        }, new ThreadPoolExecutor.DiscardOldestPolicy());
+    }
+
+    /**
+     * 分片时多key命令按节点并行执行的线程池，线程用完时由调用线程执行
+     */
+    private static Executor newShardExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(16, 16, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "redis-cache-shard");
+                t.setDaemon(true);
+                return t;
+            }
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     private static interface RedisCmd<T> {
         public T run(Jedis jedis) throws UnsupportedEncodingException;
     }
 
+    /**
+     * 分片时对同一个slot的key追加一条命令
+     */
+    private static interface SlotCmd<T> {
+        /**
+         * @param pipeline 所在节点的pipeline
+         * @param slotKeys 同一个slot的key
+         * @return sync之后读取该命令的结果
+         */
+        public Supplier<T> append(Pipeline pipeline, String[] slotKeys);
+    }
+
     /**
      * 增加keys参数，异常的时候打印key，有利于问题排查
-     * 上边的方法得一个个的修改。。
+     * 分片时按第一个key选择节点，多个key必须在同一个slot
      *
      * @param runner
      * @param valueOfErr
@@ -54,14 +275,109 @@ public class RedisCacheImpl implements IRedisCache {
      * @return
      */
     public <T> T runCmd(RedisCmd<T> runner, T valueOfErr, String... keys) {
-        Jedis jedis = null;
+        if (replicaAdapter != null) {
+            ReadConsistency.markWrite();
+        }
+        return this.guard(runner, valueOfErr, keys, false);
+    }
+
+    public <T> T runCmd(RedisCmd<T> runner, T valueOfErr) {
+        return this.runCmd(runner, valueOfErr, null);
+    }
+
+    /**
+     * 自动pipeline执行写命令：命令在发送线程执行，写后读主节点的状态记在调用方线程
+     */
+    private <T> T pipelineWrite(Function<IRedisBatch, RedisFuture<T>> cmd, T valueOfErr) {
+        if (replicaAdapter != null) {
+            ReadConsistency.markWrite();
+        }
+        return autoPipeliner.execute(cmd, valueOfErr);
+    }
+
+    /**
+     * 只读命令，配置了从节点时发到从节点，从节点执行失败时再到主节点执行一次
+     * 当前线程刚写过或者在{@link ReadConsistency#fromMaster}中时直接读主节点
+     */
+    private <T> T runReadCmd(RedisCmd<T> runner, T valueOfErr, String... keys) {
+        return this.guard(runner, valueOfErr, keys,
+                replicaAdapter != null && !ReadConsistency.mustReadMaster(readYourWritesNanos));
+    }
+
+    /**
+     * 熔断和延迟预算：熔断器打开或者预算用完时直接返回异常值，否则执行命令并记录耗时和结果
+     * 调用方拿到异常值后按未命中处理，getOrLoad会直接查库
+     * 配置了监控时按命令所在的方法记录耗时、异常和序列化字节数，并采样热点key
+     */
+    private <T> T guard(RedisCmd<T> runner, T valueOfErr, String[] keys, boolean fromReplica) {
+        RedisCacheMetrics metrics = this.metrics;
+        RedisCacheMetrics.Operation operation = metrics != null ? metrics.operation(runner.getClass()) : null;
+        if (LatencyBudget.remainingMillis() == 0) {
+            if (operation != null) {
+                operation.recordRejected(RedisCacheMetrics.REJECTED_BUDGET);
+            }
+            return valueOfErr;
+        }
+        RedisCircuitBreaker breaker = this.circuitBreaker;
+        if (breaker != null && !breaker.tryAcquire()) {
+            if (operation != null) {
+                operation.recordRejected(RedisCacheMetrics.REJECTED_CIRCUIT_OPEN);
+            }
+            return valueOfErr;
+        }
+        RedisCacheMetrics.Operation prev = operation != null ? metrics.enter(operation, keys) : null;
+        long start = breaker != null || operation != null ? System.nanoTime() : 0;
+        Exception error = null;
         try {
-            jedis = redisResourcePoolAdapter.getResource();
-            return runner.run(jedis);
+            return fromReplica ? this.executeOnReplica(runner, keys) : this.execute(runner, keys);
         } catch (Exception e) {
-//            log.error("redis exception,keys:" + StringUtils.join(Arrays.asList(keys), ","), e);
-//            log.error("redis exception,keys:" + keys, e);
+            if (log.isDebugEnabled()) {
+                log.debug("redis exception,keys:" + Arrays.toString(keys), e);
+            }
+            error = e;
             return valueOfErr;
+        } finally {
+            long nanos = start != 0 ? System.nanoTime() - start : 0;
+            if (breaker != null) {
+                //Redis返回的错误不是Redis不可用，不计入失败
+                breaker.onResult(nanos, error instanceof JedisException && !(error instanceof JedisDataException));
+            }
+            if (operation != null) {
+                metrics.exit(prev);
+                operation.record(nanos, error);
+            }
+        }
+    }
+
+    /**
+     * 只有借不到连接或者连接异常(断开、读超时)时到主节点重试，
+     * Redis返回的错误和反序列化异常在主节点上结果相同，直接抛出
+     */
+    private <T> T executeOnReplica(RedisCmd<T> runner, String... keys) throws Exception {
+        Jedis jedis;
+        try {
+            jedis = replicaAdapter.getReadResource();
+        } catch (JedisException e) {
+            return this.execute(runner, keys);
+        }
+        try {
+            return this.run(jedis, runner);
+        } catch (JedisConnectionException e) {
+            //fall through
+        } finally {
+            jedis.close();
+        }
+        return this.execute(runner, keys);
+    }
+
+    private <T> T execute(RedisCmd<T> runner, String... keys) throws Exception {
+        if (shardedAdapter != null && keys != null && keys.length > 0) {
+            return runShardedCmd(runner, shardedAdapter.getSlot(keyEncoder.encode(keys[0])));
+        }
+        Jedis jedis = null;
+        try {
+            jedis = redisResourcePoolAdapter.getResource();
+            return this.run(jedis, runner);
         } finally {
             if (jedis != null) {
                 try {
@@ -74,143 +390,333 @@ public class RedisCacheImpl implements IRedisCache {
         }
     }
 
-    public <T> T runCmd(RedisCmd<T> runner, T valueOfErr) {
-        return this.runCmd(runner, valueOfErr, null);
+    /**
+     * 在slot所在节点执行，MOVED时更新slot表后重试，ASK时到目标节点先发ASKING再执行一次
+     */
+    private <T> T runShardedCmd(RedisCmd<T> runner, int slot) throws Exception {
+        HostAndPort askNode = null;
+        for (int i = 0; i < MAX_REDIRECTS; i++) {
+            Jedis jedis = null;
+            try {
+                if (askNode != null) {
+                    jedis = shardedAdapter.getResource(askNode);
+                    jedis.asking();
+                } else {
+                    jedis = shardedAdapter.getResourceBySlot(slot);
+                }
+                return this.run(jedis, runner);
+            } catch (JedisAskDataException e) {
+                askNode = e.getTargetNode();
+            } catch (JedisMovedDataException e) {
+                shardedAdapter.renewSlot(e.getSlot(), e.getTargetNode());
+                askNode = null;
+            } finally {
+                if (jedis != null) {
+                    jedis.close();
+                }
+            }
+        }
+        throw new JedisDataException("too many redirections, slot " + slot);
+    }
+
+    /**
+     * 有延迟预算时把连接的读超时临时改成剩余时间
+     * 连接出错时直接断开，否则连接池销毁连接时发送QUIT，Redis卡住时还要再等一个读超时
+     */
+    private <T> T run(Jedis jedis, RedisCmd<T> runner) throws UnsupportedEncodingException {
+        int budget = LatencyBudget.remainingMillis();
+        Client client = jedis.getClient();
+        int soTimeout = client.getSoTimeout();
+        boolean limited = budget >= 0 && (soTimeout <= 0 || budget < soTimeout);
+        try {
+            if (limited) {
+                //连接池可能借出还没有建立连接的Jedis，socket为null时rollbackTimeout会NPE
+                client.connect();
+                client.setSoTimeout(Math.max(1, budget));
+                client.rollbackTimeout();
+            }
+            return runner.run(jedis);
+        } finally {
+            if (limited) {
+                client.setSoTimeout(soTimeout);
+            }
+            if (client.isBroken()) {
+                client.disconnect();
+            } else if (limited) {
+                client.rollbackTimeout();
+            }
+        }
+    }
+
+    /**
+     * 分片时的多key命令：key按所在节点分组，每个节点一个pipeline，同一个slot的key合并成一条命令，各节点并行执行
+     * <p>
+     * 节点的pipeline中某些slot收到MOVED/ASK(slot已经迁走或正在迁移)时，只把这些slot按runShardedCmd的方式单独重试，
+     * 其他slot的结果照常使用；仍失败时整体返回失败，下次调用使用更新后的slot表
+     * @param keys
+     * @param cmd
+     * @return 各slot命令的结果，任一节点失败时返回null
+     */
+    private <T> List<T> runSlotCmd(String[] keys, final SlotCmd<T> cmd) {
+        Map<HostAndPort, Map<Integer, List<String>>> nodeSlotKeys = new HashMap<HostAndPort, Map<Integer, List<String>>>();
+        for (String key : keys) {
+            int slot = shardedAdapter.getSlot(keyEncoder.encode(key));
+            HostAndPort node = shardedAdapter.getNode(slot);
+            Map<Integer, List<String>> slotKeys = nodeSlotKeys.get(node);
+            if (slotKeys == null) {
+                slotKeys = new HashMap<Integer, List<String>>();
+                nodeSlotKeys.put(node, slotKeys);
+            }
+            List<String> list = slotKeys.get(slot);
+            if (list == null) {
+                list = new ArrayList<String>();
+                slotKeys.put(slot, list);
+            }
+            list.add(key);
+        }
+        List<CompletableFuture<List<T>>> futures = new ArrayList<CompletableFuture<List<T>>>();
+        List<T> local = null;
+        for (final Map<Integer, List<String>> slotKeys : nodeSlotKeys.values()) {
+            if (local == null && futures.size() == nodeSlotKeys.size() - 1) {
+                //最后一个节点在调用线程执行
+                local = runNodeSlotCmd(slotKeys, cmd);
+                if (local == null) {
+                    return null;
+                }
+            } else {
+                futures.add(CompletableFuture.supplyAsync(() -> runNodeSlotCmd(slotKeys, cmd), shardExecutor));
+            }
+        }
+        List<T> ret = new ArrayList<T>(local);
+        for (CompletableFuture<List<T>> future : futures) {
+            List<T> part = future.join();
+            if (part == null) {
+                return null;
+            }
+            ret.addAll(part);
+        }
+        return ret;
+    }
+
+    private <T> List<T> runNodeSlotCmd(final Map<Integer, List<String>> slotKeys, final SlotCmd<T> cmd) {
+        final List<String[]> slotKeyList = new ArrayList<String[]>(slotKeys.size());
+        for (List<String> keys : slotKeys.values()) {
+            slotKeyList.add(keys.toArray(new String[keys.size()]));
+        }
+        final List<Integer> redirected = new ArrayList<Integer>();
+        List<T> ret = this.runCmd(new RedisCmd<List<T>>() {
+            public List<T> run(Jedis jedis) {
+                redirected.clear();
+                Pipeline pipeline = jedis.pipelined();
+                List<Supplier<T>> suppliers = new ArrayList<Supplier<T>>(slotKeyList.size());
+                try {
+                    for (String[] keys : slotKeyList) {
+                        suppliers.add(cmd.append(pipeline, keys));
+                    }
+                } finally {
+                    pipeline.sync();
+                }
+                List<T> ret = new ArrayList<T>(suppliers.size());
+                for (int i = 0; i < suppliers.size(); i++) {
+                    try {
+                        ret.add(suppliers.get(i).get());
+                    } catch (JedisRedirectionException e) {
+                        //迁移通常一次影响很多slot，只按第一个MOVED拉取一次slot表
+                        if (e instanceof JedisMovedDataException && redirected.isEmpty()) {
+                            shardedAdapter.renewSlot(e.getSlot(), e.getTargetNode());
+                        }
+                        redirected.add(i);
+                        ret.add(null);
+                    }
+                }
+                return ret;
+            }
+        }, null, slotKeyList.get(0)[0]);
+        if (ret == null) {
+            return null;
+        }
+        for (int i : redirected) {
+            T part = runSingleSlotCmd(slotKeyList.get(i), cmd);
+            if (part == null) {
+                return null;
+            }
+            ret.set(i, part);
+        }
+        return ret;
+    }
+
+    /**
+     * 单个slot的命令，按slot路由，重定向由runShardedCmd处理
+     */
+    private <T> T runSingleSlotCmd(final String[] keys, final SlotCmd<T> cmd) {
+        return this.runCmd(new RedisCmd<T>() {
+            public T run(Jedis jedis) {
+                Pipeline pipeline = jedis.pipelined();
+                Supplier<T> supplier;
+                try {
+                    supplier = cmd.append(pipeline, keys);
+                } finally {
+                    pipeline.sync();
+                }
+                return supplier.get();
+            }
+        }, null, keys[0]);
     }
 
     @Override
     public int del(final String... keys) {
+        if (autoPipeliner != null) {
+            return pipelineWrite(b -> b.del(keys), -1);
+        }
+        if (shardedAdapter != null && keys.length > 1) {
+            List<Long> counts = runSlotCmd(keys, new SlotCmd<Long>() {
+                public Supplier<Long> append(Pipeline pipeline, String[] slotKeys) {
+                    final Response<Long> response = pipeline.del(keyEncoder.names(slotKeys));
+                    return () -> response.get();
+                }
+            });
+            return counts == null ? -1 : (int) sum(counts);
+        }
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.del(keys).intValue();
+                return jedis.del(keyEncoder.names(keys)).intValue();
             }
-        }, -1);
+        }, -1, keys);
     }
 
     @Override
     public int exists(final String key) {
-        return this.runCmd(new RedisCmd<Integer>() {
+        if (autoPipeliner != null) {
+            return autoPipeliner.execute(b -> b.exists(key), -1);
+        }
+        return this.runReadCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.exists(key) ? 1 : 0;
+                return ((Long) jedis.eval(EXISTS_SCRIPT, 1, keyEncoder.encode(key), NEGATIVE_MARKER)).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public int expire(final String key, final int seconds) {
+        if (autoPipeliner != null) {
+            return pipelineWrite(b -> b.expire(key, seconds), -1);
+        }
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.expire(key, seconds).intValue();
+                return jedis.expire(keyEncoder.name(key), seconds).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public int pexpire(final String key, final long miliSeconds) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.pexpire(key, miliSeconds).intValue();
+                return jedis.pexpire(keyEncoder.name(key), miliSeconds).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public int expireAt(final String key, final long unixTime) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.expireAt(key, unixTime).intValue();
+                return jedis.expireAt(keyEncoder.name(key), unixTime).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public int pexpireAt(final String key, final long miliUnixTime) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.pexpireAt(key, miliUnixTime).intValue();
+                return jedis.pexpireAt(keyEncoder.name(key), miliUnixTime).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public int persist(final String key) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.persist(key).intValue();
+                return jedis.persist(keyEncoder.name(key)).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public int ttl(final String key) {
-        return this.runCmd(new RedisCmd<Integer>() {
+        return this.runReadCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.ttl(key).intValue();
+                return jedis.ttl(keyEncoder.name(key)).intValue();
             }
-        }, -3);
+        }, -3, key);
     }
 
     @Override
     public long pttl(final String key) {
-        return this.runCmd(new RedisCmd<Long>() {
+        return this.runReadCmd(new RedisCmd<Long>() {
             public Long run(Jedis jedis) {
-                return jedis.pttl(key);
+                return jedis.pttl(keyEncoder.name(key));
             }
-        }, -3L);
+        }, -3L, key);
     }
 
     @Override
     public int append(final String key, final String value) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.append(key, value).intValue();
+                return jedis.append(keyEncoder.name(key), value).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public long decr(final String key, long valueOfErr) {
         return this.runCmd(new RedisCmd<Long>() {
             public Long run(Jedis jedis) {
-                return jedis.decr(key);
+                return jedis.decr(keyEncoder.name(key));
             }
-        }, valueOfErr);
+        }, valueOfErr, key);
     }
 
     @Override
     public long decrBy(final String key, final long byValue, long valueOfErr) {
         return this.runCmd(new RedisCmd<Long>() {
             public Long run(Jedis jedis) {
-                return jedis.decrBy(key, byValue);
+                return jedis.decrBy(keyEncoder.name(key), byValue);
             }
-        }, valueOfErr);
+        }, valueOfErr, key);
     }
 
     @Override
     public long incr(final String key, long valueOfErr) {
         return this.runCmd(new RedisCmd<Long>() {
             public Long run(Jedis jedis) {
-                return jedis.incr(key);
+                return jedis.incr(keyEncoder.name(key));
             }
-        }, valueOfErr);
+        }, valueOfErr, key);
     }
 
     @Override
     public long incrBy(final String key, final long byValue, long valueOfErr) {
         return this.runCmd(new RedisCmd<Long>() {
             public Long run(Jedis jedis) {
-                return jedis.incrBy(key, byValue);
+                return jedis.incrBy(keyEncoder.name(key), byValue);
             }
-        }, valueOfErr);
+        }, valueOfErr, key);
     }
 
     @Override
     public String getString(final String key, String valueOfErr) {
-        return this.runCmd(new RedisCmd<String>() {
+        if (autoPipeliner != null) {
+            return autoPipeliner.execute(b -> b.getString(key), valueOfErr);
+        }
+        return this.runReadCmd(new RedisCmd<String>() {
             public String run(Jedis jedis) {
-                return jedis.get(key);
+                return jedis.get(keyEncoder.name(key));
             }
-        }, valueOfErr);
+        }, valueOfErr, key);
     }
 
     @Override
@@ -220,9 +726,9 @@ public class RedisCacheImpl implements IRedisCache {
 
     @Override
     public long getLong(final String key, final long valueOfNotExist, long valueOfErr) {
-        return this.runCmd(new RedisCmd<Long>() {
+        return this.runReadCmd(new RedisCmd<Long>() {
             public Long run(Jedis jedis) {
-                String s = jedis.get(key);
+                String s = jedis.get(keyEncoder.name(key));
                 if (s == null || s.length() == 0) {
                     return valueOfNotExist;
                 } else {
@@ -235,7 +741,7 @@ public class RedisCacheImpl implements IRedisCache {
                     return valueOfErr;
                 }
             }
-        }, valueOfErr);
+        }, valueOfErr, key);
     }
 
     @Override
@@ -245,15 +751,18 @@ public class RedisCacheImpl implements IRedisCache {
 
     @Override
     public <E> E get(final String key, final Class<E> clazz, E valueOfErr) {
-        return this.runCmd(new RedisCmd<E>() {
+        if (autoPipeliner != null) {
+            return autoPipeliner.execute(b -> b.get(key, clazz), valueOfErr);
+        }
+        return this.runReadCmd(new RedisCmd<E>() {
             public E run(Jedis jedis) {
-                byte[] data = jedis.get(key.getBytes());
-                if (data != null) {
+                byte[] data = jedis.get(keyEncoder.encode(key));
+                if (data != null && !isNegative(data)) {
                     return binarySerializable.toObject(data, clazz);
                 }
                 return null;
             }
-        }, valueOfErr);
+        }, valueOfErr, key);
     }
 
     @Override
@@ -261,13 +770,289 @@ public class RedisCacheImpl implements IRedisCache {
         return this.get(key, clazz, null);
     }
 
+    @Override
+    public <E> E getOrLoad(final String key, final Class<E> clazz, final int seconds, final Supplier<E> loader) {
+        return this.loadThrough(key, clazz, seconds, loader, false).getValue();
+    }
+
+    @Override
+    public <E> ExpiringValue<E> getOrLoadWithPttl(String key, Class<E> clazz, int seconds, Supplier<E> loader) {
+        return this.loadThrough(key, clazz, seconds, loader, true);
+    }
+
+    /**
+     * 读穿，withPttl为false且未开启提前刷新时只有一次GET，返回的过期时间无意义
+     */
+    private <E> ExpiringValue<E> loadThrough(String key, Class<E> clazz, int seconds, Supplier<E> loader,
+                                             boolean withPttl) {
+        boolean earlyRefresh = earlyRefreshBeta > 0;
+        CachedValue<E> cached = this.getCached(key, clazz, withPttl || earlyRefresh);
+        if (cached.negative) {
+            return new ExpiringValue<E>(null, -2);
+        }
+        if (cached.value != null) {
+            if (earlyRefresh && shouldRefreshEarly(cached.pttl)) {
+                refreshAsync(key, clazz, seconds, loader);
+            }
+            return new ExpiringValue<E>(cached.value, cached.pttl);
+        }
+        E value = loadSingleFlight(key, clazz, seconds, loader, false);
+        return new ExpiringValue<E>(value, value == null ? -2 : TimeUnit.SECONDS.toMillis(seconds));
+    }
+
+    /**
+     * 取值并识别空值标记，withPttl为true时一次往返同时取剩余过期时间
+     */
+    private <E> CachedValue<E> getCached(final String key, final Class<E> clazz, final boolean withPttl) {
+        return this.runReadCmd(new RedisCmd<CachedValue<E>>() {
+            public CachedValue<E> run(Jedis jedis) {
+                byte[] keyBytes = keyEncoder.encode(key);
+                byte[] data;
+                long pttl = -1;
+                if (withPttl) {
+                    Pipeline pipeline = jedis.pipelined();
+                    Response<byte[]> dataResp = pipeline.get(keyBytes);
+                    Response<Long> pttlResp = pipeline.pttl(keyBytes);
+                    pipeline.sync();
+                    data = dataResp.get();
+                    pttl = pttlResp.get();
+                } else {
+                    data = jedis.get(keyBytes);
+                }
+                if (data == null) {
+                    return new CachedValue<E>(null, -2, false);
+                }
+                if (isNegative(data)) {
+                    return new CachedValue<E>(null, pttl, true);
+                }
+                return new CachedValue<E>(binarySerializable.toObject(data, clazz), pttl, false);
+            }
+        }, new CachedValue<E>(null, -3, false), key);
+    }
+
+    /**
+     * 是否为getOrLoad写入的空值标记，同包的其他实现读取时也需要识别
+     */
+    static boolean isNegative(byte[] data) {
+        return Arrays.equals(data, NEGATIVE_MARKER);
+    }
+
+    /**
+     * 概率提前刷新(XFetch)：越接近过期、加载越慢，越可能提前刷新
+     * @param pttl 剩余过期时间(毫秒)
+     */
+    private boolean shouldRefreshEarly(long pttl) {
+        if (pttl < 0) {
+            return false;
+        }
+        double loadMillis = Math.max(loadNanosEwma / 1000000.0, 1.0);
+        return -loadMillis * earlyRefreshBeta * Math.log(ThreadLocalRandom.current().nextDouble()) >= pttl;
+    }
+
+    private <E> void refreshAsync(final String key, final Class<E> clazz, final int seconds, final Supplier<E> loader) {
+        if (loadingFutures.containsKey(key)) {
+            return;
+        }
+        writeBackExecutor.execute(new Runnable() {
+            public void run() {
+                try {
+                    loadSingleFlight(key, clazz, seconds, loader, true);
+                } catch (Exception e) {
+                    log.error("redis early refresh error,key:{}", key, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * 同一个key在本进程内同时只有一个加载，其他调用方等待同一个结果
+     * <p>
+     * 等待时间不超过loadLockMillis(未开启加载锁时为LOAD_WAIT_MILLIS)，超时后自己加载，
+     * 加载线程卡住时不会拖住所有等待的线程
+     */
+    private <E> E loadSingleFlight(String key, Class<E> clazz, int seconds, Supplier<E> loader, boolean refresh) {
+        LoadingFuture future = new LoadingFuture(refresh);
+        LoadingFuture loading = loadingFutures.putIfAbsent(key, future);
+        if (loading != null) {
+            if (refresh) {
+                return null;
+            }
+            Object value;
+            try {
+                value = await(loading, loadLockMillis > 0 ? loadLockMillis : LOAD_WAIT_MILLIS);
+            } catch (TimeoutException e) {
+                log.warn("redis cache load wait timeout, load directly,key:{}", key);
+                E loaded = timedLoad(loader);
+                writeBackAsync(key, loaded, seconds);
+                return loaded;
+            }
+            if (value == null && loading.refresh) {
+                //提前刷新没有拿到锁时不会加载，这里自己加载
+                return loadWithLock(key, clazz, seconds, loader, false);
+            }
+            return clazz.cast(value);
+        }
+        try {
+            E value = loadWithLock(key, clazz, seconds, loader, refresh);
+            future.complete(value);
+            return value;
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+            throw t;
+        } finally {
+            loadingFutures.remove(key, future);
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> future, long timeoutMillis) throws TimeoutException {
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for cache load", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * 开启loadLockMillis时用redis锁协调多个节点，只有拿到锁的节点加载并同步写回，
+     * 其他节点在锁的有效期内轮询缓存，超时或者延迟预算用完后自己加载
+     */
+    private <E> E loadWithLock(String key, Class<E> clazz, int seconds, Supplier<E> loader, boolean refresh) {
+        if (loadLockMillis <= 0) {
+            E value = timedLoad(loader);
+            if (refresh) {
+                writeBack(key, value, seconds);
+            } else {
+                writeBackAsync(key, value, seconds);
+            }
+            return value;
+        }
+        String lockKey = key + LOAD_LOCK_SUFFIX;
+        String token = UUID.randomUUID().toString();
+        if (tryLock(lockKey, token)) {
+            try {
+                E value = timedLoad(loader);
+                writeBack(key, value, seconds);
+                return value;
+            } finally {
+                unlock(lockKey, token);
+            }
+        }
+        if (refresh) {
+            return null;
+        }
+        long deadline = System.currentTimeMillis() + loadLockMillis;
+        while (System.currentTimeMillis() < deadline) {
+            int budget = LatencyBudget.remainingMillis();
+            if (budget == 0) {
+                //延迟预算用完，不再等其他节点，直接加载
+                break;
+            }
+            try {
+                Thread.sleep(budget > 0 ? Math.min(budget, LOAD_LOCK_POLL_MILLIS) : LOAD_LOCK_POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            //等其他线程加载写回，读主节点，不受复制延迟影响
+            CachedValue<E> cached = ReadConsistency.fromMaster(() -> this.getCached(key, clazz, false));
+            if (cached.negative) {
+                return null;
+            }
+            if (cached.value != null) {
+                return cached.value;
+            }
+        }
+        E value = timedLoad(loader);
+        writeBackAsync(key, value, seconds);
+        return value;
+    }
+
+    /**
+     * 加载不是Redis命令，不消耗延迟预算
+     */
+    private <E> E timedLoad(Supplier<E> loader) {
+        long start = System.nanoTime();
+        try {
+            return LatencyBudget.suspend(loader);
+        } finally {
+            long cost = System.nanoTime() - start;
+            long ewma = loadNanosEwma;
+            loadNanosEwma = ewma == 0 ? cost : (ewma * 7 + cost) / 8;
+        }
+    }
+
+    /**
+     * 写回不受延迟预算限制，加载的结果一定写入缓存
+     */
+    private <E> void writeBack(final String key, final E value, final int seconds) {
+        LatencyBudget.suspend(() -> {
+            if (value != null) {
+                setEx(key, value, seconds);
+            } else if (negativeTtlSeconds > 0) {
+                setNegative(key);
+            }
+            return null;
+        });
+    }
+
+    private <E> void writeBackAsync(final String key, final E value, final int seconds) {
+        if (value == null && negativeTtlSeconds <= 0) {
+            return;
+        }
+        writeBackExecutor.execute(new Runnable() {
+            public void run() {
+                writeBack(key, value, seconds);
+            }
+        });
+    }
+
+    private void setNegative(final String key) {
+        this.runCmd(new RedisCmd<String>() {
+            public String run(Jedis jedis) {
+                return jedis.setex(keyEncoder.encode(key), negativeTtlSeconds, NEGATIVE_MARKER);
+            }
+        }, null, key);
+    }
+
+    /**
+     * redis异常时视为拿到锁，直接加载
+     */
+    private boolean tryLock(final String lockKey, final String token) {
+        return this.runCmd(new RedisCmd<Boolean>() {
+            public Boolean run(Jedis jedis) {
+                return "OK".equals(jedis.set(keyEncoder.name(lockKey), token, "NX", "PX", loadLockMillis));
+            }
+        }, Boolean.TRUE, lockKey);
+    }
+
+    /**
+     * 解锁不受延迟预算限制，避免锁残留到过期、其他节点一直轮询
+     */
+    private void unlock(final String lockKey, final String token) {
+        LatencyBudget.suspend(() -> this.runCmd(new RedisCmd<Object>() {
+            public Object run(Jedis jedis) {
+                return jedis.eval(UNLOCK_SCRIPT, 1, keyEncoder.name(lockKey), token);
+            }
+        }, null, lockKey));
+    }
+
     @Override
     public String getSetString(final String key, final String value, String valueOfErr) {
         return this.runCmd(new RedisCmd<String>() {
             public String run(Jedis jedis) {
-                return jedis.getSet(key, value);
+                return jedis.getSet(keyEncoder.name(key), value);
             }
-        }, valueOfErr);
+        }, valueOfErr, key);
     }
 
     @Override
@@ -294,10 +1079,10 @@ public class RedisCacheImpl implements IRedisCache {
         return this.runCmd(new RedisCmd<E>() {
             public E run(Jedis jedis) {
                 byte[] iData = binarySerializable.toBinary(value);
-                byte[] oData = jedis.getSet(key.getBytes(), iData);
+                byte[] oData = jedis.getSet(keyEncoder.encode(key), iData);
                 return binarySerializable.toObject(oData, clazz);
             }
-        }, valueOfErr);
+        }, valueOfErr, key);
     }
 
     @Override
@@ -310,39 +1095,115 @@ public class RedisCacheImpl implements IRedisCache {
         if (keys == null || keys.length == 0) {
             return null;
         }
-        return this.runCmd(new RedisCmd<Map<String, String>>() {
+        if (shardedAdapter != null && keys.length > 1) {
+            return mergeMaps(runSlotCmd(keys, new SlotCmd<Map<String, String>>() {
+                public Supplier<Map<String, String>> append(Pipeline pipeline, final String[] slotKeys) {
+                    final Response<List<String>> response = pipeline.mget(keyEncoder.names(slotKeys));
+                    return () -> transforKeyArrStringListToStringMap(slotKeys, response.get());
+                }
+            }));
+        }
+        return this.runReadCmd(new RedisCmd<Map<String, String>>() {
             public Map<String, String> run(Jedis jedis) {
-                List<String> list = jedis.mget(keys);
+                List<String> list = jedis.mget(keyEncoder.names(keys));
                 return transforKeyArrStringListToStringMap(keys, list);
             }
-        }, null);
+        }, null, keys);
+    }
+
+    @Override
+    public Map<String, Long> mgetLong(final String... keys) {
+        if (keys == null || keys.length == 0) {
+            return null;
+        }
+        if (shardedAdapter != null && keys.length > 1) {
+            return mergeMaps(runSlotCmd(keys, new SlotCmd<Map<String, Long>>() {
+                public Supplier<Map<String, Long>> append(Pipeline pipeline, final String[] slotKeys) {
+                    final Response<List<String>> response = pipeline.mget(keyEncoder.names(slotKeys));
+                    return () -> transforKeyArrValueListToLongMap(slotKeys, response.get());
+                }
+            }));
+        }
+        return this.runReadCmd(new RedisCmd<Map<String, Long>>() {
+            public Map<String, Long> run(Jedis jedis) {
+                List<String> list = jedis.mget(keyEncoder.names(keys));
+                return transforKeyArrValueListToLongMap(keys, list);
+            }
+        }, null, keys);
+    }
+
+    @Override
+    public <E> Map<String, E> mget(final Class<E> clazz, final String... keys) {
+        if (keys == null || keys.length == 0) {
+            return null;
+        }
+        if (autoPipeliner != null) {
+            return autoPipeliner.execute(b -> b.mget(clazz, keys), null);
+        }
+        if (shardedAdapter != null && keys.length > 1) {
+            return mergeMaps(runSlotCmd(keys, new SlotCmd<Map<String, E>>() {
+                public Supplier<Map<String, E>> append(Pipeline pipeline, final String[] slotKeys) {
+                    final Response<List<byte[]>> response = pipeline.mget(transforStringArrayToByte(slotKeys));
+                    return () -> transforKeyArrValueListToObjMap(slotKeys, response.get(), clazz);
+                }
+            }));
+        }
+
+        return this.runReadCmd(new RedisCmd<Map<String, E>>() {
+            public Map<String, E> run(Jedis jedis) {
+                byte[][] byteKeys = transforStringArrayToByte(keys);
+                List<byte[]> retBytes = jedis.mget(byteKeys);
+                return transforKeyArrValueListToObjMap(keys, retBytes, clazz);
+            }
+        }, null, keys);
     }
 
     @Override
-    public Map<String, Long> mgetLong(final String... keys) {
-        if (keys == null || keys.length == 0) {
+    public <E> ExpiringValue<E> getWithPttl(final String key, final Class<E> clazz) {
+        CachedValue<E> cached = this.getCached(key, clazz, true);
+        if (cached.pttl == -3) {
             return null;
         }
-        return this.runCmd(new RedisCmd<Map<String, Long>>() {
-            public Map<String, Long> run(Jedis jedis) {
-                List<String> list = jedis.mget(keys);
-                return transforKeyArrValueListToLongMap(keys, list);
-            }
-        }, null);
+        return cached.value == null ? new ExpiringValue<E>(null, -2, cached.negative) : new ExpiringValue<E>(cached.value, cached.pttl);
     }
 
     @Override
-    public <E> Map<String, E> mget(final Class<E> clazz, final String... keys) {
+    public <E> Map<String, ExpiringValue<E>> mgetWithPttl(final Class<E> clazz, final String... keys) {
         if (keys == null || keys.length == 0) {
             return null;
         }
-        return this.runCmd(new RedisCmd<Map<String, E>>() {
-            public Map<String, E> run(Jedis jedis) {
-                byte[][] byteKeys = transforStringArrayToByte(keys);
-                List<byte[]> retBytes = jedis.mget(byteKeys);
-                return transforKeyArrValueListToObjMap(keys, retBytes, clazz);
+        final SlotCmd<Map<String, ExpiringValue<E>>> cmd = new SlotCmd<Map<String, ExpiringValue<E>>>() {
+            public Supplier<Map<String, ExpiringValue<E>>> append(Pipeline pipeline, final String[] slotKeys) {
+                final byte[][] byteKeys = transforStringArrayToByte(slotKeys);
+                final Response<List<byte[]>> values = pipeline.mget(byteKeys);
+                final List<Response<Long>> pttls = new ArrayList<Response<Long>>(byteKeys.length);
+                for (byte[] byteKey : byteKeys) {
+                    pttls.add(pipeline.pttl(byteKey));
+                }
+                return () -> {
+                    Map<String, ExpiringValue<E>> ret = new HashMap<String, ExpiringValue<E>>();
+                    List<byte[]> list = values.get();
+                    for (int i = 0; i < slotKeys.length; i++) {
+                        byte[] bs = list.get(i);
+                        ret.put(slotKeys[i], bs == null || isNegative(bs) ? new ExpiringValue<E>(null, -2, bs != null)
+                                : new ExpiringValue<E>(binarySerializable.toObject(bs, clazz), pttls.get(i).get()));
+                    }
+                    return ret;
+                };
             }
-        }, null);
+        };
+        if (shardedAdapter != null && keys.length > 1) {
+            return mergeMaps(runSlotCmd(keys, cmd));
+        }
+
+        return this.runReadCmd(new RedisCmd<Map<String, ExpiringValue<E>>>() {
+            public Map<String, ExpiringValue<E>> run(Jedis jedis) {
+                Pipeline pipeline = jedis.pipelined();
+                Supplier<Map<String, ExpiringValue<E>>> result = cmd.append(pipeline, keys);
+                pipeline.sync();
+                return result.get();
+            }
+        }, null, keys);
     }
 
     @Override
@@ -350,12 +1211,21 @@ public class RedisCacheImpl implements IRedisCache {
         if (keyValues == null || keyValues.isEmpty()) {
             return 0;
         }
+        if (shardedAdapter != null && keyValues.size() > 1) {
+            List<String> oks = runSlotCmd(keyValues.keySet().toArray(new String[keyValues.size()]), new SlotCmd<String>() {
+                public Supplier<String> append(Pipeline pipeline, String[] slotKeys) {
+                    final Response<String> response = pipeline.mset(transforStringMapToStringArr(subMap(keyValues, slotKeys)));
+                    return () -> response.get();
+                }
+            });
+            return oks == null ? -1 : 0;
+        }
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
                 jedis.mset(transforStringMapToStringArr(keyValues));
                 return 0;
             }
-        }, -1);
+        }, -1, firstKey(keyValues));
     }
 
     @Override
@@ -363,12 +1233,21 @@ public class RedisCacheImpl implements IRedisCache {
         if (keyValues == null || keyValues.isEmpty()) {
             return 0;
         }
+        if (shardedAdapter != null && keyValues.size() > 1) {
+            List<String> oks = runSlotCmd(keyValues.keySet().toArray(new String[keyValues.size()]), new SlotCmd<String>() {
+                public Supplier<String> append(Pipeline pipeline, String[] slotKeys) {
+                    final Response<String> response = pipeline.mset(transforLongMapToStringArr(subMap(keyValues, slotKeys)));
+                    return () -> response.get();
+                }
+            });
+            return oks == null ? -1 : 0;
+        }
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
                 jedis.mset(transforLongMapToStringArr(keyValues));
                 return 0;
             }
-        }, -1);
+        }, -1, firstKey(keyValues));
     }
 
     @Override
@@ -376,12 +1255,21 @@ public class RedisCacheImpl implements IRedisCache {
         if (keyValues == null || keyValues.isEmpty()) {
             return 0;
         }
+        if (shardedAdapter != null && keyValues.size() > 1) {
+            List<String> oks = runSlotCmd(keyValues.keySet().toArray(new String[keyValues.size()]), new SlotCmd<String>() {
+                public Supplier<String> append(Pipeline pipeline, String[] slotKeys) {
+                    final Response<String> response = pipeline.mset(transforObjMapToBytesArr(subMap(keyValues, slotKeys)));
+                    return () -> response.get();
+                }
+            });
+            return oks == null ? -1 : 0;
+        }
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
                 jedis.mset(transforObjMapToBytesArr(keyValues));
                 return 0;
             }
-        }, -1);
+        }, -1, firstKey(keyValues));
     }
 
     @Override
@@ -389,11 +1277,15 @@ public class RedisCacheImpl implements IRedisCache {
         if (keyValues == null || keyValues.isEmpty()) {
             return 0;
         }
+        if (shardedAdapter != null && !inSameSlot(keyValues.keySet())) {
+            //msetnx的原子性不能跨节点保证，分片时key必须在同一个slot(用{hashtag})
+            return -1;
+        }
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
                 return jedis.msetnx(transforStringMapToStringArr(keyValues)).intValue();
             }
-        }, -1);
+        }, -1, firstKey(keyValues));
     }
 
     @Override
@@ -401,11 +1293,15 @@ public class RedisCacheImpl implements IRedisCache {
         if (keyValues == null || keyValues.isEmpty()) {
             return 0;
         }
+        if (shardedAdapter != null && !inSameSlot(keyValues.keySet())) {
+            //msetnx的原子性不能跨节点保证，分片时key必须在同一个slot(用{hashtag})
+            return -1;
+        }
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
                 return jedis.msetnx(transforLongMapToStringArr(keyValues)).intValue();
             }
-        }, -1);
+        }, -1, firstKey(keyValues));
     }
 
     @Override
@@ -413,21 +1309,25 @@ public class RedisCacheImpl implements IRedisCache {
         if (keyValues == null || keyValues.isEmpty()) {
             return 0;
         }
+        if (shardedAdapter != null && !inSameSlot(keyValues.keySet())) {
+            //msetnx的原子性不能跨节点保证，分片时key必须在同一个slot(用{hashtag})
+            return -1;
+        }
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
                 return jedis.msetnx(transforObjMapToBytesArr(keyValues)).intValue();
             }
-        }, -1);
+        }, -1, firstKey(keyValues));
     }
 
     @Override
     public int psetEx(final String key, final String value, final int milliSeconds) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                jedis.psetex(key, milliSeconds, value);
+                jedis.psetex(keyEncoder.name(key), milliSeconds, value);
                 return 0;
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
@@ -439,20 +1339,20 @@ public class RedisCacheImpl implements IRedisCache {
     public <E> int psetEx(final String key, final E value, final int milliSeconds) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                jedis.psetex(key.getBytes(), milliSeconds, binarySerializable.toBinary(value));
+                jedis.psetex(keyEncoder.encode(key), milliSeconds, binarySerializable.toBinary(value));
                 return 0;
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public int set(final String key, final String value) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                jedis.set(key, value);
+                jedis.set(keyEncoder.name(key), value);
                 return 0;
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
@@ -462,22 +1362,28 @@ public class RedisCacheImpl implements IRedisCache {
 
     @Override
     public <E> int set(final String key, final E value) {
+        if (autoPipeliner != null) {
+            return pipelineWrite(b -> b.set(key, value), -1);
+        }
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                jedis.set(key.getBytes(), binarySerializable.toBinary(value));
+                jedis.set(keyEncoder.encode(key), binarySerializable.toBinary(value));
                 return 0;
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public int setEx(final String key, final String value, final int seconds) {
+        if (autoPipeliner != null) {
+            return pipelineWrite(b -> b.setEx(key, value, seconds), -1);
+        }
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                jedis.setex(key, seconds, value);
+                jedis.setex(keyEncoder.name(key), seconds, value);
                 return 0;
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
@@ -487,21 +1393,24 @@ public class RedisCacheImpl implements IRedisCache {
 
     @Override
     public <E> int setEx(final String key, final E value, final int seconds) {
+        if (autoPipeliner != null) {
+            return pipelineWrite(b -> b.setEx(key, value, seconds), -1);
+        }
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                jedis.setex(key.getBytes(), seconds, binarySerializable.toBinary(value));
+                jedis.setex(keyEncoder.encode(key), seconds, binarySerializable.toBinary(value));
                 return 0;
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public int setNx(final String key, final String value) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.setnx(key, value).intValue();
+                return jedis.setnx(keyEncoder.name(key), value).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
@@ -513,36 +1422,39 @@ public class RedisCacheImpl implements IRedisCache {
     public <E> int setNx(final String key, final E value) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.setnx(key.getBytes(), binarySerializable.toBinary(value)).intValue();
+                return jedis.setnx(keyEncoder.encode(key), binarySerializable.toBinary(value)).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public int hdel(final String key, final String... fields) {
+        if (autoPipeliner != null) {
+            return pipelineWrite(b -> b.hdel(key, fields), -1);
+        }
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.hdel(key, fields).intValue();
+                return jedis.hdel(keyEncoder.name(key), fields).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public int hexists(final String key, final String field) {
-        return this.runCmd(new RedisCmd<Integer>() {
+        return this.runReadCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.hexists(key, field) ? 1 : 0;
+                return jedis.hexists(keyEncoder.name(key), field) ? 1 : 0;
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public String hgetString(final String key, final String field, String valueOfErr) {
-        return this.runCmd(new RedisCmd<String>() {
+        return this.runReadCmd(new RedisCmd<String>() {
             public String run(Jedis jedis) {
-                return jedis.hget(key, field);
+                return jedis.hget(keyEncoder.name(key), field);
             }
-        }, valueOfErr);
+        }, valueOfErr, key);
 
     }
 
@@ -553,15 +1465,15 @@ public class RedisCacheImpl implements IRedisCache {
 
     @Override
     public long hgetLong(final String key, final String field, long valueOfErr) {
-        return this.runCmd(new RedisCmd<Long>() {
+        return this.runReadCmd(new RedisCmd<Long>() {
             public Long run(Jedis jedis) {
-                String v = jedis.hget(key, field);
+                String v = jedis.hget(keyEncoder.name(key), field);
                 if (v == null || v.length() == 0) {
                     return 0L;
                 }
                 return Long.valueOf(v);
             }
-        }, valueOfErr);
+        }, valueOfErr, key);
     }
 
     @Override
@@ -571,58 +1483,61 @@ public class RedisCacheImpl implements IRedisCache {
 
     @Override
     public <E> E hget(final String key, final String field, final Class<E> clazz) {
-        return this.runCmd(new RedisCmd<E>() {
+        if (autoPipeliner != null) {
+            return autoPipeliner.execute(b -> b.hget(key, field, clazz), null);
+        }
+        return this.runReadCmd(new RedisCmd<E>() {
             public E run(Jedis jedis) {
-                byte[] v = jedis.hget(key.getBytes(), field.getBytes());
+                byte[] v = jedis.hget(keyEncoder.encode(key), keyEncoder.encodeField(field));
                 if (v == null || v.length == 0) {
                     return null;
                 }
                 return binarySerializable.toObject(v, clazz);
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
     public Object hget(final String key, final Integer field) {
-        return this.runCmd(new RedisCmd<Object>() {
+        return this.runReadCmd(new RedisCmd<Object>() {
             public Object run(Jedis jedis) {
-                byte[] v = jedis.hget(key.getBytes(), binarySerializable.toBinary(field));
+                byte[] v = jedis.hget(keyEncoder.encode(key), binarySerializable.toBinary(field));
                 if (v == null || v.length == 0) {
                     return null;
                 }
                 return binarySerializable.toObject(v, Double.class);
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
     public Map<String, String> hgetAllOfString(final String key) {
-        return this.runCmd(new RedisCmd<Map<String, String>>() {
+        return this.runReadCmd(new RedisCmd<Map<String, String>>() {
             public Map<String, String> run(Jedis jedis) {
-                return jedis.hgetAll(key);
+                return jedis.hgetAll(keyEncoder.name(key));
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
     public Map<String, Long> hgetAllOfLong(final String key) {
-        return this.runCmd(new RedisCmd<Map<String, Long>>() {
+        return this.runReadCmd(new RedisCmd<Map<String, Long>>() {
             public Map<String, Long> run(Jedis jedis) {
-                Map<String, String> sMap = jedis.hgetAll(key);
+                Map<String, String> sMap = jedis.hgetAll(keyEncoder.name(key));
                 return transforStringMapToLongMap(sMap);
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
     public <E> Map<String, E> hgetAll(final String key, final Class<E> clazz) {
-        return this.runCmd(new RedisCmd<Map<String, E>>() {
+        return this.runReadCmd(new RedisCmd<Map<String, E>>() {
             public Map<String, E> run(Jedis jedis) {
 
-                Map<byte[], byte[]> bytesMap = jedis.hgetAll(key.getBytes());
+                Map<byte[], byte[]> bytesMap = jedis.hgetAll(keyEncoder.encode(key));
                 return transforBytesMapToObjMap(bytesMap, clazz);
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
@@ -640,27 +1555,27 @@ public class RedisCacheImpl implements IRedisCache {
                         long valueOfErr) {
         return this.runCmd(new RedisCmd<Long>() {
             public Long run(Jedis jedis) {
-                return jedis.hincrBy(key, field, increment);
+                return jedis.hincrBy(keyEncoder.name(key), field, increment);
             }
-        }, valueOfErr);
+        }, valueOfErr, key);
     }
 
     @Override
     public Set<String> hkeys(final String key) {
-        return this.runCmd(new RedisCmd<Set<String>>() {
+        return this.runReadCmd(new RedisCmd<Set<String>>() {
             public Set<String> run(Jedis jedis) {
-                return jedis.hkeys(key);
+                return jedis.hkeys(keyEncoder.name(key));
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
     public int hlen(final String key) {
-        return this.runCmd(new RedisCmd<Integer>() {
+        return this.runReadCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.hlen(key).intValue();
+                return jedis.hlen(keyEncoder.name(key)).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
@@ -668,12 +1583,12 @@ public class RedisCacheImpl implements IRedisCache {
         if (fields == null || fields.length == 0) {
             return null;
         }
-        return this.runCmd(new RedisCmd<Map<String, String>>() {
+        return this.runReadCmd(new RedisCmd<Map<String, String>>() {
             public Map<String, String> run(Jedis jedis) {
-                List<String> list = jedis.hmget(key, fields);
+                List<String> list = jedis.hmget(keyEncoder.name(key), fields);
                 return transforKeyArrStringListToStringMap(fields, list);
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
@@ -681,12 +1596,12 @@ public class RedisCacheImpl implements IRedisCache {
         if (fields == null || fields.length == 0) {
             return null;
         }
-        return this.runCmd(new RedisCmd<Map<String, Long>>() {
+        return this.runReadCmd(new RedisCmd<Map<String, Long>>() {
             public Map<String, Long> run(Jedis jedis) {
-                List<String> list = jedis.hmget(key, fields);
+                List<String> list = jedis.hmget(keyEncoder.name(key), fields);
                 return transforKeyArrValueListToLongMap(fields, list);
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
@@ -695,12 +1610,12 @@ public class RedisCacheImpl implements IRedisCache {
         if (fields == null || fields.length == 0) {
             return null;
         }
-        return this.runCmd(new RedisCmd<Map<String, E>>() {
+        return this.runReadCmd(new RedisCmd<Map<String, E>>() {
             public Map<String, E> run(Jedis jedis) {
-                List<byte[]> list = jedis.hmget(key.getBytes(), transforStringArrayToByte(fields));
+                List<byte[]> list = jedis.hmget(keyEncoder.encode(key), transforFieldArrayToByte(fields));
                 return transforKeyArrValueListToObjMap(fields, list, clazz);
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
@@ -710,10 +1625,10 @@ public class RedisCacheImpl implements IRedisCache {
         }
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                jedis.hmset(key, fieldValues);
+                jedis.hmset(keyEncoder.name(key), fieldValues);
                 return 0;
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
@@ -723,10 +1638,10 @@ public class RedisCacheImpl implements IRedisCache {
         }
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                jedis.hmset(key, transforLongMapToStringMap(fieldValues));
+                jedis.hmset(keyEncoder.name(key), transforLongMapToStringMap(fieldValues));
                 return 0;
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
@@ -736,19 +1651,19 @@ public class RedisCacheImpl implements IRedisCache {
         }
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                jedis.hmset(key.getBytes(), transforObjMapToBytesMap(fieldValues));
+                jedis.hmset(keyEncoder.encode(key), transforObjMapToBytesMap(fieldValues));
                 return 0;
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public int hset(final String key, final String field, final String value) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.hset(key, field, value).intValue();
+                return jedis.hset(keyEncoder.name(key), field, value).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
@@ -758,29 +1673,32 @@ public class RedisCacheImpl implements IRedisCache {
 
     @Override
     public <E> int hset(final String key, final String field, final E value) {
+        if (autoPipeliner != null) {
+            return pipelineWrite(b -> b.hset(key, field, value), -1);
+        }
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.hset(key.getBytes(), field.getBytes(), binarySerializable.toBinary(value)).intValue();
+                return jedis.hset(keyEncoder.encode(key), keyEncoder.encodeField(field), binarySerializable.toBinary(value)).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public int hset(String key, Integer field, final double value) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.hset(key.getBytes(), binarySerializable.toBinary(field), binarySerializable.toBinary(value)).intValue();
+                return jedis.hset(keyEncoder.encode(key), binarySerializable.toBinary(field), binarySerializable.toBinary(value)).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public int hsetnx(final String key, final String field, final String value) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.hsetnx(key, field, value).intValue();
+                return jedis.hsetnx(keyEncoder.name(key), field, value).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
@@ -792,47 +1710,47 @@ public class RedisCacheImpl implements IRedisCache {
     public <E> int hsetnx(final String key, final String field, final E value) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.hsetnx(key.getBytes(), field.getBytes(), binarySerializable.toBinary(value)).intValue();
+                return jedis.hsetnx(keyEncoder.encode(key), keyEncoder.encodeField(field), binarySerializable.toBinary(value)).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public List<String> hvalsOfString(final String key) {
-        return this.runCmd(new RedisCmd<List<String>>() {
+        return this.runReadCmd(new RedisCmd<List<String>>() {
             public List<String> run(Jedis jedis) {
-                return jedis.hvals(key);
+                return jedis.hvals(keyEncoder.name(key));
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
     public List<Long> hvalsOfLong(final String key) {
-        return this.runCmd(new RedisCmd<List<Long>>() {
+        return this.runReadCmd(new RedisCmd<List<Long>>() {
             public List<Long> run(Jedis jedis) {
-                List<String> tmpList = jedis.hvals(key);
+                List<String> tmpList = jedis.hvals(keyEncoder.name(key));
                 return transforStringListToLong(tmpList);
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
     public <E> List<E> hvals(final String key, final Class<E> clazz) {
-        return this.runCmd(new RedisCmd<List<E>>() {
+        return this.runReadCmd(new RedisCmd<List<E>>() {
             public List<E> run(Jedis jedis) {
-                List<byte[]> tmpList = jedis.hvals(key.getBytes());
+                List<byte[]> tmpList = jedis.hvals(keyEncoder.encode(key));
                 return transforBytesListToObj(tmpList, clazz);
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
     public String lindexOfString(final String key, final int index, String valueOfErr) {
-        return this.runCmd(new RedisCmd<String>() {
+        return this.runReadCmd(new RedisCmd<String>() {
             public String run(Jedis jedis) {
-                return jedis.lindex(key, index);
+                return jedis.lindex(keyEncoder.name(key), index);
             }
-        }, valueOfErr);
+        }, valueOfErr, key);
     }
 
     @Override
@@ -842,15 +1760,15 @@ public class RedisCacheImpl implements IRedisCache {
 
     @Override
     public long lindexOfLong(final String key, final int index, final long valueOfErr) {
-        return this.runCmd(new RedisCmd<Long>() {
+        return this.runReadCmd(new RedisCmd<Long>() {
             public Long run(Jedis jedis) {
-                String v = jedis.lindex(key, index);
+                String v = jedis.lindex(keyEncoder.name(key), index);
                 if (v != null && v.length() > 0) {
                     return Long.valueOf(v);
                 }
                 return valueOfErr;
             }
-        }, valueOfErr);
+        }, valueOfErr, key);
     }
 
     @Override
@@ -860,24 +1778,24 @@ public class RedisCacheImpl implements IRedisCache {
 
     @Override
     public <E> E lindex(final String key, final int index, final Class<E> clazz) {
-        return this.runCmd(new RedisCmd<E>() {
+        return this.runReadCmd(new RedisCmd<E>() {
             public E run(Jedis jedis) {
-                byte[] v = jedis.lindex(key.getBytes(), index);
+                byte[] v = jedis.lindex(keyEncoder.encode(key), index);
                 if (v != null && v.length > 0) {
                     return binarySerializable.toObject(v, clazz);
                 }
                 return null;
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
     public int llen(final String key) {
-        return this.runCmd(new RedisCmd<Integer>() {
+        return this.runReadCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.llen(key).intValue();
+                return jedis.llen(keyEncoder.name(key)).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
@@ -889,9 +1807,9 @@ public class RedisCacheImpl implements IRedisCache {
     public String lpopOfString(final String key, String valueOfErr) {
         return this.runCmd(new RedisCmd<String>() {
             public String run(Jedis jedis) {
-                return jedis.lpop(key);
+                return jedis.lpop(keyEncoder.name(key));
             }
-        }, valueOfErr);
+        }, valueOfErr, key);
     }
 
     @Override
@@ -903,26 +1821,26 @@ public class RedisCacheImpl implements IRedisCache {
     public long lpopOfLong(final String key, long valueOfErr) {
         return this.runCmd(new RedisCmd<Long>() {
             public Long run(Jedis jedis) {
-                String v = jedis.lpop(key);
+                String v = jedis.lpop(keyEncoder.name(key));
                 if (v != null && v.length() > 0) {
                     return Long.valueOf(v);
                 }
                 return 0L;
             }
-        }, valueOfErr);
+        }, valueOfErr, key);
     }
 
     @Override
     public <E> E lpop(final String key, final Class<E> clazz) {
         return this.runCmd(new RedisCmd<E>() {
             public E run(Jedis jedis) {
-                byte[] data = jedis.lpop(key.getBytes());
+                byte[] data = jedis.lpop(keyEncoder.encode(key));
                 if (data != null && data.length > 0) {
                     return binarySerializable.toObject(data, clazz);
                 }
                 return null;
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
@@ -937,9 +1855,9 @@ public class RedisCacheImpl implements IRedisCache {
         }
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.lpush(key, values).intValue();
+                return jedis.lpush(keyEncoder.name(key), values).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
@@ -954,9 +1872,9 @@ public class RedisCacheImpl implements IRedisCache {
         }
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.lpush(key, transforLongArrToString(values)).intValue();
+                return jedis.lpush(keyEncoder.name(key), transforLongArrToString(values)).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
@@ -973,132 +1891,132 @@ public class RedisCacheImpl implements IRedisCache {
         }
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.lpush(key.getBytes(), transforObjArrayToBytes(values)).intValue();
+                return jedis.lpush(keyEncoder.encode(key), transforObjArrayToBytes(values)).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public int lpushx(final String key, final String value) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.lpushx(key, value).intValue();
+                return jedis.lpushx(keyEncoder.name(key), value).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public int lpushx(final String key, final long value) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.lpushx(key, "" + value).intValue();
+                return jedis.lpushx(keyEncoder.name(key), "" + value).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public <E> int lpushx(final String key, final E value) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.lpushx(key.getBytes(), binarySerializable.toBinary(value)).intValue();
+                return jedis.lpushx(keyEncoder.encode(key), binarySerializable.toBinary(value)).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public List<String> lrangeOfString(final String key, final int start, final int stop) {
-        return this.runCmd(new RedisCmd<List<String>>() {
+        return this.runReadCmd(new RedisCmd<List<String>>() {
             public List<String> run(Jedis jedis) {
-                return jedis.lrange(key, start, stop);
+                return jedis.lrange(keyEncoder.name(key), start, stop);
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
     public List<Long> lrangeOfLong(final String key, final int start, final int stop) {
-        return this.runCmd(new RedisCmd<List<Long>>() {
+        return this.runReadCmd(new RedisCmd<List<Long>>() {
             public List<Long> run(Jedis jedis) {
-                List<String> tmpList = jedis.lrange(key, start, stop);
+                List<String> tmpList = jedis.lrange(keyEncoder.name(key), start, stop);
                 return transforStringListToLong(tmpList);
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
     public <E> List<E> lrange(final String key, final int start, final int stop, final Class<E> clazz) {
-        return this.runCmd(new RedisCmd<List<E>>() {
+        return this.runReadCmd(new RedisCmd<List<E>>() {
             public List<E> run(Jedis jedis) {
-                List<byte[]> tmpList = jedis.lrange(key.getBytes(), start, stop);
+                List<byte[]> tmpList = jedis.lrange(keyEncoder.encode(key), start, stop);
                 return transforBytesListToObj(tmpList, clazz);
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
     public int lrem(final String key, final int count, final String value) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.lrem(key, count, value).intValue();
+                return jedis.lrem(keyEncoder.name(key), count, value).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public int lrem(final String key, final int count, final long value) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.lrem(key, count, value + "").intValue();
+                return jedis.lrem(keyEncoder.name(key), count, value + "").intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public <E> int lrem(final String key, final int count, final E value) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.lrem(key.getBytes(), count, binarySerializable.toBinary(value)).intValue();
+                return jedis.lrem(keyEncoder.encode(key), count, binarySerializable.toBinary(value)).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public int lset(final String key, final int index, final String value) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                jedis.lset(key, index, value);
+                jedis.lset(keyEncoder.name(key), index, value);
                 return 0;
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public int lset(final String key, final int index, final long value) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                jedis.lset(key, index, value + "");
+                jedis.lset(keyEncoder.name(key), index, value + "");
                 return 0;
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public <E> int lset(final String key, final int index, final E value) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                jedis.lset(key.getBytes(), index, binarySerializable.toBinary(value));
+                jedis.lset(keyEncoder.encode(key), index, binarySerializable.toBinary(value));
                 return 0;
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public int ltrim(final String key, final int start, final int stop) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                jedis.ltrim(key, start, stop);
+                jedis.ltrim(keyEncoder.name(key), start, stop);
                 return 0;
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
@@ -1110,9 +2028,9 @@ public class RedisCacheImpl implements IRedisCache {
     public String rpopOfString(final String key, final String valueOfErr) {
         return this.runCmd(new RedisCmd<String>() {
             public String run(Jedis jedis) {
-                return jedis.rpop(key);
+                return jedis.rpop(keyEncoder.name(key));
             }
-        }, valueOfErr);
+        }, valueOfErr, key);
     }
 
     @Override
@@ -1124,26 +2042,26 @@ public class RedisCacheImpl implements IRedisCache {
     public long rpopOfLong(final String key, final long valueOfErr) {
         return this.runCmd(new RedisCmd<Long>() {
             public Long run(Jedis jedis) {
-                String v = jedis.rpop(key);
+                String v = jedis.rpop(keyEncoder.name(key));
                 if (v == null || v.length() == 0) {
                     return valueOfErr;
                 }
                 return Long.valueOf(v);
             }
-        }, valueOfErr);
+        }, valueOfErr, key);
     }
 
     @Override
     public <E> E rpop(final String key, final Class<E> clazz) {
         return this.runCmd(new RedisCmd<E>() {
             public E run(Jedis jedis) {
-                byte[] v = jedis.rpop(key.getBytes());
+                byte[] v = jedis.rpop(keyEncoder.encode(key));
                 if (v != null && v.length > 0) {
                     return binarySerializable.toObject(v, clazz);
                 }
                 return null;
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
@@ -1155,9 +2073,9 @@ public class RedisCacheImpl implements IRedisCache {
     public int rpush(final String key, final String... values) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.rpush(key, values).intValue();
+                return jedis.rpush(keyEncoder.name(key), values).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
@@ -1181,18 +2099,18 @@ public class RedisCacheImpl implements IRedisCache {
     public <E> int rpush(final String key, final List<E> values) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.rpush(key.getBytes(), transforObjArrayToBytes(values)).intValue();
+                return jedis.rpush(keyEncoder.encode(key), transforObjArrayToBytes(values)).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public int rpushx(final String key, final String value) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.rpushx(key, value).intValue();
+                return jedis.rpushx(keyEncoder.name(key), value).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
@@ -1204,9 +2122,9 @@ public class RedisCacheImpl implements IRedisCache {
     public <E> int rpushx(final String key, final E value) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.rpushx(key.getBytes(), binarySerializable.toBinary(value)).intValue();
+                return jedis.rpushx(keyEncoder.encode(key), binarySerializable.toBinary(value)).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
@@ -1218,9 +2136,9 @@ public class RedisCacheImpl implements IRedisCache {
     public int sadd(final String key, final String... values) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.sadd(key, values).intValue();
+                return jedis.sadd(keyEncoder.name(key), values).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
@@ -1244,27 +2162,27 @@ public class RedisCacheImpl implements IRedisCache {
     public <E> int sadd(final String key, final List<E> values) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.sadd(key.getBytes(), transforObjArrayToBytes(values)).intValue();
+                return jedis.sadd(keyEncoder.encode(key), transforObjArrayToBytes(values)).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public int scard(final String key) {
-        return this.runCmd(new RedisCmd<Integer>() {
+        return this.runReadCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.scard(key).intValue();
+                return jedis.scard(keyEncoder.name(key)).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public int sismember(final String key, final String member) {
-        return this.runCmd(new RedisCmd<Integer>() {
+        return this.runReadCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.sismember(key, member) ? 1 : 0;
+                return jedis.sismember(keyEncoder.name(key), member) ? 1 : 0;
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
@@ -1274,40 +2192,40 @@ public class RedisCacheImpl implements IRedisCache {
 
     @Override
     public Set<String> smembersOfString(final String key) {
-        return this.runCmd(new RedisCmd<Set<String>>() {
+        return this.runReadCmd(new RedisCmd<Set<String>>() {
             public Set<String> run(Jedis jedis) {
-                return jedis.smembers(key);
+                return jedis.smembers(keyEncoder.name(key));
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
     public Set<Long> smembersOfLong(final String key) {
-        return this.runCmd(new RedisCmd<Set<Long>>() {
+        return this.runReadCmd(new RedisCmd<Set<Long>>() {
             public Set<Long> run(Jedis jedis) {
-                Set<String> ret = jedis.smembers(key);
+                Set<String> ret = jedis.smembers(keyEncoder.name(key));
                 return transforStringSetToLong(ret);
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
     public <E> Set<E> smembers(final String key, final Class<E> clazz) {
-        return this.runCmd(new RedisCmd<Set<E>>() {
+        return this.runReadCmd(new RedisCmd<Set<E>>() {
             public Set<E> run(Jedis jedis) {
-                Set<byte[]> ret = jedis.smembers(key.getBytes());
+                Set<byte[]> ret = jedis.smembers(keyEncoder.encode(key));
                 return transforBytesSetToObj(ret, clazz);
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
     public String spopOfString(final String key) {
         return this.runCmd(new RedisCmd<String>() {
             public String run(Jedis jedis) {
-                return jedis.spop(key);
+                return jedis.spop(keyEncoder.name(key));
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
@@ -1319,67 +2237,67 @@ public class RedisCacheImpl implements IRedisCache {
     public long spopOfLong(final String key, final long valueOfErr) {
         return this.runCmd(new RedisCmd<Long>() {
             public Long run(Jedis jedis) {
-                String v = jedis.spop(key);
+                String v = jedis.spop(keyEncoder.name(key));
                 if (v != null && v.length() > 0) {
                     return Long.valueOf(v);
                 }
                 return 0L;
             }
-        }, valueOfErr);
+        }, valueOfErr, key);
     }
 
     @Override
     public <E> E spop(final String key, final Class<E> clazz) {
         return this.runCmd(new RedisCmd<E>() {
             public E run(Jedis jedis) {
-                byte[] v = jedis.spop(key.getBytes());
+                byte[] v = jedis.spop(keyEncoder.encode(key));
                 if (v != null && v.length > 0) {
                     return binarySerializable.toObject(v, clazz);
                 }
                 return null;
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
     public String srandomMemberOfString(final String key) {
-        return this.runCmd(new RedisCmd<String>() {
+        return this.runReadCmd(new RedisCmd<String>() {
             public String run(Jedis jedis) {
-                return jedis.srandmember(key);
+                return jedis.srandmember(keyEncoder.name(key));
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
     public List<String> srandomMemberOfString(final String key, final int count) {
-        return this.runCmd(new RedisCmd<List<String>>() {
+        return this.runReadCmd(new RedisCmd<List<String>>() {
             public List<String> run(Jedis jedis) {
-                return jedis.srandmember(key, count);
+                return jedis.srandmember(keyEncoder.name(key), count);
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
     public long srandomMemberOfLong(final String key) {
-        return this.runCmd(new RedisCmd<Long>() {
+        return this.runReadCmd(new RedisCmd<Long>() {
             public Long run(Jedis jedis) {
-                String r = jedis.srandmember(key);
+                String r = jedis.srandmember(keyEncoder.name(key));
                 if (r != null && r.length() > 0) {
                     return Long.valueOf(r);
                 }
                 return 0L;
             }
-        }, -1L);
+        }, -1L, key);
     }
 
     @Override
     public List<Long> srandomMemberOfLong(final String key, final int count) {
-        return this.runCmd(new RedisCmd<List<Long>>() {
+        return this.runReadCmd(new RedisCmd<List<Long>>() {
             public List<Long> run(Jedis jedis) {
-                List<String> list = jedis.srandmember(key, count);
+                List<String> list = jedis.srandmember(keyEncoder.name(key), count);
                 return transforStringListToLong(list);
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
@@ -1391,9 +2309,9 @@ public class RedisCacheImpl implements IRedisCache {
     public int srem(final String key, final String... members) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.srem(key, members).intValue();
+                return jedis.srem(keyEncoder.name(key), members).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
@@ -1405,9 +2323,9 @@ public class RedisCacheImpl implements IRedisCache {
     public int srem(final String key, final long... members) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.srem(key, transforLongArrToString(members)).intValue();
+                return jedis.srem(keyEncoder.name(key), transforLongArrToString(members)).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
@@ -1421,36 +2339,36 @@ public class RedisCacheImpl implements IRedisCache {
     public <E> int srem(final String key, final List<E> members) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.srem(key.getBytes(), transforObjArrayToBytes(members)).intValue();
+                return jedis.srem(keyEncoder.encode(key), transforObjArrayToBytes(members)).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public int zadd(final String key, final String member, final double score) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.zadd(key, score, member).intValue();
+                return jedis.zadd(keyEncoder.name(key), score, member).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public <E> int zadd(final String key, final E member, final double score) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.zadd(key.getBytes(), score, binarySerializable.toBinary(member)).intValue();
+                return jedis.zadd(keyEncoder.encode(key), score, binarySerializable.toBinary(member)).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public int zadd(final String key, final Map<String, Double> memerScoreMap) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.zadd(key, memerScoreMap).intValue();
+                return jedis.zadd(keyEncoder.name(key), memerScoreMap).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
@@ -1460,148 +2378,148 @@ public class RedisCacheImpl implements IRedisCache {
 
     @Override
     public int zcard(final String key) {
-        return this.runCmd(new RedisCmd<Integer>() {
+        return this.runReadCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.zcard(key).intValue();
+                return jedis.zcard(keyEncoder.name(key)).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public int zcount(final String key, final double min, final double max) {
-        return this.runCmd(new RedisCmd<Integer>() {
+        return this.runReadCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.zcount(key, min, max).intValue();
+                return jedis.zcount(keyEncoder.name(key), min, max).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public int zcount(final String key, final long min, final long max) {
-        return this.runCmd(new RedisCmd<Integer>() {
+        return this.runReadCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.zcount(key, min, max).intValue();
+                return jedis.zcount(keyEncoder.name(key), min, max).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public double zincrBy(final String key, final String member, final double increment) {
         return this.runCmd(new RedisCmd<Double>() {
             public Double run(Jedis jedis) {
-                return jedis.zincrby(key, increment, member);
+                return jedis.zincrby(keyEncoder.name(key), increment, member);
             }
-        }, -1D);
+        }, -1D, key);
     }
 
     @Override
     public double zincrBy(final String key, final String member, final long increment) {
         return this.runCmd(new RedisCmd<Double>() {
             public Double run(Jedis jedis) {
-                return jedis.zincrby(key, increment, member);
+                return jedis.zincrby(keyEncoder.name(key), increment, member);
             }
-        }, -1D);
+        }, -1D, key);
     }
 
     @Override
     public Set<String> zrange(final String key, final int start, final int stop) {
-        return this.runCmd(new RedisCmd<Set<String>>() {
+        return this.runReadCmd(new RedisCmd<Set<String>>() {
             public Set<String> run(Jedis jedis) {
-                return jedis.zrange(key, start, stop);
+                return jedis.zrange(keyEncoder.name(key), start, stop);
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
     public <E> Set<E> zrange(final String key, final int start, final int stop, final Class<E> clazz) {
-        return this.runCmd(new RedisCmd<Set<E>>() {
+        return this.runReadCmd(new RedisCmd<Set<E>>() {
             public Set<E> run(Jedis jedis) {
-                return transforBytesSetToObj(jedis.zrange(key.getBytes(), start, stop), clazz);
+                return transforBytesSetToObj(jedis.zrange(keyEncoder.encode(key), start, stop), clazz);
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
     public Map<String, Double> zrangeWithDoubleScore(final String key,
                                                      final int start, final int stop) {
-        return this.runCmd(new RedisCmd<Map<String, Double>>() {
+        return this.runReadCmd(new RedisCmd<Map<String, Double>>() {
             public Map<String, Double> run(Jedis jedis) {
-                Set<Tuple> set = jedis.zrangeWithScores(key, start, stop);
+                Set<Tuple> set = jedis.zrangeWithScores(keyEncoder.name(key), start, stop);
                 return transforRedisTupleSetToDoubleMap(set);
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
     public Map<String, Long> zrangeWithLongScore(final String key,
                                                  final int start, final int stop) {
-        return this.runCmd(new RedisCmd<Map<String, Long>>() {
+        return this.runReadCmd(new RedisCmd<Map<String, Long>>() {
             public Map<String, Long> run(Jedis jedis) {
-                Set<Tuple> set = jedis.zrangeWithScores(key, start, stop);
+                Set<Tuple> set = jedis.zrangeWithScores(keyEncoder.name(key), start, stop);
                 return transforRedisTupleSetToLongMap(set);
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
     public <E> Set<E> zrevrange(final String key, final int start, final int stop, final Class<E> clazz) {
-        return this.runCmd(new RedisCmd<Set<E>>() {
+        return this.runReadCmd(new RedisCmd<Set<E>>() {
             public Set<E> run(Jedis jedis) {
-                return transforBytesSetToObj(jedis.zrevrange(key.getBytes(), start, stop), clazz);
+                return transforBytesSetToObj(jedis.zrevrange(keyEncoder.encode(key), start, stop), clazz);
             }
-        }, null);
+        }, null, key);
     }
 
 
     @Override
     public Set<String> zrevrange(final String key, final int start, final int stop) {
-        return this.runCmd(new RedisCmd<Set<String>>() {
+        return this.runReadCmd(new RedisCmd<Set<String>>() {
             public Set<String> run(Jedis jedis) {
-                return jedis.zrevrange(key, start, stop);
+                return jedis.zrevrange(keyEncoder.name(key), start, stop);
             }
-        }, null);
+        }, null, key);
 
     }
 
     @Override
     public Map<String, Double> zrevrangeWithDoubleScore(final String key,
                                                         final int start, final int stop) {
-        return this.runCmd(new RedisCmd<Map<String, Double>>() {
+        return this.runReadCmd(new RedisCmd<Map<String, Double>>() {
             public Map<String, Double> run(Jedis jedis) {
-                Set<Tuple> set = jedis.zrevrangeWithScores(key, start, stop);
+                Set<Tuple> set = jedis.zrevrangeWithScores(keyEncoder.name(key), start, stop);
                 return transforRedisTupleSetToDoubleMap(set);
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
     public Map<String, Long> zrevrangeWithLongScore(final String key,
                                                     final int start, final int stop) {
-        return this.runCmd(new RedisCmd<Map<String, Long>>() {
+        return this.runReadCmd(new RedisCmd<Map<String, Long>>() {
             public Map<String, Long> run(Jedis jedis) {
-                Set<Tuple> set = jedis.zrevrangeWithScores(key, start, stop);
+                Set<Tuple> set = jedis.zrevrangeWithScores(keyEncoder.name(key), start, stop);
                 return transforRedisTupleSetToLongMap(set);
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
     public Set<String> zrangeByScore(final String key, final double min, final double max,
                                      final int offset, final int count) {
-        return this.runCmd(new RedisCmd<Set<String>>() {
+        return this.runReadCmd(new RedisCmd<Set<String>>() {
             public Set<String> run(Jedis jedis) {
-                return jedis.zrangeByScore(key, min, max, offset, count);
+                return jedis.zrangeByScore(keyEncoder.name(key), min, max, offset, count);
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
     public Set<String> zrangeByScore(final String key, final double min, final double max) {
-        return this.runCmd(new RedisCmd<Set<String>>() {
+        return this.runReadCmd(new RedisCmd<Set<String>>() {
             public Set<String> run(Jedis jedis) {
-                return jedis.zrangeByScore(key, min, max);
+                return jedis.zrangeByScore(keyEncoder.name(key), min, max);
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
@@ -1618,64 +2536,64 @@ public class RedisCacheImpl implements IRedisCache {
     @Override
     public Map<String, Double> zrangeByScoreWithScore(final String key,
                                                       final double min, final double max, final int offset, final int count) {
-        return this.runCmd(new RedisCmd<Map<String, Double>>() {
+        return this.runReadCmd(new RedisCmd<Map<String, Double>>() {
             public Map<String, Double> run(Jedis jedis) {
-                Set<Tuple> set = jedis.zrangeByScoreWithScores(key, min, max, offset, count);
+                Set<Tuple> set = jedis.zrangeByScoreWithScores(keyEncoder.name(key), min, max, offset, count);
                 return transforRedisTupleSetToDoubleMap(set);
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
     public Map<String, Double> zrangeByScoreWithScore(final String key,
                                                       final double min, final double max) {
-        return this.runCmd(new RedisCmd<Map<String, Double>>() {
+        return this.runReadCmd(new RedisCmd<Map<String, Double>>() {
             public Map<String, Double> run(Jedis jedis) {
-                Set<Tuple> set = jedis.zrangeByScoreWithScores(key, min, max);
+                Set<Tuple> set = jedis.zrangeByScoreWithScores(keyEncoder.name(key), min, max);
                 return transforRedisTupleSetToDoubleMap(set);
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
     public Map<String, Long> zrangeByScoreWithScore(final String key,
                                                     final long min, final long max, final int offset, final int count) {
-        return this.runCmd(new RedisCmd<Map<String, Long>>() {
+        return this.runReadCmd(new RedisCmd<Map<String, Long>>() {
             public Map<String, Long> run(Jedis jedis) {
-                Set<Tuple> set = jedis.zrangeByScoreWithScores(key, min, max, offset, count);
+                Set<Tuple> set = jedis.zrangeByScoreWithScores(keyEncoder.name(key), min, max, offset, count);
                 return transforRedisTupleSetToLongMap(set);
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
     public Map<String, Long> zrangeByScoreWithScore(final String key,
                                                     final long min, final long max) {
-        return this.runCmd(new RedisCmd<Map<String, Long>>() {
+        return this.runReadCmd(new RedisCmd<Map<String, Long>>() {
             public Map<String, Long> run(Jedis jedis) {
-                Set<Tuple> set = jedis.zrangeByScoreWithScores(key, min, max);
+                Set<Tuple> set = jedis.zrangeByScoreWithScores(keyEncoder.name(key), min, max);
                 return transforRedisTupleSetToLongMap(set);
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
     public Set<String> zrevrangeByScore(final String key, final double max, final double min,
                                         final int offset, final int count) {
-        return this.runCmd(new RedisCmd<Set<String>>() {
+        return this.runReadCmd(new RedisCmd<Set<String>>() {
             public Set<String> run(Jedis jedis) {
-                return jedis.zrevrangeByScore(key, max, min, offset, count);
+                return jedis.zrevrangeByScore(keyEncoder.name(key), max, min, offset, count);
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
     public Set<String> zrevrangeByScore(final String key, final double max, final double min) {
-        return this.runCmd(new RedisCmd<Set<String>>() {
+        return this.runReadCmd(new RedisCmd<Set<String>>() {
             public Set<String> run(Jedis jedis) {
-                return jedis.zrevrangeByScore(key, max, min);
+                return jedis.zrevrangeByScore(keyEncoder.name(key), max, min);
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
@@ -1692,98 +2610,98 @@ public class RedisCacheImpl implements IRedisCache {
     @Override
     public Map<String, Double> zrevrangeByScoreWithScore(final String key,
                                                          final double max, final double min, final int offset, final int count) {
-        return this.runCmd(new RedisCmd<Map<String, Double>>() {
+        return this.runReadCmd(new RedisCmd<Map<String, Double>>() {
             public Map<String, Double> run(Jedis jedis) {
-                Set<Tuple> set = jedis.zrevrangeByScoreWithScores(key, max, min, offset, count);
+                Set<Tuple> set = jedis.zrevrangeByScoreWithScores(keyEncoder.name(key), max, min, offset, count);
                 return transforRedisTupleSetToDoubleMap(set);
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
     public Map<String, Double> zrevrangeByScoreWithScore(final String key,
                                                          final double max, final double min) {
-        return this.runCmd(new RedisCmd<Map<String, Double>>() {
+        return this.runReadCmd(new RedisCmd<Map<String, Double>>() {
             public Map<String, Double> run(Jedis jedis) {
-                Set<Tuple> set = jedis.zrevrangeByScoreWithScores(key, max, min);
+                Set<Tuple> set = jedis.zrevrangeByScoreWithScores(keyEncoder.name(key), max, min);
                 return transforRedisTupleSetToDoubleMap(set);
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
     public Map<String, Long> zrevrangeByScoreWithScore(final String key,
                                                        final long max, final long min, final int offset, final int count) {
-        return this.runCmd(new RedisCmd<Map<String, Long>>() {
+        return this.runReadCmd(new RedisCmd<Map<String, Long>>() {
             public Map<String, Long> run(Jedis jedis) {
-                Set<Tuple> set = jedis.zrevrangeByScoreWithScores(key, max, min, offset, count);
+                Set<Tuple> set = jedis.zrevrangeByScoreWithScores(keyEncoder.name(key), max, min, offset, count);
                 return transforRedisTupleSetToLongMap(set);
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
     public Map<String, Long> zrevrangeByScoreWithScore(final String key,
                                                        final long max, final long min) {
-        return this.runCmd(new RedisCmd<Map<String, Long>>() {
+        return this.runReadCmd(new RedisCmd<Map<String, Long>>() {
             public Map<String, Long> run(Jedis jedis) {
-                Set<Tuple> set = jedis.zrevrangeByScoreWithScores(key, max, min);
+                Set<Tuple> set = jedis.zrevrangeByScoreWithScores(keyEncoder.name(key), max, min);
                 return transforRedisTupleSetToLongMap(set);
             }
-        }, null);
+        }, null, key);
     }
 
     @Override
     public int zrank(final String key, final String member) {
-        return this.runCmd(new RedisCmd<Integer>() {
+        return this.runReadCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                Long v = jedis.zrank(key, member);//member不存在时，返回null
+                Long v = jedis.zrank(keyEncoder.name(key), member);//member不存在时，返回null
                 if (v != null) {
                     return v.intValue();
                 }
                 return -1;
             }
-        }, -2);
+        }, -2, key);
     }
 
     @Override
     public int zrevrank(final String key, final String member) {
-        return this.runCmd(new RedisCmd<Integer>() {
+        return this.runReadCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                Long v = jedis.zrevrank(key, member);//member不存在时，返回null
+                Long v = jedis.zrevrank(keyEncoder.name(key), member);//member不存在时，返回null
                 if (v != null) {
                     return v.intValue();
                 }
                 return -1;
             }
-        }, -2);
+        }, -2, key);
     }
 
     @Override
     public int zrem(final String key, final String... member) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.zrem(key, member).intValue();
+                return jedis.zrem(keyEncoder.name(key), member).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public int zremrangeByRank(final String key, final int start, final int stop) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.zremrangeByRank(key, start, stop).intValue();
+                return jedis.zremrangeByRank(keyEncoder.name(key), start, stop).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
     public int zremrangeByScore(final String key, final double min, final double max) {
         return this.runCmd(new RedisCmd<Integer>() {
             public Integer run(Jedis jedis) {
-                return jedis.zremrangeByScore(key, min, max).intValue();
+                return jedis.zremrangeByScore(keyEncoder.name(key), min, max).intValue();
             }
-        }, -1);
+        }, -1, key);
     }
 
     @Override
@@ -1793,39 +2711,93 @@ public class RedisCacheImpl implements IRedisCache {
 
     @Override
     public double zscoreOfDouble(final String key, final String member) {
-        return this.runCmd(new RedisCmd<Double>() {
+        return this.runReadCmd(new RedisCmd<Double>() {
             public Double run(Jedis jedis) {
-                Double v = jedis.zscore(key, member);
+                Double v = jedis.zscore(keyEncoder.name(key), member);
                 if (v != null) {
                     return v;
                 }
                 return -1D;
             }
-        }, -1D);
+        }, -1D, key);
     }
 
     @Override
     public long zscoreOfLong(final String key, final String member) {
-        return this.runCmd(new RedisCmd<Long>() {
+        return this.runReadCmd(new RedisCmd<Long>() {
             public Long run(Jedis jedis) {
-                Double v = jedis.zscore(key, member);
+                Double v = jedis.zscore(keyEncoder.name(key), member);
                 if (v != null) {
                     return v.longValue();
                 }
                 return -1L;
             }
-        }, -1L);
+        }, -1L, key);
     }
 
 
     //数据转换
+    private static long sum(List<Long> values) {
+        long ret = 0;
+        for (Long v : values) {
+            ret += v;
+        }
+        return ret;
+    }
+
+    private static <V> Map<String, V> mergeMaps(List<Map<String, V>> maps) {
+        if (maps == null) {
+            return null;
+        }
+        Map<String, V> ret = new HashMap<String, V>();
+        for (Map<String, V> map : maps) {
+            ret.putAll(map);
+        }
+        return ret;
+    }
+
+    private static <V> Map<String, V> subMap(Map<String, V> map, String[] keys) {
+        Map<String, V> ret = new LinkedHashMap<String, V>(keys.length * 4 / 3 + 1);
+        for (String key : keys) {
+            ret.put(key, map.get(key));
+        }
+        return ret;
+    }
+
+    private static String firstKey(Map<String, ?> map) {
+        return map.keySet().iterator().next();
+    }
+
+    private boolean inSameSlot(Collection<String> keys) {
+        int slot = -1;
+        for (String key : keys) {
+            int s = shardedAdapter.getSlot(keyEncoder.encode(key));
+            if (slot >= 0 && s != slot) {
+                return false;
+            }
+            slot = s;
+        }
+        return true;
+    }
+
     private byte[][] transforStringArrayToByte(String[] values) {
         if (values == null) {
             return null;
         }
         byte[][] ret = new byte[values.length][];
         for (int i = 0; i < values.length; i++) {
-            ret[i] = values[i].getBytes();
+            ret[i] = keyEncoder.encode(values[i]);
+        }
+        return ret;
+    }
+
+    private byte[][] transforFieldArrayToByte(String[] values) {
+        if (values == null) {
+            return null;
+        }
+        byte[][] ret = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            ret[i] = keyEncoder.encodeField(values[i]);
         }
         return ret;
     }
@@ -1946,7 +2918,7 @@ public class RedisCacheImpl implements IRedisCache {
         int index = 0;
         for (String key : keys) {
             byte[] bs = values.get(index++);
-            retMap.put(key, bs == null ? null : binarySerializable.toObject(bs, clazz));
+            retMap.put(key, bs == null || isNegative(bs) ? null : binarySerializable.toObject(bs, clazz));
         }
         return retMap;
     }
@@ -1958,7 +2930,7 @@ public class RedisCacheImpl implements IRedisCache {
         String[] ret = new String[values.size() * 2];
         int index = 0;
         for (Entry<String, String> entry : values.entrySet()) {
-            ret[index++] = entry.getKey();
+            ret[index++] = keyEncoder.name(entry.getKey());
             ret[index++] = entry.getValue();
         }
         return ret;
@@ -1971,7 +2943,7 @@ public class RedisCacheImpl implements IRedisCache {
         String[] ret = new String[values.size() * 2];
         int index = 0;
         for (Entry<String, Long> entry : values.entrySet()) {
-            ret[index++] = entry.getKey();
+            ret[index++] = keyEncoder.name(entry.getKey());
             ret[index++] = entry.getValue().toString();
         }
         return ret;
@@ -1995,7 +2967,7 @@ public class RedisCacheImpl implements IRedisCache {
         byte[][] ret = new byte[values.size() * 2][];
         int index = 0;
         for (Entry<String, E> entry : values.entrySet()) {
-            ret[index++] = entry.getKey().getBytes();
+            ret[index++] = keyEncoder.encode(entry.getKey());
             ret[index++] = binarySerializable.toBinary(entry.getValue());
         }
         return ret;
@@ -2005,9 +2977,9 @@ public class RedisCacheImpl implements IRedisCache {
         if (values == null) {
             return null;
         }
-        Map<byte[], byte[]> ret = new HashMap<byte[], byte[]>();
+        Map<byte[], byte[]> ret = new HashMap<byte[], byte[]>(values.size() * 4 / 3 + 1);
         for (Entry<String, E> entry : values.entrySet()) {
-            ret.put(entry.getKey().getBytes(), binarySerializable.toBinary(entry.getValue()));
+            ret.put(keyEncoder.encodeField(entry.getKey()), binarySerializable.toBinary(entry.getValue()));
         }
         return ret;
     }
@@ -2084,4 +3056,341 @@ public class RedisCacheImpl implements IRedisCache {
         return this.get(key, clazz);
     }
 
+    @Override
+    public int batch(final Consumer<IRedisBatch> commands) {
+        if (shardedAdapter != null) {
+            return shardedBatch(commands);
+        }
+        final List<RedisFuture<?>> futures = new ArrayList<RedisFuture<?>>();
+        int ret = this.runCmd(new RedisCmd<Integer>() {
+            public Integer run(Jedis jedis) {
+                Pipeline pipeline = jedis.pipelined();
+                try {
+                    commands.accept(new PipelineBatch(pipeline, futures));
+                } finally {
+                    //回调异常时也要读完已发送命令的回复，否则连接归还后会读到错位的数据
+                    pipeline.sync();
+                }
+                return futures.size();
+            }
+        }, -1);
+        for (RedisFuture<?> future : futures) {
+            if (ret < 0) {
+                future.fail();
+            } else {
+                future.complete();
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * 分片时的批量命令：每个节点一个pipeline，命令按key发到所在节点，最后各节点并行sync
+     * 不处理重定向，slot表过期时对应命令的结果为异常值
+     */
+    private int shardedBatch(Consumer<IRedisBatch> commands) {
+        RedisCircuitBreaker breaker = this.circuitBreaker;
+        if (breaker != null && breaker.getState() == RedisCircuitBreaker.OPEN) {
+            return -1;
+        }
+        final List<RedisFuture<?>> futures = new ArrayList<RedisFuture<?>>();
+        ShardedPipelineBatch batch = new ShardedPipelineBatch(futures);
+        boolean ok = false;
+        try {
+            commands.accept(batch);
+            ok = true;
+        } catch (Exception e) {
+            ok = false;
+        } finally {
+            ok = batch.syncAndClose() && ok;
+        }
+        for (RedisFuture<?> future : futures) {
+            if (ok) {
+                future.complete();
+            } else {
+                future.fail();
+            }
+        }
+        return ok ? futures.size() : -1;
+    }
+
+    /**
+     * 把命令追加到pipeline，结果在读取时才解码
+     */
+    private class PipelineBatch implements IRedisBatch {
+        private final Pipeline pipeline;
+        private final List<RedisFuture<?>> futures;
+
+        private PipelineBatch(Pipeline pipeline, List<RedisFuture<?>> futures) {
+            this.pipeline = pipeline;
+            this.futures = futures;
+        }
+
+        /**
+         * 命令发送到哪个pipeline，分片时按key选择节点
+         */
+        protected Pipeline pipeline(String key) {
+            return pipeline;
+        }
+
+        /**
+         * 多key命令按哪些key一组发送，分片时同一个slot的key一组，不分片时全部一组
+         */
+        protected List<String[]> slotGroups(String[] keys) {
+            return Collections.singletonList(keys);
+        }
+
+        private <T> RedisFuture<T> add(Supplier<T> decoder, T valueOfErr) {
+            RedisFuture<T> future = new RedisFuture<T>(decoder, valueOfErr);
+            futures.add(future);
+            return future;
+        }
+
+        private RedisFuture<Integer> addInt(final Response<Long> response) {
+            return add(() -> response.get().intValue(), -1);
+        }
+
+        private RedisFuture<Integer> addOk(final Response<String> response) {
+            return add(() -> {
+                response.get();
+                return 0;
+            }, -1);
+        }
+
+        @Override
+        public RedisFuture<Integer> del(String... keys) {
+            if (keys == null || keys.length == 0) {
+                return addInt(pipeline(null).del(new String[0]));
+            }
+            final List<Response<Long>> responses = new ArrayList<Response<Long>>();
+            for (String[] group : slotGroups(keys)) {
+                responses.add(pipeline(group[0]).del(keyEncoder.names(group)));
+            }
+            return add(() -> {
+                int count = 0;
+                for (Response<Long> response : responses) {
+                    count += response.get().intValue();
+                }
+                return count;
+            }, -1);
+        }
+
+        @Override
+        public RedisFuture<Integer> exists(String key) {
+            final Response<Object> response = pipeline(key).eval(EXISTS_SCRIPT, 1, keyEncoder.encode(key), NEGATIVE_MARKER);
+            return add(() -> ((Long) response.get()).intValue(), -1);
+        }
+
+        @Override
+        public RedisFuture<Integer> expire(String key, int seconds) {
+            return addInt(pipeline(key).expire(keyEncoder.name(key), seconds));
+        }
+
+        @Override
+        public RedisFuture<Long> incrBy(String key, long byValue) {
+            final Response<Long> response = pipeline(key).incrBy(keyEncoder.name(key), byValue);
+            return add(() -> response.get(), null);
+        }
+
+        @Override
+        public RedisFuture<String> getString(String key) {
+            final Response<String> response = pipeline(key).get(keyEncoder.name(key));
+            return add(() -> response.get(), null);
+        }
+
+        @Override
+        public RedisFuture<Long> getLong(String key) {
+            final Response<String> response = pipeline(key).get(keyEncoder.name(key));
+            return add(() -> {
+                String s = response.get();
+                return s == null || s.length() == 0 ? null : Long.valueOf(s);
+            }, null);
+        }
+
+        @Override
+        public <E> RedisFuture<E> get(String key, final Class<E> clazz) {
+            final Response<byte[]> response = pipeline(key).get(keyEncoder.encode(key));
+            return add(() -> {
+                byte[] data = response.get();
+                return data == null || isNegative(data) ? null : binarySerializable.toObject(data, clazz);
+            }, null);
+        }
+
+        @Override
+        public <E> RedisFuture<Map<String, E>> mget(final Class<E> clazz, final String... keys) {
+            if (keys == null || keys.length == 0) {
+                return add(() -> null, null);
+            }
+            final List<String[]> groups = slotGroups(keys);
+            final List<Response<List<byte[]>>> responses = new ArrayList<Response<List<byte[]>>>(groups.size());
+            for (String[] group : groups) {
+                responses.add(pipeline(group[0]).mget(transforStringArrayToByte(group)));
+            }
+            return add(() -> {
+                Map<String, E> ret = new HashMap<String, E>();
+                for (int i = 0; i < groups.size(); i++) {
+                    ret.putAll(transforKeyArrValueListToObjMap(groups.get(i), responses.get(i).get(), clazz));
+                }
+                return ret;
+            }, null);
+        }
+
+        @Override
+        public RedisFuture<Integer> set(String key, String value) {
+            return addOk(pipeline(key).set(keyEncoder.name(key), value));
+        }
+
+        @Override
+        public <E> RedisFuture<Integer> set(String key, E value) {
+            return addOk(pipeline(key).set(keyEncoder.encode(key), binarySerializable.toBinary(value)));
+        }
+
+        @Override
+        public RedisFuture<Integer> setEx(String key, String value, int seconds) {
+            return addOk(pipeline(key).setex(keyEncoder.name(key), seconds, value));
+        }
+
+        @Override
+        public <E> RedisFuture<Integer> setEx(String key, E value, int seconds) {
+            return addOk(pipeline(key).setex(keyEncoder.encode(key), seconds, binarySerializable.toBinary(value)));
+        }
+
+        @Override
+        public RedisFuture<Integer> setNegative(String key) {
+            if (negativeTtlSeconds <= 0) {
+                return add(() -> 0, 0);
+            }
+            return addOk(pipeline(key).setex(keyEncoder.encode(key), negativeTtlSeconds, NEGATIVE_MARKER));
+        }
+
+        @Override
+        public RedisFuture<Integer> hdel(String key, String... fields) {
+            return addInt(pipeline(key).hdel(keyEncoder.name(key), fields));
+        }
+
+        @Override
+        public <E> RedisFuture<E> hget(String key, String field, final Class<E> clazz) {
+            final Response<byte[]> response = pipeline(key).hget(keyEncoder.encode(key), keyEncoder.encodeField(field));
+            return add(() -> {
+                byte[] v = response.get();
+                return v == null || v.length == 0 ? null : binarySerializable.toObject(v, clazz);
+            }, null);
+        }
+
+        @Override
+        public <E> RedisFuture<Integer> hset(String key, String field, E value) {
+            return addInt(pipeline(key).hset(keyEncoder.encode(key), keyEncoder.encodeField(field), binarySerializable.toBinary(value)));
+        }
+    }
+
+    /**
+     * 分片时按key所在节点选择pipeline，每个节点的连接在第一次用到时借出
+     */
+    private class ShardedPipelineBatch extends PipelineBatch {
+        private final Map<HostAndPort, Jedis> connections = new HashMap<HostAndPort, Jedis>();
+        private final Map<HostAndPort, Pipeline> pipelines = new HashMap<HostAndPort, Pipeline>();
+
+        private ShardedPipelineBatch(List<RedisFuture<?>> futures) {
+            super(null, futures);
+        }
+
+        @Override
+        protected Pipeline pipeline(String key) {
+            int slot = key == null ? 0 : shardedAdapter.getSlot(keyEncoder.encode(key));
+            HostAndPort node = shardedAdapter.getNode(slot);
+            Pipeline pipeline = pipelines.get(node);
+            if (pipeline == null) {
+                Jedis jedis = shardedAdapter.getResourceBySlot(slot);
+                //slot表在借连接时可能刚刚更新，按连接实际的节点记录
+                node = new HostAndPort(jedis.getClient().getHost(), jedis.getClient().getPort());
+                pipeline = pipelines.get(node);
+                if (pipeline != null) {
+                    jedis.close();
+                } else {
+                    pipeline = jedis.pipelined();
+                    connections.put(node, jedis);
+                    pipelines.put(node, pipeline);
+                }
+            }
+            return pipeline;
+        }
+
+        @Override
+        protected List<String[]> slotGroups(String[] keys) {
+            Map<Integer, List<String>> slotKeys = new LinkedHashMap<Integer, List<String>>();
+            for (String key : keys) {
+                int slot = shardedAdapter.getSlot(keyEncoder.encode(key));
+                List<String> list = slotKeys.get(slot);
+                if (list == null) {
+                    list = new ArrayList<String>();
+                    slotKeys.put(slot, list);
+                }
+                list.add(key);
+            }
+            List<String[]> groups = new ArrayList<String[]>(slotKeys.size());
+            for (List<String> list : slotKeys.values()) {
+                groups.add(list.toArray(new String[list.size()]));
+            }
+            return groups;
+        }
+
+        /**
+         * 各节点并行读完回复并归还连接
+         * @return 是否全部成功
+         */
+        private boolean syncAndClose() {
+            List<CompletableFuture<Boolean>> syncs = new ArrayList<CompletableFuture<Boolean>>();
+            for (final Entry<HostAndPort, Pipeline> entry : pipelines.entrySet()) {
+                syncs.add(CompletableFuture.supplyAsync(() -> {
+                    Jedis jedis = connections.get(entry.getKey());
+                    try {
+                        entry.getValue().sync();
+                        return true;
+                    } catch (Exception e) {
+                        return false;
+                    } finally {
+                        jedis.close();
+                    }
+                }, shardExecutor));
+            }
+            boolean ok = true;
+            for (CompletableFuture<Boolean> sync : syncs) {
+                ok = sync.join() && ok;
+            }
+            return ok;
+        }
+    }
+
+    /**
+     * 正在进行的加载
+     */
+    private static class LoadingFuture extends CompletableFuture<Object> {
+        /**
+         * 是否为提前刷新，提前刷新没有拿到锁时结果为null
+         */
+        private final boolean refresh;
+
+        private LoadingFuture(boolean refresh) {
+            this.refresh = refresh;
+        }
+    }
+
+    /**
+     * 缓存值及其剩余过期时间
+     */
+    private static class CachedValue<E> {
+        private final E value;
+        private final long pttl;
+        /**
+         * 是否为空值标记
+         */
+        private final boolean negative;
+
+        private CachedValue(E value, long pttl, boolean negative) {
+            this.value = value;
+            this.pttl = pttl;
+            this.negative = negative;
+        }
+    }
+
 }
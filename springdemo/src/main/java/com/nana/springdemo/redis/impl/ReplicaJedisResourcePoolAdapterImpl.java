@@ -0,0 +1,149 @@
+package com.nana.springdemo.redis.impl;
+
+import com.nana.springdemo.redis.IReplicaRedisResourcePoolAdapter;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 主从连接池：写和强一致读走主节点，只读命令在从节点之间负载均衡
+ * <p>
+ * 选择从节点时按"(在用连接数+1) × 平均占用时间"取最小的，即最少在途请求数按延迟加权：
+ * 慢的从节点或者请求堆积的从节点分到的请求少。平均占用时间是连接从借出到归还的耗时的指数移动平均。
+ * 从节点借连接失败或连接断开时暂停使用downMillis，所有从节点都不可用时读主节点。
+ * 不检查复制延迟，需要读到最新值时用{@link com.nana.springdemo.redis.ReadConsistency}。
+ */
+public class ReplicaJedisResourcePoolAdapterImpl implements IReplicaRedisResourcePoolAdapter {
+
+    private static Logger log = LoggerFactory.getLogger(ReplicaJedisResourcePoolAdapterImpl.class);
+
+    private final JedisPool masterPool;
+    private final ReplicaPool[] replicaPools;
+    private final long downNanos;
+
+    /**
+     * @param masterPool 主节点
+     * @param replicas 从节点
+     * @param poolConfig 每个从节点的连接池配置
+     * @param timeout
+     * @param downMillis 从节点出错后暂停使用的时间
+     */
+    public ReplicaJedisResourcePoolAdapterImpl(JedisPool masterPool, List<HostAndPort> replicas,
+                                               GenericObjectPoolConfig poolConfig, int timeout, int downMillis) {
+        this.masterPool = masterPool;
+        this.downNanos = TimeUnit.MILLISECONDS.toNanos(downMillis);
+        List<ReplicaPool> pools = new ArrayList<ReplicaPool>(replicas.size());
+        for (HostAndPort replica : replicas) {
+            pools.add(new ReplicaPool(poolConfig, replica, timeout));
+        }
+        this.replicaPools = pools.toArray(new ReplicaPool[pools.size()]);
+    }
+
+    @Override
+    public Jedis getResource() {
+        return masterPool.getResource();
+    }
+
+    @Override
+    public Jedis getReadResource() {
+        long now = System.nanoTime();
+        int n = replicaPools.length;
+        int start = n > 1 ? ThreadLocalRandom.current().nextInt(n) : 0;
+        ReplicaPool best = null;
+        long bestScore = Long.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            ReplicaPool pool = replicaPools[(start + i) % n];
+            if (pool.isDown(now)) {
+                continue;
+            }
+            long score = (pool.getNumActive() + 1L) * Math.max(1, pool.holdMicrosEwma);
+            if (score < bestScore) {
+                best = pool;
+                bestScore = score;
+            }
+        }
+        if (best != null) {
+            try {
+                return best.getResource();
+            } catch (JedisException e) {
+                best.markDown();
+                log.warn("redis replica {} unavailable: {}", best.node, e.getMessage());
+            }
+        }
+        return masterPool.getResource();
+    }
+
+    /**
+     * 关闭主从节点的连接池
+     */
+    public void close() {
+        for (ReplicaPool pool : replicaPools) {
+            pool.close();
+        }
+        masterPool.close();
+    }
+
+    /**
+     * 记录连接占用时间和可用状态的从节点连接池
+     */
+    private class ReplicaPool extends JedisPool {
+        private final HostAndPort node;
+        private final ThreadLocal<long[]> borrowNanos = new ThreadLocal<long[]>() {
+            @Override
+            protected long[] initialValue() {
+                return new long[1];
+            }
+        };
+        private volatile long holdMicrosEwma;
+        private volatile long downUntilNanos;
+
+        private ReplicaPool(GenericObjectPoolConfig poolConfig, HostAndPort node, int timeout) {
+            super(poolConfig, node.getHost(), node.getPort(), timeout);
+            this.node = node;
+        }
+
+        private boolean isDown(long now) {
+            long until = downUntilNanos;
+            return until != 0 && now - until < 0;
+        }
+
+        private void markDown() {
+            downUntilNanos = System.nanoTime() + downNanos;
+        }
+
+        @Override
+        public Jedis getResource() {
+            Jedis jedis = super.getResource();
+            borrowNanos.get()[0] = System.nanoTime();
+            return jedis;
+        }
+
+        @Override
+        public void returnResource(Jedis resource) {
+            long[] start = borrowNanos.get();
+            if (start[0] != 0) {
+                long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start[0]);
+                //并发更新时丢失个别样本不影响趋势
+                holdMicrosEwma = holdMicrosEwma == 0 ? micros : holdMicrosEwma + ((micros - holdMicrosEwma) >> 3);
+                start[0] = 0;
+            }
+            super.returnResource(resource);
+        }
+
+        @Override
+        public void returnBrokenResource(Jedis resource) {
+            borrowNanos.get()[0] = 0;
+            markDown();
+            super.returnBrokenResource(resource);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.nana.springdemo.redis.impl;
+
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import redis.clients.jedis.JedisPool;
+
+/**
+ * 运行中可以调整大小的JedisPool
+ * <p>
+ * 缩小时已借出的连接不受影响，归还后超出maxIdle的空闲连接会被销毁。
+ */
+public class ResizableJedisPool extends JedisPool {
+
+    public ResizableJedisPool(GenericObjectPoolConfig poolConfig, String host, int port, int timeout) {
+        super(poolConfig, host, port, timeout);
+    }
+
+    public int getMaxTotal() {
+        return internalPool.getMaxTotal();
+    }
+
+    /**
+     * 调整最大连接数，最大空闲连接数同步调整
+     * @param maxTotal
+     */
+    public void resize(int maxTotal) {
+        if (maxTotal > internalPool.getMaxTotal()) {
+            internalPool.setMaxTotal(maxTotal);
+            internalPool.setMaxIdle(maxTotal);
+        } else {
+            internalPool.setMaxIdle(maxTotal);
+            internalPool.setMaxTotal(maxTotal);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.nana.springdemo.redis.serialize;
+
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * 单一类型的二进制编解码器
+ * <p>
+ * 由调用方提供复用的读写缓冲区，编解码器只负责数据本身，不写类型头。
+ * 实现必须是线程安全的。
+ */
+public interface IBinaryCodec {
+
+    /**
+     * 对象写入缓冲区
+     * @param output
+     * @param value
+     */
+    void write(Output output, Object value);
+
+    /**
+     * 从缓冲区当前位置读取对象，读到limit为止
+     * @param input
+     * @param clazz
+     * @return
+     */
+    <T> T read(Input input, Class<T> clazz);
+}
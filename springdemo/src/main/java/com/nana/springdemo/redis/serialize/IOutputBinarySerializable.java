@@ -0,0 +1,18 @@
+package com.nana.springdemo.redis.serialize;
+
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * 可以直接写入调用方缓冲区的序列化接口
+ * <p>
+ * 调用方复用同一个Output，序列化过程中不再产生中间byte[]，写入的字节为[0, output.position())。
+ */
+public interface IOutputBinarySerializable extends IBinarySerializable {
+
+    /**
+     * 对象序列化后追加写入output
+     * @param output
+     * @param t
+     */
+    <T> void writeTo(Output output, T t);
+}
@@ -0,0 +1,57 @@
+package com.nana.springdemo.redis.serialize;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Kryo类注册表
+ * <p>
+ * 为缓存中会出现的类分配固定的ID，序列化时只写ID而不写完整类名。
+ * ID一旦写入Redis就不能再修改或复用，新增类只能追加新的ID。
+ * Kryo内置类型占用了0~9，这里的ID必须从{@link #MIN_ID}开始。
+ */
+public class KryoClassRegistry {
+
+    /**
+     * 自定义ID的最小值，小于该值的ID被Kryo内置类型占用
+     */
+    public static final int MIN_ID = 10;
+
+    private final Map<Class<?>, Integer> registrations = new LinkedHashMap<Class<?>, Integer>();
+
+    /**
+     * 注册类
+     * @param clazz
+     * @param id 固定ID，>= {@link #MIN_ID}
+     * @return this，便于链式声明
+     */
+    public KryoClassRegistry register(Class<?> clazz, int id) {
+        if (clazz == null) {
+            throw new IllegalArgumentException("clazz cannot be null");
+        }
+        if (id < MIN_ID) {
+            throw new IllegalArgumentException("id must be >= " + MIN_ID + ", class:" + clazz.getName() + ",id:" + id);
+        }
+        if (registrations.containsKey(clazz)) {
+            throw new IllegalArgumentException("class already registered:" + clazz.getName());
+        }
+        if (registrations.containsValue(id)) {
+            throw new IllegalArgumentException("id already registered:" + id + ",class:" + clazz.getName());
+        }
+        registrations.put(clazz, id);
+        return this;
+    }
+
+    /**
+     * 已注册的类及其ID，按注册顺序返回
+     * @return
+     */
+    public Map<Class<?>, Integer> getRegistrations() {
+        return Collections.unmodifiableMap(registrations);
+    }
+
+    public boolean isEmpty() {
+        return registrations.isEmpty();
+    }
+}
@@ -0,0 +1,235 @@
+package com.nana.springdemo.redis.serialize.impl;
+
+import com.esotericsoftware.kryo.io.Output;
+import com.nana.springdemo.redis.serialize.IBinarySerializable;
+import com.nana.springdemo.redis.serialize.IOutputBinarySerializable;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 压缩序列化，包装在其他序列化实现外层
+ * <p>
+ * 序列化结果达到threshold字节时用LZ4(纯Java实现)压缩，格式：1字节标记{@link #COMPRESSED_FLAG} + 4字节原始长度 + LZ4数据。
+ * 未达到阈值或压缩后没有变小的值原样写入，读取时没有压缩标记的数据直接交给内层实现。
+ * 内层结果恰好以压缩标记开头时强制压缩，保证新写入的数据不会被误判。
+ * 开启压缩前写入的数据可能恰好以压缩标记开头(例如Kryo写出的Long -89为B1 01)，不能和本格式放在同一个key空间，
+ * 需要通过{@link com.nana.springdemo.redis.RedisKeyEncoder}的namespace隔开。
+ * 内层实现支持{@link IOutputBinarySerializable}时直接序列化到线程复用的缓冲区，压缩也使用线程复用的缓冲区，
+ * 每次写入只分配最终交给Jedis的byte[]。
+ * <p>
+ * 统计压缩次数、字节数和耗时，用于判断当前数据大小下开启压缩是否划算。
+ */
+public class CompressBinarySerializableImpl implements IBinarySerializable {
+
+    public static final int COMPRESSED_FLAG = 0xB1;
+
+    private static final int HEADER_LENGTH = 5;
+
+    private static final int INITIAL_BUFFER_SIZE = 256;
+
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * LZ4每个压缩字节最多解压出255字节
+     */
+    private static final int MAX_DECOMPRESS_RATIO = 255;
+
+    private final IBinarySerializable binarySerializable;
+    private final int threshold;
+
+    private final LZ4Compressor compressor;
+    private final LZ4FastDecompressor decompressor;
+
+    private final LongAdder compressCount = new LongAdder();
+    private final LongAdder skipCount = new LongAdder();
+    private final LongAdder rawBytes = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder compressNanos = new LongAdder();
+    private final LongAdder decompressCount = new LongAdder();
+    private final LongAdder decompressNanos = new LongAdder();
+
+    private final ThreadLocal<CompressBuffer> buffers = new ThreadLocal<CompressBuffer>() {
+        @Override
+        protected CompressBuffer initialValue() {
+            return new CompressBuffer();
+        }
+    };
+
+    /**
+     * @param binarySerializable 内层序列化实现
+     * @param threshold 序列化结果达到该字节数才压缩
+     */
+    public CompressBinarySerializableImpl(IBinarySerializable binarySerializable, int threshold) {
+        this.binarySerializable = binarySerializable;
+        this.threshold = threshold;
+        LZ4Factory factory = LZ4Factory.fastestJavaInstance();
+        this.compressor = factory.fastCompressor();
+        this.decompressor = factory.fastDecompressor();
+    }
+
+    @Override
+    public <T> byte[] toBinary(T t) {
+        CompressBuffer buffer = buffers.get();
+        try {
+            if (!(binarySerializable instanceof IOutputBinarySerializable)) {
+                byte[] raw = binarySerializable.toBinary(t);
+                return compress(raw, raw.length, raw);
+            }
+            Output output = buffer.raw;
+            output.clear();
+            ((IOutputBinarySerializable) binarySerializable).writeTo(output, t);
+            return compress(output.getBuffer(), output.position(), null);
+        } finally {
+            buffer.trim();
+        }
+    }
+
+    /**
+     * @param raw 序列化结果所在的缓冲区
+     * @param rawLength 序列化结果长度
+     * @param exact 长度恰好为rawLength的数组，不压缩时直接返回，为null时复制一份
+     */
+    private byte[] compress(byte[] raw, int rawLength, byte[] exact) {
+        boolean flagged = rawLength > 0 && (raw[0] & 0xFF) == COMPRESSED_FLAG;
+        if (rawLength < threshold && !flagged) {
+            skipCount.increment();
+            return exact != null ? exact : Arrays.copyOf(raw, rawLength);
+        }
+        long start = System.nanoTime();
+        CompressBuffer buffer = buffers.get();
+        int maxLength = compressor.maxCompressedLength(rawLength);
+        byte[] buf = buffer.compressed(HEADER_LENGTH + maxLength);
+        int length = compressor.compress(raw, 0, rawLength, buf, HEADER_LENGTH, maxLength);
+        if (HEADER_LENGTH + length >= rawLength && !flagged) {
+            skipCount.increment();
+            compressNanos.add(System.nanoTime() - start);
+            return exact != null ? exact : Arrays.copyOf(raw, rawLength);
+        }
+        buf[0] = (byte) COMPRESSED_FLAG;
+        buf[1] = (byte) (rawLength >>> 24);
+        buf[2] = (byte) (rawLength >>> 16);
+        buf[3] = (byte) (rawLength >>> 8);
+        buf[4] = (byte) rawLength;
+        byte[] ret = Arrays.copyOf(buf, HEADER_LENGTH + length);
+        compressNanos.add(System.nanoTime() - start);
+        compressCount.increment();
+        rawBytes.add(rawLength);
+        compressedBytes.add(ret.length);
+        return ret;
+    }
+
+    @Override
+    public <T> T toObject(byte[] data, Class<T> clazz) {
+        if (data.length < HEADER_LENGTH || (data[0] & 0xFF) != COMPRESSED_FLAG) {
+            return binarySerializable.toObject(data, clazz);
+        }
+        long start = System.nanoTime();
+        int rawLength = ((data[1] & 0xFF) << 24) | ((data[2] & 0xFF) << 16) | ((data[3] & 0xFF) << 8) | (data[4] & 0xFF);
+        //头部的原始长度来自Redis中的数据，分配前先校验，损坏的数据不能导致NegativeArraySizeException或者OOM
+        if (rawLength < 0 || rawLength > maxDecompressedLength(data.length - HEADER_LENGTH)) {
+            throw new IllegalArgumentException("invalid compressed data, rawLength:" + rawLength + ",length:" + data.length);
+        }
+        byte[] raw = new byte[rawLength];
+        int read = decompressor.decompress(data, HEADER_LENGTH, raw, 0, rawLength);
+        if (HEADER_LENGTH + read != data.length) {
+            throw new IllegalArgumentException("invalid compressed data, rawLength:" + rawLength + ",length:" + data.length);
+        }
+        decompressNanos.add(System.nanoTime() - start);
+        decompressCount.increment();
+        return binarySerializable.toObject(raw, clazz);
+    }
+
+    private static long maxDecompressedLength(int compressedLength) {
+        return (long) compressedLength * MAX_DECOMPRESS_RATIO;
+    }
+
+    /**
+     * 压缩写入的次数
+     */
+    public long getCompressCount() {
+        return compressCount.sum();
+    }
+
+    /**
+     * 未压缩写入的次数（低于阈值或压缩后没有变小）
+     */
+    public long getSkipCount() {
+        return skipCount.sum();
+    }
+
+    /**
+     * 压缩前的总字节数
+     */
+    public long getRawBytes() {
+        return rawBytes.sum();
+    }
+
+    /**
+     * 压缩后的总字节数（含头）
+     */
+    public long getCompressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    /**
+     * 压缩比，压缩后/压缩前，没有压缩过时返回1
+     */
+    public double getCompressRatio() {
+        long raw = rawBytes.sum();
+        return raw == 0 ? 1.0 : (double) compressedBytes.sum() / raw;
+    }
+
+    /**
+     * 压缩累计耗时（含压缩后没有变小而放弃的）
+     */
+    public long getCompressNanos() {
+        return compressNanos.sum();
+    }
+
+    public long getDecompressCount() {
+        return decompressCount.sum();
+    }
+
+    public long getDecompressNanos() {
+        return decompressNanos.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "CompressBinarySerializableImpl{threshold=" + threshold
+                + ",compressCount=" + getCompressCount()
+                + ",skipCount=" + getSkipCount()
+                + ",compressRatio=" + getCompressRatio()
+                + ",compressNanos=" + getCompressNanos()
+                + ",decompressCount=" + getDecompressCount()
+                + ",decompressNanos=" + getDecompressNanos() + "}";
+    }
+
+    /**
+     * 线程复用的序列化和压缩缓冲区
+     */
+    private static class CompressBuffer {
+        private final Output raw = new Output(INITIAL_BUFFER_SIZE, -1);
+        private byte[] compressed = new byte[INITIAL_BUFFER_SIZE];
+
+        private byte[] compressed(int size) {
+            if (compressed.length < size) {
+                compressed = new byte[size];
+            }
+            return compressed;
+        }
+
+        private void trim() {
+            if (raw.getBuffer().length > MAX_RETAINED_BUFFER_SIZE) {
+                raw.setBuffer(new byte[INITIAL_BUFFER_SIZE], -1);
+            }
+            if (compressed.length > MAX_RETAINED_BUFFER_SIZE) {
+                compressed = new byte[INITIAL_BUFFER_SIZE];
+            }
+        }
+    }
+}
@@ -1,31 +1,174 @@
 package com.nana.springdemo.redis.serialize.impl;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
-import com.nana.springdemo.redis.serialize.IBinarySerializable;
+import com.nana.springdemo.redis.serialize.IBinaryCodec;
+import com.nana.springdemo.redis.serialize.IOutputBinarySerializable;
+import com.nana.springdemo.redis.serialize.KryoClassRegistry;
+
+import java.util.Map;
 
 /**
  * Kryo序列化
- *
+ * <p>
+ * Kryo实例和Input/Output缓冲区都不是线程安全的，这里按线程各持有一份并在调用之间复用，
+ * 避免每次缓存读写都重新创建Kryo、注册类和分配缓冲区。
+ * Output不设上限，按需扩容；超过{@link #MAX_RETAINED_BUFFER_SIZE}的缓冲区用完即丢弃，避免线程长期占用大块内存。
+ * <p>
+ * 通过{@link KryoClassRegistry}注册的类只写ID，不写类名。开启registrationRequired后遇到未注册的类直接报错；
+ * 同时开启legacyReadable时，读取失败会再用不要求注册的Kryo重试一次，兼容之前按类名写入的数据。
+ * <p>
+ * 同时作为{@link IBinaryCodec}，供{@link RoutingBinarySerializableImpl}处理没有专用编解码器的类型。
  */
-public class KryoBinarySerializableImpl implements IBinarySerializable {
+public class KryoBinarySerializableImpl implements IOutputBinarySerializable, IBinaryCodec {
+
+    /**
+     * 初始输出缓冲区大小
+     */
+    private static final int INITIAL_BUFFER_SIZE = 256;
+
+    /**
+     * 线程可以长期保留的最大输出缓冲区
+     */
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+    private static final byte[] EMPTY_BYTES = new byte[0];
+
+    private final KryoClassRegistry classRegistry;
+    private final boolean registrationRequired;
+    private final boolean legacyReadable;
+
+    private final ThreadLocal<KryoHolder> holders = new ThreadLocal<KryoHolder>() {
+        @Override
+        protected KryoHolder initialValue() {
+            return new KryoHolder(newKryo());
+        }
+    };
+
+    public KryoBinarySerializableImpl() {
+        this(new KryoClassRegistry(), false, false);
+    }
+
+    /**
+     * @param classRegistry 类注册表
+     * @param registrationRequired 是否拒绝未注册的类
+     * @param legacyReadable 严格模式下是否兼容读取未注册格式写入的数据
+     */
+    public KryoBinarySerializableImpl(KryoClassRegistry classRegistry, boolean registrationRequired, boolean legacyReadable) {
+        this.classRegistry = classRegistry;
+        this.registrationRequired = registrationRequired;
+        this.legacyReadable = legacyReadable;
+    }
+
+    /**
+     * 创建线程私有的Kryo实例，子类可以覆盖以注册类或调整配置
+     * @return
+     */
+    protected Kryo newKryo() {
+        return newKryo(registrationRequired);
+    }
+
+    private Kryo newKryo(boolean required) {
+        Kryo kryo = new Kryo();
+        kryo.setRegistrationRequired(required);
+        for (Map.Entry<Class<?>, Integer> entry : classRegistry.getRegistrations().entrySet()) {
+            kryo.register(entry.getKey(), entry.getValue());
+        }
+        return kryo;
+    }
+
+    /**
+     * 当前线程复用的Kryo
+     * @return
+     */
+    protected Kryo getKryo() {
+        return holders.get().kryo;
+    }
+
     @Override
     public <T> byte[] toBinary(T t) {
-        Kryo kryo = new Kryo();
-        Output output = new Output(256, 4096);
-        kryo.writeObject(output, t);
-        byte[] data = output.toBytes();
-        output.flush();
-        output.close();
-        return data;
+        Output output = holders.get().output;
+        try {
+            output.clear();
+            write(output, t);
+            return output.toBytes();
+        } finally {
+            if (output.getBuffer().length > MAX_RETAINED_BUFFER_SIZE) {
+                output.setBuffer(new byte[INITIAL_BUFFER_SIZE], -1);
+            }
+        }
     }
 
     @Override
     public <T> T toObject(byte[] data, Class<T> clazz) {
-        Kryo kryo = new Kryo();
-        Input input = new Input(data);
-        T t = kryo.readObject(input, clazz);
-        return t;
+        Input input = holders.get().input;
+        try {
+            input.setBuffer(data);
+            return read(input, clazz);
+        } finally {
+            input.setBuffer(EMPTY_BYTES);
+        }
+    }
+
+    @Override
+    public <T> void writeTo(Output output, T t) {
+        write(output, t);
+    }
+
+    @Override
+    public void write(Output output, Object value) {
+        Kryo kryo = holders.get().kryo;
+        try {
+            kryo.writeObject(output, value);
+        } finally {
+            kryo.reset();
+        }
+    }
+
+    @Override
+    public <T> T read(Input input, Class<T> clazz) {
+        KryoHolder holder = holders.get();
+        int start = input.position();
+        try {
+            return holder.kryo.readObject(input, clazz);
+        } catch (KryoException e) {
+            if (!registrationRequired || !legacyReadable) {
+                throw e;
+            }
+            input.setPosition(start);
+            return readOfLegacy(holder, input, clazz);
+        } finally {
+            holder.kryo.reset();
+        }
+    }
+
+    /**
+     * 用不要求注册的Kryo重新读取，兼容旧数据
+     */
+    private <T> T readOfLegacy(KryoHolder holder, Input input, Class<T> clazz) {
+        if (holder.legacyKryo == null) {
+            holder.legacyKryo = newKryo(false);
+        }
+        try {
+            return holder.legacyKryo.readObject(input, clazz);
+        } finally {
+            holder.legacyKryo.reset();
+        }
+    }
+
+    /**
+     * 线程私有的Kryo及其读写缓冲区
+     */
+    private static class KryoHolder {
+        private final Kryo kryo;
+        private final Output output = new Output(INITIAL_BUFFER_SIZE, -1);
+        private final Input input = new Input();
+        private Kryo legacyKryo;
+
+        private KryoHolder(Kryo kryo) {
+            this.kryo = kryo;
+        }
     }
 }
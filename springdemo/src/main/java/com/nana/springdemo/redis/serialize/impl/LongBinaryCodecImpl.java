@@ -0,0 +1,25 @@
+package com.nana.springdemo.redis.serialize.impl;
+
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.nana.springdemo.redis.serialize.IBinaryCodec;
+
+/**
+ * 整数编解码，Long和Integer都写成zigzag变长整数，小数值只占1~2个字节
+ */
+public class LongBinaryCodecImpl implements IBinaryCodec {
+
+    @Override
+    public void write(Output output, Object value) {
+        output.writeVarLong(((Number) value).longValue(), false);
+    }
+
+    @Override
+    public <T> T read(Input input, Class<T> clazz) {
+        long v = input.readVarLong(false);
+        if (clazz == Integer.class) {
+            return clazz.cast((int) v);
+        }
+        return clazz.cast(v);
+    }
+}
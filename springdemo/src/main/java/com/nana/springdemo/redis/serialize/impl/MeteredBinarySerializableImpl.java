@@ -0,0 +1,37 @@
+package com.nana.springdemo.redis.serialize.impl;
+
+import com.nana.springdemo.redis.RedisCacheMetrics;
+import com.nana.springdemo.redis.serialize.IBinarySerializable;
+
+/**
+ * 统计序列化字节数，包装在其他序列化实现最外层
+ * <p>
+ * 字节数记到当前线程正在执行的缓存方法上，见{@link RedisCacheMetrics#enter}
+ */
+public class MeteredBinarySerializableImpl implements IBinarySerializable {
+
+    private final IBinarySerializable binarySerializable;
+    private final RedisCacheMetrics metrics;
+
+    public MeteredBinarySerializableImpl(IBinarySerializable binarySerializable, RedisCacheMetrics metrics) {
+        this.binarySerializable = binarySerializable;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public <T> byte[] toBinary(T t) {
+        byte[] data = binarySerializable.toBinary(t);
+        if (data != null) {
+            metrics.recordWrite(data.length);
+        }
+        return data;
+    }
+
+    @Override
+    public <T> T toObject(byte[] data, Class<T> clazz) {
+        if (data != null) {
+            metrics.recordRead(data.length);
+        }
+        return binarySerializable.toObject(data, clazz);
+    }
+}
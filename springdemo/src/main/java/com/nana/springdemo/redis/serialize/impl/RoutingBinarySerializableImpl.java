@@ -0,0 +1,140 @@
+package com.nana.springdemo.redis.serialize.impl;
+
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.nana.springdemo.redis.serialize.IBinaryCodec;
+import com.nana.springdemo.redis.serialize.IOutputBinarySerializable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按类型选择编解码器的序列化实现
+ * <p>
+ * 每个值前面写1字节类型头：高4位固定为{@link #HEADER_MAGIC}，低4位为编解码器编号(0~15)，
+ * 不同编解码器写入的值可以在Redis中共存。没有注册专用编解码器的类型使用默认编解码器。
+ * 升级前写入的无头数据可能恰好以0xA_开头，无法按内容识别，不能和本格式放在同一个key空间，
+ * 需要通过{@link com.nana.springdemo.redis.RedisKeyEncoder}的namespace隔开；类型头不可识别时直接报错。
+ * <p>
+ * 编号写入Redis后就不能再修改或复用。注册应在对象发布给其他线程之前完成。
+ */
+public class RoutingBinarySerializableImpl implements IOutputBinarySerializable {
+
+    public static final int HEADER_MAGIC = 0xA0;
+
+    private static final int HEADER_MASK = 0xF0;
+
+    private static final int MAX_CODEC_ID = 0x0F;
+
+    private static final int INITIAL_BUFFER_SIZE = 256;
+
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+    private static final byte[] EMPTY_BYTES = new byte[0];
+
+    private final IBinaryCodec[] codecs = new IBinaryCodec[MAX_CODEC_ID + 1];
+    private final Map<Class<?>, Integer> codecIdOfType = new HashMap<Class<?>, Integer>();
+    private final int defaultCodecId;
+
+    private final ThreadLocal<Output> outputs = new ThreadLocal<Output>() {
+        @Override
+        protected Output initialValue() {
+            return new Output(INITIAL_BUFFER_SIZE, -1);
+        }
+    };
+
+    private final ThreadLocal<Input> inputs = new ThreadLocal<Input>() {
+        @Override
+        protected Input initialValue() {
+            return new Input();
+        }
+    };
+
+    /**
+     * @param defaultCodecId 默认编解码器编号
+     * @param defaultCodec 默认编解码器
+     */
+    public RoutingBinarySerializableImpl(int defaultCodecId, IBinaryCodec defaultCodec) {
+        this.defaultCodecId = defaultCodecId;
+        register(defaultCodecId, defaultCodec);
+    }
+
+    /**
+     * 注册编解码器及其负责的类型（精确匹配，不含子类）
+     * @param codecId 编号 0~15
+     * @param codec
+     * @param types
+     * @return this，便于链式声明
+     */
+    public RoutingBinarySerializableImpl register(int codecId, IBinaryCodec codec, Class<?>... types) {
+        if (codecId < 0 || codecId > MAX_CODEC_ID) {
+            throw new IllegalArgumentException("codecId must be between 0 and " + MAX_CODEC_ID + ",codecId:" + codecId);
+        }
+        if (codecs[codecId] != null && codecs[codecId] != codec) {
+            throw new IllegalArgumentException("codecId already registered:" + codecId);
+        }
+        codecs[codecId] = codec;
+        for (Class<?> type : types) {
+            if (codecIdOfType.containsKey(type)) {
+                throw new IllegalArgumentException("type already registered:" + type.getName());
+            }
+            codecIdOfType.put(type, codecId);
+        }
+        return this;
+    }
+
+    @Override
+    public <T> byte[] toBinary(T t) {
+        Output output = outputs.get();
+        try {
+            output.clear();
+            writeTo(output, t);
+            return output.toBytes();
+        } finally {
+            if (output.getBuffer().length > MAX_RETAINED_BUFFER_SIZE) {
+                output.setBuffer(new byte[INITIAL_BUFFER_SIZE], -1);
+            }
+        }
+    }
+
+    @Override
+    public <T> void writeTo(Output output, T t) {
+        int codecId = codecIdOf(t);
+        output.writeByte(HEADER_MAGIC | codecId);
+        codecs[codecId].write(output, t);
+    }
+
+    @Override
+    public <T> T toObject(byte[] data, Class<T> clazz) {
+        Input input = inputs.get();
+        try {
+            IBinaryCodec codec = codecOfHeader(data);
+            if (codec == null) {
+                throw new IllegalArgumentException("unknown serialize header:" + (data.length == 0 ? "empty" : data[0]));
+            }
+            input.setBuffer(data, 1, data.length - 1);
+            return codec.read(input, clazz);
+        } finally {
+            input.setBuffer(EMPTY_BYTES);
+        }
+    }
+
+    private int codecIdOf(Object t) {
+        if (t == null) {
+            return defaultCodecId;
+        }
+        Integer codecId = codecIdOfType.get(t.getClass());
+        return codecId == null ? defaultCodecId : codecId;
+    }
+
+    private IBinaryCodec codecOfHeader(byte[] data) {
+        if (data.length == 0) {
+            return null;
+        }
+        int header = data[0] & 0xFF;
+        if ((header & HEADER_MASK) != HEADER_MAGIC) {
+            return null;
+        }
+        return codecs[header & MAX_CODEC_ID];
+    }
+}
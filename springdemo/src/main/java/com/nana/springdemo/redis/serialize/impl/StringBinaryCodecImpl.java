@@ -0,0 +1,27 @@
+package com.nana.springdemo.redis.serialize.impl;
+
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.nana.springdemo.redis.serialize.IBinaryCodec;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 字符串编解码，直接写UTF-8字节，不带长度
+ */
+public class StringBinaryCodecImpl implements IBinaryCodec {
+
+    @Override
+    public void write(Output output, Object value) {
+        output.writeBytes(((String) value).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public <T> T read(Input input, Class<T> clazz) {
+        int position = input.position();
+        int length = input.limit() - position;
+        String s = new String(input.getBuffer(), position, length, StandardCharsets.UTF_8);
+        input.setPosition(position + length);
+        return clazz.cast(s);
+    }
+}
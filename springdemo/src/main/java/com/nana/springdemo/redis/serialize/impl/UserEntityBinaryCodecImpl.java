@@ -0,0 +1,67 @@
+package com.nana.springdemo.redis.serialize.impl;
+
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.nana.springdemo.common.entity.UserEntity;
+import com.nana.springdemo.redis.serialize.IBinaryCodec;
+
+import java.util.Date;
+
+/**
+ * UserEntity手写编解码
+ * <p>
+ * 格式：1字节null标记 + id(变长) + userName + password + gmtCreate(变长) + gmtModified(变长)，
+ * 不写类名和字段名，也不走反射。
+ * UserEntity增减字段时不能直接改这里的格式，要新增编解码器并分配新的编号，旧编号保留用于读取旧数据。
+ */
+public class UserEntityBinaryCodecImpl implements IBinaryCodec {
+
+    private static final int FLAG_ID = 1;
+    private static final int FLAG_GMT_CREATE = 1 << 1;
+    private static final int FLAG_GMT_MODIFIED = 1 << 2;
+
+    @Override
+    public void write(Output output, Object value) {
+        UserEntity user = (UserEntity) value;
+        int flags = 0;
+        if (user.getId() != null) {
+            flags |= FLAG_ID;
+        }
+        if (user.getGmtCreate() != null) {
+            flags |= FLAG_GMT_CREATE;
+        }
+        if (user.getGmtModified() != null) {
+            flags |= FLAG_GMT_MODIFIED;
+        }
+        output.writeByte(flags);
+        if (user.getId() != null) {
+            output.writeVarInt(user.getId(), false);
+        }
+        output.writeString(user.getUserName());
+        output.writeString(user.getPassword());
+        if (user.getGmtCreate() != null) {
+            output.writeVarLong(user.getGmtCreate().getTime(), false);
+        }
+        if (user.getGmtModified() != null) {
+            output.writeVarLong(user.getGmtModified().getTime(), false);
+        }
+    }
+
+    @Override
+    public <T> T read(Input input, Class<T> clazz) {
+        UserEntity user = new UserEntity();
+        int flags = input.readByte();
+        if ((flags & FLAG_ID) != 0) {
+            user.setId(input.readVarInt(false));
+        }
+        user.setUserName(input.readString());
+        user.setPassword(input.readString());
+        if ((flags & FLAG_GMT_CREATE) != 0) {
+            user.setGmtCreate(new Date(input.readVarLong(false)));
+        }
+        if ((flags & FLAG_GMT_MODIFIED) != 0) {
+            user.setGmtModified(new Date(input.readVarLong(false)));
+        }
+        return clazz.cast(user);
+    }
+}
@@ -0,0 +1,248 @@
+package com.nana.springdemo.service;
+
+import com.nana.springdemo.common.entity.UserEntity;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * 请求内的用户批量加载(DataLoader)，保存在请求属性中，每个请求一个
+ * <p>
+ * load只登记ID并返回future，同一个请求内相同的ID返回同一个future，结果在请求结束前一直有效。
+ * 登记的ID在dispatch时去重，一次交给批量加载函数(一次mget加一次where id in查库)；
+ * 同步查询(loadNow)以及在还没有完成的future上join/get时，在当前线程把已登记的ID一起加载，
+ * 不会等到handler返回之后才加载而一直阻塞；返回异步结果的请求在handler返回后由{@link UserBatchLoaderInterceptor}
+ * 用异步批量加载函数加载(异步mget，只有未命中的ID才交给查库线程池)，不阻塞请求线程。
+ * 请求结束时仍未加载的ID不再加载，对应的future取消。
+ * <p>
+ * 可能被请求线程和异步回调线程同时访问，登记和取出待加载ID时加锁，加载本身不加锁。
+ */
+public class UserBatchLoader {
+
+    /**
+     * 请求属性名
+     */
+    static final String ATTRIBUTE = UserBatchLoader.class.getName();
+
+    private final Function<Set<Integer>, Map<Integer, UserEntity>> batchLoadFunction;
+    private final Function<Set<Integer>, CompletableFuture<Map<Integer, UserEntity>>> asyncBatchLoadFunction;
+    private final int maxBatchSize;
+
+    /**
+     * 本请求内所有登记过的ID，失败的会移除，再次load时重新加载
+     */
+    private final Map<Integer, CompletableFuture<UserEntity>> futures =
+            new HashMap<Integer, CompletableFuture<UserEntity>>();
+    private Map<Integer, CompletableFuture<UserEntity>> pending =
+            new LinkedHashMap<Integer, CompletableFuture<UserEntity>>();
+
+    /**
+     * @param batchLoadFunction 批量加载，返回的map中没有的ID按不存在处理
+     * @param asyncBatchLoadFunction dispatchAsync使用的异步批量加载，不能阻塞调用线程
+     * @param maxBatchSize 一次批量加载最多的ID个数，超出时分多次
+     */
+    public UserBatchLoader(Function<Set<Integer>, Map<Integer, UserEntity>> batchLoadFunction,
+                           Function<Set<Integer>, CompletableFuture<Map<Integer, UserEntity>>> asyncBatchLoadFunction,
+                           int maxBatchSize) {
+        this.batchLoadFunction = batchLoadFunction;
+        this.asyncBatchLoadFunction = asyncBatchLoadFunction;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * 登记ID，等下一次dispatch时加载
+     * @param id
+     * @return 加载完成的future，用户不存在时为null
+     */
+    public synchronized CompletableFuture<UserEntity> load(Integer id) {
+        CompletableFuture<UserEntity> future = futures.get(id);
+        if (future == null) {
+            future = new DispatchingFuture<UserEntity>();
+            futures.put(id, future);
+            pending.put(id, future);
+        }
+        return future;
+    }
+
+    /**
+     * 同步加载，本请求已加载过时直接返回，否则和已登记的ID一起加载
+     * @param id
+     * @return 用户不存在时为null
+     */
+    public UserEntity loadNow(Integer id) {
+        CompletableFuture<UserEntity> future = load(id);
+        if (!future.isDone()) {
+            dispatch();
+        }
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 包装future，在返回的future上join/get时先加载已登记的ID
+     * @param future
+     * @return
+     */
+    public <T> CompletableFuture<T> awaitable(CompletableFuture<T> future) {
+        final DispatchingFuture<T> ret = new DispatchingFuture<T>();
+        future.whenComplete((value, t) -> {
+            if (t != null) {
+                ret.completeExceptionally(t instanceof CompletionException && t.getCause() != null ? t.getCause() : t);
+            } else {
+                ret.complete(value);
+            }
+        });
+        return ret;
+    }
+
+    /**
+     * 请求结束时取消还没有加载的ID，不再访问Redis和数据库
+     */
+    public void cancelPending() {
+        Map<Integer, CompletableFuture<UserEntity>> batch;
+        synchronized (this) {
+            batch = takePending();
+            if (batch == null) {
+                return;
+            }
+            for (Integer id : batch.keySet()) {
+                futures.remove(id);
+            }
+        }
+        for (CompletableFuture<UserEntity> future : batch.values()) {
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * 在当前线程加载所有已登记的ID
+     */
+    public void dispatch() {
+        Map<Integer, CompletableFuture<UserEntity>> batch = takePending();
+        if (batch == null) {
+            return;
+        }
+        for (Set<Integer> chunk : chunks(batch)) {
+            try {
+                complete(batch, chunk, batchLoadFunction.apply(chunk));
+            } catch (Throwable t) {
+                fail(batch, chunk, t);
+            }
+        }
+    }
+
+    /**
+     * 用异步批量加载函数加载所有已登记的ID，不阻塞当前线程
+     */
+    public void dispatchAsync() {
+        final Map<Integer, CompletableFuture<UserEntity>> batch = takePending();
+        if (batch == null) {
+            return;
+        }
+        for (final Set<Integer> chunk : chunks(batch)) {
+            CompletableFuture<Map<Integer, UserEntity>> loading;
+            try {
+                loading = asyncBatchLoadFunction.apply(chunk);
+            } catch (Throwable t) {
+                fail(batch, chunk, t);
+                continue;
+            }
+            loading.whenComplete((users, t) -> {
+                if (t != null) {
+                    fail(batch, chunk, t instanceof CompletionException && t.getCause() != null ? t.getCause() : t);
+                } else {
+                    complete(batch, chunk, users);
+                }
+            });
+        }
+    }
+
+    private synchronized Map<Integer, CompletableFuture<UserEntity>> takePending() {
+        if (pending.isEmpty()) {
+            return null;
+        }
+        Map<Integer, CompletableFuture<UserEntity>> batch = pending;
+        pending = new LinkedHashMap<Integer, CompletableFuture<UserEntity>>();
+        return batch;
+    }
+
+    private List<Set<Integer>> chunks(Map<Integer, CompletableFuture<UserEntity>> batch) {
+        List<Integer> ids = new ArrayList<Integer>(batch.keySet());
+        List<Set<Integer>> chunks = new ArrayList<Set<Integer>>();
+        for (int from = 0; from < ids.size(); from += maxBatchSize) {
+            chunks.add(new LinkedHashSet<Integer>(ids.subList(from, Math.min(from + maxBatchSize, ids.size()))));
+        }
+        return chunks;
+    }
+
+    private static void complete(Map<Integer, CompletableFuture<UserEntity>> batch, Set<Integer> chunk,
+                                 Map<Integer, UserEntity> users) {
+        for (Integer id : chunk) {
+            batch.get(id).complete(users.get(id));
+        }
+    }
+
+    /**
+     * 失败的ID从本请求中移除，再次load时重新加载
+     */
+    private void fail(Map<Integer, CompletableFuture<UserEntity>> batch, Set<Integer> chunk, Throwable t) {
+        synchronized (this) {
+            for (Integer id : chunk) {
+                futures.remove(id);
+            }
+        }
+        for (Integer id : chunk) {
+            batch.get(id).completeExceptionally(t);
+        }
+    }
+
+    /**
+     * 等待结果时先加载已登记的ID，避免在handler中等待只有handler返回后才会加载的结果
+     */
+    private class DispatchingFuture<T> extends CompletableFuture<T> {
+        @Override
+        public T get() throws InterruptedException, ExecutionException {
+            dispatchIfPending();
+            return super.get();
+        }
+
+        @Override
+        public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            dispatchIfPending();
+            return super.get(timeout, unit);
+        }
+
+        @Override
+        public T join() {
+            dispatchIfPending();
+            return super.join();
+        }
+
+        private void dispatchIfPending() {
+            if (!isDone()) {
+                dispatch();
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.nana.springdemo.service;
+
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 请求内用户批量加载的收尾(见{@link UserBatchLoader})
+ * <p>
+ * 返回CompletableFuture等异步结果的handler，在afterConcurrentHandlingStarted中把登记的ID交给查库线程池加载，
+ * 不占用servlet线程；同步handler等待结果时由future自己在当前线程加载。
+ * afterCompletion时响应已经写出，仍未加载的ID不再访问Redis和数据库，对应的future直接取消。
+ */
+public class UserBatchLoaderInterceptor implements AsyncHandlerInterceptor {
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        UserBatchLoader loader = loaderOf(request);
+        if (loader != null) {
+            loader.dispatchAsync();
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        UserBatchLoader loader = loaderOf(request);
+        if (loader != null) {
+            loader.cancelPending();
+        }
+    }
+
+    private static UserBatchLoader loaderOf(HttpServletRequest request) {
+        return (UserBatchLoader) request.getAttribute(UserBatchLoader.ATTRIBUTE);
+    }
+}
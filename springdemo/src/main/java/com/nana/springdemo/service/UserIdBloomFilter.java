@@ -0,0 +1,119 @@
+package com.nana.springdemo.service;
+
+import com.nana.springdemo.mapper.UserMapper;
+import com.nana.springdemo.redis.BloomFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 已存在用户ID的布隆过滤器，不在过滤器中的ID直接当作不存在，不查库
+ * <p>
+ * 启动时按主键分页扫描user表构建，之后每隔rebuildSeconds重新构建一次。
+ * 两次构建之间新增的用户会被当作不存在，最多延迟rebuildSeconds(加上空值标记的有效期)可见，
+ * 对新增用户立即可见有要求时不要开启。首次构建完成前所有ID都当作可能存在，构建失败时沿用上一次的结果。
+ */
+@Component
+public class UserIdBloomFilter {
+
+    private static Logger log = LoggerFactory.getLogger(UserIdBloomFilter.class);
+
+    private static final int SCAN_PAGE_SIZE = 5000;
+
+    @Value("${user.bloom.enabled:false}")
+    private boolean enabled;
+    @Value("${user.bloom.expectedInsertions:1000000}")
+    private long expectedInsertions;
+    @Value("${user.bloom.fpp:0.01}")
+    private double fpp;
+    @Value("${user.bloom.rebuildSeconds:300}")
+    private int rebuildSeconds;
+
+    @Resource
+    private UserMapper userMapper;
+
+    private volatile BloomFilter filter;
+    private ScheduledExecutorService rebuilder;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        rebuilder = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "user-id-bloom-rebuild");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        rebuilder.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                rebuild();
+            }
+        }, 0, rebuildSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (rebuilder != null) {
+            rebuilder.shutdownNow();
+        }
+    }
+
+    /**
+     * @param id
+     * @return false 一定不存在；true 可能存在
+     */
+    public boolean mightContain(Integer id) {
+        BloomFilter current = filter;
+        return current == null || id == null || current.mightContain(id);
+    }
+
+    /**
+     * 新增用户后调用，本节点立即可见
+     * @param id
+     */
+    public void put(Integer id) {
+        BloomFilter current = filter;
+        if (current != null && id != null) {
+            current.put(id);
+        }
+    }
+
+    private void rebuild() {
+        try {
+            long start = System.currentTimeMillis();
+            BloomFilter next = new BloomFilter(expectedInsertions, fpp);
+            int count = 0;
+            Integer lastId = Integer.MIN_VALUE;
+            while (true) {
+                List<Integer> ids = userMapper.selectIdsAfter(lastId, SCAN_PAGE_SIZE);
+                for (Integer id : ids) {
+                    next.put(id);
+                }
+                count += ids.size();
+                if (ids.size() < SCAN_PAGE_SIZE) {
+                    break;
+                }
+                lastId = ids.get(ids.size() - 1);
+            }
+            filter = next;
+            log.info("user id bloom filter rebuilt,count:{},cost:{}ms", count, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("user id bloom filter rebuild error", e);
+        }
+    }
+}
@@ -10,14 +10,45 @@ import com.nana.springdemo.common.Enum.BusinessCenterExceptionEnum;
 import com.nana.springdemo.common.Exception.BusinessCenterException;
 import com.nana.springdemo.common.entity.UserEntity;
 import com.nana.springdemo.mapper.UserMapper;
+import com.nana.springdemo.redis.ExpiringValue;
+import com.nana.springdemo.redis.IAsyncRedisCache;
+import com.nana.springdemo.redis.IReactiveRedisCache;
 import com.nana.springdemo.redis.IRedisCache;
+import com.nana.springdemo.redis.LatencyBudget;
 import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 @Service("userService")
 public class UserService {
+    /**
+     * 用户缓存的过期时间
+     */
+    private static final int USER_CACHE_SECONDS = 60 * 60 * 24;
+
     @Resource
     private UserMapper userMapper;
 
@@ -25,23 +56,250 @@ public class UserService {
     @Resource
     private IRedisCache redisCache;
 
-    public UserEntity selectByPrimaryKey(Integer id) {
-        /**
-         * 先查缓存
-         */
-        if (redisCache.exists(String.valueOf(id)) == 1) {
-            return redisCache.get(String.valueOf(id), UserEntity.class);
+    @Resource
+    private IAsyncRedisCache asyncRedisCache;
+
+    @Resource
+    private IReactiveRedisCache reactiveRedisCache;
+
+    @Resource
+    private UserIdBloomFilter userIdBloomFilter;
+
+    @Value("${user.async.loadThreads:16}")
+    private int asyncLoadThreads;
+    @Value("${user.async.loadQueueSize:1000}")
+    private int asyncLoadQueueSize;
+    @Value("${user.cache.budgetMillis:0}")
+    private int cacheBudgetMillis;
+    @Value("${user.batch.maxIds:500}")
+    private int batchMaxIds;
+    @Value("${user.batch.loaderEnabled:true}")
+    private boolean batchLoaderEnabled;
+
+    /**
+     * 异步查询缓存未命中时查库的线程池，查库是阻塞的，不能放在Redis的IO线程中
+     * 线程数和队列都有上限，队列满时直接拒绝，不会无限堆积
+     */
+    private ExecutorService asyncLoadExecutor;
+    /**
+     * 响应式查询的查库调度器，和异步查询共用线程池
+     */
+    private Scheduler loadScheduler;
+
+    @PostConstruct
+    public void init() {
+        asyncLoadExecutor = new ThreadPoolExecutor(asyncLoadThreads, asyncLoadThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(asyncLoadQueueSize), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "user-async-load");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        loadScheduler = Schedulers.fromExecutorService(asyncLoadExecutor);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        loadScheduler.dispose();
+        asyncLoadExecutor.shutdown();
+    }
+
+    public UserEntity selectByPrimaryKey(final Integer id) {
+        //请求内经批量加载器去重，和同一请求中登记的其他ID一起加载，结果在请求内缓存
+        UserBatchLoader loader = requestBatchLoader();
+        UserEntity ret = loader != null ? loader.loadNow(id) : loadUser(id);
+        if (ret == null) {
+            throw new BusinessCenterException(BusinessCenterExceptionEnum.SERVER_ERROR);
         }
-        UserEntity ret = userMapper.selectByPrimaryKey(id);
+
+        return ret;
+    }
+
+    private UserEntity loadUser(final Integer id) {
         /**
-         * 缓存没有结果就查数据库，并且存入缓存
+         * 先查缓存，缓存没有结果就查数据库，并且异步存入缓存
+         * 不存在的ID缓存空值标记，布隆过滤器判断不存在的ID不查库
          */
-        if (ret != null) {
-            redisCache.setEx(String.valueOf(id), ret, 60 * 60 * 24);
-        }else{
-            throw new BusinessCenterException(BusinessCenterExceptionEnum.SERVER_ERROR);
+        Supplier<UserEntity> query = () -> redisCache.getOrLoad(String.valueOf(id), UserEntity.class, USER_CACHE_SECONDS,
+                () -> userIdBloomFilter.mightContain(id) ? userMapper.selectByPrimaryKey(id) : null);
+        //Redis命令超出预算时按未命中处理，直接查库；查库、写回和解锁不计入预算
+        return cacheBudgetMillis > 0 ? LatencyBudget.within(cacheBudgetMillis, query) : query.get();
+    }
+
+    /**
+     * 当前请求的批量加载器，不在请求线程中或者未开启时返回null
+     */
+    private UserBatchLoader requestBatchLoader() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!batchLoaderEnabled || attributes == null) {
+            return null;
+        }
+        UserBatchLoader loader = (UserBatchLoader) attributes.getAttribute(UserBatchLoader.ATTRIBUTE,
+                RequestAttributes.SCOPE_REQUEST);
+        if (loader == null) {
+            loader = new UserBatchLoader(this::loadBatch, this::loadBatchAsync, batchMaxIds);
+            attributes.setAttribute(UserBatchLoader.ATTRIBUTE, loader, RequestAttributes.SCOPE_REQUEST);
         }
+        return loader;
+    }
 
+    /**
+     * 批量加载器的加载函数，只有一个ID时走单个查询的读穿逻辑(单飞合并、空值标记、提前刷新)
+     */
+    private Map<Integer, UserEntity> loadBatch(Set<Integer> ids) {
+        if (ids.size() == 1) {
+            Integer id = ids.iterator().next();
+            Map<Integer, UserEntity> users = new HashMap<Integer, UserEntity>(2);
+            users.put(id, loadUser(id));
+            return users;
+        }
+        return loadUsers(ids);
+    }
+
+    /**
+     * 批量加载器的异步加载函数：一次异步mget，只有未命中的ID交给查库线程池走loadBatch，
+     * 全部命中时不占用任何线程；线程池满时加载失败，不在IO线程或请求线程中查库
+     */
+    private CompletableFuture<Map<Integer, UserEntity>> loadBatchAsync(Set<Integer> ids) {
+        String[] keys = new String[ids.size()];
+        int index = 0;
+        for (Integer id : ids) {
+            keys[index++] = String.valueOf(id);
+        }
+        return asyncRedisCache.mget(UserEntity.class, keys).thenCompose(cached -> {
+            Map<Integer, UserEntity> users = new HashMap<Integer, UserEntity>(ids.size() * 2);
+            Set<Integer> missIds = new LinkedHashSet<Integer>();
+            for (Integer id : ids) {
+                UserEntity user = cached != null ? cached.get(String.valueOf(id)) : null;
+                if (user != null) {
+                    users.put(id, user);
+                } else {
+                    missIds.add(id);
+                }
+            }
+            if (missIds.isEmpty()) {
+                return CompletableFuture.completedFuture(users);
+            }
+            return CompletableFuture.supplyAsync(() -> loadBatch(missIds), asyncLoadExecutor).thenApply(loaded -> {
+                users.putAll(loaded);
+                return users;
+            });
+        });
+    }
+
+    /**
+     * 批量查询，返回顺序和ids一致，不存在的ID跳过，重复的ID重复返回
+     * <p>
+     * 去重后一次mget取缓存，未命中的ID经布隆过滤器过滤后用一条where id in查库，
+     * 查到的用户setEx写回缓存，查不到的ID写空值标记，在同一个pipeline中完成，整个批量最多两次Redis往返和一次查库。
+     * 有空值标记的ID直接按不存在处理，不再查库。
+     * @param ids 去重后不能超过user.batch.maxIds个
+     * @return
+     */
+    public List<UserEntity> selectByPrimaryKeys(Collection<Integer> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return new ArrayList<UserEntity>();
+        }
+        Set<Integer> distinctIds = new LinkedHashSet<Integer>(ids);
+        distinctIds.remove(null);
+        if (distinctIds.size() > batchMaxIds) {
+            throw new BusinessCenterException(BusinessCenterExceptionEnum.PARAM_ERROR);
+        }
+        Map<Integer, UserEntity> users = loadUsers(distinctIds);
+        List<UserEntity> ret = new ArrayList<UserEntity>(ids.size());
+        for (Integer id : ids) {
+            UserEntity user = users.get(id);
+            if (user != null) {
+                ret.add(user);
+            }
+        }
         return ret;
     }
+
+    private Map<Integer, UserEntity> loadUsers(Set<Integer> ids) {
+        if (ids.isEmpty()) {
+            return new HashMap<Integer, UserEntity>();
+        }
+        String[] keys = new String[ids.size()];
+        int index = 0;
+        for (Integer id : ids) {
+            keys[index++] = String.valueOf(id);
+        }
+        //mgetWithPttl能区分空值标记和不存在；Redis命令超出预算或者异常时返回null，全部按未命中查库
+        Supplier<Map<String, ExpiringValue<UserEntity>>> query = () -> redisCache.mgetWithPttl(UserEntity.class, keys);
+        Map<String, ExpiringValue<UserEntity>> cached = cacheBudgetMillis > 0 ? LatencyBudget.within(cacheBudgetMillis, query) : query.get();
+
+        Map<Integer, UserEntity> users = new HashMap<Integer, UserEntity>(ids.size() * 2);
+        List<Integer> missIds = new ArrayList<Integer>();
+        for (Integer id : ids) {
+            ExpiringValue<UserEntity> value = cached != null ? cached.get(String.valueOf(id)) : null;
+            if (value != null && value.getValue() != null) {
+                users.put(id, value.getValue());
+            } else if ((value == null || !value.isNegative()) && userIdBloomFilter.mightContain(id)) {
+                missIds.add(id);
+            }
+        }
+        if (missIds.isEmpty()) {
+            return users;
+        }
+
+        final List<UserEntity> loaded = userMapper.selectByPrimaryKeys(missIds);
+        for (UserEntity user : loaded) {
+            users.put(user.getId(), user);
+        }
+        Supplier<Integer> writeBack = () -> redisCache.batch(b -> {
+            for (UserEntity user : loaded) {
+                b.setEx(String.valueOf(user.getId()), user, USER_CACHE_SECONDS);
+            }
+            for (Integer id : missIds) {
+                if (!users.containsKey(id)) {
+                    b.setNegative(String.valueOf(id));
+                }
+            }
+        });
+        if (cacheBudgetMillis > 0) {
+            LatencyBudget.within(cacheBudgetMillis, writeBack);
+        } else {
+            writeBack.get();
+        }
+        return users;
+    }
+
+    /**
+     * 异步查询，缓存命中时不占用线程；未命中时在查库线程池中走同步的读穿逻辑
+     * (单飞合并、空值标记、布隆过滤器)
+     * @param id
+     * @return
+     */
+    public CompletableFuture<UserEntity> selectByPrimaryKeyAsync(final Integer id) {
+        //请求线程中只登记ID，handler执行完后和同一请求中的其他ID一起异步mget，未命中的才交给查库线程池；
+        //handler中join/get时在当前线程加载
+        UserBatchLoader loader = requestBatchLoader();
+        if (loader != null) {
+            return loader.awaitable(loader.load(id).thenApply(user -> {
+                if (user == null) {
+                    throw new BusinessCenterException(BusinessCenterExceptionEnum.SERVER_ERROR);
+                }
+                return user;
+            }));
+        }
+        return asyncRedisCache.get(String.valueOf(id), UserEntity.class).thenCompose(cached -> {
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+            return CompletableFuture.supplyAsync(() -> selectByPrimaryKey(id), asyncLoadExecutor);
+        });
+    }
+
+    /**
+     * 响应式查询，缓存命中时不阻塞任何线程；未命中时切到查库调度器走同步的读穿逻辑
+     * @param id
+     * @return
+     */
+    public Mono<UserEntity> selectByPrimaryKeyReactive(final Integer id) {
+        return reactiveRedisCache.get(String.valueOf(id), UserEntity.class)
+                .switchIfEmpty(Mono.fromCallable(() -> selectByPrimaryKey(id)).subscribeOn(loadScheduler));
+    }
 }
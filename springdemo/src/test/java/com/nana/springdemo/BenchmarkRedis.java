@@ -0,0 +1,64 @@
+package com.nana.springdemo;
+
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+/**
+ * 基准测试用的Redis
+ * <p>
+ * 系统属性benchmark.redis.port大于0时连接benchmark.redis.host(默认127.0.0.1)上已有的redis-server，
+ * 否则在空闲端口启动内置的redis-server(embedded-redis自带的6.2二进制)，关闭时停止。
+ */
+public class BenchmarkRedis {
+
+    private final RedisServer server;
+    private final String host;
+    private final int port;
+    private final JedisPool jedisPool;
+
+    public BenchmarkRedis(int maxTotal) throws IOException {
+        String host = System.getProperty("benchmark.redis.host", "127.0.0.1");
+        int port = Integer.getInteger("benchmark.redis.port", 0);
+        if (port <= 0) {
+            try (ServerSocket socket = new ServerSocket(0)) {
+                port = socket.getLocalPort();
+            }
+            host = "127.0.0.1";
+            server = new RedisServer(port);
+            server.start();
+        } else {
+            server = null;
+        }
+        JedisPoolConfig jpc = new JedisPoolConfig();
+        jpc.setMaxTotal(maxTotal);
+        jpc.setMaxIdle(maxTotal);
+        jpc.setMaxWaitMillis(2000);
+        jpc.setJmxEnabled(false);
+        jedisPool = new JedisPool(jpc, host, port, 2000);
+        this.host = host;
+        this.port = port;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public JedisPool getJedisPool() {
+        return jedisPool;
+    }
+
+    public void close() throws IOException {
+        jedisPool.close();
+        if (server != null) {
+            server.stop();
+        }
+    }
+}
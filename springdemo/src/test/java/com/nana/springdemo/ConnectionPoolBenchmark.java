@@ -0,0 +1,121 @@
+package com.nana.springdemo;
+
+import com.nana.springdemo.redis.impl.LockFreeJedisPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.util.Pool;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JedisPool和LockFreeJedisPool借还连接的对比，不需要Redis
+ * <p>
+ * 只测借出+归还本身的开销和竞争，不执行命令。JedisPool建连接时需要能连上的端口，这里起一个只accept的本地ServerSocket。
+ * 线程数远大于连接数时两者都会排队，主要看线程数和核数接近、连接数够用时借还的吞吐。
+ * <p>
+ * 参数：线程数列表，默认8 64 128
+ * 例：java ConnectionPoolBenchmark 32 64 128 256
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(64)
+public class ConnectionPoolBenchmark {
+
+    @Param({"jedisPool", "lockFree"})
+    public String poolType;
+
+    @Param({"64"})
+    public int maxTotal;
+
+    private ServerSocket serverSocket;
+    private final List<Socket> accepted = new CopyOnWriteArrayList<Socket>();
+    private Pool<Jedis> pool;
+
+    @Setup
+    public void setup() throws IOException {
+        serverSocket = new ServerSocket(0, 1024, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!serverSocket.isClosed()) {
+                    try {
+                        accepted.add(serverSocket.accept());
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            }
+        }, "benchmark-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        String host = serverSocket.getInetAddress().getHostAddress();
+        int port = serverSocket.getLocalPort();
+        if ("lockFree".equals(poolType)) {
+            pool = new LockFreeJedisPool(host, port, 2000, maxTotal, 2000);
+        } else {
+            JedisPoolConfig jpc = new JedisPoolConfig();
+            jpc.setMaxTotal(maxTotal);
+            jpc.setMaxIdle(maxTotal);
+            jpc.setMaxWaitMillis(2000);
+            jpc.setTestOnBorrow(false);
+            jpc.setTestOnReturn(false);
+            jpc.setTestWhileIdle(false);
+            jpc.setJmxEnabled(false);
+            pool = new JedisPool(jpc, host, port, 2000);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        pool.close();
+        serverSocket.close();
+        for (Socket socket : accepted) {
+            socket.close();
+        }
+    }
+
+    @Benchmark
+    public void borrowAndReturn(Blackhole bh) {
+        Jedis jedis = pool.getResource();
+        bh.consume(jedis);
+        jedis.close();
+    }
+
+    public static void main(String[] args) throws Exception {
+        String[] threadCounts = args.length > 0 ? args : new String[]{"8", "64", "128"};
+        for (String threads : threadCounts) {
+            new Runner(new OptionsBuilder()
+                    .include(ConnectionPoolBenchmark.class.getSimpleName())
+                    .threads(Integer.parseInt(threads))
+                    .build()).run();
+        }
+    }
+}
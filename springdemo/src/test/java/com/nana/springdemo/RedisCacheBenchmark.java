@@ -0,0 +1,117 @@
+package com.nana.springdemo;
+
+import com.nana.springdemo.common.entity.UserEntity;
+import com.nana.springdemo.redis.RedisFuture;
+import com.nana.springdemo.redis.impl.JedisResourcePoolAdapterImpl;
+import com.nana.springdemo.redis.impl.RedisCacheImpl;
+import com.nana.springdemo.redis.serialize.impl.KryoBinarySerializableImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RedisCacheImpl的get、mget和pipeline吞吐，Redis见{@link BenchmarkRedis}
+ * <p>
+ * 预先写入keyCount个UserEntity，每次操作随机取key。mget和pipeline每次读batchSize个key，
+ * 对比一次mget、一个pipeline发batchSize条get和逐条get的差别。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class RedisCacheBenchmark {
+
+    private static final String KEY_PREFIX = "benchmark:user:";
+
+    @Param({"10000"})
+    public int keyCount;
+
+    @Param({"100"})
+    public int batchSize;
+
+    private BenchmarkRedis redis;
+    private RedisCacheImpl redisCache;
+
+    @Setup
+    public void setup() throws IOException {
+        redis = new BenchmarkRedis(16);
+        redisCache = new RedisCacheImpl(new JedisResourcePoolAdapterImpl(redis.getJedisPool()),
+                new KryoBinarySerializableImpl());
+        for (int i = 0; i < keyCount; i += batchSize) {
+            final int from = i;
+            redisCache.batch(b -> {
+                for (int j = from; j < Math.min(from + batchSize, keyCount); j++) {
+                    b.setEx(KEY_PREFIX + j, SerializerBenchmark.newUser(j), 3600);
+                }
+            });
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        redis.close();
+    }
+
+    private String randomKey() {
+        return KEY_PREFIX + ThreadLocalRandom.current().nextInt(keyCount);
+    }
+
+    private String[] randomKeys() {
+        String[] keys = new String[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            keys[i] = randomKey();
+        }
+        return keys;
+    }
+
+    @Benchmark
+    public UserEntity get() {
+        return redisCache.get(randomKey(), UserEntity.class);
+    }
+
+    @Benchmark
+    public Map<String, UserEntity> mget() {
+        return redisCache.mget(UserEntity.class, randomKeys());
+    }
+
+    @Benchmark
+    public void pipelineGet(Blackhole bh) {
+        final String[] keys = randomKeys();
+        final List<RedisFuture<UserEntity>> futures = new ArrayList<RedisFuture<UserEntity>>(keys.length);
+        redisCache.batch(b -> {
+            for (String key : keys) {
+                futures.add(b.get(key, UserEntity.class));
+            }
+        });
+        for (RedisFuture<UserEntity> future : futures) {
+            bh.consume(future.get());
+        }
+    }
+
+    @Benchmark
+    public int set() {
+        int id = ThreadLocalRandom.current().nextInt(keyCount);
+        return redisCache.setEx(KEY_PREFIX + id, SerializerBenchmark.newUser(id), 3600);
+    }
+}
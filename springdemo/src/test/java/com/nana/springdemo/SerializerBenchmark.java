@@ -0,0 +1,88 @@
+package com.nana.springdemo;
+
+import com.nana.springdemo.common.entity.UserEntity;
+import com.nana.springdemo.redis.serialize.IBinarySerializable;
+import com.nana.springdemo.redis.serialize.impl.KryoBinarySerializableImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 序列化往返(toBinary + toObject)的耗时，不需要Redis
+ * <p>
+ * kryo：未注册类的KryoBinarySerializableImpl；production：和application.properties相同的配置，
+ * 注册类的Kryo + 按类型路由(UserEntity手写编码) + 超过1024字节LZ4压缩
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializerBenchmark {
+
+    @Param({"kryo", "production"})
+    public String serializer;
+
+    @Param({"1000"})
+    public int listSize;
+
+    private IBinarySerializable binarySerializable;
+    private UserEntity user;
+    private ArrayList<UserEntity> users;
+
+    @Setup
+    public void setup() {
+        if ("production".equals(serializer)) {
+            CacheConfiguration configuration = new CacheConfiguration();
+            ReflectionTestUtils.setField(configuration, "kryoRegistrationRequired", true);
+            ReflectionTestUtils.setField(configuration, "kryoLegacyReadable", true);
+            ReflectionTestUtils.setField(configuration, "serializeRouting", true);
+            ReflectionTestUtils.setField(configuration, "compressEnabled", true);
+            ReflectionTestUtils.setField(configuration, "compressThreshold", 1024);
+            binarySerializable = configuration.getBinarySerializable();
+        } else {
+            binarySerializable = new KryoBinarySerializableImpl();
+        }
+        user = newUser(1);
+        users = new ArrayList<UserEntity>(listSize);
+        for (int i = 0; i < listSize; i++) {
+            users.add(newUser(i));
+        }
+    }
+
+    static UserEntity newUser(int id) {
+        UserEntity user = new UserEntity();
+        user.setId(id);
+        user.setUserName("user-" + id);
+        user.setPassword("e10adc3949ba59abbe56e057f20f883e");
+        user.setGmtCreate(new Date(1500000000000L + id));
+        user.setGmtModified(new Date(1600000000000L + id));
+        return user;
+    }
+
+    @Benchmark
+    public UserEntity userEntityRoundTrip() {
+        return binarySerializable.toObject(binarySerializable.toBinary(user), UserEntity.class);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public List<UserEntity> userListRoundTrip() {
+        return binarySerializable.toObject(binarySerializable.toBinary(users), ArrayList.class);
+    }
+}
@@ -0,0 +1,110 @@
+package com.nana.springdemo;
+
+import com.nana.springdemo.common.entity.UserEntity;
+import com.nana.springdemo.redis.IRedisCache;
+import com.nana.springdemo.redis.impl.JedisResourcePoolAdapterImpl;
+import com.nana.springdemo.redis.impl.RedisCacheImpl;
+import com.nana.springdemo.redis.serialize.impl.KryoBinarySerializableImpl;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 平台线程和虚拟线程的对比压测，需要本地Redis
+ * <p>
+ * 每个任务模拟一次请求：一次缓存GET，再阻塞blockMillis模拟查库等其他IO。
+ * 平台线程模式用固定大小的线程池(模拟Tomcat的maxThreads)，虚拟线程模式每个任务一个虚拟线程，两种模式使用同样大小的JedisPool。
+ * <p>
+ * 参数：platform|virtual 并发任务数 平台线程数 连接数 blockMillis 秒数 [host] [port]
+ * 例：java ThreadModelBenchmark virtual 2000 200 32 5 30
+ */
+public class ThreadModelBenchmark {
+
+    private static final int SAMPLE_SIZE = 1 << 20;
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "platform";
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int platformThreads = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        int connections = args.length > 3 ? Integer.parseInt(args[3]) : 32;
+        final long blockMillis = args.length > 4 ? Long.parseLong(args[4]) : 5;
+        int seconds = args.length > 5 ? Integer.parseInt(args[5]) : 30;
+        String host = args.length > 6 ? args[6] : "127.0.0.1";
+        int port = args.length > 7 ? Integer.parseInt(args[7]) : 6379;
+
+        JedisPoolConfig jpc = new JedisPoolConfig();
+        jpc.setMaxTotal(connections);
+        jpc.setMaxIdle(connections);
+        jpc.setMaxWaitMillis(2000);
+        JedisPool jedisPool = new JedisPool(jpc, host, port, 2000);
+        final IRedisCache redisCache = new RedisCacheImpl(new JedisResourcePoolAdapterImpl(jedisPool),
+                new KryoBinarySerializableImpl());
+
+        UserEntity user = new UserEntity();
+        user.setId(1);
+        user.setUserName("benchmark");
+        user.setPassword("benchmark");
+        user.setGmtCreate(new Date());
+        user.setGmtModified(new Date());
+        redisCache.setEx("benchmark:user", user, 3600);
+
+        ExecutorService executor = "virtual".equals(mode)
+                ? VirtualThreadConfiguration.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(platformThreads);
+
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final long[] samples = new long[SAMPLE_SIZE];
+        final long[] counts = new long[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            final int worker = i;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    while (running.get()) {
+                        long start = System.nanoTime();
+                        redisCache.get("benchmark:user", UserEntity.class);
+                        try {
+                            Thread.sleep(blockMillis);
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        long n = counts[worker]++;
+                        //各任务写不同的槽位，只用于估算分位数
+                        samples[(int) ((worker + n * 7919) & (SAMPLE_SIZE - 1))] = System.nanoTime() - start;
+                    }
+                }
+            });
+        }
+
+        long begin = System.nanoTime();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        running.set(false);
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        jedisPool.close();
+
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        long[] latencies = Arrays.stream(samples).filter(v -> v > 0).sorted().toArray();
+        System.out.printf("mode=%s concurrency=%d platformThreads=%d connections=%d blockMillis=%d%n",
+                mode, concurrency, platformThreads, connections, blockMillis);
+        System.out.printf("requests=%d throughput=%.0f/s p50=%.2fms p99=%.2fms%n",
+                total, total / (elapsed / 1e9), percentile(latencies, 0.50), percentile(latencies, 0.99));
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.round(p * (sorted.length - 1)))] / 1e6;
+    }
+}
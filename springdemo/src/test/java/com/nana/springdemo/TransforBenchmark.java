@@ -0,0 +1,115 @@
+package com.nana.springdemo;
+
+import com.nana.springdemo.common.entity.UserEntity;
+import com.nana.springdemo.redis.impl.RedisCacheImpl;
+import com.nana.springdemo.redis.serialize.impl.KryoBinarySerializableImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RedisCacheImpl中批量命令的参数和结果转换(transfor*)，不需要Redis
+ * <p>
+ * 转换方法是私有的，通过static final的MethodHandle调用，JIT内联后和直接调用没有差别
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransforBenchmark {
+
+    private static final MethodHandle KEY_ARR_VALUE_LIST_TO_OBJ_MAP =
+            handle("transforKeyArrValueListToObjMap", String[].class, List.class, Class.class);
+    private static final MethodHandle KEY_ARR_VALUE_LIST_TO_LONG_MAP =
+            handle("transforKeyArrValueListToLongMap", String[].class, List.class);
+    private static final MethodHandle OBJ_MAP_TO_BYTES_ARR = handle("transforObjMapToBytesArr", Map.class);
+    private static final MethodHandle STRING_MAP_TO_STRING_ARR = handle("transforStringMapToStringArr", Map.class);
+    private static final MethodHandle LONG_MAP_TO_STRING_ARR = handle("transforLongMapToStringArr", Map.class);
+
+    @Param({"100"})
+    public int size;
+
+    private RedisCacheImpl redisCache;
+    private String[] keys;
+    private List<byte[]> objValues;
+    private List<String> longValues;
+    private Map<String, UserEntity> objMap;
+    private Map<String, String> stringMap;
+    private Map<String, Long> longMap;
+
+    private static MethodHandle handle(String name, Class<?>... parameterTypes) {
+        try {
+            Method method = RedisCacheImpl.class.getDeclaredMethod(name, parameterTypes);
+            method.setAccessible(true);
+            return MethodHandles.lookup().unreflect(method);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Setup
+    public void setup() {
+        KryoBinarySerializableImpl kryo = new KryoBinarySerializableImpl();
+        redisCache = new RedisCacheImpl(null, kryo);
+        keys = new String[size];
+        objValues = new ArrayList<byte[]>(size);
+        longValues = new ArrayList<String>(size);
+        objMap = new LinkedHashMap<String, UserEntity>();
+        stringMap = new LinkedHashMap<String, String>();
+        longMap = new LinkedHashMap<String, Long>();
+        for (int i = 0; i < size; i++) {
+            String key = "user:" + i;
+            UserEntity user = SerializerBenchmark.newUser(i);
+            keys[i] = key;
+            objValues.add(kryo.toBinary(user));
+            longValues.add(String.valueOf(i * 1000L));
+            objMap.put(key, user);
+            stringMap.put(key, user.getUserName());
+            longMap.put(key, i * 1000L);
+        }
+    }
+
+    @Benchmark
+    public Object keyArrValueListToObjMap() throws Throwable {
+        return KEY_ARR_VALUE_LIST_TO_OBJ_MAP.invoke(redisCache, keys, objValues, UserEntity.class);
+    }
+
+    @Benchmark
+    public Object keyArrValueListToLongMap() throws Throwable {
+        return KEY_ARR_VALUE_LIST_TO_LONG_MAP.invoke(redisCache, keys, longValues);
+    }
+
+    @Benchmark
+    public Object objMapToBytesArr() throws Throwable {
+        return OBJ_MAP_TO_BYTES_ARR.invoke(redisCache, objMap);
+    }
+
+    @Benchmark
+    public Object stringMapToStringArr() throws Throwable {
+        return STRING_MAP_TO_STRING_ARR.invoke(redisCache, stringMap);
+    }
+
+    @Benchmark
+    public Object longMapToStringArr() throws Throwable {
+        return LONG_MAP_TO_STRING_ARR.invoke(redisCache, longMap);
+    }
+}
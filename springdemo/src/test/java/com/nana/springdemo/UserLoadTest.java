@@ -0,0 +1,368 @@
+package com.nana.springdemo;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * /user/get的开环压测，单机复现线上负载
+ * <p>
+ * 按固定速率(rate)发送请求，不等上一个请求返回：请求的计划发送时间是固定的，线程不够或者服务端变慢时请求在本地排队，
+ * 耗时从计划发送时间开始计算，排队时间计入耗时，避免闭环压测的协调遗漏(coordinated omission)。
+ * 同时输出从实际发送开始计算的耗时(service)用于对比，两者差距大说明压测端或者服务端已经排队。
+ * <p>
+ * 用户ID按Zipf分布选取，排名越靠前(ID越小)的用户越热，zipf=0时为均匀分布。两个场景：
+ * <ul>
+ * <li>hit：ID范围[1, hitUsers]，先把所有用户加载进缓存，再按zipf压测，基本都命中缓存</li>
+ * <li>miss：ID范围[hitUsers+1, hitUsers+missUsers]，missZipf默认0，missUsers远大于请求数，基本都未命中、查库</li>
+ * </ul>
+ * 没有指定url时启动内置的redis-server(见{@link BenchmarkRedis})、MySQL兼容模式的H2内存库(写入全部用户)和应用本身；
+ * 指定url时直接压测已有的服务，数据需要事先准备好。每个场景的结果输出到控制台，并写入out目录下的loadtest-场景.json。
+ * <p>
+ * 参数(--名称=值)：scenario=hit,miss rate=1000 seconds=30 warmupSeconds=10 threads=200 hitUsers=10000
+ * missUsers=300000 zipf=0.99 missZipf=0 out=target url=http://host:port，--app.xxx=值 覆盖应用配置
+ * <p>
+ * 例：mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ * -Dexec.args="-classpath %classpath com.nana.springdemo.UserLoadTest --rate=2000 --app.redis.near.enabled=false"
+ */
+public class UserLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new HashMap<String, String>();
+        Map<String, Object> appProperties = new LinkedHashMap<String, Object>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("参数格式为--名称=值: " + arg);
+            }
+            String name = arg.substring(2, eq);
+            if (name.startsWith("app.")) {
+                appProperties.put(name.substring(4), arg.substring(eq + 1));
+            } else {
+                opts.put(name, arg.substring(eq + 1));
+            }
+        }
+        String[] scenarios = opt(opts, "scenario", "hit,miss").split(",");
+        int rate = Integer.parseInt(opt(opts, "rate", "1000"));
+        int seconds = Integer.parseInt(opt(opts, "seconds", "30"));
+        int warmupSeconds = Integer.parseInt(opt(opts, "warmupSeconds", "10"));
+        int threads = Integer.parseInt(opt(opts, "threads", "200"));
+        int hitUsers = Integer.parseInt(opt(opts, "hitUsers", "10000"));
+        int missUsers = Integer.parseInt(opt(opts, "missUsers", "300000"));
+        double zipf = Double.parseDouble(opt(opts, "zipf", "0.99"));
+        double missZipf = Double.parseDouble(opt(opts, "missZipf", "0"));
+        File out = new File(opt(opts, "out", "target"));
+        String url = opts.get("url");
+
+        //默认每个地址只保留5个keep-alive连接，多出的请求每次新建连接
+        System.setProperty("http.maxConnections", String.valueOf(threads));
+
+        BenchmarkRedis redis = null;
+        Connection db = null;
+        ConfigurableApplicationContext context = null;
+        if (url == null) {
+            redis = new BenchmarkRedis(1);
+            String jdbcUrl = "jdbc:h2:mem:loadtest;MODE=MySQL;DB_CLOSE_DELAY=-1";
+            db = createDatabase(jdbcUrl, hitUsers + missUsers);
+            context = startApp(jdbcUrl, redis, appProperties);
+            url = "http://127.0.0.1:" + context.getEnvironment().getProperty("local.server.port");
+        }
+
+        List<Report> reports = new ArrayList<Report>();
+        try {
+            for (String scenario : scenarios) {
+                Report report;
+                if ("hit".equals(scenario)) {
+                    warmUp(url, 1, hitUsers, threads);
+                    report = run(scenario, url, 1, new Zipf(hitUsers, zipf), rate, warmupSeconds, seconds, threads);
+                } else if ("miss".equals(scenario)) {
+                    report = run(scenario, url, hitUsers + 1, new Zipf(missUsers, missZipf), rate, warmupSeconds, seconds, threads);
+                } else {
+                    throw new IllegalArgumentException("未知场景: " + scenario);
+                }
+                reports.add(report);
+                report.write(out);
+            }
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+            if (db != null) {
+                db.close();
+            }
+            if (redis != null) {
+                redis.close();
+            }
+        }
+        System.out.println();
+        System.out.println(Report.header());
+        for (Report report : reports) {
+            System.out.println(report.line());
+        }
+        System.exit(0);
+    }
+
+    private static String opt(Map<String, String> opts, String name, String defaultValue) {
+        String value = opts.get(name);
+        return value == null ? defaultValue : value;
+    }
+
+    /**
+     * 建表并写入count个用户，ID从1开始，返回的连接关闭前内存库一直存在
+     */
+    private static Connection createDatabase(String jdbcUrl, int count) throws Exception {
+        Connection db = DriverManager.getConnection(jdbcUrl, "sa", "");
+        try (Statement statement = db.createStatement()) {
+            statement.execute("create table user (id int primary key, username varchar(64), password varchar(64),"
+                    + " gmt_create timestamp, gmt_modified timestamp)");
+        }
+        db.setAutoCommit(false);
+        try (PreparedStatement insert = db.prepareStatement("insert into user values (?, ?, ?, ?, ?)")) {
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            for (int id = 1; id <= count; id++) {
+                insert.setInt(1, id);
+                insert.setString(2, "user-" + id);
+                insert.setString(3, "e10adc3949ba59abbe56e057f20f883e");
+                insert.setTimestamp(4, now);
+                insert.setTimestamp(5, now);
+                insert.addBatch();
+                if (id % 10000 == 0 || id == count) {
+                    insert.executeBatch();
+                }
+            }
+        }
+        db.commit();
+        db.setAutoCommit(true);
+        return db;
+    }
+
+    private static ConfigurableApplicationContext startApp(String jdbcUrl, BenchmarkRedis redis,
+                                                           Map<String, Object> appProperties) {
+        Map<String, Object> properties = new LinkedHashMap<String, Object>();
+        properties.put("server.port", "0");
+        properties.put("spring.datasource.url", jdbcUrl);
+        properties.put("spring.datasource.driver-class-name", "org.h2.Driver");
+        properties.put("spring.datasource.username", "sa");
+        properties.put("spring.datasource.password", "");
+        properties.put("redis.host", redis.getHost());
+        properties.put("redis.port", String.valueOf(redis.getPort()));
+        properties.put("spring.redis.host", redis.getHost());
+        properties.put("spring.redis.port", String.valueOf(redis.getPort()));
+        properties.put("logging.level.root", "WARN");
+        properties.putAll(appProperties);
+        //放在最前面，优先级高于application.properties，日志级别在启动最开始就生效
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("loadtest", properties));
+        return new SpringApplicationBuilder(SpringdemoApplication.class).environment(environment).run();
+    }
+
+    /**
+     * 闭环请求一遍[first, first + count)，把这些用户加载进缓存
+     */
+    private static void warmUp(final String url, int first, int count, int threads) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int id = first; id < first + count; id++) {
+            final int userId = id;
+            executor.execute(() -> get(url, userId));
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.HOURS);
+        //等待异步写回缓存完成
+        Thread.sleep(1000);
+    }
+
+    private static Report run(String scenario, final String url, final int firstId, Zipf zipf, int rate,
+                              int warmupSeconds, int seconds, int threads) throws InterruptedException {
+        final Histogram corrected = new ConcurrentHistogram(3);
+        final Histogram service = new ConcurrentHistogram(3);
+        final LongAdder errors = new LongAdder();
+        final AtomicLong lastDone = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Random random = new Random(42);
+
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        final long measureFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(seconds);
+        for (long i = 0; ; i++) {
+            final long intended = start + i * intervalNanos;
+            if (intended >= end) {
+                break;
+            }
+            final int id = firstId + zipf.next(random);
+            long now;
+            while ((now = System.nanoTime()) < intended) {
+                LockSupport.parkNanos(intended - now);
+            }
+            executor.execute(() -> {
+                long sent = System.nanoTime();
+                boolean ok = get(url, id);
+                long done = System.nanoTime();
+                if (intended >= measureFrom) {
+                    corrected.recordValue(Math.max(1, TimeUnit.NANOSECONDS.toMicros(done - intended)));
+                    service.recordValue(Math.max(1, TimeUnit.NANOSECONDS.toMicros(done - sent)));
+                    if (!ok) {
+                        errors.increment();
+                    }
+                    lastDone.accumulateAndGet(done, Math::max);
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.HOURS);
+        double elapsedSeconds = (lastDone.get() - measureFrom) / 1e9;
+        return new Report(scenario, rate, corrected.getTotalCount() / elapsedSeconds, errors.sum(), corrected, service);
+    }
+
+    private static boolean get(String url, int id) {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(url + "/user/get?id=" + id).openConnection();
+            connection.setConnectTimeout(5000);
+            connection.setReadTimeout(30000);
+            int status = connection.getResponseCode();
+            InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            if (in != null) {
+                //读完响应才能复用连接
+                byte[] buffer = new byte[4096];
+                while (in.read(buffer) >= 0) {
+                }
+                in.close();
+            }
+            return status == 200;
+        } catch (IOException e) {
+            if (connection != null) {
+                connection.disconnect();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 按累积分布二分查找的Zipf分布，返回排名[0, n)，排名k的概率正比于1/(k+1)^s
+     */
+    private static final class Zipf {
+        private final double[] cdf;
+
+        private Zipf(int n, double s) {
+            cdf = new double[n];
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += 1 / Math.pow(i + 1, s);
+                cdf[i] = sum;
+            }
+            for (int i = 0; i < n; i++) {
+                cdf[i] /= sum;
+            }
+        }
+
+        private int next(Random random) {
+            int index = Arrays.binarySearch(cdf, random.nextDouble());
+            if (index < 0) {
+                index = -index - 1;
+            }
+            return Math.min(index, cdf.length - 1);
+        }
+    }
+
+    private static final class Report {
+        private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+        private final String scenario;
+        private final int targetRate;
+        private final double achievedRate;
+        private final long errors;
+        private final Histogram corrected;
+        private final Histogram service;
+
+        private Report(String scenario, int targetRate, double achievedRate, long errors,
+                       Histogram corrected, Histogram service) {
+            this.scenario = scenario;
+            this.targetRate = targetRate;
+            this.achievedRate = achievedRate;
+            this.errors = errors;
+            this.corrected = corrected;
+            this.service = service;
+        }
+
+        private static String header() {
+            return String.format(Locale.ROOT, "%-8s %8s %10s %9s %7s | %9s %9s %9s %9s %9s | %9s %9s %9s",
+                    "scenario", "rate", "achieved", "requests", "errors",
+                    "p50(ms)", "p90", "p99", "p999", "max", "svc p50", "svc p99", "svc p999");
+        }
+
+        private String line() {
+            return String.format(Locale.ROOT, "%-8s %8d %10.1f %9d %7d | %9.2f %9.2f %9.2f %9.2f %9.2f | %9.2f %9.2f %9.2f",
+                    scenario, targetRate, achievedRate, corrected.getTotalCount(), errors,
+                    millis(corrected, 50), millis(corrected, 90), millis(corrected, 99), millis(corrected, 99.9),
+                    corrected.getMaxValue() / 1000.0,
+                    millis(service, 50), millis(service, 99), millis(service, 99.9));
+        }
+
+        private static double millis(Histogram histogram, double percentile) {
+            return histogram.getValueAtPercentile(percentile) / 1000.0;
+        }
+
+        private void write(File dir) throws IOException {
+            dir.mkdirs();
+            StringBuilder json = new StringBuilder();
+            json.append("{\"scenario\":\"").append(scenario).append('"')
+                    .append(",\"targetRate\":").append(targetRate)
+                    .append(",\"achievedRate\":").append(String.format(Locale.ROOT, "%.1f", achievedRate))
+                    .append(",\"requests\":").append(corrected.getTotalCount())
+                    .append(",\"errors\":").append(errors)
+                    .append(",\"correctedMicros\":");
+            appendPercentiles(json, corrected);
+            json.append(",\"serviceMicros\":");
+            appendPercentiles(json, service);
+            json.append("}\n");
+            try (Writer writer = new OutputStreamWriter(
+                    new FileOutputStream(new File(dir, "loadtest-" + scenario + ".json")), StandardCharsets.UTF_8)) {
+                writer.write(json.toString());
+            }
+            System.out.println(header());
+            System.out.println(line());
+        }
+
+        private static void appendPercentiles(StringBuilder json, Histogram histogram) {
+            json.append('{');
+            for (double percentile : PERCENTILES) {
+                json.append("\"p").append(percentile == 99.9 ? "999" : String.valueOf((int) percentile)).append("\":")
+                        .append(histogram.getValueAtPercentile(percentile)).append(',');
+            }
+            json.append("\"max\":").append(histogram.getMaxValue()).append('}');
+        }
+    }
+}
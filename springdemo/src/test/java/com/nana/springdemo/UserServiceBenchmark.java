@@ -0,0 +1,127 @@
+package com.nana.springdemo;
+
+import com.nana.springdemo.common.entity.UserEntity;
+import com.nana.springdemo.mapper.UserMapper;
+import com.nana.springdemo.redis.impl.JedisResourcePoolAdapterImpl;
+import com.nana.springdemo.redis.impl.RedisCacheImpl;
+import com.nana.springdemo.redis.serialize.impl.KryoBinarySerializableImpl;
+import com.nana.springdemo.service.UserIdBloomFilter;
+import com.nana.springdemo.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * UserService.selectByPrimaryKey命中和未命中缓存的耗时，Redis见{@link BenchmarkRedis}
+ * <p>
+ * 不启动Spring和数据库，UserMapper直接返回对象，未命中的耗时只包含缓存这一侧(查缓存、加载锁、写回)。
+ * 缓存参数和application.properties相同：加载锁3000毫秒、提前刷新系数1.0、空值缓存60秒。
+ * 未命中每次使用新的ID，每轮结束后删除这些key。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class UserServiceBenchmark {
+
+    private static final int MISS_ID_START = 1000000000;
+
+    @Param({"10000"})
+    public int hitIds;
+
+    private BenchmarkRedis redis;
+    private RedisCacheImpl redisCache;
+    private UserService userService;
+    private final AtomicInteger nextMissId = new AtomicInteger(MISS_ID_START);
+    private int cleanedMissId = MISS_ID_START;
+
+    @Setup
+    public void setup() throws IOException {
+        redis = new BenchmarkRedis(16);
+        redisCache = new RedisCacheImpl(new JedisResourcePoolAdapterImpl(redis.getJedisPool()),
+                new KryoBinarySerializableImpl());
+        redisCache.setLoadLockMillis(3000);
+        redisCache.setEarlyRefreshBeta(1.0);
+        redisCache.setNegativeTtlSeconds(60);
+
+        userService = new UserService();
+        ReflectionTestUtils.setField(userService, "userMapper", new UserMapper() {
+            @Override
+            public UserEntity selectByPrimaryKey(Integer id) {
+                return SerializerBenchmark.newUser(id);
+            }
+
+            @Override
+            public List<UserEntity> selectByPrimaryKeys(Collection<Integer> ids) {
+                List<UserEntity> users = new ArrayList<UserEntity>(ids.size());
+                for (Integer id : ids) {
+                    users.add(SerializerBenchmark.newUser(id));
+                }
+                return users;
+            }
+
+            @Override
+            public List<Integer> selectIdsAfter(Integer lastId, int limit) {
+                return new ArrayList<Integer>();
+            }
+        });
+        ReflectionTestUtils.setField(userService, "redisCache", redisCache);
+        ReflectionTestUtils.setField(userService, "userIdBloomFilter", new UserIdBloomFilter());
+
+        for (int i = 0; i < hitIds; i++) {
+            userService.selectByPrimaryKey(i);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteMissKeys() {
+        int end = nextMissId.get();
+        for (int from = cleanedMissId; from < end; from += 1000) {
+            int to = Math.min(from + 1000, end);
+            String[] keys = new String[to - from];
+            for (int id = from; id < to; id++) {
+                keys[id - from] = String.valueOf(id);
+            }
+            redisCache.del(keys);
+        }
+        cleanedMissId = end;
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        redis.close();
+    }
+
+    @Benchmark
+    public UserEntity hit() {
+        return userService.selectByPrimaryKey(ThreadLocalRandom.current().nextInt(hitIds));
+    }
+
+    @Benchmark
+    public UserEntity miss() {
+        return userService.selectByPrimaryKey(nextMissId.getAndIncrement());
+    }
+}
@@ -0,0 +1,189 @@
+package com.nana.springdemo.redis;
+
+import com.nana.springdemo.redis.impl.RedisCacheImpl;
+import com.nana.springdemo.redis.serialize.impl.KryoBinarySerializableImpl;
+import org.junit.Before;
+import org.junit.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link RedisCircuitBreaker}的状态切换，用可控的时钟在内存中验证，不需要Redis
+ * <p>
+ * 覆盖失败率和慢调用率打开、minCalls以下不判断、半开探测成功关闭和失败(或慢)重新打开、
+ * 过期的桶移出窗口，以及通过RedisCacheImpl时Redis返回的错误不计入失败。
+ */
+public class RedisCircuitBreakerTests {
+
+    private static final long SLOW_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+    private static final long FAST_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private long now;
+    private RedisCircuitBreaker breaker;
+
+    @Before
+    public void setUp() {
+        now = TimeUnit.SECONDS.toNanos(100);
+        //10秒窗口，至少10次调用，失败率50%，100ms算慢调用，慢调用率10%，打开1秒，半开探测2次
+        breaker = newBreaker(10);
+    }
+
+    @Test
+    public void opensOnFailureRate() {
+        record(5, FAST_NANOS, false);
+        record(4, FAST_NANOS, true);
+        //只有9次调用，不到minCalls
+        assertEquals(RedisCircuitBreaker.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        breaker.onResult(FAST_NANOS, true);
+        assertEquals(RedisCircuitBreaker.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void staysClosedBelowFailureRate() {
+        record(6, FAST_NANOS, false);
+        record(4, FAST_NANOS, true);
+        assertEquals(RedisCircuitBreaker.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void opensOnSlowCallRate() {
+        record(9, FAST_NANOS, false);
+        assertEquals(RedisCircuitBreaker.CLOSED, breaker.getState());
+        record(1, SLOW_NANOS, false);
+        assertEquals(RedisCircuitBreaker.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void closesAfterSuccessfulProbes() {
+        trip();
+        advanceMillis(999);
+        assertFalse(breaker.tryAcquire());
+        advanceMillis(1);
+        assertTrue(breaker.tryAcquire());
+        assertEquals(RedisCircuitBreaker.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        //只放行probeCalls个探测调用
+        assertFalse(breaker.tryAcquire());
+        breaker.onResult(FAST_NANOS, false);
+        assertEquals(RedisCircuitBreaker.HALF_OPEN, breaker.getState());
+        breaker.onResult(FAST_NANOS, false);
+        assertEquals(RedisCircuitBreaker.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+
+        //关闭时清空窗口，打开前的失败不再计入
+        record(1, FAST_NANOS, true);
+        record(9, FAST_NANOS, false);
+        assertEquals(RedisCircuitBreaker.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void reopensOnFailedProbe() {
+        trip();
+        advanceMillis(1000);
+        assertTrue(breaker.tryAcquire());
+        breaker.onResult(FAST_NANOS, true);
+        assertEquals(RedisCircuitBreaker.OPEN, breaker.getState());
+        //重新计时
+        advanceMillis(500);
+        assertFalse(breaker.tryAcquire());
+        advanceMillis(500);
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    public void reopensOnSlowProbe() {
+        trip();
+        advanceMillis(1000);
+        assertTrue(breaker.tryAcquire());
+        breaker.onResult(SLOW_NANOS, false);
+        assertEquals(RedisCircuitBreaker.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void expiredBucketsLeaveWindow() {
+        breaker = newBreaker(2);
+        record(4, FAST_NANOS, true);
+        assertEquals(RedisCircuitBreaker.CLOSED, breaker.getState());
+        //2秒后同一个桶被复用，之前的4次失败移出窗口
+        advanceMillis(2000);
+        record(6, FAST_NANOS, false);
+        record(4, FAST_NANOS, true);
+        assertEquals(RedisCircuitBreaker.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void bucketsWithinWindowAreSummed() {
+        breaker = newBreaker(2);
+        record(4, FAST_NANOS, true);
+        advanceMillis(1000);
+        record(5, FAST_NANOS, false);
+        assertEquals(RedisCircuitBreaker.CLOSED, breaker.getState());
+        record(1, FAST_NANOS, true);
+        assertEquals(RedisCircuitBreaker.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void redisErrorsAreNotFailures() {
+        final AtomicInteger borrows = new AtomicInteger();
+        final boolean[] down = new boolean[1];
+        IRedisResourcePoolAdapter adapter = new IRedisResourcePoolAdapter() {
+            public Jedis getResource() {
+                borrows.incrementAndGet();
+                if (down[0]) {
+                    throw new JedisConnectionException("Could not get a resource from the pool");
+                }
+                //不建立连接，每个命令都返回Redis的错误
+                return new Jedis("127.0.0.1", 1) {
+                    @Override
+                    public String get(String key) {
+                        throw new JedisDataException("WRONGTYPE Operation against a key holding the wrong kind of value");
+                    }
+                };
+            }
+        };
+        RedisCacheImpl redisCache = new RedisCacheImpl(adapter, new KryoBinarySerializableImpl());
+        redisCache.setCircuitBreaker(new RedisCircuitBreaker(10, 10, 50, 1000, 100, 60000, 1));
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals("err", redisCache.getString("k", "err"));
+        }
+        assertEquals(20, borrows.get());
+
+        down[0] = true;
+        for (int i = 0; i < 30; i++) {
+            assertEquals("err", redisCache.getString("k", "err"));
+        }
+        //20次Redis错误之后，第20次连接失败时失败率达到50%，之后不再借连接
+        assertEquals(40, borrows.get());
+    }
+
+    private RedisCircuitBreaker newBreaker(int windowSeconds) {
+        return new RedisCircuitBreaker(windowSeconds, 10, 50, 100, 10, 1000, 2, () -> now);
+    }
+
+    private void trip() {
+        record(10, FAST_NANOS, true);
+        assertEquals(RedisCircuitBreaker.OPEN, breaker.getState());
+    }
+
+    private void record(int times, long nanos, boolean failure) {
+        for (int i = 0; i < times; i++) {
+            breaker.onResult(nanos, failure);
+        }
+    }
+
+    private void advanceMillis(long millis) {
+        now += TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
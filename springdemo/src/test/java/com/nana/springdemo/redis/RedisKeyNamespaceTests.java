@@ -0,0 +1,163 @@
+package com.nana.springdemo.redis;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Output;
+import com.nana.springdemo.BenchmarkRedis;
+import com.nana.springdemo.CacheConfiguration;
+import com.nana.springdemo.common.entity.UserEntity;
+import com.nana.springdemo.redis.impl.JedisResourcePoolAdapterImpl;
+import com.nana.springdemo.redis.impl.RedisCacheImpl;
+import com.nana.springdemo.redis.serialize.IBinarySerializable;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.clients.jedis.Jedis;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 新序列化格式(routing + compress)和升级前的无头Kryo数据通过key的namespace隔开
+ * <p>
+ * 旧数据的字节可能恰好是新格式的合法头(Kryo写出的80L为A0 01、-89L为B1 01)，按内容无法区分，
+ * 这里验证新格式只读写namespace下的key，旧key上的数据不会被误读。
+ */
+public class RedisKeyNamespaceTests {
+
+    private static final String NAMESPACE = "v2:";
+
+    private static BenchmarkRedis redis;
+    private static IBinarySerializable serializable;
+    private static RedisCacheImpl redisCache;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        redis = new BenchmarkRedis(4);
+        CacheConfiguration configuration = new CacheConfiguration();
+        ReflectionTestUtils.setField(configuration, "kryoRegistrationRequired", true);
+        ReflectionTestUtils.setField(configuration, "kryoLegacyReadable", true);
+        ReflectionTestUtils.setField(configuration, "serializeRouting", true);
+        ReflectionTestUtils.setField(configuration, "compressEnabled", true);
+        ReflectionTestUtils.setField(configuration, "compressThreshold", 64);
+        serializable = configuration.getBinarySerializable();
+        redisCache = new RedisCacheImpl(new JedisResourcePoolAdapterImpl(redis.getJedisPool()), serializable,
+                new RedisKeyEncoder(100, NAMESPACE));
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        redis.close();
+    }
+
+    @Before
+    public void flush() {
+        try (Jedis jedis = redis.getJedisPool().getResource()) {
+            jedis.flushAll();
+        }
+    }
+
+    /**
+     * 升级前KryoBinarySerializableImpl的写法
+     */
+    private static byte[] legacyBytes(Object value) {
+        Output output = new Output(256, 4096);
+        new Kryo().writeObject(output, value);
+        return output.toBytes();
+    }
+
+    private static UserEntity newUser(int id) {
+        UserEntity user = new UserEntity();
+        user.setId(id);
+        user.setUserName("user-" + id);
+        user.setPassword("e10adc3949ba59abbe56e057f20f883e");
+        user.setGmtCreate(new Date(1500000000000L + id));
+        user.setGmtModified(new Date(1600000000000L + id));
+        return user;
+    }
+
+    @Test
+    public void legacyBytesLookLikeNewHeaders() {
+        assertArrayEquals(new byte[]{(byte) 0xA0, 0x01}, legacyBytes(80L));
+        assertArrayEquals(new byte[]{(byte) 0xB1, 0x01}, legacyBytes(-89L));
+    }
+
+    @Test
+    public void roundTripValuesWithLegacyLikeBytes() {
+        char[] longText = new char[500];
+        Arrays.fill(longText, 'x');
+        Object[] values = {80L, -89L, 0L, Long.MIN_VALUE, 80, -89, "", " ±", new String(longText), newUser(80)};
+        for (Object value : values) {
+            byte[] data = serializable.toBinary(value);
+            assertEquals(value, serializable.toObject(data, value.getClass()));
+        }
+    }
+
+    @Test
+    public void legacyValuesAreNotVisible() {
+        try (Jedis jedis = redis.getJedisPool().getResource()) {
+            jedis.set("legacy:80".getBytes(), legacyBytes(80L));
+            jedis.set("legacy:-89".getBytes(), legacyBytes(-89L));
+            jedis.set("legacy:user".getBytes(), legacyBytes(newUser(1)));
+        }
+        assertNull(redisCache.get("legacy:80", Long.class));
+        assertNull(redisCache.get("legacy:-89", Long.class));
+        assertNull(redisCache.get("legacy:user", UserEntity.class));
+        assertEquals(0, redisCache.exists("legacy:80"));
+
+        redisCache.set("legacy:80", Long.valueOf(80L));
+        assertEquals(Long.valueOf(80L), redisCache.get("legacy:80", Long.class));
+        try (Jedis jedis = redis.getJedisPool().getResource()) {
+            assertArrayEquals(legacyBytes(80L), jedis.get("legacy:80".getBytes()));
+        }
+    }
+
+    @Test
+    public void allCommandsUseNamespace() {
+        redisCache.set("s", "a");
+        redisCache.incrBy("n", 2, -1);
+        redisCache.setEx("o", newUser(1), 60);
+        Map<String, UserEntity> users = new HashMap<String, UserEntity>();
+        users.put("m1", newUser(1));
+        users.put("m2", newUser(2));
+        redisCache.mset(users);
+        redisCache.msetString(Collections.singletonMap("ms", "b"));
+        redisCache.hset("h", "field", newUser(3));
+        redisCache.batch(b -> {
+            b.setEx("b1", newUser(4), 60);
+            b.set("b2", "c");
+        });
+        redisCache.expire("s", 60);
+
+        try (Jedis jedis = redis.getJedisPool().getResource()) {
+            Set<String> keys = jedis.keys("*");
+            assertEquals(9, keys.size());
+            for (String key : keys) {
+                assertTrue(key, key.startsWith(NAMESPACE));
+            }
+            assertEquals(Collections.singleton("field"), jedis.hkeys(NAMESPACE + "h"));
+        }
+
+        assertEquals("a", redisCache.getString("s"));
+        assertEquals(1, redisCache.exists("s"));
+        assertTrue(redisCache.ttl("s") > 0);
+        assertEquals(2, redisCache.getLong("n"));
+        assertEquals(newUser(1), redisCache.get("o", UserEntity.class));
+        assertEquals(users, redisCache.mget(UserEntity.class, "m1", "m2"));
+        assertEquals("b", redisCache.mgetString("ms").get("ms"));
+        assertEquals(newUser(3), redisCache.hget("h", "field", UserEntity.class));
+        assertEquals(newUser(4), redisCache.get("b1", UserEntity.class));
+        assertEquals(2, redisCache.del("s", "b2"));
+        assertEquals(0, redisCache.exists("s"));
+    }
+}
@@ -0,0 +1,410 @@
+package com.nana.springdemo.redis.impl;
+
+import com.nana.springdemo.CacheConfiguration;
+import com.nana.springdemo.redis.RedisFuture;
+import com.nana.springdemo.redis.RedisKeyEncoder;
+import com.nana.springdemo.redis.serialize.IBinarySerializable;
+import io.lettuce.core.RedisURI;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.util.JedisClusterCRC16;
+import redis.clients.util.SafeEncoder;
+import redis.embedded.RedisServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 在本地启动三个主节点的Redis Cluster，验证分片路由
+ * <p>
+ * 覆盖按slot路由、MOVED后更新slot表重试、ASK重定向、del/mget/mset按节点拆分(包括batch和自动pipeline)，
+ * 以及slot表刷新时移除不再负责slot的节点。迁移slot直接用CLUSTER SETSLOT在各节点上完成，不依赖gossip传播。
+ */
+public class ClusterRedisCacheTests {
+
+    private static final int NODE_COUNT = 3;
+    private static final int SLOT_COUNT = 16384;
+
+    private static File workDir;
+    private static List<RedisServer> servers = new ArrayList<RedisServer>();
+    private static List<HostAndPort> nodes = new ArrayList<HostAndPort>();
+    private static IBinarySerializable serializable;
+
+    private ClusterJedisResourcePoolAdapterImpl clusterPool;
+    private RedisCacheImpl redisCache;
+
+    @BeforeClass
+    public static void startCluster() throws Exception {
+        workDir = Files.createTempDirectory("redis-cluster").toFile();
+        for (int i = 0; i < NODE_COUNT; i++) {
+            int port = freePort();
+            RedisServer server = RedisServer.newRedisServer()
+                    .port(port)
+                    .setting("bind 127.0.0.1")
+                    .setting("cluster-enabled yes")
+                    .setting("cluster-config-file " + new File(workDir, "nodes-" + port + ".conf").getAbsolutePath())
+                    .setting("cluster-node-timeout 5000")
+                    .setting("save \"\"")
+                    .setting("appendonly no")
+                    .build();
+            server.start();
+            servers.add(server);
+            nodes.add(new HostAndPort("127.0.0.1", port));
+        }
+        int per = SLOT_COUNT / NODE_COUNT;
+        for (int i = 0; i < NODE_COUNT; i++) {
+            int start = i * per;
+            int end = i == NODE_COUNT - 1 ? SLOT_COUNT - 1 : start + per - 1;
+            int[] range = new int[end - start + 1];
+            for (int slot = start; slot <= end; slot++) {
+                range[slot - start] = slot;
+            }
+            try (Jedis jedis = connect(nodes.get(i))) {
+                jedis.clusterAddSlots(range);
+                if (i > 0) {
+                    jedis.clusterMeet(nodes.get(0).getHost(), nodes.get(0).getPort());
+                }
+            }
+        }
+        awaitClusterReady();
+        serializable = new CacheConfiguration().getBinarySerializable();
+    }
+
+    @AfterClass
+    public static void stopCluster() throws Exception {
+        for (RedisServer server : servers) {
+            server.stop();
+        }
+        File[] files = workDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        workDir.delete();
+    }
+
+    @Before
+    public void setUp() {
+        for (HostAndPort node : nodes) {
+            try (Jedis jedis = connect(node)) {
+                jedis.flushAll();
+            }
+        }
+        GenericObjectPoolConfig poolConfig = new GenericObjectPoolConfig();
+        poolConfig.setJmxEnabled(false);
+        clusterPool = new ClusterJedisResourcePoolAdapterImpl(new LinkedHashSet<HostAndPort>(nodes.subList(0, 1)),
+                poolConfig, 2000);
+        redisCache = new RedisCacheImpl(clusterPool, serializable, new RedisKeyEncoder(0));
+    }
+
+    @After
+    public void tearDown() {
+        clusterPool.close();
+    }
+
+    @Test
+    public void routesKeysToSlotOwner() {
+        for (int i = 0; i < 100; i++) {
+            String key = "route:" + i;
+            assertEquals(0, redisCache.setEx(key, "v" + i, 60));
+        }
+        for (int i = 0; i < 100; i++) {
+            String key = "route:" + i;
+            assertEquals("v" + i, redisCache.getString(key));
+            HostAndPort owner = clusterPool.getNode(JedisClusterCRC16.getSlot(key));
+            for (HostAndPort node : nodes) {
+                assertEquals(node.equals(owner), storedOn(node, key));
+            }
+        }
+        assertEquals(NODE_COUNT, clusterPool.getPooledNodes().size());
+    }
+
+    @Test
+    public void retriesOnMovedAndRenewsSlot() {
+        String key = "moved:1";
+        int slot = JedisClusterCRC16.getSlot(key);
+        assertEquals(0, redisCache.setEx(key, "before", 60));
+        HostAndPort source = clusterPool.getNode(slot);
+        HostAndPort target = otherNode(source);
+
+        migrateSlot(slot, source, target, key);
+        assertFalse(storedOn(source, key));
+        //本地slot表仍然指向source，读写都先收到MOVED
+        assertEquals(source, clusterPool.getNode(slot));
+        assertEquals("before", redisCache.getString(key));
+        assertEquals(target, clusterPool.getNode(slot));
+        assertEquals(0, redisCache.setEx(key, "after", 60));
+        try (Jedis jedis = connect(target)) {
+            assertEquals("after", jedis.get(key));
+        }
+    }
+
+    @Test
+    public void followsAskDuringMigration() {
+        String key = "ask:1";
+        int slot = JedisClusterCRC16.getSlot(key);
+        assertEquals(0, redisCache.setEx(key, "migrating", 60));
+        HostAndPort source = clusterPool.getNode(slot);
+        HostAndPort target = otherNode(source);
+        String sourceId = nodeId(source);
+        String targetId = nodeId(target);
+
+        try (Jedis src = connect(source); Jedis dst = connect(target)) {
+            dst.clusterSetSlotImporting(slot, sourceId);
+            src.clusterSetSlotMigrating(slot, targetId);
+            src.migrate(target.getHost(), target.getPort(), key, 0, 2000);
+            try {
+                //key已经迁走而slot还属于source，source返回ASK，slot表不变
+                assertEquals("migrating", redisCache.getString(key));
+                assertEquals(source, clusterPool.getNode(slot));
+            } finally {
+                for (HostAndPort node : nodes) {
+                    try (Jedis jedis = connect(node)) {
+                        jedis.clusterSetSlotNode(slot, targetId);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void splitsMultiKeyCommandsByNode() {
+        Map<String, String> keyValues = new LinkedHashMap<String, String>();
+        Set<HostAndPort> owners = new LinkedHashSet<HostAndPort>();
+        for (int i = 0; i < 50; i++) {
+            String key = "multi:" + i;
+            keyValues.put(key, "v" + i);
+            owners.add(clusterPool.getNode(JedisClusterCRC16.getSlot(key)));
+        }
+        assertEquals(NODE_COUNT, owners.size());
+        String[] keys = keyValues.keySet().toArray(new String[keyValues.size()]);
+
+        assertEquals(0, redisCache.msetString(keyValues));
+        assertEquals(keyValues, redisCache.mgetString(keys));
+
+        //slot表过期的节点按MOVED重试，整体结果不变
+        String movedKey = keys[0];
+        int slot = JedisClusterCRC16.getSlot(movedKey);
+        HostAndPort source = clusterPool.getNode(slot);
+        migrateSlot(slot, source, otherNode(source), movedKey);
+        assertEquals(keyValues, redisCache.mgetString(keys));
+
+        assertEquals(keys.length, redisCache.del(keys));
+        Map<String, String> empty = redisCache.mgetString(keys);
+        for (String key : keys) {
+            assertNull(empty.get(key));
+        }
+    }
+
+    @Test
+    public void splitsBatchMultiKeyCommandsBySlot() {
+        Map<String, Integer> keyValues = multiSlotValues("batch:");
+        final String[] keys = keyValues.keySet().toArray(new String[keyValues.size()]);
+        assertEquals(0, redisCache.mset(keyValues));
+
+        final List<RedisFuture<Map<String, Integer>>> mget = new ArrayList<RedisFuture<Map<String, Integer>>>();
+        final List<RedisFuture<Integer>> del = new ArrayList<RedisFuture<Integer>>();
+        redisCache.batch(b -> {
+            mget.add(b.mget(Integer.class, keys));
+            del.add(b.del(keys));
+        });
+        assertEquals(keyValues, mget.get(0).get());
+        assertEquals(Integer.valueOf(keys.length), del.get(0).get());
+    }
+
+    @Test
+    public void autoPipelineSplitsMultiKeyCommandsBySlot() {
+        AutoPipeliner autoPipeliner = new AutoPipeliner(redisCache, 1, 64, 100, 1000, 2000);
+        autoPipeliner.start();
+        redisCache.setAutoPipeliner(autoPipeliner);
+        try {
+            Map<String, Integer> keyValues = multiSlotValues("auto:");
+            String[] keys = keyValues.keySet().toArray(new String[keyValues.size()]);
+            assertEquals(0, redisCache.mset(keyValues));
+            assertEquals(keyValues, redisCache.mget(Integer.class, keys));
+            assertEquals(keys.length, redisCache.del(keys));
+        } finally {
+            autoPipeliner.close();
+        }
+    }
+
+    /**
+     * 分布在所有节点上的多个key
+     */
+    private Map<String, Integer> multiSlotValues(String prefix) {
+        Map<String, Integer> keyValues = new LinkedHashMap<String, Integer>();
+        Set<HostAndPort> owners = new LinkedHashSet<HostAndPort>();
+        for (int i = 0; i < 30; i++) {
+            String key = prefix + i;
+            keyValues.put(key, i);
+            owners.add(clusterPool.getNode(JedisClusterCRC16.getSlot(key)));
+        }
+        assertEquals(NODE_COUNT, owners.size());
+        return keyValues;
+    }
+
+    @Test
+    public void dropsNodesNoLongerServingSlots() {
+        for (HostAndPort node : nodes) {
+            clusterPool.getResource(node).close();
+        }
+        assertEquals(new LinkedHashSet<HostAndPort>(nodes), clusterPool.getPooledNodes());
+
+        //最后一个节点下线：CLUSTER SLOTS只返回前两个节点的范围
+        HostAndPort gone = nodes.get(NODE_COUNT - 1);
+        List<Object> slotInfos = new ArrayList<Object>();
+        int goneSlot = -1;
+        for (int slot = 0; slot < SLOT_COUNT; slot++) {
+            HostAndPort node = clusterPool.getNode(slot);
+            if (gone.equals(node)) {
+                goneSlot = slot;
+            } else {
+                slotInfos.add(slotInfo(slot, node));
+            }
+        }
+        assertTrue(goneSlot >= 0);
+        clusterPool.applySlots(nodes.get(0), slotInfos);
+
+        assertFalse(clusterPool.getPooledNodes().contains(gone));
+        assertNull(clusterPool.getNode(goneSlot));
+
+        //访问空的slot时重新拉取，节点恢复
+        assertEquals(gone, connectedNode(clusterPool.getResourceBySlot(goneSlot)));
+        assertTrue(clusterPool.getPooledNodes().contains(gone));
+    }
+
+    @Test
+    public void asyncCacheRoutesBySlot() {
+        List<RedisURI> seeds = new ArrayList<RedisURI>();
+        for (HostAndPort node : nodes) {
+            seeds.add(RedisURI.Builder.redis(node.getHost(), node.getPort()).withTimeout(Duration.ofSeconds(2)).build());
+        }
+        LettuceAsyncRedisCacheImpl asyncCache = new LettuceAsyncRedisCacheImpl(seeds, serializable, new RedisKeyEncoder(0));
+        try {
+            Map<String, Integer> expected = new HashMap<String, Integer>();
+            for (int i = 0; i < 30; i++) {
+                String key = "async:" + i;
+                assertEquals(Integer.valueOf(0), asyncCache.setEx(key, i, 60).join());
+                expected.put(key, i);
+            }
+            String[] keys = expected.keySet().toArray(new String[expected.size()]);
+            assertEquals(expected, asyncCache.mget(Integer.class, keys).join());
+            assertEquals(expected, redisCache.mget(Integer.class, keys));
+            assertEquals(Integer.valueOf(keys.length), asyncCache.del(keys).join());
+        } finally {
+            asyncCache.close();
+        }
+    }
+
+    private static List<Object> slotInfo(int slot, HostAndPort node) {
+        return Arrays.<Object>asList((long) slot, (long) slot,
+                Arrays.<Object>asList(SafeEncoder.encode(node.getHost()), (long) node.getPort()));
+    }
+
+    private static HostAndPort connectedNode(Jedis jedis) {
+        try {
+            return new HostAndPort(jedis.getClient().getHost(), jedis.getClient().getPort());
+        } finally {
+            jedis.close();
+        }
+    }
+
+    /**
+     * key是否在该节点上，KEYS只查本节点，不会返回MOVED
+     */
+    private static boolean storedOn(HostAndPort node, String key) {
+        try (Jedis jedis = connect(node)) {
+            return jedis.keys(key).contains(key);
+        }
+    }
+
+    private static HostAndPort otherNode(HostAndPort node) {
+        for (HostAndPort other : nodes) {
+            if (!other.equals(node)) {
+                return other;
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    /**
+     * 把slot连同其中的key迁到target，所有节点都更新slot归属
+     */
+    private static void migrateSlot(int slot, HostAndPort source, HostAndPort target, String... keys) {
+        String sourceId = nodeId(source);
+        String targetId = nodeId(target);
+        try (Jedis src = connect(source); Jedis dst = connect(target)) {
+            dst.clusterSetSlotImporting(slot, sourceId);
+            src.clusterSetSlotMigrating(slot, targetId);
+            for (String key : keys) {
+                src.migrate(target.getHost(), target.getPort(), key, 0, 2000);
+            }
+        }
+        for (HostAndPort node : nodes) {
+            try (Jedis jedis = connect(node)) {
+                jedis.clusterSetSlotNode(slot, targetId);
+            }
+        }
+    }
+
+    private static String nodeId(HostAndPort node) {
+        try (Jedis jedis = connect(node)) {
+            for (String line : jedis.clusterNodes().split("\n")) {
+                if (line.contains("myself")) {
+                    return line.split(" ")[0];
+                }
+            }
+        }
+        throw new IllegalStateException("node id not found: " + node);
+    }
+
+    private static void awaitClusterReady() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30000;
+        while (System.currentTimeMillis() < deadline) {
+            boolean ready = true;
+            for (HostAndPort node : nodes) {
+                try (Jedis jedis = connect(node)) {
+                    ready &= jedis.clusterInfo().contains("cluster_state:ok") && jedis.clusterSlots().size() == NODE_COUNT;
+                }
+            }
+            if (ready) {
+                return;
+            }
+            Thread.sleep(100);
+        }
+        throw new IllegalStateException("cluster not ready");
+    }
+
+    private static Jedis connect(HostAndPort node) {
+        return new Jedis(node.getHost(), node.getPort(), 2000);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.nana.springdemo.redis.impl;
+
+import com.nana.springdemo.BenchmarkRedis;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 在本地启动的Redis上验证{@link LockFreeJedisPool}的借还
+ * <p>
+ * 覆盖线程缓存取回、并发借还时同一个连接不会同时借给两个线程(线程缓存、共享栈和新建三条路径交错)、
+ * 断开的连接归还后移除并释放名额、空闲连接重复归还被忽略，以及预建连接、等待超时和关闭后归还。
+ */
+public class LockFreeJedisPoolTests {
+
+    private static final int MAX_TOTAL = 4;
+    private static final int THREADS = 16;
+    private static final int ROUNDS = 2000;
+
+    private static BenchmarkRedis redis;
+
+    private LockFreeJedisPool pool;
+
+    @BeforeClass
+    public static void startRedis() throws Exception {
+        redis = new BenchmarkRedis(1);
+    }
+
+    @AfterClass
+    public static void stopRedis() throws Exception {
+        redis.close();
+    }
+
+    @Before
+    public void setUp() {
+        pool = new LockFreeJedisPool(redis.getHost(), redis.getPort(), 2000, MAX_TOTAL, 2000);
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void reclaimsThreadLocalConnection() {
+        Jedis first = pool.getResource();
+        first.close();
+        Jedis second = pool.getResource();
+        assertSame(first, second);
+        assertEquals(1, pool.getNumActive());
+        assertEquals(0, pool.getNumIdle());
+        second.close();
+        assertEquals(0, pool.getNumActive());
+        assertEquals(1, pool.getNumIdle());
+    }
+
+    @Test
+    public void takesConnectionReturnedByOtherThread() throws Exception {
+        final Jedis borrowed = pool.getResource();
+        borrowed.close();
+        Jedis other = runInOtherThread(new Callable<Jedis>() {
+            public Jedis call() {
+                Jedis jedis = pool.getResource();
+                jedis.close();
+                return jedis;
+            }
+        });
+        assertSame(borrowed, other);
+        assertEquals(1, pool.getNumIdle());
+    }
+
+    @Test
+    public void neverLendsConnectionTwiceUnderContention() throws Exception {
+        final Map<Jedis, AtomicBoolean> owners = new ConcurrentHashMap<Jedis, AtomicBoolean>();
+        List<Future<Void>> results = runConcurrently(new Callable<Void>() {
+            public Void call() {
+                for (int i = 0; i < ROUNDS; i++) {
+                    Jedis jedis = pool.getResource();
+                    AtomicBoolean owner = owners.computeIfAbsent(jedis, k -> new AtomicBoolean());
+                    if (!owner.compareAndSet(false, true)) {
+                        throw new AssertionError("connection lent to two threads");
+                    }
+                    if (i % 50 == 0) {
+                        assertEquals("PONG", jedis.ping());
+                    }
+                    assertTrue(pool.getNumActive() + pool.getNumIdle() <= MAX_TOTAL);
+                    owner.set(false);
+                    jedis.close();
+                }
+                return null;
+            }
+        });
+        for (Future<Void> result : results) {
+            result.get();
+        }
+        assertTrue(owners.size() <= MAX_TOTAL);
+        assertEquals(0, pool.getNumActive());
+        assertTrue(pool.getNumIdle() <= MAX_TOTAL);
+    }
+
+    @Test
+    public void removesBrokenConnectionsUnderContention() throws Exception {
+        final Set<Jedis> removed = Collections.newSetFromMap(new ConcurrentHashMap<Jedis, Boolean>());
+        List<Future<Void>> results = runConcurrently(new Callable<Void>() {
+            public Void call() {
+                for (int i = 0; i < ROUNDS / 4; i++) {
+                    Jedis jedis = pool.getResource();
+                    if (removed.contains(jedis)) {
+                        throw new AssertionError("removed connection lent again");
+                    }
+                    assertTrue(jedis.isConnected());
+                    if (ThreadLocalRandom.current().nextInt(4) == 0) {
+                        removed.add(jedis);
+                        pool.returnBrokenResource(jedis);
+                    } else {
+                        jedis.close();
+                    }
+                }
+                return null;
+            }
+        });
+        for (Future<Void> result : results) {
+            result.get();
+        }
+        assertFalse(removed.isEmpty());
+        for (Jedis jedis : removed) {
+            assertFalse(jedis.isConnected());
+        }
+        assertEquals(0, pool.getNumActive());
+        assertTrue(pool.getNumIdle() <= MAX_TOTAL);
+
+        //名额已经释放，仍然可以借满maxTotal个连接
+        List<Jedis> borrowed = new ArrayList<Jedis>();
+        for (int i = 0; i < MAX_TOTAL; i++) {
+            borrowed.add(pool.getResource());
+        }
+        for (Jedis jedis : borrowed) {
+            assertEquals("PONG", jedis.ping());
+            jedis.close();
+        }
+    }
+
+    @Test
+    public void duplicateReturnIsIgnored() throws Exception {
+        final Jedis jedis = pool.getResource();
+        jedis.close();
+        //已经空闲的连接再次归还时CAS失败，不会重置连接，也不会在栈中出现两次
+        jedis.close();
+        assertEquals(1, pool.getNumIdle());
+        assertEquals(0, pool.getNumActive());
+        final CountDownLatch borrowed = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> other = executor.submit(new Callable<String>() {
+                public String call() throws Exception {
+                    Jedis taken = pool.getResource();
+                    assertSame(jedis, taken);
+                    borrowed.countDown();
+                    release.await(5, TimeUnit.SECONDS);
+                    String ret = taken.ping();
+                    taken.close();
+                    return ret;
+                }
+            });
+            assertTrue(borrowed.await(5, TimeUnit.SECONDS));
+            Jedis mine = pool.getResource();
+            assertNotSame(jedis, mine);
+            mine.close();
+            release.countDown();
+            assertEquals("PONG", other.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(2, pool.getNumIdle());
+    }
+
+    @Test
+    public void addObjectsCreatesIdleConnectionsUpToMaxTotal() {
+        pool.addObjects(MAX_TOTAL + 2);
+        assertEquals(MAX_TOTAL, pool.getNumIdle());
+        assertEquals(0, pool.getNumActive());
+        Map<Jedis, Boolean> borrowed = new IdentityHashMap<Jedis, Boolean>();
+        for (int i = 0; i < MAX_TOTAL; i++) {
+            borrowed.put(pool.getResource(), Boolean.TRUE);
+        }
+        assertEquals(MAX_TOTAL, borrowed.size());
+        for (Jedis jedis : borrowed.keySet()) {
+            assertEquals("PONG", jedis.ping());
+            jedis.close();
+        }
+        assertEquals(MAX_TOTAL, pool.getNumIdle());
+    }
+
+    @Test
+    public void timesOutWhenExhausted() {
+        LockFreeJedisPool small = new LockFreeJedisPool(redis.getHost(), redis.getPort(), 2000, 1, 50);
+        try {
+            Jedis jedis = small.getResource();
+            try {
+                small.getResource();
+                fail("expected timeout");
+            } catch (JedisException e) {
+                assertTrue(e.getCause() instanceof NoSuchElementException);
+            }
+            jedis.close();
+            Jedis again = small.getResource();
+            assertSame(jedis, again);
+            again.close();
+        } finally {
+            small.close();
+        }
+    }
+
+    @Test
+    public void returnAfterCloseDisconnects() {
+        Jedis jedis = pool.getResource();
+        Jedis idle = pool.getResource();
+        idle.close();
+        pool.close();
+        assertFalse(idle.isConnected());
+        assertTrue(jedis.isConnected());
+        jedis.close();
+        assertFalse(jedis.isConnected());
+        assertEquals(0, pool.getNumIdle());
+    }
+
+    private <T> T runInOtherThread(Callable<T> task) throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            return executor.submit(task).get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private <T> List<Future<T>> runConcurrently(final Callable<T> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Future<T>> results = new ArrayList<Future<T>>();
+            for (int i = 0; i < THREADS; i++) {
+                results.add(executor.submit(new Callable<T>() {
+                    public T call() throws Exception {
+                        start.await();
+                        return task.call();
+                    }
+                }));
+            }
+            start.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.nana.springdemo.redis.impl;
+
+import com.nana.springdemo.BenchmarkRedis;
+import com.nana.springdemo.redis.serialize.impl.KryoBinarySerializableImpl;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import redis.clients.jedis.Jedis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 在本地启动的Redis上验证getOrLoad的并发加载合并
+ * <p>
+ * 覆盖进程内单飞合并和跨节点加载锁(两个RedisCacheImpl模拟两个节点)下同一个key只加载一次、
+ * 加载线程卡住超过loadLockMillis时等待方自己加载、加载完成或失败后释放锁，以及提前刷新。
+ */
+public class RedisCacheLoadTests {
+
+    private static final int THREADS = 16;
+    private static final int LOAD_LOCK_MILLIS = 300;
+
+    private static BenchmarkRedis redis;
+
+    private RedisCacheImpl redisCache;
+    private ExecutorService executor;
+    private Jedis jedis;
+
+    @BeforeClass
+    public static void startRedis() throws Exception {
+        redis = new BenchmarkRedis(THREADS * 2 + 4);
+    }
+
+    @AfterClass
+    public static void stopRedis() throws Exception {
+        redis.close();
+    }
+
+    @Before
+    public void setUp() {
+        redisCache = newRedisCache();
+        executor = Executors.newFixedThreadPool(THREADS);
+        jedis = redis.getJedisPool().getResource();
+        jedis.flushDB();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        jedis.close();
+    }
+
+    @Test
+    public void concurrentLoadsRunLoaderOnce() throws Exception {
+        final AtomicInteger loads = new AtomicInteger();
+        final Supplier<String> loader = slowLoader(loads, "v", 100);
+        List<Future<String>> results = runConcurrently(THREADS, i -> redisCache.getOrLoad("k", String.class, 60, loader));
+        for (Future<String> result : results) {
+            assertEquals("v", result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+        assertTrue(jedis.exists("k"));
+        assertFalse(jedis.exists(lockKey("k")));
+    }
+
+    @Test
+    public void loadLockCoordinatesNodes() throws Exception {
+        final RedisCacheImpl otherNode = newRedisCache();
+        final AtomicInteger loads = new AtomicInteger();
+        final Supplier<String> loader = slowLoader(loads, "v", 100);
+        List<Future<String>> results = runConcurrently(THREADS,
+                i -> (i % 2 == 0 ? redisCache : otherNode).getOrLoad("k", String.class, 60, loader));
+        for (Future<String> result : results) {
+            assertEquals("v", result.get(5, TimeUnit.SECONDS));
+        }
+        //两个节点各自单飞合并，只有拿到锁的节点加载，另一个节点轮询到写回的值
+        assertEquals(1, loads.get());
+        assertFalse(jedis.exists(lockKey("k")));
+    }
+
+    @Test
+    public void waiterLoadsItselfWhenHolderStalls() throws Exception {
+        final CountDownLatch holderLoading = new CountDownLatch(1);
+        final CountDownLatch releaseHolder = new CountDownLatch(1);
+        Future<String> holder = executor.submit(new Callable<String>() {
+            public String call() {
+                return redisCache.getOrLoad("k", String.class, 60, () -> {
+                    holderLoading.countDown();
+                    try {
+                        releaseHolder.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "holder";
+                });
+            }
+        });
+        assertTrue(holderLoading.await(5, TimeUnit.SECONDS));
+        assertTrue(jedis.exists(lockKey("k")));
+        try {
+            //同一个节点的等待方：单飞等待超时后自己加载
+            long start = System.nanoTime();
+            assertEquals("waiter", redisCache.getOrLoad("k", String.class, 60, () -> "waiter"));
+            long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue("waited " + waited, waited >= LOAD_LOCK_MILLIS - 50 && waited < LOAD_LOCK_MILLIS * 5);
+
+            //另一个节点：拿不到锁，轮询到锁的有效期结束后自己加载
+            //(k已经被上面的等待方写回，另一个节点换一个被其他节点锁住、还没有加载完的key)
+            jedis.set(lockKey("k2"), "someone");
+            jedis.pexpire(lockKey("k2"), 60000);
+            start = System.nanoTime();
+            assertEquals("other", newRedisCache().getOrLoad("k2", String.class, 60, () -> "other"));
+            waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue("waited " + waited, waited >= LOAD_LOCK_MILLIS - 50 && waited < LOAD_LOCK_MILLIS * 5);
+        } finally {
+            releaseHolder.countDown();
+        }
+        assertEquals("holder", holder.get(5, TimeUnit.SECONDS));
+        assertFalse(jedis.exists(lockKey("k")));
+    }
+
+    @Test
+    public void releasesLockWhenLoaderFails() {
+        final AtomicInteger loads = new AtomicInteger();
+        try {
+            redisCache.getOrLoad("k", String.class, 60, () -> {
+                loads.incrementAndGet();
+                throw new IllegalStateException("db down");
+            });
+            fail("expected loader exception");
+        } catch (IllegalStateException e) {
+            assertEquals("db down", e.getMessage());
+        }
+        assertFalse(jedis.exists(lockKey("k")));
+        //下一次调用重新加载，不会等待失败的那次
+        long start = System.nanoTime();
+        assertEquals("v", redisCache.getOrLoad("k", String.class, 60, () -> "v"));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < LOAD_LOCK_MILLIS);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void refreshesEarlyNearExpiry() throws Exception {
+        //写回在调用线程中执行，提前刷新完成后才返回
+        redisCache.setWriteBackExecutor(Runnable::run);
+        redisCache.setEarlyRefreshBeta(1e12);
+        redisCache.setEx("k", (Object) "old", 60);
+        final AtomicInteger loads = new AtomicInteger();
+        //命中时返回旧值，同时触发刷新
+        assertEquals("old", redisCache.getOrLoad("k", String.class, 60, () -> {
+            loads.incrementAndGet();
+            return "new";
+        }));
+        assertEquals(1, loads.get());
+        assertEquals("new", redisCache.get("k", String.class));
+        assertFalse(jedis.exists(lockKey("k")));
+    }
+
+    @Test
+    public void doesNotRefreshFarFromExpiry() {
+        redisCache.setEarlyRefreshBeta(1);
+        redisCache.setEx("k", (Object) "old", 3600);
+        final AtomicInteger loads = new AtomicInteger();
+        for (int i = 0; i < 100; i++) {
+            assertEquals("old", redisCache.getOrLoad("k", String.class, 3600, () -> {
+                loads.incrementAndGet();
+                return "new";
+            }));
+        }
+        assertEquals(0, loads.get());
+    }
+
+    private RedisCacheImpl newRedisCache() {
+        RedisCacheImpl cache = new RedisCacheImpl(new JedisResourcePoolAdapterImpl(redis.getJedisPool()),
+                new KryoBinarySerializableImpl());
+        cache.setLoadLockMillis(LOAD_LOCK_MILLIS);
+        return cache;
+    }
+
+    private static String lockKey(String key) {
+        return key + ":load-lock";
+    }
+
+    private static Supplier<String> slowLoader(final AtomicInteger loads, final String value, final long millis) {
+        return () -> {
+            loads.incrementAndGet();
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return value;
+        };
+    }
+
+    private interface Task<T> {
+        T run(int index);
+    }
+
+    private <T> List<Future<T>> runConcurrently(int threads, final Task<T> task) {
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<T>> results = new ArrayList<Future<T>>();
+        for (int i = 0; i < threads; i++) {
+            final int index = i;
+            results.add(executor.submit(new Callable<T>() {
+                public T call() throws Exception {
+                    start.await();
+                    return task.run(index);
+                }
+            }));
+        }
+        start.countDown();
+        return results;
+    }
+}